@@ -0,0 +1,159 @@
+package br.com.improving.carrinho;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Replay de acessos de clientes sorteados por uma distribuição de Zipf sobre uma população grande de carrinhos
+ * gravados em um repositório em memória, com a factory funcionando como cache de uma fração do peso total, e sem
+ * cache, com todos os carrinhos em memória ({@code pesoMaximo} 0). Cada acesso obtém o carrinho e lê o valor total;
+ * um em cada oito também altera um item, de modo que os carrinhos despejados precisam ser gravados.
+ *
+ * Os contadores {@code acertos} e {@code carregamentos} informam a taxa de acerto do cache.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+@State(Scope.Benchmark)
+public class CacheCarrinhosBenchmark {
+
+	private static final BigDecimal VALOR_UNITARIO = new BigDecimal("9.90");
+	private static final int LINHAS = 3;
+	private static final int ACESSOS = 1 << 20;
+
+	@Param({"1000000"})
+	private int carrinhos;
+
+	@Param({"0", "30000", "300000"})
+	private long pesoMaximo;
+
+	private CarrinhoComprasFactory factory;
+	private AtomicLong leituras;
+	private Produto[] produtos;
+	private String[] acessos;
+	private int proximo;
+
+	@AuxCounters(AuxCounters.Type.EVENTS)
+	@State(Scope.Thread)
+	public static class Contadores {
+
+		public long acertos;
+		public long carregamentos;
+	}
+
+	@Setup(Level.Trial)
+	public void setup() {
+		produtos = new Produto[LINHAS];
+		CarrinhoCompras modelo = new CarrinhoCompras();
+		for (int i = 0; i < LINHAS; i++) {
+			produtos[i] = new Produto((long) i, "produto" + i);
+			modelo.adicionarItem(produtos[i], VALOR_UNITARIO, 1);
+		}
+		leituras = new AtomicLong();
+		if (pesoMaximo == 0L) {
+			factory = new CarrinhoComprasFactory();
+			for (int i = 0; i < carrinhos; i++) {
+				CarrinhoCompras carrinhoCompras = factory.criar("cliente" + i);
+				for (Produto produto : produtos) {
+					carrinhoCompras.adicionarItem(produto, VALOR_UNITARIO, 1);
+				}
+			}
+		} else {
+			RepositorioCarrinhosEmMemoria repositorio = new RepositorioCarrinhosEmMemoria();
+			for (int i = 0; i < carrinhos; i++) {
+				repositorio.gravar("cliente" + i, modelo);
+			}
+			factory = CarrinhoComprasFactory.builder().cache(new Contador(repositorio, leituras), pesoMaximo).build();
+		}
+		double[] acumulada = new double[carrinhos];
+		double soma = 0.0;
+		for (int i = 0; i < carrinhos; i++) {
+			soma += 1.0 / (i + 1);
+			acumulada[i] = soma;
+		}
+		// clientes embaralhados, para que os frequentes não sejam os primeiros na ordem de criação
+		int[] permutacao = new int[carrinhos];
+		Random random = new Random(42L);
+		for (int i = 0; i < carrinhos; i++) {
+			int j = random.nextInt(i + 1);
+			permutacao[i] = permutacao[j];
+			permutacao[j] = i;
+		}
+		acessos = new String[ACESSOS];
+		for (int i = 0; i < ACESSOS; i++) {
+			int sorteado = Arrays.binarySearch(acumulada, random.nextDouble() * soma);
+			acessos[i] = "cliente" + permutacao[sorteado >= 0 ? sorteado : -sorteado - 1];
+		}
+	}
+
+	@Benchmark
+	public long acessar(Contadores contadores) {
+		int acesso = proximo++;
+		long antes = leituras.get();
+		CarrinhoCompras carrinhoCompras = factory.criar(acessos[acesso & (ACESSOS - 1)]);
+		if ((acesso & 7) == 0) {
+			carrinhoCompras.adicionarItem(produtos[0], VALOR_UNITARIO, 1);
+		}
+		if (leituras.get() == antes) {
+			contadores.acertos++;
+		} else {
+			contadores.carregamentos++;
+		}
+		return carrinhoCompras.getValorTotalCentavos();
+	}
+
+	/**
+	 * Conta as leituras do repositório, que são as faltas do cache.
+	 */
+	private static final class Contador implements RepositorioCarrinhos {
+
+		private final RepositorioCarrinhos repositorio;
+		private final AtomicLong leituras;
+
+		private Contador(RepositorioCarrinhos repositorio, AtomicLong leituras) {
+			this.repositorio = repositorio;
+			this.leituras = leituras;
+		}
+
+		@Override
+		public CarrinhoCompras carregar(String identificacaoCliente) {
+			leituras.incrementAndGet();
+			return repositorio.carregar(identificacaoCliente);
+		}
+
+		@Override
+		public void gravar(String identificacaoCliente, CarrinhoCompras carrinhoCompras) {
+			repositorio.gravar(identificacaoCliente, carrinhoCompras);
+		}
+
+		@Override
+		public boolean remover(String identificacaoCliente) {
+			return repositorio.remover(identificacaoCliente);
+		}
+
+		@Override
+		public void percorrer(BiConsumer<String, CarrinhoCompras> consumidor) {
+			repositorio.percorrer(consumidor);
+		}
+	}
+}
@@ -0,0 +1,95 @@
+package br.com.improving.carrinho;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Operações de um único carrinho em função da quantidade de linhas.
+ *
+ * Cada thread usa o seu próprio carrinho, portanto execuções com -t medem a escalabilidade sem disputa entre clientes.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CarrinhoComprasBenchmark {
+
+	private static final BigDecimal VALOR_UNITARIO = new BigDecimal("9.90");
+
+	@Param({"10", "1000", "100000"})
+	private int linhas;
+
+	private CarrinhoCompras carrinhoCompras;
+	private Produto[] produtos;
+	private Produto produtoNovo;
+	private SplittableRandom random;
+	private int proximo;
+	private long proximoCodigo;
+
+	@Setup(Level.Iteration)
+	public void setup() {
+		carrinhoCompras = new CarrinhoComprasFactory().criar("cliente");
+		produtos = new Produto[linhas];
+		for (int i = 0; i < linhas; i++) {
+			produtos[i] = new Produto((long) i, "produto" + i);
+			carrinhoCompras.adicionarItem(produtos[i], VALOR_UNITARIO, 1);
+		}
+		produtoNovo = new Produto((long) linhas, "produto" + linhas);
+		proximoCodigo = linhas + 1L;
+		random = new SplittableRandom(linhas);
+	}
+
+	@Benchmark
+	public void adicionarItemExistente() {
+		carrinhoCompras.adicionarItem(produtos[proximo()], VALOR_UNITARIO, 1);
+	}
+
+	@Benchmark
+	public boolean adicionarERemoverItemNovo() {
+		carrinhoCompras.adicionarItem(produtoNovo, VALOR_UNITARIO, 1);
+		return carrinhoCompras.removerItem(produtoNovo);
+	}
+
+	/**
+	 * Remove uma posição aleatória e inclui um produto novo no final, mantendo o tamanho do carrinho.
+	 */
+	@Benchmark
+	public boolean removerItemPorPosicao() {
+		boolean removido = carrinhoCompras.removerItem(random.nextInt(linhas));
+		carrinhoCompras.adicionarItem(new Produto(proximoCodigo++, "produto"), VALOR_UNITARIO, 1);
+		return removido;
+	}
+
+	@Benchmark
+	public Collection<Item> getItens() {
+		return carrinhoCompras.getItens();
+	}
+
+	@Benchmark
+	public BigDecimal getValorTotal() {
+		return carrinhoCompras.getValorTotal();
+	}
+
+	private int proximo() {
+		int indice = proximo;
+		proximo = indice + 1 == linhas ? 0 : indice + 1;
+		return indice;
+	}
+}
@@ -0,0 +1,99 @@
+package br.com.improving.carrinho;
+
+import java.math.BigDecimal;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Operações da factory sobre uma população de carrinhos compartilhada entre as threads do benchmark.
+ *
+ * A quantidade de threads é definida na linha de comando do JMH (-t), por exemplo -t 1, -t 4 e -t max.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CarrinhoComprasFactoryBenchmark {
+
+	private static final BigDecimal VALOR_UNITARIO = new BigDecimal("9.90");
+
+	@Param({"1000", "100000"})
+	private int carrinhos;
+
+	@Param({"10"})
+	private int itensPorCarrinho;
+
+	private CarrinhoComprasFactory factory;
+	private String[] clientes;
+	private Produto[] produtos;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		factory = new CarrinhoComprasFactory();
+		clientes = new String[carrinhos];
+		produtos = new Produto[itensPorCarrinho];
+		for (int i = 0; i < itensPorCarrinho; i++) {
+			produtos[i] = new Produto((long) i, "produto" + i);
+		}
+		for (int i = 0; i < carrinhos; i++) {
+			clientes[i] = "cliente" + i;
+			CarrinhoCompras carrinhoCompras = factory.criar(clientes[i]);
+			for (Produto produto : produtos) {
+				carrinhoCompras.adicionarItem(produto, VALOR_UNITARIO, 1);
+			}
+		}
+	}
+
+	@Benchmark
+	public BigDecimal getValorTicketMedio() {
+		return factory.getValorTicketMedio();
+	}
+
+	@Benchmark
+	public CarrinhoCompras criarExistente(ThreadState thread) {
+		return factory.criar(clientes[thread.random.nextInt(carrinhos)]);
+	}
+
+	@Benchmark
+	public boolean criarEInvalidar(ThreadState thread) {
+		String cliente = thread.proximoClienteNovo();
+		factory.criar(cliente).adicionarItem(produtos[0], VALOR_UNITARIO, 1);
+		return factory.invalidar(cliente);
+	}
+
+	@Benchmark
+	public void adicionarItem(ThreadState thread) {
+		factory.criar(clientes[thread.random.nextInt(carrinhos)])
+				.adicionarItem(produtos[thread.random.nextInt(itensPorCarrinho)], VALOR_UNITARIO, 1);
+	}
+
+	@State(Scope.Thread)
+	public static class ThreadState {
+
+		private static final AtomicInteger THREADS = new AtomicInteger();
+
+		private final int thread = THREADS.incrementAndGet();
+		private final SplittableRandom random = new SplittableRandom(thread);
+		private long clientesNovos;
+
+		private String proximoClienteNovo() {
+			return "novo-" + thread + "-" + clientesNovos++;
+		}
+	}
+}
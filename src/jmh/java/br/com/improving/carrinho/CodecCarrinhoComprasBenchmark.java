@@ -0,0 +1,83 @@
+package br.com.improving.carrinho;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Codificação e decodificação de um carrinho no formato binário comparadas com JSON (Jackson) dos mesmos itens.
+ *
+ * O tamanho do conteúdo de cada formato é impresso no setup.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CodecCarrinhoComprasBenchmark {
+
+	@Param({"10", "1000"})
+	private int linhas;
+
+	private final CodecCarrinhoCompras codec = new CodecCarrinhoCompras();
+	private final ObjectMapper mapper = new ObjectMapper();
+	private CarrinhoCompras carrinhoCompras;
+	private byte[] binario;
+	private byte[] json;
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException {
+		carrinhoCompras = new CarrinhoCompras();
+		for (int i = 0; i < linhas; i++) {
+			carrinhoCompras.adicionarItem(new Produto((long) i * 7919, "produto " + (i % 50)),
+					BigDecimal.valueOf(100 + i * 37L, 2), 1 + i % 5);
+		}
+		binario = codec.codificar(carrinhoCompras);
+		json = mapper.writeValueAsBytes(carrinhoCompras.getItens());
+		System.out.printf("%n%d linhas: binario %d bytes, json %d bytes%n", linhas, binario.length, json.length);
+	}
+
+	@Benchmark
+	public byte[] codificarBinario() {
+		return codec.codificar(carrinhoCompras);
+	}
+
+	@Benchmark
+	public CarrinhoCompras decodificarBinario() {
+		return codec.decodificar(ByteBuffer.wrap(binario));
+	}
+
+	@Benchmark
+	public byte[] codificarJson() throws IOException {
+		return mapper.writeValueAsBytes(carrinhoCompras.getItens());
+	}
+
+	@Benchmark
+	public CarrinhoCompras decodificarJson() throws IOException {
+		CarrinhoCompras decodificado = new CarrinhoCompras();
+		for (JsonNode item : mapper.readTree(json)) {
+			JsonNode produto = item.get("produto");
+			decodificado.adicionarItem(new Produto(produto.get("codigo").asLong(), produto.get("descricao").asText()),
+					item.get("valorUnitario").decimalValue(), item.get("quantidade").asInt());
+		}
+		return decodificado;
+	}
+}
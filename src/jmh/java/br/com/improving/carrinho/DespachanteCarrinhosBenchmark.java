@@ -0,0 +1,112 @@
+package br.com.improving.carrinho;
+
+import java.math.BigDecimal;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Vazão de 10 mil comandos simultâneos distribuídos entre poucos ou muitos clientes, enviados pelo
+ * {@link DespachanteCarrinhos} ou executados diretamente sobre o carrinho, que depende apenas do lock dele.
+ *
+ * Em JVMs com threads virtuais (Java 21 ou superior), os comandos são executados por uma thread virtual cada; nas
+ * demais, por um pool com uma thread por processador. O executor usado é impresso ao final de cada execução.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DespachanteCarrinhosBenchmark {
+
+	private static final int COMANDOS = 10_000;
+	private static final BigDecimal VALOR_UNITARIO = new BigDecimal("9.90");
+
+	@Param({"16", "10000"})
+	private int clientes;
+
+	private ExecutorService executor;
+	private String descricaoExecutor;
+	private CarrinhoComprasFactory factory;
+	private DespachanteCarrinhos despachante;
+	private String[] identificacoes;
+	private Produto produto;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		executor = criarExecutor();
+		factory = new CarrinhoComprasFactory();
+		despachante = new DespachanteCarrinhos(factory, executor);
+		identificacoes = new String[clientes];
+		for (int i = 0; i < clientes; i++) {
+			identificacoes[i] = "cliente" + i;
+		}
+		produto = new Produto(1L, "produto1");
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		executor.shutdownNow();
+		System.out.printf("%nexecutor: %s%n", descricaoExecutor);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(COMANDOS)
+	public void despachante() {
+		CompletableFuture<?>[] resultados = new CompletableFuture<?>[COMANDOS];
+		for (int i = 0; i < COMANDOS; i++) {
+			resultados[i] = despachante.executar(identificacoes[i % clientes], carrinhoCompras -> {
+				carrinhoCompras.adicionarItem(produto, VALOR_UNITARIO, 1);
+				return carrinhoCompras.getValorTotal();
+			});
+		}
+		CompletableFuture.allOf(resultados).join();
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(COMANDOS)
+	public void direto() {
+		CompletableFuture<?>[] resultados = new CompletableFuture<?>[COMANDOS];
+		for (int i = 0; i < COMANDOS; i++) {
+			String identificacaoCliente = identificacoes[i % clientes];
+			resultados[i] = CompletableFuture.supplyAsync(() -> {
+				CarrinhoCompras carrinhoCompras = factory.criar(identificacaoCliente);
+				carrinhoCompras.adicionarItem(produto, VALOR_UNITARIO, 1);
+				return carrinhoCompras.getValorTotal();
+			}, executor);
+		}
+		CompletableFuture.allOf(resultados).join();
+	}
+
+	private ExecutorService criarExecutor() {
+		try {
+			// obtido por reflexão, pois o projeto é compilado para Java 8
+			ExecutorService virtual = (ExecutorService) Executors.class
+					.getMethod("newVirtualThreadPerTaskExecutor")
+					.invoke(null);
+			descricaoExecutor = "threads virtuais";
+			return virtual;
+		} catch (ReflectiveOperationException e) {
+			int threads = Runtime.getRuntime().availableProcessors();
+			descricaoExecutor = threads + " threads de plataforma";
+			return Executors.newFixedThreadPool(threads);
+		}
+	}
+}
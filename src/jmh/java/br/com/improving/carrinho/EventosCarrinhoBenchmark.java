@@ -0,0 +1,71 @@
+package br.com.improving.carrinho;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Custo da publicação de eventos em adicionarItem com 0, 1 e 4 assinantes que apenas consomem os lotes. Os eventos
+ * descartados por buffer cheio são impressos ao final de cada execução.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EventosCarrinhoBenchmark {
+
+	private static final BigDecimal VALOR_UNITARIO = new BigDecimal("9.90");
+
+	@Param({"0", "1", "4"})
+	private int assinantes;
+
+	@Param({"DESCARTAR", "AGUARDAR"})
+	private PoliticaFluxoCheio politica;
+
+	private CarrinhoComprasFactory factory;
+	private CarrinhoCompras carrinhoCompras;
+	private Produto[] produtos;
+	private int proximo;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		CarrinhoComprasFactory.Builder builder = CarrinhoComprasFactory.builder().politicaFluxoCheio(politica);
+		for (int i = 0; i < assinantes; i++) {
+			builder.assinante(eventos -> { });
+		}
+		factory = builder.build();
+		carrinhoCompras = factory.criar("cliente");
+		produtos = new Produto[16];
+		for (int i = 0; i < produtos.length; i++) {
+			produtos[i] = new Produto((long) i, "produto" + i);
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		factory.close();
+		System.out.printf("%nassinantes=%d politica=%s: %d eventos descartados, %d falhas de assinantes%n",
+				assinantes, politica, factory.getEventosDescartados(), factory.getFalhasAssinantes());
+	}
+
+	@Benchmark
+	public void adicionarItem() {
+		carrinhoCompras.adicionarItem(produtos[proximo], VALOR_UNITARIO, 1);
+		proximo = (proximo + 1) & (produtos.length - 1);
+	}
+}
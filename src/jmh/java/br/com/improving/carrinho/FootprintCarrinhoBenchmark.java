@@ -0,0 +1,69 @@
+package br.com.improving.carrinho;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jol.info.GraphLayout;
+
+/**
+ * Tamanho de um carrinho medido com JOL, impresso no setup, sem contar os produtos, que em uso normal são
+ * compartilhados (veja {@link CatalogoProdutos}), nem as instâncias compartilhadas por todos os carrinhos, como o estado
+ * vazio. O tempo medido é o de localizar uma linha por código.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class FootprintCarrinhoBenchmark {
+
+	private static final BigDecimal VALOR_UNITARIO = new BigDecimal("9.90");
+
+	@Param({"0", "1", "10", "100", "1000"})
+	private int linhas;
+
+	private CarrinhoCompras carrinhoCompras;
+	private Produto[] produtos;
+	private int proximo;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		carrinhoCompras = new CarrinhoCompras();
+		produtos = new Produto[Math.max(1, linhas)];
+		for (int i = 0; i < produtos.length; i++) {
+			produtos[i] = new Produto((long) i * 31, "produto" + i);
+		}
+		for (int i = 0; i < linhas; i++) {
+			carrinhoCompras.adicionarItem(produtos[i], VALOR_UNITARIO, 1);
+		}
+		long total = GraphLayout.parseInstance(carrinhoCompras)
+				.subtract(GraphLayout.parseInstance((Object[]) produtos))
+				.subtract(GraphLayout.parseInstance(EstadoCarrinhoCompras.VAZIO, MetricasCarrinhos.NENHUMA,
+						OuvinteCarrinhoCompras.NENHUM))
+				.totalSize();
+		System.out.printf("%nlinhas=%d: %d bytes por carrinho (%d bytes por linha)%n", linhas, total,
+				linhas == 0 ? 0 : total / linhas);
+	}
+
+	@Benchmark
+	public void adicionarItemExistente() {
+		if (linhas == 0) {
+			return;
+		}
+		carrinhoCompras.adicionarItem(produtos[proximo], VALOR_UNITARIO, 1);
+		proximo = proximo + 1 == linhas ? 0 : proximo + 1;
+	}
+}
@@ -0,0 +1,116 @@
+package br.com.improving.carrinho;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Ticket médio dos carrinhos alterados nos últimos 15 minutos, em uma população grande de carrinhos com atividade
+ * espalhada pela última hora: pela janela mantida pela factory e percorrendo todos os carrinhos com o horário da sua
+ * última alteração. Também mede o custo que a janela acrescenta a cada alteração de um carrinho.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class JanelaTicketMedioBenchmark {
+
+	private static final BigDecimal VALOR_UNITARIO = new BigDecimal("9.90");
+	private static final long HORA = Duration.ofHours(1).toMillis();
+	private static final Duration JANELA = Duration.ofMinutes(15);
+
+	@State(Scope.Benchmark)
+	public static class Populacao {
+
+		@Param({"1000000"})
+		private int carrinhos;
+
+		private long[] agora;
+		private CarrinhoComprasFactory factory;
+		private String[] identificacoes;
+		private long[] ultimaAlteracao;
+
+		@Setup(Level.Trial)
+		public void setup() {
+			agora = new long[1];
+			factory = CarrinhoComprasFactory.builder()
+					.janelaTicketMedio(Duration.ofMinutes(1), 60)
+					.relogio(() -> agora[0])
+					.build();
+			identificacoes = new String[carrinhos];
+			ultimaAlteracao = new long[carrinhos];
+			Produto produto = new Produto(1L, "produto1");
+			Random random = new Random(42L);
+			for (int i = 0; i < carrinhos; i++) {
+				// carrinhos criados em ordem de horário, como chegariam ao longo da hora
+				agora[0] = HORA * i / carrinhos;
+				identificacoes[i] = "cliente" + i;
+				ultimaAlteracao[i] = agora[0];
+				factory.criar(identificacoes[i]).adicionarItem(produto, VALOR_UNITARIO, 1 + random.nextInt(10));
+			}
+		}
+	}
+
+	@State(Scope.Benchmark)
+	public static class Alteracoes {
+
+		@Param({"false", "true"})
+		private boolean janela;
+
+		private CarrinhoCompras carrinhoCompras;
+		private Produto produto;
+
+		@Setup(Level.Trial)
+		public void setup() {
+			CarrinhoComprasFactory.Builder builder = CarrinhoComprasFactory.builder();
+			if (janela) {
+				builder.janelaTicketMedio(Duration.ofMinutes(1), 60);
+			}
+			carrinhoCompras = builder.build().criar("cliente1");
+			produto = new Produto(1L, "produto1");
+		}
+	}
+
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.MICROSECONDS)
+	public BigDecimal getValorTicketMedio(Populacao populacao) {
+		return populacao.factory.getValorTicketMedio(JANELA);
+	}
+
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	public BigDecimal percorrerCarrinhos(Populacao populacao) {
+		long inicio = populacao.agora[0] - JANELA.toMillis();
+		long somaCentavos = 0L;
+		long quantidade = 0L;
+		for (int i = 0; i < populacao.identificacoes.length; i++) {
+			if (populacao.ultimaAlteracao[i] > inicio) {
+				somaCentavos += populacao.factory.getCarrinhoCompras(populacao.identificacoes[i])
+						.getValorTotalCentavos();
+				quantidade++;
+			}
+		}
+		return AgregadoTicketMedio.valorTicketMedio(somaCentavos, quantidade);
+	}
+
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.NANOSECONDS)
+	public boolean adicionarERemoverItem(Alteracoes alteracoes) {
+		alteracoes.carrinhoCompras.adicionarItem(alteracoes.produto, VALOR_UNITARIO, 1);
+		return alteracoes.carrinhoCompras.removerItem(alteracoes.produto);
+	}
+}
@@ -0,0 +1,82 @@
+package br.com.improving.carrinho;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Importação de um pedido anterior ("comprar novamente") em um carrinho vazio: uma chamada de adicionarItem por linha
+ * comparada com um único {@link CarrinhoCompras#aplicarLote(LoteItens)}. Com {@code destino=factory}, o carrinho é
+ * criado pela factory, de modo que cada alteração também atualiza o ticket médio.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class LoteItensBenchmark {
+
+	@Param({"10", "100", "1000"})
+	private int linhas;
+
+	@Param({"avulso", "factory"})
+	private String destino;
+
+	private CarrinhoComprasFactory factory;
+	private Produto[] produtos;
+	private BigDecimal[] valoresUnitarios;
+	private LoteItens lote;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		factory = new CarrinhoComprasFactory();
+		produtos = new Produto[linhas];
+		valoresUnitarios = new BigDecimal[linhas];
+		lote = new LoteItens();
+		for (int i = 0; i < linhas; i++) {
+			produtos[i] = new Produto((long) i, "produto" + i);
+			valoresUnitarios[i] = BigDecimal.valueOf(100 + i, 2);
+			lote.adicionar(produtos[i], valoresUnitarios[i], 1 + i % 3);
+		}
+	}
+
+	private CarrinhoCompras novoCarrinho() {
+		return "factory".equals(destino) ? factory.criar("cliente") : new CarrinhoCompras();
+	}
+
+	private CarrinhoCompras finalizar(CarrinhoCompras carrinhoCompras) {
+		if ("factory".equals(destino)) {
+			factory.invalidar("cliente");
+		}
+		return carrinhoCompras;
+	}
+
+	@Benchmark
+	public CarrinhoCompras adicionarIndividualmente() {
+		CarrinhoCompras carrinhoCompras = novoCarrinho();
+		for (int i = 0; i < linhas; i++) {
+			carrinhoCompras.adicionarItem(produtos[i], valoresUnitarios[i], 1 + i % 3);
+		}
+		return finalizar(carrinhoCompras);
+	}
+
+	@Benchmark
+	public CarrinhoCompras aplicarLote() {
+		CarrinhoCompras carrinhoCompras = novoCarrinho();
+		carrinhoCompras.aplicarLote(lote);
+		return finalizar(carrinhoCompras);
+	}
+}
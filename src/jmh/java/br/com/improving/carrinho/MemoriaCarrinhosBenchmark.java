@@ -0,0 +1,108 @@
+package br.com.improving.carrinho;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.math.BigDecimal;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Heap ocupado por uma população de carrinhos, com e sem {@link CatalogoProdutos} e com as linhas no heap ou fora dele
+ * (que sempre usa um catálogo). Cada adição recebe um Produto novo, como ocorre quando o produto vem de uma requisição
+ * ou de uma consulta.
+ *
+ * Ao final de cada execução são impressos o heap usado após a população (e após coletas completas), a memória fora do
+ * heap, as coletas ocorridas durante a população e a duração de uma coleta completa com a população viva, que cresce
+ * com a quantidade de objetos a percorrer. O tempo reportado pelo JMH é o de popular a factory.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms3g", "-Xmx3g"})
+@State(Scope.Benchmark)
+public class MemoriaCarrinhosBenchmark {
+
+	private static final BigDecimal VALOR_UNITARIO = new BigDecimal("9.90");
+
+	@Param({"1000000"})
+	private int carrinhos;
+
+	@Param({"5"})
+	private int itensPorCarrinho;
+
+	@Param({"10000"})
+	private int produtosDistintos;
+
+	@Param({"false", "true"})
+	private boolean catalogo;
+
+	@Param({"false", "true"})
+	private boolean foraDoHeap;
+
+	@Benchmark
+	public CarrinhoComprasFactory popular() {
+		MemoryMXBean memoria = ManagementFactory.getMemoryMXBean();
+		long antes = heapUsado(memoria);
+		long coletasAntes = coletas()[0];
+		long tempoColetasAntes = coletas()[1];
+		CarrinhoComprasFactory.Builder builder = CarrinhoComprasFactory.builder();
+		if (catalogo) {
+			builder.catalogo(new CatalogoProdutos());
+		}
+		if (foraDoHeap) {
+			builder.armazenamentoForaDoHeap();
+		}
+		CarrinhoComprasFactory factory = builder.build();
+		SplittableRandom random = new SplittableRandom(42);
+		for (int i = 0; i < carrinhos; i++) {
+			CarrinhoCompras carrinhoCompras = factory.criar("cliente" + i);
+			for (int item = 0; item < itensPorCarrinho; item++) {
+				long codigo = random.nextInt(produtosDistintos);
+				carrinhoCompras.adicionarItem(new Produto(codigo, "produto " + codigo), VALOR_UNITARIO, 1);
+			}
+		}
+		long[] coletasPopulacao = coletas();
+		long usado = heapUsado(memoria) - antes;
+		long inicioColeta = System.nanoTime();
+		System.gc();
+		long coletaCompletaMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicioColeta);
+		long foraDoHeapUsado = foraDoHeap ? factory.getMemoriaLinhas().getBytesReservados() : 0L;
+		System.out.printf("%ncatalogo=%s foraDoHeap=%s: heap %d MB (%d bytes por carrinho), fora do heap %d MB; "
+				+ "%d coletas em %d ms durante a populacao; coleta completa em %d ms%n", catalogo, foraDoHeap,
+				usado >> 20, usado / carrinhos, foraDoHeapUsado >> 20, coletasPopulacao[0] - coletasAntes,
+				coletasPopulacao[1] - tempoColetasAntes, coletaCompletaMillis);
+		return factory;
+	}
+
+	/**
+	 * @return quantidade e tempo total, em ms, das coletas desde o início da JVM
+	 */
+	private static long[] coletas() {
+		long[] coletas = new long[2];
+		for (GarbageCollectorMXBean coletor : ManagementFactory.getGarbageCollectorMXBeans()) {
+			coletas[0] += Math.max(0L, coletor.getCollectionCount());
+			coletas[1] += Math.max(0L, coletor.getCollectionTime());
+		}
+		return coletas;
+	}
+
+	private static long heapUsado(MemoryMXBean memoria) {
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+		}
+		return memoria.getHeapMemoryUsage().getUsed();
+	}
+}
@@ -0,0 +1,77 @@
+package br.com.improving.carrinho;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Custo das métricas nas operações mais frequentes: sem métricas, com {@link MetricasEmMemoria} na amostragem padrão
+ * e com todas as execuções medidas.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MetricasCarrinhosBenchmark {
+
+	private static final BigDecimal VALOR_UNITARIO = new BigDecimal("9.90");
+
+	@Param({"nenhuma", "amostrada", "completa"})
+	private String metricas;
+
+	private CarrinhoComprasFactory factory;
+	private CarrinhoCompras carrinhoCompras;
+	private Produto[] produtos;
+	private int proximo;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		CarrinhoComprasFactory.Builder builder = CarrinhoComprasFactory.builder();
+		if ("amostrada".equals(metricas)) {
+			builder.metricas(new MetricasEmMemoria());
+		} else if ("completa".equals(metricas)) {
+			builder.metricas(new MetricasEmMemoria(1));
+		}
+		factory = builder.build();
+		carrinhoCompras = factory.criar("cliente");
+		produtos = new Produto[16];
+		for (int i = 0; i < produtos.length; i++) {
+			produtos[i] = new Produto((long) i, "produto" + i);
+		}
+	}
+
+	@Benchmark
+	public void adicionarItem() {
+		carrinhoCompras.adicionarItem(produtos[proximo], VALOR_UNITARIO, 1);
+		proximo = (proximo + 1) & (produtos.length - 1);
+	}
+
+	@Benchmark
+	public BigDecimal getValorTotal() {
+		return carrinhoCompras.getValorTotal();
+	}
+
+	@Benchmark
+	public CarrinhoCompras criar() {
+		return factory.criar("cliente");
+	}
+
+	@Benchmark
+	public BigDecimal getValorTicketMedio() {
+		return factory.getValorTicketMedio();
+	}
+}
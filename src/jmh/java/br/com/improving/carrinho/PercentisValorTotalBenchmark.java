@@ -0,0 +1,98 @@
+package br.com.improving.carrinho;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Percentil 99 dos valores totais de uma população grande de carrinhos, pela distribuição mantida pela factory e pela
+ * ordenação de todos os valores, e o custo que a distribuição acrescenta a cada alteração de um carrinho.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class PercentisValorTotalBenchmark {
+
+	private static final BigDecimal VALOR_UNITARIO = new BigDecimal("9.90");
+
+	@State(Scope.Benchmark)
+	public static class Populacao {
+
+		@Param({"1000000"})
+		private int carrinhos;
+
+		private CarrinhoComprasFactory factory;
+
+		@Setup(Level.Trial)
+		public void setup() {
+			factory = CarrinhoComprasFactory.builder().distribuicaoValores().build();
+			Produto produto = new Produto(1L, "produto1");
+			Random random = new Random(42L);
+			for (int i = 0; i < carrinhos; i++) {
+				// log-normal, com 1% de carrinhos B2B cem vezes maiores
+				long centavos = (long) Math.exp(9.0 + 1.5 * random.nextGaussian());
+				centavos = random.nextInt(100) == 0 ? centavos * 100 : centavos;
+				factory.criar("cliente" + i).adicionarItem(produto, Centavos.paraBigDecimal(centavos), 1);
+			}
+		}
+	}
+
+	@State(Scope.Benchmark)
+	public static class Alteracoes {
+
+		@Param({"false", "true"})
+		private boolean distribuicao;
+
+		private CarrinhoCompras carrinhoCompras;
+		private Produto produto;
+
+		@Setup(Level.Trial)
+		public void setup() {
+			CarrinhoComprasFactory.Builder builder = CarrinhoComprasFactory.builder();
+			if (distribuicao) {
+				builder.distribuicaoValores();
+			}
+			carrinhoCompras = builder.build().criar("cliente1");
+			produto = new Produto(1L, "produto1");
+		}
+	}
+
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.MICROSECONDS)
+	public BigDecimal getPercentilValorTotal(Populacao populacao) {
+		return populacao.factory.getPercentilValorTotal(99.0);
+	}
+
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	public BigDecimal ordenarValores(Populacao populacao) {
+		CarrinhoComprasFactory factory = populacao.factory;
+		long[] valores = factory.getIdentificacoesClientes().stream()
+				.mapToLong(identificacao -> factory.getCarrinhoCompras(identificacao).getValorTotalCentavos())
+				.toArray();
+		Arrays.sort(valores);
+		return Centavos.paraBigDecimal(valores[(int) Math.ceil(0.99 * valores.length) - 1]);
+	}
+
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.NANOSECONDS)
+	public boolean adicionarERemoverItem(Alteracoes alteracoes) {
+		alteracoes.carrinhoCompras.adicionarItem(alteracoes.produto, VALOR_UNITARIO, 1);
+		return alteracoes.carrinhoCompras.removerItem(alteracoes.produto);
+	}
+}
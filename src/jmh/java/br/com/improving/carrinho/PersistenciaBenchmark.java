@@ -0,0 +1,111 @@
+package br.com.improving.carrinho;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Custo da persistência sobre as alterações de carrinhos, comparando a factory apenas em memória com o journal
+ * assíncrono e com o commit síncrono. Com várias threads (-t), o commit síncrono agrupa as gravações em lotes.
+ *
+ * O tempo de recuperação é medido em {@link RecuperacaoBenchmark}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PersistenciaBenchmark {
+
+	private static final BigDecimal VALOR_UNITARIO = new BigDecimal("9.90");
+
+	@Param({"memoria", "assincrono", "sincrono"})
+	private String modo;
+
+	@Param({"10000"})
+	private int carrinhos;
+
+	private Path diretorio;
+	private CarrinhoComprasFactory factory;
+	private String[] clientes;
+	private Produto[] produtos;
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException {
+		diretorio = Files.createTempDirectory("carrinhos");
+		factory = novaFactory();
+		clientes = new String[carrinhos];
+		produtos = new Produto[10];
+		for (int i = 0; i < produtos.length; i++) {
+			produtos[i] = new Produto((long) i, "produto" + i);
+		}
+		for (int i = 0; i < carrinhos; i++) {
+			clientes[i] = "cliente" + i;
+			factory.criar(clientes[i]).adicionarItem(produtos[i % produtos.length], VALOR_UNITARIO, 1);
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		factory.close();
+		try (Stream<Path> arquivos = Files.walk(diretorio)) {
+			arquivos.sorted(Comparator.reverseOrder()).forEach(arquivo -> arquivo.toFile().delete());
+		}
+	}
+
+	private CarrinhoComprasFactory novaFactory() {
+		CarrinhoComprasFactory.Builder builder = CarrinhoComprasFactory.builder();
+		if (!"memoria".equals(modo)) {
+			builder.persistencia(diretorio).commitSincrono("sincrono".equals(modo));
+		}
+		return builder.build();
+	}
+
+	@Benchmark
+	public void adicionarItem(ThreadState thread) {
+		factory.criar(clientes[thread.random.nextInt(carrinhos)])
+				.adicionarItem(produtos[thread.random.nextInt(produtos.length)], VALOR_UNITARIO, 1);
+	}
+
+	@Benchmark
+	public boolean criarEInvalidar(ThreadState thread) {
+		String cliente = thread.proximoClienteNovo();
+		factory.criar(cliente).adicionarItem(produtos[0], VALOR_UNITARIO, 1);
+		return factory.invalidar(cliente);
+	}
+
+	@State(Scope.Thread)
+	public static class ThreadState {
+
+		private static final AtomicInteger THREADS = new AtomicInteger();
+
+		private final int thread = THREADS.incrementAndGet();
+		private final SplittableRandom random = new SplittableRandom(thread);
+		private long clientesNovos;
+
+		private String proximoClienteNovo() {
+			return "novo-" + thread + "-" + clientesNovos++;
+		}
+	}
+}
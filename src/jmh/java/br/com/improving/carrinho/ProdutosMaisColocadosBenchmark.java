@@ -0,0 +1,108 @@
+package br.com.improving.carrinho;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Os dez produtos mais colocados em uma população grande de carrinhos, com produtos sorteados por uma distribuição de
+ * Zipf: pelo sketch da factory e pela contagem exata que percorre todos os itens de todos os carrinhos. A contagem
+ * exata conta itens presentes, e não colocações; as duas coincidem aqui porque a população é criada sem remoções e
+ * sem reduções do sketch (a janela é maior que os itens criados). Também mede o custo que o sketch acrescenta a cada
+ * item criado.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+@State(Scope.Benchmark)
+public class ProdutosMaisColocadosBenchmark {
+
+	private static final BigDecimal VALOR_UNITARIO = new BigDecimal("9.90");
+	private static final int PRODUTOS = 100_000;
+
+	@Param({"1000000"})
+	private int carrinhos;
+
+	@Param({"false", "true"})
+	private boolean sketch;
+
+	private CarrinhoComprasFactory factory;
+	private Produto[] produtos;
+	private CarrinhoCompras carrinhoCompras;
+	private int adicao;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		CarrinhoComprasFactory.Builder builder = CarrinhoComprasFactory.builder();
+		if (sketch) {
+			builder.produtosMaisColocados(10, 10_000_000L);
+		}
+		factory = builder.build();
+		produtos = new Produto[PRODUTOS];
+		double[] acumulada = new double[PRODUTOS];
+		double soma = 0.0;
+		for (int i = 0; i < PRODUTOS; i++) {
+			produtos[i] = new Produto((long) i, "produto" + i);
+			soma += 1.0 / (i + 1);
+			acumulada[i] = soma;
+		}
+		Random random = new Random(42L);
+		for (int i = 0; i < carrinhos; i++) {
+			CarrinhoCompras carrinho = factory.criar("cliente" + i);
+			for (int j = 0; j < 3; j++) {
+				int sorteado = Arrays.binarySearch(acumulada, random.nextDouble() * soma);
+				carrinho.adicionarItem(produtos[sorteado >= 0 ? sorteado : -sorteado - 1], VALOR_UNITARIO, 1);
+			}
+		}
+		carrinhoCompras = factory.criar("cliente0");
+	}
+
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.MICROSECONDS)
+	public List<ProdutoColocado> getProdutosMaisColocados() {
+		return factory.getProdutosMaisColocados();
+	}
+
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	public List<Produto> contagemExata() {
+		Map<Produto, Long> contagens = new HashMap<>();
+		for (String identificacaoCliente : factory.getIdentificacoesClientes()) {
+			for (Item item : factory.getCarrinhoCompras(identificacaoCliente).getEstado().getItens()) {
+				contagens.merge(item.getProduto(), 1L, Long::sum);
+			}
+		}
+		return contagens.entrySet().stream()
+				.sorted(Map.Entry.<Produto, Long>comparingByValue().reversed())
+				.limit(10)
+				.map(Map.Entry::getKey)
+				.collect(Collectors.toList());
+	}
+
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.NANOSECONDS)
+	public boolean adicionarERemoverItem() {
+		Produto produto = produtos[PRODUTOS / 2 + (adicao++ & 16_383)];
+		carrinhoCompras.adicionarItem(produto, VALOR_UNITARIO, 1);
+		return carrinhoCompras.removerItem(produto);
+	}
+}
@@ -0,0 +1,74 @@
+package br.com.improving.carrinho;
+
+import java.math.BigDecimal;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Recálculo completo do ticket médio de uma população grande de carrinhos, sequencial (paralelismo 0) e dividido
+ * entre pools de 1 a 32 threads. O ganho depende dos núcleos disponíveis na máquina que executa o benchmark.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms3g", "-Xmx3g"})
+@State(Scope.Benchmark)
+public class RecalculoTicketMedioBenchmark {
+
+	private static final BigDecimal VALOR_UNITARIO = new BigDecimal("9.90");
+
+	@Param({"1000000"})
+	private int carrinhos;
+
+	@Param({"0", "1", "2", "4", "8", "16", "32"})
+	private int paralelismo;
+
+	private ForkJoinPool pool;
+	private CarrinhoComprasFactory factory;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		CarrinhoComprasFactory.Builder builder = CarrinhoComprasFactory.builder();
+		if (paralelismo > 0) {
+			pool = new ForkJoinPool(paralelismo);
+			builder.recalculoParalelo(pool);
+		}
+		factory = builder.build();
+		Produto produto = new Produto(1L, "produto1");
+		for (int i = 0; i < carrinhos; i++) {
+			factory.criar("cliente" + i).adicionarItem(produto, VALOR_UNITARIO, i % 10 + 1);
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		if (pool != null) {
+			pool.shutdownNow();
+		}
+	}
+
+	@Benchmark
+	public BigDecimal recalcularValorTicketMedio() {
+		return factory.recalcularValorTicketMedio();
+	}
+
+	@Benchmark
+	public BigDecimal getValorTicketMedio() {
+		return factory.getValorTicketMedio();
+	}
+}
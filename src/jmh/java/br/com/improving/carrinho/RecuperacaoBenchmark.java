@@ -0,0 +1,93 @@
+package br.com.improving.carrinho;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Tempo para construir uma factory a partir de um diretório persistido. Com snapshots frequentes a recuperação lê o
+ * snapshot e uma cauda curta do journal; com snapshots raros, reaplica quase todos os eventos. Cada item recebe
+ * várias adições, de modo que o journal tem mais eventos do que o snapshot tem itens.
+ *
+ * Executa sempre com uma única thread, pois cada recuperação abre o journal do diretório.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(1)
+@State(Scope.Benchmark)
+public class RecuperacaoBenchmark {
+
+	private static final BigDecimal VALOR_UNITARIO = new BigDecimal("9.90");
+
+	@Param({"10000"})
+	private int carrinhos;
+
+	@Param({"10"})
+	private int itensPorCarrinho;
+
+	@Param({"10"})
+	private int adicoesPorItem;
+
+	@Param({"10000", "100000000"})
+	private int eventosPorSnapshot;
+
+	private Path diretorio;
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException {
+		diretorio = Files.createTempDirectory("carrinhos");
+		try (CarrinhoComprasFactory factory = novaFactory()) {
+			for (int i = 0; i < carrinhos; i++) {
+				CarrinhoCompras carrinhoCompras = factory.criar("cliente" + i);
+				for (int item = 0; item < itensPorCarrinho * adicoesPorItem; item++) {
+					int codigo = item % itensPorCarrinho;
+					carrinhoCompras.adicionarItem(new Produto((long) codigo, "produto" + codigo), VALOR_UNITARIO, 1);
+				}
+			}
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		try (Stream<Path> arquivos = Files.walk(diretorio)) {
+			arquivos.sorted(Comparator.reverseOrder()).forEach(arquivo -> arquivo.toFile().delete());
+		}
+	}
+
+	private CarrinhoComprasFactory novaFactory() {
+		return CarrinhoComprasFactory.builder()
+				.persistencia(diretorio)
+				.commitSincrono(false)
+				.eventosPorSnapshot(eventosPorSnapshot)
+				.build();
+	}
+
+	@Benchmark
+	public BigDecimal recuperar() {
+		try (CarrinhoComprasFactory factory = novaFactory()) {
+			return factory.getValorTicketMedio();
+		}
+	}
+}
@@ -0,0 +1,84 @@
+package br.com.improving.carrinho;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Alteração do valor unitário de um produto presente em 1% de uma população grande de carrinhos, percorrendo apenas os
+ * carrinhos do índice de produtos ou todos os carrinhos, e o custo que o índice acrescenta a cada item criado e
+ * removido.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+@State(Scope.Benchmark)
+public class ReprecificacaoBenchmark {
+
+	private static final BigDecimal[] VALORES_UNITARIOS = {new BigDecimal("9.90"), new BigDecimal("10.90")};
+	private static final int PRODUTOS = 1_000;
+
+	@Param({"1000000"})
+	private int carrinhos;
+
+	@Param({"false", "true"})
+	private boolean indice;
+
+	private CarrinhoComprasFactory factory;
+	private Produto alvo;
+	private Produto avulso;
+	private CarrinhoCompras carrinhoCompras;
+	private int alteracao;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		CarrinhoComprasFactory.Builder builder = CarrinhoComprasFactory.builder();
+		if (indice) {
+			builder.indiceProdutos();
+		}
+		factory = builder.build();
+		Produto[] produtos = new Produto[PRODUTOS];
+		for (int i = 0; i < PRODUTOS; i++) {
+			produtos[i] = new Produto((long) i, "produto" + i);
+		}
+		alvo = produtos[0];
+		avulso = new Produto((long) PRODUTOS, "avulso");
+		for (int i = 0; i < carrinhos; i++) {
+			CarrinhoCompras carrinho = factory.criar("cliente" + i);
+			// o alvo fica em um carrinho a cada cem; os demais têm três produtos quaisquer além dele
+			if (i % 100 == 0) {
+				carrinho.adicionarItem(alvo, VALORES_UNITARIOS[0], 1);
+			}
+			for (int j = 1; j <= 3; j++) {
+				carrinho.adicionarItem(produtos[1 + (i * 7 + j * 131) % (PRODUTOS - 1)], VALORES_UNITARIOS[0], j);
+			}
+		}
+		carrinhoCompras = factory.criar("cliente1");
+	}
+
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	public int alterarValorUnitario() {
+		return factory.alterarValorUnitario(alvo, VALORES_UNITARIOS[alteracao++ & 1]);
+	}
+
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.NANOSECONDS)
+	public boolean adicionarERemoverItem() {
+		carrinhoCompras.adicionarItem(avulso, VALORES_UNITARIOS[0], 1);
+		return carrinhoCompras.removerItem(avulso);
+	}
+}
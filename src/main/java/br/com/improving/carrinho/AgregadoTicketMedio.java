@@ -0,0 +1,89 @@
+package br.com.improving.carrinho;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Mantém a soma dos valores totais e a quantidade de carrinhos de forma incremental, permitindo calcular o ticket
+ * médio em tempo constante e, opcionalmente, a distribuição dos valores totais, da qual são obtidos os percentis (veja
+ * {@link DistribuicaoValores}).
+ *
+ * Soma, quantidade e distribuição são atualizadas separadamente; sob escrita concorrente uma leitura pode observar uma
+ * alteração em andamento, mas o valor converge assim que as escritas terminam.
+ */
+class AgregadoTicketMedio {
+
+	private static final BigDecimal ZERO = new BigDecimal("0.00");
+
+	private final LongAdder somaCentavos;
+	private final LongAdder quantidade;
+	private final Histograma distribuicao;
+
+	AgregadoTicketMedio() {
+		this(false);
+	}
+
+	/**
+	 * @param distribuicao se a distribuição dos valores totais deve ser mantida
+	 */
+	AgregadoTicketMedio(boolean distribuicao) {
+		this.somaCentavos = new LongAdder();
+		this.quantidade = new LongAdder();
+		this.distribuicao = distribuicao ? new Histograma(DistribuicaoValores.BITS_SUBFAIXA) : null;
+	}
+
+	void carrinhoAdicionado() {
+		quantidade.increment();
+		if (Objects.nonNull(distribuicao)) {
+			distribuicao.registrar(0L);
+		}
+	}
+
+	void carrinhoRemovido(long valorTotalCentavos) {
+		somaCentavos.add(-valorTotalCentavos);
+		quantidade.decrement();
+		if (Objects.nonNull(distribuicao)) {
+			distribuicao.adicionar(valorTotalCentavos, -1L);
+		}
+	}
+
+	/**
+	 * @param deltaCentavos diferença entre o novo valor total do carrinho e o anterior
+	 * @param valorTotalCentavos novo valor total do carrinho
+	 */
+	void valorTotalAlterado(long deltaCentavos, long valorTotalCentavos) {
+		somaCentavos.add(deltaCentavos);
+		if (Objects.isNull(distribuicao)) {
+			return;
+		}
+		long anterior = valorTotalCentavos - deltaCentavos;
+		if (!distribuicao.mesmaFaixa(anterior, valorTotalCentavos)) {
+			distribuicao.adicionar(anterior, -1L);
+			distribuicao.adicionar(valorTotalCentavos, 1L);
+		}
+	}
+
+	BigDecimal getValorTicketMedio() {
+		return valorTicketMedio(somaCentavos.sum(), quantidade.sum());
+	}
+
+	/**
+	 * @return distribuição dos valores totais, ou null caso não seja mantida
+	 */
+	DistribuicaoValores getDistribuicao() {
+		return Objects.isNull(distribuicao) ? null : new DistribuicaoValores(distribuicao.getContagens());
+	}
+
+	ResumoTicketMedio getResumo() {
+		return new ResumoTicketMedio(somaCentavos.sum(), quantidade.sum());
+	}
+
+	static BigDecimal valorTicketMedio(long somaCentavos, long quantidade) {
+		if (quantidade <= 0) {
+			return ZERO;
+		}
+		return Centavos.paraBigDecimal(somaCentavos).divide(BigDecimal.valueOf(quantidade), RoundingMode.HALF_EVEN);
+	}
+}
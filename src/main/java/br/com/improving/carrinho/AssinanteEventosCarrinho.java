@@ -0,0 +1,20 @@
+package br.com.improving.carrinho;
+
+import java.util.List;
+
+/**
+ * Recebe as alterações dos carrinhos de uma factory (veja {@link CarrinhoComprasFactory.Builder#assinante}).
+ *
+ * Cada assinante é chamado por uma thread própria, fora dos locks dos carrinhos, com os eventos em lotes na ordem em
+ * que foram publicados; os eventos de um mesmo carrinho chegam na ordem em que as alterações ocorreram. Exceções
+ * lançadas pelo assinante descartam o lote e não interrompem a entrega dos seguintes; os lotes descartados são contados
+ * em {@link CarrinhoComprasFactory#getFalhasAssinantes()}.
+ */
+@FunctionalInterface
+public interface AssinanteEventosCarrinho {
+
+	/**
+	 * @param eventos lote de eventos, nunca vazio; a lista pertence ao assinante
+	 */
+	void receber(List<EventoCarrinho> eventos);
+}
@@ -0,0 +1,25 @@
+package br.com.improving.carrinho;
+
+import java.math.BigDecimal;
+
+/**
+ * Implementação das operações de um {@link CarrinhoCompras}: o carrinho mantido em memória nesta JVM
+ * ({@link CarrinhoLocal}) ou uma referência que repassa cada operação a quem guarda o carrinho no momento da chamada
+ * ({@link CarrinhoParticionado} e {@link CarrinhoEmCache}). Os métodos seguem o contrato dos métodos de mesmo nome de {@link CarrinhoCompras}.
+ */
+interface Carrinho {
+
+	void adicionarItem(Produto produto, BigDecimal valorUnitario, int quantidade);
+
+	void aplicarLote(LoteItens lote);
+
+	boolean removerItem(Produto produto);
+
+	boolean removerItem(int posicaoItem);
+
+	BigDecimal getValorTotal();
+
+	long getValorTotalCentavos();
+
+	EstadoCarrinhoCompras getEstado();
+}
@@ -1,31 +1,35 @@
 package br.com.improving.carrinho;
 
-
 import java.math.BigDecimal;
-import java.math.RoundingMode;
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
-import java.util.LinkedList;
-import java.util.List;
-import java.util.Map;
-import java.util.Objects;
-import java.util.stream.Collectors;
-
-import br.com.improving.carrinho.exception.NullProdutoException;
-import br.com.improving.carrinho.exception.QuantidadeInvalidaException;
-import br.com.improving.carrinho.exception.ValorUnitarioInvalidoException;
 
 /**
  * Classe que representa o carrinho de compras de um cliente.
+ *
+ * Todas as operações são protegidas por um lock próprio do carrinho, portanto alterações no carrinho de um cliente
+ * nunca bloqueiam os carrinhos dos demais clientes.
+ *
+ * Valores são mantidos internamente em centavos (veja {@link Centavos}); operações cujo resultado não caiba nessa
+ * representação lançam ArithmeticException e não alteram o carrinho.
+ *
+ * Leituras que precisam dos itens e do valor total de um mesmo instante usam {@link #getEstado()}, que retorna, sem
+ * adquirir o lock, a cópia imutável publicada pela última alteração.
+ *
+ * As operações são executadas pela implementação do carrinho: em memória, para o carrinho criado diretamente ou por
+ * {@link CarrinhoComprasFactory}, ou repassadas à partição dona do cliente, para o carrinho de
+ * {@link CarrinhoComprasFactoryParticionada}.
  */
 public class CarrinhoCompras {
 
-	private final List<Produto> produtos;
-	private final Map<Produto, Item> itemMap;
+	private final Carrinho carrinho;
 
 	public CarrinhoCompras() {
-		this.itemMap = new HashMap<>();
-		this.produtos = new LinkedList<>();
+		this(new CarrinhoLocal());
+	}
+
+	CarrinhoCompras(Carrinho carrinho) {
+		this.carrinho = carrinho;
 	}
 
 	/**
@@ -43,40 +47,25 @@ public class CarrinhoCompras {
      * @param quantidade
      */
     public void adicionarItem(Produto produto, BigDecimal valorUnitario, int quantidade) {
-
-		validateProduto(produto);
-		validateValorUnitario(valorUnitario);
-		validateQuantidade(quantidade);
-
-		Item newItem = new Item(produto, valorUnitario, quantidade);
-
-		if (!itemMap.containsKey(produto)) {
-			produtos.add(produto);
-		}
-
-		itemMap.merge(produto, newItem,
-				(item, item2) -> new Item(produto, valorUnitario, item.getQuantidade() + item2.getQuantidade()));
+		carrinho.adicionarItem(produto, valorUnitario, quantidade);
     }
 
-	private void validateQuantidade(final int quantidade) {
-		if (quantidade < 0) {
-			throw new QuantidadeInvalidaException();
-		}
-	}
-
-	private void validateValorUnitario(final BigDecimal valorUnitario) {
-		if (Objects.isNull(valorUnitario) || (valorUnitario.compareTo(BigDecimal.ZERO) < 0)) {
-			throw new ValorUnitarioInvalidoException();
-		}
-	}
-
-	private void validateProduto(final Produto produto) {
-		if (Objects.isNull(produto)) {
-			throw new NullProdutoException();
-		}
+	/**
+	 * Aplica todas as operações do lote, na ordem, sob uma única aquisição do lock e com uma única atualização do valor
+	 * total.
+	 *
+	 * Todas as operações são validadas antes de qualquer alteração, lançando as mesmas exceções de
+	 * {@link #adicionarItem}; produtos null são rejeitados também nas remoções. Caso alguma operação seja inválida, ou
+	 * o resultado não caiba em centavos, nenhuma operação do lote é aplicada. Um lote que não altera nenhum item, por
+	 * exemplo por remover apenas produtos ausentes, não conta como alteração do carrinho nem é notificado.
+	 *
+	 * @param lote
+	 */
+	public void aplicarLote(LoteItens lote) {
+		carrinho.aplicarLote(lote);
 	}
 
-	/**
+    /**
      * Permite a remoção do item que representa este produto do carrinho de compras.
      *
      * @param produto
@@ -84,10 +73,7 @@ public class CarrinhoCompras {
      * caso o produto não exista no carrinho.
      */
     public boolean removerItem(Produto produto) {
-		if (Objects.nonNull(itemMap.remove(produto))) {
-			return produtos.remove(produto);
-		}
-		return false;
+		return carrinho.removerItem(produto);
     }
 
     /**
@@ -100,35 +86,42 @@ public class CarrinhoCompras {
      * caso o produto não exista no carrinho.
      */
     public boolean removerItem(int posicaoItem) {
-		if (posicaoItem < produtos.size()) {
-			return removerItem(produtos.get(posicaoItem));
-		}
-		return false;
+		return carrinho.removerItem(posicaoItem);
     }
 
     /**
      * Retorna o valor total do carrinho de compras, que deve ser a soma dos valores totais
      * de todos os itens que compõem o carrinho.
      *
+     * O valor é mantido incrementalmente a cada alteração do carrinho, portanto a leitura não percorre os itens.
+     *
      * @return BigDecimal
      */
     public BigDecimal getValorTotal() {
-		return itemMap
-				.values()
-				.stream()
-				.map(Item::getValorTotal)
-				.reduce(BigDecimal.ZERO, BigDecimal::add)
-				.setScale(2, RoundingMode.HALF_EVEN);
+		return carrinho.getValorTotal();
     }
 
+	long getValorTotalCentavos() {
+		return carrinho.getValorTotalCentavos();
+	}
+
     /**
      * Retorna a lista de itens do carrinho de compras.
      *
+     * Os itens retornados são cópias imutáveis; alterações posteriores no carrinho não os afetam.
+     *
      * @return itens
      */
     public Collection<Item> getItens() {
-		return produtos.stream()
-				.map(itemMap::get)
-				.collect(Collectors.toList());
+		return new ArrayList<>(carrinho.getEstado().getItens());
     }
-}
\ No newline at end of file
+
+	/**
+	 * Retorna os itens e o valor total do carrinho em um mesmo instante.
+	 *
+	 * @return EstadoCarrinhoCompras
+	 */
+	public EstadoCarrinhoCompras getEstado() {
+		return carrinho.getEstado();
+	}
+}
@@ -1,21 +1,246 @@
 package br.com.improving.carrinho;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.math.BigDecimal;
-import java.math.RoundingMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+import br.com.improving.carrinho.exception.NullProdutoException;
+import br.com.improving.carrinho.exception.ValorUnitarioInvalidoException;
 
 /**
  * Classe responsável pela criação e recuperação dos carrinhos de compras.
+ *
+ * É segura para uso concorrente: os carrinhos ficam em um mapa concorrente, de modo que criar e invalidar carrinhos de
+ * clientes diferentes não disputam um lock global, e cada carrinho sincroniza apenas as suas próprias alterações.
+ *
+ * O ticket médio é mantido incrementalmente: cada carrinho criado pela factory notifica as alterações do seu valor
+ * total, e a factory atualiza uma soma e uma contagem que respondem {@link #getValorTicketMedio()} em tempo constante.
+ *
+ * Opcionalmente, a factory pode expirar carrinhos inativos e limitar a quantidade de carrinhos (veja
+ * {@link Builder#expiracao(Duration)}); a limpeza é feita aos poucos durante as chamadas à factory.
+ *
+ * Também opcionalmente, as operações podem ser persistidas em um journal com snapshots periódicos (veja
+ * {@link Builder#persistencia(Path)}); nesse caso os carrinhos são recuperados ao construir a factory e ela deve ser
+ * fechada com {@link #close()}.
+ *
+ * As alterações dos carrinhos também podem ser publicadas para assinantes (veja
+ * {@link Builder#assinante(AssinanteEventosCarrinho)}), entregues por threads próprias a partir de um buffer limitado.
+ *
+ * Para populações muito grandes de carrinhos, as linhas podem ser mantidas fora do heap (veja
+ * {@link Builder#armazenamentoForaDoHeap()}).
+ *
+ * Alterações de preço e retirada de um produto podem ser aplicadas a todos os carrinhos de uma vez (veja
+ * {@link #alterarValorUnitario(Produto, BigDecimal)}); com {@link Builder#indiceProdutos()}, apenas os carrinhos que
+ * têm o produto são percorridos.
+ *
+ * Além do ticket médio, a factory pode informar percentis dos valores totais dos carrinhos (veja
+ * {@link Builder#distribuicaoValores()}) e o ticket médio apenas dos carrinhos com atividade recente (veja
+ * {@link Builder#janelaTicketMedio(Duration, int)}).
+ *
+ * Os produtos colocados em carrinhos com mais frequência podem ser acompanhados com memória limitada (veja
+ * {@link Builder#produtosMaisColocados(int, long)}).
+ *
+ * Quando os carrinhos de todos os clientes não cabem em memória, a factory pode funcionar como cache de um
+ * repositório, mantendo em memória apenas os carrinhos usados com mais frequência (veja
+ * {@link Builder#cache(RepositorioCarrinhos, long)}).
+ *
+ * As operações dos carrinhos e da factory podem ser medidas (veja {@link Builder#metricas(MetricasCarrinhos)}); por
+ * padrão, nada é medido.
+ *
+ * Para distribuir os clientes entre várias factories, possivelmente em JVMs diferentes, veja
+ * {@link CarrinhoComprasFactoryParticionada}.
  */
-public class CarrinhoComprasFactory {
+public class CarrinhoComprasFactory implements ServicoCarrinhosCompras, AutoCloseable {
+
+	private static final int TAMANHO_LOTE_EVENTOS = 256;
+	private static final long SEM_MEDICAO = Long.MIN_VALUE;
+
+	private final ConcurrentMap<String, RegistroCarrinho> carrinhoComprasMap;
+	private final AgregadoTicketMedio ticketMedio;
+	private final ExpiracaoCarrinhos expiracao;
+	private final OuvinteExpiracao ouvinteExpiracao;
+	private final CatalogoProdutos catalogo;
+	private final JournalCarrinhos journal;
+	private final ForkJoinPool poolRecalculo;
+	private final FluxoEventosCarrinho fluxoEventos;
+	private final MetricasCarrinhos metricas;
+	private final MemoriaForaDoHeap memoriaLinhas;
+	private final IndiceProdutos indiceProdutos;
+	private final ProdutosMaisColocados produtosMaisColocados;
+	private final JanelaTicketMedio janelaTicketMedio;
+	private final RepositorioCarrinhos repositorio;
+	private final PoliticaWTinyLfu<RegistroCarrinho> cache;
+	// com o cache, o término do carregamento ou da invalidação em andamento para o cliente, que os torna exclusivos
+	// sem manter o lock do mapa durante o acesso ao repositório
+	private final ConcurrentMap<String, CompletableFuture<Void>> acessosRepositorio;
+	// com o cache, os carrinhos que não estão em memória, que continuam nos agregados de todos os carrinhos
+	private final ConcurrentMap<String, CarrinhoForaDaMemoria> foraDaMemoria;
+	// com o cache, grava no repositório os carrinhos despejados, fora do lock do carrinho e das chamadas à factory
+	private final ExecutorService gravacao;
+	// com persistência, separa as criações de carrinhos da obtenção dos carrinhos para o snapshot
+	private final ReentrantReadWriteLock lockCriacao;
 
-	private final Map<String, CarrinhoCompras> carrinhoComprasMap;
 	public CarrinhoComprasFactory() {
-		this.carrinhoComprasMap = new HashMap<>();
+		this(builder());
+	}
+
+	private CarrinhoComprasFactory(Builder builder) {
+		this.carrinhoComprasMap = new ConcurrentHashMap<>();
+		this.lockCriacao = new ReentrantReadWriteLock();
+		this.ticketMedio = new AgregadoTicketMedio(builder.distribuicaoValores);
+		this.expiracao = Objects.isNull(builder.inatividade)
+				? null
+				: new ExpiracaoCarrinhos(builder.inatividade, builder.limiteCarrinhos, builder.relogio, this::expirar);
+		this.ouvinteExpiracao = builder.ouvinteExpiracao;
+		this.memoriaLinhas = builder.foraDoHeap ? new MemoriaForaDoHeap(LinhasForaDoHeap.BYTES_LINHA) : null;
+		// fora do heap as linhas guardam apenas o código, e o produto é obtido do catálogo
+		this.catalogo = builder.foraDoHeap && Objects.isNull(builder.catalogo)
+				? new CatalogoProdutos()
+				: builder.catalogo;
+		this.poolRecalculo = builder.poolRecalculo;
+		this.metricas = builder.metricas;
+		this.repositorio = builder.repositorio;
+		this.cache = Objects.isNull(builder.repositorio)
+				? null
+				: new PoliticaWTinyLfu<>(builder.pesoMaximo, RegistroCarrinho::getPeso,
+						registro -> registro.getIdentificacaoCliente().hashCode(), RegistroCarrinho::isAtivo,
+						this::despejar);
+		this.acessosRepositorio = Objects.isNull(cache) ? null : new ConcurrentHashMap<>();
+		this.foraDaMemoria = Objects.isNull(cache) ? null : new ConcurrentHashMap<>();
+		this.gravacao = Objects.isNull(cache) ? null : Executors.newSingleThreadExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "gravacao-carrinhos");
+			thread.setDaemon(true);
+			return thread;
+		});
+		if (Objects.nonNull(cache)) {
+			// os carrinhos já gravados entram nos agregados sem serem carregados em memória
+			repositorio.percorrer((identificacaoCliente, carrinhoCompras) -> {
+				long valorTotalCentavos = carrinhoCompras.getValorTotalCentavos();
+				ticketMedio.carrinhoAdicionado();
+				ticketMedio.valorTotalAlterado(valorTotalCentavos, valorTotalCentavos);
+				foraDaMemoria.put(identificacaoCliente,
+						new CarrinhoForaDaMemoria(valorTotalCentavos, JanelaTicketMedio.NENHUM, null));
+			});
+		}
+		// criado antes da recuperação, para que os carrinhos recuperados sejam indexados
+		this.indiceProdutos = builder.indiceProdutos ? new IndiceProdutos() : null;
+		this.journal = Objects.isNull(builder.diretorio) ? null : recuperar(builder);
+		// criadas só depois da recuperação, para que as operações reaplicadas não sejam publicadas novamente nem
+		// contadas como atividade recente ou como novas colocações
+		this.produtosMaisColocados = builder.quantidadeProdutosMaisColocados == 0
+				? null
+				: new ProdutosMaisColocados(builder.quantidadeProdutosMaisColocados,
+						builder.janelaProdutosMaisColocados);
+		this.janelaTicketMedio = Objects.isNull(builder.intervaloJanela)
+				? null
+				: new JanelaTicketMedio(builder.intervaloJanela, builder.intervalosJanela, builder.relogio);
+		this.fluxoEventos = builder.assinantes.isEmpty()
+				? null
+				: new FluxoEventosCarrinho(new ArrayList<>(builder.assinantes), builder.capacidadeEventos,
+						TAMANHO_LOTE_EVENTOS, builder.politicaFluxoCheio);
+	}
+
+	/**
+	 * Restaura os carrinhos a partir do snapshot mais recente e dos eventos posteriores do journal e abre o journal
+	 * para novas operações. Enquanto o journal não é atribuído, as operações de recuperação não são registradas.
+	 */
+	private JournalCarrinhos recuperar(Builder builder) {
+		try {
+			Path diretorio = Files.createDirectories(builder.diretorio);
+			SnapshotCarrinhos snapshot = SnapshotCarrinhos.lerMaisRecente(diretorio);
+			long sequenciaSnapshot = 0L;
+			Map<String, Long> sequenciasPorCliente = new HashMap<>();
+			if (Objects.nonNull(snapshot)) {
+				sequenciaSnapshot = snapshot.getSequencia();
+				for (SnapshotCarrinhos.EstadoCarrinho estado : snapshot.getCarrinhos()) {
+					restaurar(estado);
+					sequenciasPorCliente.put(estado.identificacaoCliente, estado.ultimaSequencia);
+				}
+			}
+			long ultimaSequencia = JournalCarrinhos.recuperar(diretorio, sequenciaSnapshot, sequenciasPorCliente,
+					this::reaplicar);
+			return new JournalCarrinhos(diretorio, ultimaSequencia, builder.commitSincrono,
+					builder.eventosPorSnapshot,
+					sequencia -> SnapshotCarrinhos.gravar(diretorio, sequencia, capturarRegistros()));
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Obtém os carrinhos para o snapshot depois que todas as criações em andamento entraram no mapa: como a sequência
+	 * do snapshot é anterior a esta chamada, toda criação registrada no journal até ela está entre os carrinhos
+	 * obtidos, inclusive a de carrinhos ainda vazios, que nenhum evento posterior recria.
+	 */
+	private List<RegistroCarrinho> capturarRegistros() {
+		lockCriacao.writeLock().lock();
+		try {
+			return new ArrayList<>(carrinhoComprasMap.values());
+		} finally {
+			lockCriacao.writeLock().unlock();
+		}
+	}
+
+	private void restaurar(SnapshotCarrinhos.EstadoCarrinho estado) {
+		RegistroCarrinho registro = carrinhoComprasMap.computeIfAbsent(estado.identificacaoCliente,
+				this::novoRegistro);
+		for (Item item : estado.itens) {
+			registro.getCarrinho().adicionarItem(item.getProduto(), item.getValorUnitario(), item.getQuantidade());
+		}
+		registro.setUltimaSequencia(estado.ultimaSequencia);
+	}
+
+	private void reaplicar(JournalCarrinhos.Evento evento) {
+		if (evento.tipo == JournalCarrinhos.TipoEvento.INVALIDAR) {
+			invalidar(evento.identificacaoCliente);
+			return;
+		}
+		// adições e remoções recriam o carrinho, caso a sua criação já tenha sido descartada junto com um snapshot
+		RegistroCarrinho registro = carrinhoComprasMap.computeIfAbsent(evento.identificacaoCliente,
+				this::novoRegistro);
+		if (evento.tipo == JournalCarrinhos.TipoEvento.ADICIONAR) {
+			registro.getCarrinho().adicionarItem(new Produto(evento.codigo, evento.descricao),
+					Centavos.paraBigDecimal(evento.valorUnitarioCentavos), evento.quantidade);
+		} else if (evento.tipo == JournalCarrinhos.TipoEvento.REMOVER) {
+			registro.getCarrinho().removerItem(new Produto(evento.codigo, ""));
+		}
+		registro.setUltimaSequencia(evento.sequencia);
+	}
+
+	/**
+	 * Retorna um builder para configurar os modos opcionais da factory.
+	 *
+	 * @return Builder
+	 */
+	public static Builder builder() {
+		return new Builder();
 	}
 
     /**
@@ -26,11 +251,262 @@ public class CarrinhoComprasFactory {
      * @param identificacaoCliente
      * @return CarrinhoCompras
      */
+	@Override
     public CarrinhoCompras criar(String identificacaoCliente) {
 		checkNotNull(identificacaoCliente, "Identificacao cliente nao deve ser null");
-		return carrinhoComprasMap.computeIfAbsent(identificacaoCliente, s -> new CarrinhoCompras());
+		long inicio = iniciar(OperacaoCarrinho.CRIAR);
+		RegistroCarrinho registro = obter(identificacaoCliente);
+		concluir(OperacaoCarrinho.CRIAR, inicio);
+		return registro.getCarrinhoCompras();
     }
 
+	/**
+	 * Cria o carrinho do cliente, caso não exista, ou o carrega, com o cache, caso esteja fora da memória, e executa a
+	 * operação sob o lock dele, de modo que nenhuma outra alteração do carrinho ocorra durante ela. Caso o carrinho
+	 * seja invalidado ou despejado antes de obtido o lock, a operação é executada no carrinho obtido novamente, e
+	 * nunca em um carrinho que já deixou a factory ou a memória.
+	 *
+	 * @param identificacaoCliente
+	 * @param operacao
+	 * @return resultado da operação
+	 */
+	<T> T comLock(String identificacaoCliente, Function<CarrinhoLocal, T> operacao) {
+		boolean[] ativo = new boolean[1];
+		while (true) {
+			RegistroCarrinho registro = obter(identificacaoCliente);
+			CarrinhoLocal carrinho = registro.getCarrinho();
+			T resultado = carrinho.comLock(() -> {
+				ativo[0] = registro.isAtivo();
+				return ativo[0] ? operacao.apply(carrinho) : null;
+			});
+			if (ativo[0]) {
+				return resultado;
+			}
+		}
+	}
+
+	/**
+	 * Lê o carrinho do cliente sem criá-lo: diretamente, caso esteja em memória, ou, com o cache, carregando-o caso
+	 * esteja fora dela.
+	 *
+	 * @param identificacaoCliente
+	 * @param leitura
+	 * @param padrao resultado caso o cliente não tenha carrinho
+	 * @return resultado da leitura
+	 */
+	<T> T ler(String identificacaoCliente, Function<CarrinhoLocal, T> leitura, T padrao) {
+		RegistroCarrinho registro = carrinhoComprasMap.get(identificacaoCliente);
+		if (Objects.nonNull(registro)) {
+			// despejado ou invalidado concorrentemente, o carrinho guarda o seu último estado
+			return leitura.apply(registro.getCarrinho());
+		}
+		return existe(identificacaoCliente) ? comLock(identificacaoCliente, leitura) : padrao;
+	}
+
+	/**
+	 * @return true caso o cliente tenha um carrinho, em memória ou, com o cache, fora dela
+	 */
+	boolean existe(String identificacaoCliente) {
+		return carrinhoComprasMap.containsKey(identificacaoCliente)
+				|| (Objects.nonNull(cache) && foraDaMemoria.containsKey(identificacaoCliente));
+	}
+
+	boolean isCache() {
+		return Objects.nonNull(cache);
+	}
+
+	private RegistroCarrinho obter(String identificacaoCliente) {
+		if (Objects.nonNull(cache)) {
+			// antes do carregamento, para que o carrinho retornado não seja despejado pela própria chamada
+			cache.manter();
+		}
+		// uma única criação ou carregamento por cliente; chamadas concorrentes esperam por ela
+		RegistroCarrinho registro = Objects.nonNull(journal)
+				? criarRegistrado(identificacaoCliente)
+				: Objects.nonNull(cache)
+						? obterDoCache(identificacaoCliente)
+						: criarNoMapa(identificacaoCliente);
+		if (Objects.nonNull(expiracao)) {
+			expiracao.acessar(registro);
+			expiracao.manter(carrinhoComprasMap.size());
+		}
+		if (Objects.nonNull(cache)) {
+			cache.acessar(registro);
+		}
+		return registro;
+	}
+
+	/**
+	 * Cria o carrinho no mapa, caso não exista, e publica a criação depois que o compute retorna (veja
+	 * {@link #publicarCriacao(RegistroCarrinho)}).
+	 */
+	private RegistroCarrinho criarNoMapa(String identificacaoCliente) {
+		RegistroCarrinho[] criado = new RegistroCarrinho[1];
+		RegistroCarrinho registro = carrinhoComprasMap.computeIfAbsent(identificacaoCliente,
+				chave -> criado[0] = novoRegistroTravado(chave));
+		publicarCriacao(criado[0]);
+		return registro;
+	}
+
+	/**
+	 * Cria o carrinho com persistência. A criação entra no mapa sob o lock de leitura, para que o snapshot a encontre
+	 * (veja {@link #capturarRegistros()}), e, no modo síncrono, só retorna depois que o evento de criação estiver
+	 * gravado, como a invalidação.
+	 */
+	private RegistroCarrinho criarRegistrado(String identificacaoCliente) {
+		RegistroCarrinho registro = carrinhoComprasMap.get(identificacaoCliente);
+		if (Objects.nonNull(registro)) {
+			return registro;
+		}
+		RegistroCarrinho[] criado = new RegistroCarrinho[1];
+		lockCriacao.readLock().lock();
+		try {
+			registro = carrinhoComprasMap.computeIfAbsent(identificacaoCliente,
+					chave -> criado[0] = novoRegistroTravado(chave));
+		} finally {
+			lockCriacao.readLock().unlock();
+		}
+		if (Objects.nonNull(criado[0])) {
+			long sequencia = criado[0].getUltimaSequencia();
+			publicarCriacao(criado[0]);
+			journal.aguardar(sequencia);
+		}
+		return registro;
+	}
+
+	/**
+	 * Cria o registro dentro do compute do mapa com o lock do carrinho já adquirido, sem espera, pois nenhuma outra
+	 * thread o vê antes do retorno do compute. O lock é liberado por {@link #publicarCriacao(RegistroCarrinho)}.
+	 */
+	private RegistroCarrinho novoRegistroTravado(String identificacaoCliente) {
+		RegistroCarrinho registro = novoRegistro(identificacaoCliente);
+		registro.getCarrinho().travar();
+		return registro;
+	}
+
+	/**
+	 * Publica a criação do carrinho criado por {@link #novoRegistroTravado(String)}, fora do lock do mapa, e libera o
+	 * lock do carrinho. Publicar dentro do compute manteria o lock do mapa enquanto, com
+	 * {@link PoliticaFluxoCheio#AGUARDAR}, o buffer estivesse cheio, bloqueando outros clientes e, caso um assinante
+	 * acessasse a factory, a própria entrega dos eventos. Como o lock do carrinho só é liberado depois da publicação,
+	 * os eventos dos itens do carrinho vêm depois da criação.
+	 *
+	 * @param criado registro criado, ou null caso o carrinho já existisse
+	 */
+	private void publicarCriacao(RegistroCarrinho criado) {
+		if (Objects.isNull(criado)) {
+			return;
+		}
+		try {
+			publicar(TipoEventoCarrinho.CARRINHO_CRIADO, criado, null, 0L, 0);
+		} finally {
+			criado.getCarrinho().liberar();
+		}
+	}
+
+	private RegistroCarrinho novoRegistro(String identificacaoCliente) {
+		return novoRegistro(new RegistroCarrinho(identificacaoCliente, this));
+	}
+
+	private RegistroCarrinho novoRegistro(RegistroCarrinho registro) {
+		String identificacaoCliente = registro.getIdentificacaoCliente();
+		ticketMedio.carrinhoAdicionado();
+		metricas.carrinhoCriado();
+		if (Objects.nonNull(janelaTicketMedio)) {
+			registro.setIntervaloJanela(janelaTicketMedio.registrar(JanelaTicketMedio.NENHUM, 0L, 0L));
+		}
+		if (Objects.nonNull(journal)) {
+			registro.setUltimaSequencia(journal.criar(identificacaoCliente));
+		}
+		if (Objects.nonNull(expiracao)) {
+			expiracao.agendar(registro);
+		}
+		if (Objects.nonNull(cache)) {
+			cache.pesoAlterado(registro.getPeso());
+		}
+		return registro;
+	}
+
+	/**
+	 * Obtém o carrinho do cliente no cache, carregando-o caso não esteja em memória. O carregamento é exclusivo por
+	 * cliente, como a invalidação, mas ocorre fora do lock do mapa, de modo que um repositório lento atrasa apenas
+	 * as chamadas para o mesmo cliente.
+	 */
+	private RegistroCarrinho obterDoCache(String identificacaoCliente) {
+		RegistroCarrinho registro = carrinhoComprasMap.get(identificacaoCliente);
+		if (Objects.nonNull(registro)) {
+			return registro;
+		}
+		return comAcessoExclusivo(identificacaoCliente, () -> {
+			RegistroCarrinho residente = carrinhoComprasMap.get(identificacaoCliente);
+			return Objects.nonNull(residente) ? residente : carregar(identificacaoCliente);
+		});
+	}
+
+	/**
+	 * Executa a operação sobre o repositório com exclusividade para o cliente em relação a carregamentos e
+	 * invalidações, aguardando a que estiver em andamento, sem lock do mapa.
+	 */
+	private <T> T comAcessoExclusivo(String identificacaoCliente, Supplier<T> operacao) {
+		CompletableFuture<Void> acesso = new CompletableFuture<>();
+		CompletableFuture<Void> emAndamento;
+		while (Objects.nonNull(emAndamento = acessosRepositorio.putIfAbsent(identificacaoCliente, acesso))) {
+			emAndamento.join();
+		}
+		try {
+			return operacao.get();
+		} finally {
+			acessosRepositorio.remove(identificacaoCliente, acesso);
+			acesso.complete(null);
+		}
+	}
+
+	/**
+	 * Coloca em memória o carrinho do cliente, com acesso exclusivo a ele: o carrinho despejado, com os itens ainda
+	 * pendentes de gravação ou os carregados do repositório, ou um novo caso ele não exista. O carrinho despejado já
+	 * está nos agregados, com o mesmo valor total, e continua neles sem alteração; os seus itens entram no índice de
+	 * produtos, mas não são publicados aos assinantes nem contados nos produtos mais colocados, pois não são novos.
+	 */
+	private RegistroCarrinho carregar(String identificacaoCliente) {
+		CarrinhoForaDaMemoria despejado = foraDaMemoria.get(identificacaoCliente);
+		if (Objects.isNull(despejado)) {
+			RegistroCarrinho registro = novoRegistro(identificacaoCliente);
+			registro.setPendenteGravacao(true);
+			// antes de entrar no mapa, para que nenhuma alteração do carrinho seja publicada antes da criação
+			publicar(TipoEventoCarrinho.CARRINHO_CRIADO, registro, null, 0L, 0);
+			carrinhoComprasMap.put(identificacaoCliente, registro);
+			return registro;
+		}
+		// lido antes de deixar os carrinhos fora da memória, para que uma falha do repositório não o perca
+		Collection<Item> itens;
+		if (Objects.nonNull(despejado.pendente)) {
+			itens = despejado.pendente.getItens();
+		} else {
+			CarrinhoCompras armazenado = repositorio.carregar(identificacaoCliente);
+			itens = Objects.isNull(armazenado) ? Collections.emptyList() : armazenado.getItens();
+		}
+		RegistroCarrinho registro = new RegistroCarrinho(identificacaoCliente, this);
+		registro.setIntervaloJanela(despejado.intervaloJanela);
+		metricas.carrinhoCriado();
+		cache.pesoAlterado(registro.getPeso());
+		registro.setCarregando(true);
+		registro.getCarrinho().aplicarLote(lote(itens));
+		registro.setCarregando(false);
+		// o carrinho carregado de uma gravação pendente ainda não está no repositório
+		registro.setPendenteGravacao(Objects.nonNull(despejado.pendente));
+		foraDaMemoria.remove(identificacaoCliente);
+		carrinhoComprasMap.put(identificacaoCliente, registro);
+		return registro;
+	}
+
+	private static LoteItens lote(Collection<Item> itens) {
+		LoteItens lote = new LoteItens();
+		for (Item item : itens) {
+			lote.adicionar(item.getProduto(), item.getValorUnitario(), item.getQuantidade());
+		}
+		return lote;
+	}
+
     /**
      * Retorna o valor do ticket médio no momento da chamada ao método.
      * O valor do ticket médio é a soma do valor total de todos os carrinhos de compra dividido
@@ -40,18 +516,124 @@ public class CarrinhoComprasFactory {
      *
      * @return BigDecimal
      */
+	@Override
     public BigDecimal getValorTicketMedio() {
-		if (carrinhoComprasMap.size() == 0) {
-			return new BigDecimal("0.00");
-		}
-		BigDecimal soma = carrinhoComprasMap.values()
-				.stream()
-				.map(CarrinhoCompras::getValorTotal)
-				.reduce(BigDecimal.ZERO, BigDecimal::add);
-		return soma
-				.divide(BigDecimal.valueOf(carrinhoComprasMap.size()), RoundingMode.HALF_EVEN);
+		long inicio = iniciar(OperacaoCarrinho.OBTER_TICKET_MEDIO);
+		if (Objects.nonNull(expiracao)) {
+			expiracao.manter(carrinhoComprasMap.size());
+		}
+		BigDecimal valorTicketMedio = ticketMedio.getValorTicketMedio();
+		concluir(OperacaoCarrinho.OBTER_TICKET_MEDIO, inicio);
+		return valorTicketMedio;
     }
 
+	/**
+	 * Retorna o ticket médio apenas dos carrinhos com atividade recente: criados ou alterados na janela informada,
+	 * cada um com o valor total da sua última alteração, com as mesmas regras de arredondamento de
+	 * {@link #getValorTicketMedio()}. Carrinhos invalidados ou expirados deixam de contar, e carrinhos sem atividade
+	 * desde que foram recuperados do journal não contam.
+	 *
+	 * A janela é arredondada para cima em intervalos inteiros de {@link Builder#janelaTicketMedio(Duration, int)},
+	 * incluindo o intervalo em andamento, e a consulta percorre apenas esses intervalos.
+	 *
+	 * @param janela por exemplo, 5, 15 ou 60 minutos
+	 * @return BigDecimal
+	 */
+	public BigDecimal getValorTicketMedio(Duration janela) {
+		checkState(Objects.nonNull(janelaTicketMedio), "Janela do ticket medio nao habilitada");
+		return janelaTicketMedio.getValorTicketMedio(janela);
+	}
+
+	/**
+	 * Retorna o valor total abaixo do qual está o percentil informado dos carrinhos, por exemplo 50 para a mediana,
+	 * com duas casas decimais. Ao contrário do ticket médio, não é distorcido por poucos carrinhos de valor muito alto.
+	 *
+	 * A distribuição dos valores é mantida incrementalmente em faixas, portanto a consulta não percorre nem ordena os
+	 * carrinhos; o valor retornado nunca é menor que o percentil exato e o excede em no máximo 1/128 (veja
+	 * {@link DistribuicaoValores}). Requer {@link Builder#distribuicaoValores()}.
+	 *
+	 * @param percentil entre 0 e 100
+	 * @return BigDecimal
+	 */
+	public BigDecimal getPercentilValorTotal(double percentil) {
+		return getDistribuicaoValores().getPercentil(percentil);
+	}
+
+	DistribuicaoValores getDistribuicaoValores() {
+		if (Objects.nonNull(expiracao)) {
+			expiracao.manter(carrinhoComprasMap.size());
+		}
+		DistribuicaoValores distribuicao = ticketMedio.getDistribuicao();
+		checkState(Objects.nonNull(distribuicao), "Distribuicao de valores nao habilitada");
+		return distribuicao;
+	}
+
+	/**
+	 * Calcula o ticket médio percorrendo o valor total de todos os carrinhos, em vez de usar a soma mantida
+	 * incrementalmente, por exemplo para conferi-la. Com {@link Builder#recalculoParalelo(ForkJoinPool)}, o percurso é
+	 * dividido entre as threads do pool; o resultado é o mesmo do percurso sequencial.
+	 *
+	 * Pode ser chamado durante alterações concorrentes: cada carrinho é considerado com o valor total que tinha ao ser
+	 * lido, e carrinhos criados, invalidados, despejados ou carregados durante o percurso podem ou não ser
+	 * considerados. Com o cache, os carrinhos fora da memória são considerados com o valor total que tinham ao ser
+	 * despejados, sem carregá-los.
+	 *
+	 * @return BigDecimal
+	 */
+	public BigDecimal recalcularValorTicketMedio() {
+		if (Objects.nonNull(expiracao)) {
+			expiracao.manter(carrinhoComprasMap.size());
+		}
+		RegistroCarrinho[] registros = carrinhoComprasMap.values().toArray(new RegistroCarrinho[0]);
+		ResumoTicketMedio resumo = RecalculoTicketMedio.calcular(registros, poolRecalculo);
+		if (Objects.nonNull(cache)) {
+			long somaCentavos = 0L;
+			long quantidade = 0L;
+			for (CarrinhoForaDaMemoria despejado : foraDaMemoria.values()) {
+				somaCentavos = Math.addExact(somaCentavos, despejado.valorTotalCentavos);
+				quantidade++;
+			}
+			resumo = resumo.combinar(new ResumoTicketMedio(somaCentavos, quantidade));
+		}
+		return resumo.getValorTicketMedio();
+	}
+
+	ResumoTicketMedio getResumoTicketMedio() {
+		if (Objects.nonNull(expiracao)) {
+			expiracao.manter(carrinhoComprasMap.size());
+		}
+		return ticketMedio.getResumo();
+	}
+
+	/**
+	 * @return carrinho do cliente, ou null caso não exista; ao contrário de {@link #criar(String)}, não cria nem conta
+	 * como acesso para a expiração ou o cache, nem carrega o carrinho que está fora da memória
+	 */
+	CarrinhoCompras getCarrinhoCompras(String identificacaoCliente) {
+		RegistroCarrinho registro = carrinhoComprasMap.get(identificacaoCliente);
+		if (Objects.nonNull(registro)) {
+			return registro.getCarrinhoCompras();
+		}
+		return existe(identificacaoCliente)
+				? new CarrinhoCompras(new CarrinhoEmCache(this, identificacaoCliente))
+				: null;
+	}
+
+	/**
+	 * @return clientes com carrinho, inclusive, com o cache, os que estão fora da memória
+	 */
+	Collection<String> getIdentificacoesClientes() {
+		Collection<String> identificacoes = getIdentificacoesEmMemoria();
+		if (Objects.nonNull(cache)) {
+			identificacoes.addAll(foraDaMemoria.keySet());
+		}
+		return identificacoes;
+	}
+
+	Collection<String> getIdentificacoesEmMemoria() {
+		return new ArrayList<>(carrinhoComprasMap.keySet());
+	}
+
     /**
      * Invalida um carrinho de compras quando o cliente faz um checkout ou sua sessão expirar.
      * Deve ser efetuada a remoção do carrinho do cliente passado como parâmetro da listagem de carrinhos de compras.
@@ -60,8 +642,940 @@ public class CarrinhoComprasFactory {
      * @return Retorna um boolean, tendo o valor true caso o cliente passado como parämetro tenha um carrinho de compras e
      * e false caso o cliente não possua um carrinho.
      */
+	@Override
     public boolean invalidar(String identificacaoCliente) {
 		checkNotNull(identificacaoCliente, "Identificacao cliente nao deve ser null");
-		return Objects.nonNull(carrinhoComprasMap.remove(identificacaoCliente));
+		long inicio = iniciar(OperacaoCarrinho.INVALIDAR);
+		try {
+			boolean removido = Objects.isNull(cache)
+					? remover(identificacaoCliente, null)
+					: comAcessoExclusivo(identificacaoCliente, () -> invalidarNoCache(identificacaoCliente));
+			if (!removido) {
+				return false;
+			}
+			if (Objects.nonNull(expiracao)) {
+				expiracao.manter(carrinhoComprasMap.size());
+			}
+			if (Objects.nonNull(cache)) {
+				cache.manter();
+			}
+			return true;
+		} finally {
+			concluir(OperacaoCarrinho.INVALIDAR, inicio);
+		}
     }
+
+	private boolean expirar(RegistroCarrinho registro, MotivoExpiracao motivo) {
+		if (!remover(registro.getIdentificacaoCliente(), registro)) {
+			return false;
+		}
+		ouvinteExpiracao.carrinhoExpirado(registro.getIdentificacaoCliente(), registro.getCarrinhoCompras(), motivo);
+		return true;
+	}
+
+	/**
+	 * Despeja do cache um carrinho que não é usado com frequência, sob o lock do carrinho: o carrinho deixa a factory,
+	 * como na invalidação, mas continua nos agregados, com o valor total e o intervalo da janela do ticket médio que
+	 * tinha ao ser despejado. Caso tenha sido alterado desde que foi carregado, os seus itens ficam pendentes em
+	 * memória e são gravados no repositório pela thread de gravação, fora do lock do carrinho; até lá, o próximo
+	 * carregamento do cliente os lê da gravação pendente.
+	 *
+	 * As referências obtidas antes do despejo não alteram o carrinho despejado: cada operação delas carrega
+	 * novamente o carrinho (veja {@link CarrinhoEmCache}).
+	 */
+	private void despejar(RegistroCarrinho registro) {
+		String identificacaoCliente = registro.getIdentificacaoCliente();
+		CarrinhoLocal carrinho = registro.getCarrinho();
+		boolean pendente = carrinho.comLock(() -> {
+			if (!registro.isAtivo()) {
+				return false;
+			}
+			EstadoCarrinhoCompras itens = registro.isPendenteGravacao() ? carrinho.getEstado() : null;
+			// antes de sair do mapa, para que um carregamento concorrente encontre o carrinho despejado
+			foraDaMemoria.put(identificacaoCliente, new CarrinhoForaDaMemoria(carrinho.getValorTotalCentavos(),
+					registro.getIntervaloJanela(), itens));
+			cache.pesoAlterado(-registro.getPeso());
+			registro.desativar();
+			removerDoIndice(registro);
+			carrinhoComprasMap.remove(identificacaoCliente, registro);
+			return Objects.nonNull(itens);
+		});
+		if (pendente) {
+			try {
+				gravacao.execute(() -> gravarDespejado(identificacaoCliente));
+			} catch (RejectedExecutionException e) {
+				// factory já fechada: a gravação continua pendente até o próximo close()
+			}
+		}
+	}
+
+	/**
+	 * Executado pela thread de gravação. Caso a gravação falhe, os itens continuam pendentes, em memória, e são
+	 * gravados novamente por {@link #close()}.
+	 */
+	private void gravarDespejado(String identificacaoCliente) {
+		try {
+			comAcessoExclusivo(identificacaoCliente, () -> gravarPendente(identificacaoCliente));
+		} catch (RuntimeException e) {
+			// mantida pendente; a falha é lançada por close() caso se repita
+		}
+	}
+
+	/**
+	 * Grava os itens pendentes do carrinho despejado, com acesso exclusivo ao cliente, de modo que a gravação nunca
+	 * concorre com o carregamento ou a invalidação do mesmo carrinho.
+	 */
+	private Void gravarPendente(String identificacaoCliente) {
+		CarrinhoForaDaMemoria despejado = foraDaMemoria.get(identificacaoCliente);
+		if (Objects.isNull(despejado) || Objects.isNull(despejado.pendente)) {
+			return null;
+		}
+		CarrinhoCompras carrinhoCompras = new CarrinhoCompras();
+		carrinhoCompras.aplicarLote(lote(despejado.pendente.getItens()));
+		repositorio.gravar(identificacaoCliente, carrinhoCompras);
+		foraDaMemoria.replace(identificacaoCliente, despejado, despejado.gravado());
+		return null;
+	}
+
+	/**
+	 * Grava na thread atual os carrinhos alterados e ainda não gravados: os despejados, inclusive aqueles cuja
+	 * gravação falhou na thread de gravação, e os que estão em memória, lançando a falha.
+	 */
+	void gravarPendentes() {
+		for (String identificacaoCliente : foraDaMemoria.keySet()) {
+			comAcessoExclusivo(identificacaoCliente, () -> gravarPendente(identificacaoCliente));
+		}
+		for (RegistroCarrinho registro : carrinhoComprasMap.values()) {
+			comAcessoExclusivo(registro.getIdentificacaoCliente(), () -> gravarEmMemoria(registro));
+		}
+	}
+
+	/**
+	 * Grava o carrinho em memória alterado desde a última gravação, com os itens obtidos sob o lock do carrinho, mas
+	 * fora dele. Caso a gravação falhe, os itens voltam a ficar pendentes, no carrinho ou, caso ele tenha sido
+	 * despejado durante a gravação, no carrinho despejado.
+	 */
+	private Void gravarEmMemoria(RegistroCarrinho registro) {
+		String identificacaoCliente = registro.getIdentificacaoCliente();
+		CarrinhoLocal carrinho = registro.getCarrinho();
+		EstadoCarrinhoCompras itens = carrinho.comLock(() -> {
+			if (!registro.isAtivo() || !registro.isPendenteGravacao()) {
+				return null;
+			}
+			registro.setPendenteGravacao(false);
+			return carrinho.getEstado();
+		});
+		if (Objects.isNull(itens)) {
+			return null;
+		}
+		try {
+			CarrinhoCompras carrinhoCompras = new CarrinhoCompras();
+			carrinhoCompras.aplicarLote(lote(itens.getItens()));
+			repositorio.gravar(identificacaoCliente, carrinhoCompras);
+		} catch (RuntimeException e) {
+			carrinho.comLock(() -> {
+				if (registro.isAtivo()) {
+					registro.setPendenteGravacao(true);
+				} else {
+					foraDaMemoria.computeIfPresent(identificacaoCliente, (chave, despejado) ->
+							Objects.isNull(despejado.pendente) ? despejado.pendente(itens) : despejado);
+				}
+				return null;
+			});
+			throw e;
+		}
+		return null;
+	}
+
+	/**
+	 * Invalida o carrinho do cliente com o cache, com acesso exclusivo a ele: remove-o da memória ou dos carrinhos
+	 * fora dela, junto com a gravação pendente, e o remove do repositório.
+	 *
+	 * @return true caso algum carrinho tenha sido removido
+	 */
+	private boolean invalidarNoCache(String identificacaoCliente) {
+		RegistroCarrinho registro = carrinhoComprasMap.remove(identificacaoCliente);
+		if (Objects.nonNull(registro)) {
+			registro.getCarrinho().comLock(() -> {
+				// despejado concorrentemente, o carrinho já está entre os carrinhos fora da memória
+				if (registro.isAtivo()) {
+					removerDosAgregados(registro.desativar(), registro.getIntervaloJanela());
+					cache.pesoAlterado(-registro.getPeso());
+				}
+				return null;
+			});
+			cache.removido(registro);
+			removerDoIndice(registro);
+		}
+		// obtido o lock do carrinho, um despejo concorrente já terminou
+		CarrinhoForaDaMemoria despejado = foraDaMemoria.remove(identificacaoCliente);
+		if (Objects.nonNull(despejado)) {
+			removerDosAgregados(despejado.valorTotalCentavos, despejado.intervaloJanela);
+		}
+		boolean armazenado = repositorio.remover(identificacaoCliente);
+		if (Objects.isNull(registro) && Objects.isNull(despejado) && !armazenado) {
+			return false;
+		}
+		publicar(TipoEventoCarrinho.CARRINHO_INVALIDADO, identificacaoCliente, null, 0L, 0);
+		return true;
+	}
+
+	private void removerDosAgregados(long valorTotalCentavos, long intervaloJanela) {
+		ticketMedio.carrinhoRemovido(valorTotalCentavos);
+		if (Objects.nonNull(janelaTicketMedio)) {
+			janelaTicketMedio.remover(intervaloJanela, valorTotalCentavos);
+		}
+	}
+
+	/**
+	 * Remove o carrinho do cliente, desde que seja o registro esperado quando ele for informado. A remoção é registrada
+	 * no journal e publicada sob o lock do carrinho, antes de o registro deixar o mapa, para que a ordem no journal e
+	 * entre os eventos, ao invalidar e recriar o carrinho de um mesmo cliente, seja a ordem em que ocorreram; nada é
+	 * publicado sob o lock do mapa. Com o cache, a invalidação é feita por {@link #invalidarNoCache(String)}.
+	 *
+	 * @return true caso algum carrinho tenha sido removido
+	 */
+	private boolean remover(String identificacaoCliente, RegistroCarrinho esperado) {
+		RegistroCarrinho registro = carrinhoComprasMap.get(identificacaoCliente);
+		if (Objects.isNull(registro) || (Objects.nonNull(esperado) && registro != esperado)) {
+			return false;
+		}
+		long[] sequencia = new long[1];
+		long[] valorTotalCentavos = new long[1];
+		// registrada antes de desligar o carrinho, sob o lock dele, para que nenhuma alteração entre depois dela
+		boolean removido = registro.getCarrinho().comLock(() -> {
+			// removido concorrentemente
+			if (!registro.isAtivo()) {
+				return false;
+			}
+			if (Objects.nonNull(journal)) {
+				sequencia[0] = journal.invalidar(identificacaoCliente);
+			}
+			valorTotalCentavos[0] = registro.desativar();
+			publicar(TipoEventoCarrinho.CARRINHO_INVALIDADO, registro, null, 0L, 0);
+			carrinhoComprasMap.remove(identificacaoCliente, registro);
+			return true;
+		});
+		if (!removido) {
+			return false;
+		}
+		// desligado do carrinho, o registro não recebe mais alterações: o intervalo lido é o último
+		removerDosAgregados(valorTotalCentavos[0], registro.getIntervaloJanela());
+		if (Objects.nonNull(journal)) {
+			journal.aguardar(sequencia[0]);
+		}
+		removerDoIndice(registro);
+		return true;
+	}
+
+	private void removerDoIndice(RegistroCarrinho registro) {
+		if (Objects.nonNull(indiceProdutos)) {
+			// o carrinho já está desligado; o que escapar daqui por alterações posteriores é descartado ao percorrer
+			for (Item item : registro.getCarrinho().getEstado().getItens()) {
+				indiceProdutos.remover(item.getProduto().getCodigo(), registro);
+			}
+		}
+	}
+
+	/**
+	 * Substitui o valor unitário do produto em todos os carrinhos que têm um item dele, mantendo as quantidades. Para
+	 * cada carrinho, equivale a uma adição do produto com quantidade zero: o valor total, o ticket médio, o journal e
+	 * os assinantes são atualizados como em {@link CarrinhoCompras#adicionarItem}.
+	 *
+	 * Cada carrinho é alterado sob o seu próprio lock, e não todos de uma vez: leituras concorrentes podem observar
+	 * parte dos carrinhos já alterados, e carrinhos criados, alterados ou invalidados durante a operação podem ou não
+	 * ser alterados. Caso o novo valor não caiba no total de algum carrinho, a ArithmeticException é lançada e os
+	 * carrinhos alterados até ali permanecem alterados.
+	 *
+	 * @param produto
+	 * @param valorUnitario
+	 * @return quantidade de carrinhos alterados
+	 */
+	public int alterarValorUnitario(Produto produto, BigDecimal valorUnitario) {
+		if (Objects.isNull(valorUnitario) || valorUnitario.compareTo(BigDecimal.ZERO) < 0) {
+			throw new ValorUnitarioInvalidoException();
+		}
+		return aplicarAosCarrinhos(produto, carrinho -> carrinho.alterarValorUnitario(produto, valorUnitario));
+	}
+
+	/**
+	 * Remove o item do produto de todos os carrinhos que o têm, com as mesmas garantias de
+	 * {@link #alterarValorUnitario(Produto, BigDecimal)}.
+	 *
+	 * @param produto
+	 * @return quantidade de carrinhos alterados
+	 */
+	public int removerProduto(Produto produto) {
+		return aplicarAosCarrinhos(produto, carrinho -> carrinho.removerItem(produto));
+	}
+
+	/**
+	 * Aplica a operação aos carrinhos com o produto, obtidos do índice, ou a todos os carrinhos, sem ele.
+	 */
+	private int aplicarAosCarrinhos(Produto produto, Predicate<CarrinhoLocal> operacao) {
+		if (Objects.isNull(produto)) {
+			throw new NullProdutoException();
+		}
+		Collection<RegistroCarrinho> registros = Objects.isNull(indiceProdutos)
+				? carrinhoComprasMap.values()
+				: Arrays.asList(indiceProdutos.registros(produto.getCodigo()));
+		int alterados = 0;
+		for (RegistroCarrinho registro : registros) {
+			if (!registro.isAtivo()) {
+				if (Objects.nonNull(indiceProdutos)) {
+					indiceProdutos.remover(produto.getCodigo(), registro);
+				}
+			} else if (aplicar(registro, operacao)) {
+				alterados++;
+			}
+		}
+		return alterados;
+	}
+
+	/**
+	 * Aplica a operação sob o lock do carrinho, apenas se ele ainda estiver na factory: um carrinho despejado do cache
+	 * depois de obtido do índice não é alterado, pois já saiu da memória.
+	 */
+	private static boolean aplicar(RegistroCarrinho registro, Predicate<CarrinhoLocal> operacao) {
+		CarrinhoLocal carrinho = registro.getCarrinho();
+		return carrinho.comLock(() -> registro.isAtivo() && operacao.test(carrinho));
+	}
+
+	/**
+	 * Retorna os produtos colocados em carrinhos com mais frequência, do mais para o menos frequente, em tempo e
+	 * memória que dependem apenas da quantidade configurada em {@link Builder#produtosMaisColocados(int, long)}, e não
+	 * da quantidade de carrinhos ou de produtos.
+	 *
+	 * As frequências são estimativas de quantos itens de cada produto foram criados, por adição ou lote, com os itens
+	 * mais antigos contando menos; nunca são menores que as reais e, com probabilidade de ao menos 98%, as excedem em
+	 * no máximo 0,07% do total de itens criados. São frequências de colocação, e não de presença: itens removidos,
+	 * produtos retirados e carrinhos invalidados continuam contando até que as reduções os tornem irrelevantes. Os
+	 * itens dos carrinhos recuperados do journal ou carregados do repositório não contam, e as frequências recomeçam
+	 * a cada criação da factory. Sem a configuração, a lista é vazia.
+	 *
+	 * @return produtos mais colocados
+	 */
+	public List<ProdutoColocado> getProdutosMaisColocados() {
+		return Objects.isNull(produtosMaisColocados) ? Collections.emptyList() : produtosMaisColocados.getProdutos();
+	}
+
+	/**
+	 * @return produtos mais colocados, ou null caso não estejam habilitados
+	 */
+	ProdutosMaisColocados getProdutosMaisColocadosRegistrados() {
+		return produtosMaisColocados;
+	}
+
+	/**
+	 * @return índice dos carrinhos por produto, ou null caso não esteja habilitado
+	 */
+	IndiceProdutos getIndiceProdutos() {
+		return indiceProdutos;
+	}
+
+	CatalogoProdutos getCatalogo() {
+		return catalogo;
+	}
+
+	MetricasCarrinhos getMetricas() {
+		return metricas;
+	}
+
+	LinhasCarrinho novasLinhas() {
+		return Objects.isNull(memoriaLinhas) ? new LinhasNoHeap() : new LinhasForaDoHeap(memoriaLinhas, catalogo);
+	}
+
+	/**
+	 * @return memória das linhas fora do heap, ou null caso as linhas sejam mantidas no heap
+	 */
+	MemoriaForaDoHeap getMemoriaLinhas() {
+		return memoriaLinhas;
+	}
+
+	/**
+	 * @return instante de início da operação, ou {@link #SEM_MEDICAO} caso esta execução não seja medida
+	 */
+	private long iniciar(OperacaoCarrinho operacao) {
+		return metricas.iniciar(operacao) ? System.nanoTime() : SEM_MEDICAO;
+	}
+
+	private void concluir(OperacaoCarrinho operacao, long inicio) {
+		if (inicio != SEM_MEDICAO) {
+			metricas.concluir(operacao, System.nanoTime() - inicio);
+		}
+	}
+
+	/**
+	 * Chamado pelo registro a cada alteração do valor total de um carrinho, ainda sob o lock do carrinho. Os itens
+	 * carregados do repositório não alteram os agregados, em que o carrinho despejado continuou.
+	 */
+	void carrinhoAlterado(RegistroCarrinho registro, long deltaCentavos) {
+		if (registro.isCarregando()) {
+			return;
+		}
+		long valorTotalCentavos = registro.getCarrinho().getValorTotalCentavos();
+		ticketMedio.valorTotalAlterado(deltaCentavos, valorTotalCentavos);
+		if (Objects.nonNull(janelaTicketMedio)) {
+			registro.setIntervaloJanela(janelaTicketMedio.registrar(registro.getIntervaloJanela(),
+					valorTotalCentavos - deltaCentavos, valorTotalCentavos));
+		}
+		if (Objects.nonNull(expiracao)) {
+			expiracao.acessar(registro);
+		}
+		if (Objects.nonNull(cache)) {
+			registro.setPendenteGravacao(true);
+		}
+	}
+
+	/**
+	 * Atualiza o peso do carrinho no cache, que é a sua quantidade de linhas, ainda sob o lock do carrinho.
+	 */
+	private void linhasAlteradas(RegistroCarrinho registro, int delta) {
+		int pesoAnterior = registro.getPeso();
+		registro.alterarLinhas(delta);
+		cache.pesoAlterado(registro.getPeso() - pesoAnterior);
+	}
+
+	void itemAdicionado(RegistroCarrinho registro, Produto produto, long valorUnitarioCentavos, int quantidade,
+			boolean novo, long deltaCentavos) {
+		carrinhoAlterado(registro, deltaCentavos);
+		if (novo && Objects.nonNull(cache)) {
+			linhasAlteradas(registro, 1);
+		}
+		if (novo && Objects.nonNull(indiceProdutos)) {
+			indiceProdutos.incluir(produto.getCodigo(), registro);
+		}
+		if (novo && Objects.nonNull(produtosMaisColocados) && !registro.isCarregando()) {
+			produtosMaisColocados.registrar(produto);
+		}
+		publicar(novo ? TipoEventoCarrinho.ITEM_ADICIONADO : TipoEventoCarrinho.ITEM_ALTERADO, registro, produto,
+				valorUnitarioCentavos, quantidade);
+	}
+
+	void itemRemovido(RegistroCarrinho registro, Produto produto, long deltaCentavos) {
+		carrinhoAlterado(registro, deltaCentavos);
+		if (Objects.nonNull(cache)) {
+			linhasAlteradas(registro, -1);
+		}
+		if (Objects.nonNull(indiceProdutos)) {
+			indiceProdutos.remover(produto.getCodigo(), registro);
+		}
+		publicar(TipoEventoCarrinho.ITEM_REMOVIDO, registro, produto, 0L, 0);
+	}
+
+	void loteAplicado(RegistroCarrinho registro, LoteItens lote, long[] valoresUnitariosCentavos,
+			boolean[] criouOuRemoveuLinha, long deltaCentavos) {
+		carrinhoAlterado(registro, deltaCentavos);
+		List<LoteItens.Operacao> operacoes = lote.getOperacoes();
+		if (Objects.nonNull(cache)) {
+			int linhas = 0;
+			for (int i = 0; i < operacoes.size(); i++) {
+				if (criouOuRemoveuLinha[i]) {
+					linhas += operacoes.get(i).remocao ? -1 : 1;
+				}
+			}
+			linhasAlteradas(registro, linhas);
+		}
+		if (Objects.nonNull(indiceProdutos)) {
+			for (int i = 0; i < operacoes.size(); i++) {
+				LoteItens.Operacao operacao = operacoes.get(i);
+				if (!criouOuRemoveuLinha[i]) {
+					continue;
+				}
+				if (operacao.remocao) {
+					indiceProdutos.remover(operacao.produto.getCodigo(), registro);
+				} else {
+					indiceProdutos.incluir(operacao.produto.getCodigo(), registro);
+				}
+			}
+		}
+		if (Objects.nonNull(produtosMaisColocados) && !registro.isCarregando()) {
+			for (int i = 0; i < operacoes.size(); i++) {
+				LoteItens.Operacao operacao = operacoes.get(i);
+				if (criouOuRemoveuLinha[i] && !operacao.remocao) {
+					produtosMaisColocados.registrar(operacao.produto);
+				}
+			}
+		}
+		if (Objects.nonNull(fluxoEventos)) {
+			for (int i = 0; i < operacoes.size(); i++) {
+				LoteItens.Operacao operacao = operacoes.get(i);
+				if (!operacao.remocao) {
+					publicar(criouOuRemoveuLinha[i] ? TipoEventoCarrinho.ITEM_ADICIONADO
+							: TipoEventoCarrinho.ITEM_ALTERADO, registro, operacao.produto,
+							valoresUnitariosCentavos[i], operacao.quantidade);
+				} else if (criouOuRemoveuLinha[i]) {
+					publicar(TipoEventoCarrinho.ITEM_REMOVIDO, registro, operacao.produto, 0L, 0);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Publica o evento aos assinantes, caso existam e o carrinho não esteja sendo carregado do repositório. Chamado
+	 * sob o lock do carrinho (ou com o acesso exclusivo ao cliente, com o cache), o que mantém a ordem dos eventos de
+	 * um mesmo carrinho, e nunca sob o lock do mapa.
+	 */
+	private void publicar(TipoEventoCarrinho tipo, RegistroCarrinho registro, Produto produto,
+			long valorUnitarioCentavos, int quantidade) {
+		if (!registro.isCarregando()) {
+			publicar(tipo, registro.getIdentificacaoCliente(), produto, valorUnitarioCentavos, quantidade);
+		}
+	}
+
+	private void publicar(TipoEventoCarrinho tipo, String identificacaoCliente, Produto produto,
+			long valorUnitarioCentavos, int quantidade) {
+		if (Objects.nonNull(fluxoEventos)) {
+			fluxoEventos.publicar(new EventoCarrinho(tipo, identificacaoCliente, produto, valorUnitarioCentavos,
+					quantidade));
+		}
+	}
+
+	/**
+	 * Retorna a quantidade de eventos não entregues aos assinantes por encontrarem o buffer cheio (veja
+	 * {@link PoliticaFluxoCheio#DESCARTAR}).
+	 *
+	 * @return long
+	 */
+	public long getEventosDescartados() {
+		return Objects.isNull(fluxoEventos) ? 0L : fluxoEventos.getDescartados();
+	}
+
+	/**
+	 * Retorna a quantidade de lotes de eventos descartados por exceções lançadas pelos assinantes (veja
+	 * {@link AssinanteEventosCarrinho}).
+	 *
+	 * @return long
+	 */
+	public long getFalhasAssinantes() {
+		return Objects.isNull(fluxoEventos) ? 0L : fluxoEventos.getFalhasAssinantes();
+	}
+
+	/**
+	 * Registra no journal, antes de aplicá-la, a adição a um carrinho, ainda sob o lock do carrinho. Caso o journal
+	 * rejeite o evento, o carrinho não é alterado.
+	 *
+	 * @return sequência a ser aguardada em {@link #aguardar(long)}, ou 0 sem persistência
+	 */
+	long registrarAdicao(RegistroCarrinho registro, Produto produto, long valorUnitarioCentavos, int quantidade) {
+		if (Objects.isNull(journal)) {
+			return 0L;
+		}
+		long sequencia = journal.adicionar(registro.getIdentificacaoCliente(), produto, valorUnitarioCentavos,
+				quantidade);
+		registro.setUltimaSequencia(sequencia);
+		return sequencia;
+	}
+
+	long registrarRemocao(RegistroCarrinho registro, Produto produto) {
+		if (Objects.isNull(journal)) {
+			return 0L;
+		}
+		long sequencia = journal.remover(registro.getIdentificacaoCliente(), produto);
+		registro.setUltimaSequencia(sequencia);
+		return sequencia;
+	}
+
+	/**
+	 * Um evento por operação, mas uma única espera: o group commit grava o lote inteiro de uma vez.
+	 */
+	long registrarLote(RegistroCarrinho registro, LoteItens lote, long[] valoresUnitariosCentavos) {
+		List<LoteItens.Operacao> operacoes = lote.getOperacoes();
+		if (Objects.isNull(journal) || operacoes.isEmpty()) {
+			return 0L;
+		}
+		long sequencia = 0L;
+		for (int i = 0; i < operacoes.size(); i++) {
+			LoteItens.Operacao operacao = operacoes.get(i);
+			sequencia = operacao.remocao
+					? journal.remover(registro.getIdentificacaoCliente(), operacao.produto)
+					: journal.adicionar(registro.getIdentificacaoCliente(), operacao.produto,
+							valoresUnitariosCentavos[i], operacao.quantidade);
+		}
+		registro.setUltimaSequencia(sequencia);
+		return sequencia;
+	}
+
+	/**
+	 * No modo síncrono, aguarda, fora do lock do carrinho, até que o evento da alteração esteja gravado. Caso a
+	 * gravação falhe, o journal passa a rejeitar todas as alterações seguintes, e a alteração já aplicada em memória
+	 * é informada com UncheckedIOException, como não durável.
+	 */
+	void aguardar(long sequencia) {
+		if (Objects.nonNull(journal)) {
+			journal.aguardar(sequencia);
+		}
+	}
+
+	/**
+	 * Grava os eventos pendentes do journal, aguarda o snapshot em andamento, grava no repositório do cache os
+	 * carrinhos alterados ainda não gravados, em memória ou não, e entrega aos assinantes os eventos já publicados.
+	 * Sem persistência, cache nem assinantes, não faz nada.
+	 */
+	@Override
+	public void close() {
+		try {
+			if (Objects.nonNull(gravacao)) {
+				encerrarGravacao();
+			}
+			if (Objects.nonNull(journal)) {
+				journal.close();
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		} finally {
+			if (Objects.nonNull(fluxoEventos)) {
+				fluxoEventos.close();
+			}
+		}
+	}
+
+	private void encerrarGravacao() {
+		gravacao.shutdown();
+		try {
+			gravacao.awaitTermination(1, TimeUnit.MINUTES);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		gravarPendentes();
+	}
+
+	/**
+	 * Carrinho despejado do cache: o valor total e o intervalo da janela do ticket médio com que continua nos
+	 * agregados e, enquanto não gravados no repositório, os seus itens.
+	 */
+	private static final class CarrinhoForaDaMemoria {
+
+		private final long valorTotalCentavos;
+		private final long intervaloJanela;
+		private final EstadoCarrinhoCompras pendente;
+
+		private CarrinhoForaDaMemoria(long valorTotalCentavos, long intervaloJanela, EstadoCarrinhoCompras pendente) {
+			this.valorTotalCentavos = valorTotalCentavos;
+			this.intervaloJanela = intervaloJanela;
+			this.pendente = pendente;
+		}
+
+		private CarrinhoForaDaMemoria gravado() {
+			return pendente(null);
+		}
+
+		private CarrinhoForaDaMemoria pendente(EstadoCarrinhoCompras itens) {
+			return new CarrinhoForaDaMemoria(valorTotalCentavos, intervaloJanela, itens);
+		}
+	}
+
+	/**
+	 * Configuração dos modos opcionais da factory. Sem nenhuma configuração, o comportamento é o mesmo do construtor
+	 * padrão.
+	 */
+	public static final class Builder {
+
+		private Duration inatividade;
+		private int limiteCarrinhos = Integer.MAX_VALUE;
+		private Relogio relogio = Relogio.SISTEMA;
+		private OuvinteExpiracao ouvinteExpiracao = OuvinteExpiracao.NENHUM;
+		private CatalogoProdutos catalogo;
+		private Path diretorio;
+		private boolean commitSincrono = true;
+		private int eventosPorSnapshot = 100_000;
+		private ForkJoinPool poolRecalculo;
+		private final List<AssinanteEventosCarrinho> assinantes = new ArrayList<>();
+		private int capacidadeEventos = 8_192;
+		private PoliticaFluxoCheio politicaFluxoCheio = PoliticaFluxoCheio.DESCARTAR;
+		private MetricasCarrinhos metricas = MetricasCarrinhos.NENHUMA;
+		private boolean foraDoHeap;
+		private boolean indiceProdutos;
+		private int quantidadeProdutosMaisColocados;
+		private boolean distribuicaoValores;
+		private Duration intervaloJanela;
+		private int intervalosJanela;
+		private RepositorioCarrinhos repositorio;
+		private long pesoMaximo;
+		private long janelaProdutosMaisColocados;
+
+		private Builder() {
+		}
+
+		/**
+		 * Habilita a expiração de carrinhos que ficarem sem alterações pelo tempo informado.
+		 *
+		 * @param inatividade
+		 * @return Builder
+		 */
+		public Builder expiracao(Duration inatividade) {
+			this.inatividade = checkNotNull(inatividade, "Inatividade nao deve ser null");
+			return this;
+		}
+
+		/**
+		 * Limita a quantidade de carrinhos; ao ultrapassá-la, os carrinhos usados há mais tempo são removidos.
+		 * Requer a expiração habilitada.
+		 *
+		 * @param limiteCarrinhos
+		 * @return Builder
+		 */
+		public Builder limiteCarrinhos(int limiteCarrinhos) {
+			checkArgument(limiteCarrinhos > 0, "Limite de carrinhos deve ser maior que zero");
+			this.limiteCarrinhos = limiteCarrinhos;
+			return this;
+		}
+
+		/**
+		 * Fonte de tempo da expiração e da janela do ticket médio; por padrão, o relógio do sistema.
+		 *
+		 * @param relogio
+		 * @return Builder
+		 */
+		public Builder relogio(Relogio relogio) {
+			this.relogio = checkNotNull(relogio, "Relogio nao deve ser null");
+			return this;
+		}
+
+		public Builder ouvinteExpiracao(OuvinteExpiracao ouvinteExpiracao) {
+			this.ouvinteExpiracao = checkNotNull(ouvinteExpiracao, "Ouvinte de expiracao nao deve ser null");
+			return this;
+		}
+
+		/**
+		 * Faz com que os carrinhos guardem a instância de cada produto registrada no catálogo, compartilhada entre
+		 * todos eles, em vez do produto recebido em cada adição.
+		 *
+		 * @param catalogo
+		 * @return Builder
+		 */
+		public Builder catalogo(CatalogoProdutos catalogo) {
+			this.catalogo = checkNotNull(catalogo, "Catalogo nao deve ser null");
+			return this;
+		}
+
+		/**
+		 * Habilita a persistência das operações em um journal no diretório informado, com snapshots periódicos. Os
+		 * carrinhos existentes no diretório são recuperados ao construir a factory.
+		 *
+		 * Cada alteração é registrada no journal antes de ser aplicada ao carrinho (write-ahead): caso o journal a
+		 * rejeite, por estar fechado ou indisponível, o carrinho não é alterado. A espera pela gravação no disco ocorre
+		 * depois de liberado o lock do carrinho, de modo que leituras e alterações do mesmo carrinho não esperam pelo
+		 * disco; elas podem observar uma alteração ainda não gravada.
+		 *
+		 * @param diretorio
+		 * @return Builder
+		 */
+		public Builder persistencia(Path diretorio) {
+			this.diretorio = checkNotNull(diretorio, "Diretorio nao deve ser null");
+			return this;
+		}
+
+		/**
+		 * Define se cada operação aguarda a gravação do journal no disco antes de retornar (padrão). Sem o commit
+		 * síncrono, uma queda pode perder as operações do último lote ainda não gravado.
+		 *
+		 * @param commitSincrono
+		 * @return Builder
+		 */
+		public Builder commitSincrono(boolean commitSincrono) {
+			this.commitSincrono = commitSincrono;
+			return this;
+		}
+
+		/**
+		 * Quantidade de eventos do journal entre dois snapshots; quanto menor, mais rápida a recuperação.
+		 *
+		 * @param eventosPorSnapshot
+		 * @return Builder
+		 */
+		public Builder eventosPorSnapshot(int eventosPorSnapshot) {
+			checkArgument(eventosPorSnapshot > 0, "Eventos por snapshot deve ser maior que zero");
+			this.eventosPorSnapshot = eventosPorSnapshot;
+			return this;
+		}
+
+		/**
+		 * Faz com que {@link CarrinhoComprasFactory#recalcularValorTicketMedio()} divida o percurso dos carrinhos entre
+		 * as threads do pool informado, que continua sob responsabilidade de quem o criou.
+		 *
+		 * @param pool
+		 * @return Builder
+		 */
+		public Builder recalculoParalelo(ForkJoinPool pool) {
+			this.poolRecalculo = checkNotNull(pool, "Pool nao deve ser null");
+			return this;
+		}
+
+		/**
+		 * Inclui um assinante das alterações dos carrinhos, atendido por uma thread própria. A factory deve ser fechada
+		 * com {@link CarrinhoComprasFactory#close()} para encerrar essas threads.
+		 *
+		 * @param assinante
+		 * @return Builder
+		 */
+		public Builder assinante(AssinanteEventosCarrinho assinante) {
+			assinantes.add(checkNotNull(assinante, "Assinante nao deve ser null"));
+			return this;
+		}
+
+		/**
+		 * Quantidade de eventos que o buffer comporta enquanto o assinante mais lento não os consome, arredondada
+		 * para a próxima potência de dois.
+		 *
+		 * @param capacidadeEventos
+		 * @return Builder
+		 */
+		public Builder capacidadeEventos(int capacidadeEventos) {
+			checkArgument(capacidadeEventos > 0 && capacidadeEventos <= 1 << 30,
+					"Capacidade de eventos deve estar entre 1 e 2^30");
+			this.capacidadeEventos = Integer.highestOneBit(capacidadeEventos * 2 - 1);
+			return this;
+		}
+
+		/**
+		 * Define o que ocorre quando o buffer de eventos está cheio; por padrão, o evento é descartado.
+		 *
+		 * @param politicaFluxoCheio
+		 * @return Builder
+		 */
+		public Builder politicaFluxoCheio(PoliticaFluxoCheio politicaFluxoCheio) {
+			this.politicaFluxoCheio = checkNotNull(politicaFluxoCheio, "Politica nao deve ser null");
+			return this;
+		}
+
+		/**
+		 * Define as métricas que recebem as medições das operações dos carrinhos criados pela factory e da própria
+		 * factory, por exemplo {@link MetricasEmMemoria}.
+		 *
+		 * @param metricas
+		 * @return Builder
+		 */
+		public Builder metricas(MetricasCarrinhos metricas) {
+			this.metricas = checkNotNull(metricas, "Metricas nao devem ser null");
+			return this;
+		}
+
+		/**
+		 * Faz com que as linhas dos carrinhos sejam mantidas fora do heap, em registros de tamanho fixo com o código do
+		 * produto, o valor unitário em centavos e a quantidade, reduzindo o heap ocupado, e portanto o trabalho do
+		 * coletor, a poucos objetos por carrinho. Os itens são montados a partir dos registros a cada leitura. Cada
+		 * carrinho mantém fora do heap até 64 linhas, percorridas a cada localização de um produto; ao receber mais
+		 * linhas que isso, o carrinho as transfere para o heap.
+		 *
+		 * Os produtos são obtidos do catálogo pelo código, de modo que, sem {@link #catalogo(CatalogoProdutos)}, a
+		 * factory usa um catálogo próprio. Carrinhos invalidados ou expirados voltam a manter as linhas no heap.
+		 *
+		 * @return Builder
+		 */
+		public Builder armazenamentoForaDoHeap() {
+			this.foraDoHeap = true;
+			return this;
+		}
+
+		/**
+		 * Faz com que a factory mantenha um índice do código de cada produto para os carrinhos que têm um item dele,
+		 * atualizado a cada item criado ou removido, para que {@link CarrinhoComprasFactory#alterarValorUnitario} e
+		 * {@link CarrinhoComprasFactory#removerProduto} percorram apenas esses carrinhos, e não todos. Em troca, as
+		 * adições que criam itens e as remoções ficam mais lentas, e cada item ocupa uma entrada a mais no heap.
+		 *
+		 * @return Builder
+		 */
+		public Builder indiceProdutos() {
+			this.indiceProdutos = true;
+			return this;
+		}
+
+		/**
+		 * Faz com que a factory acompanhe os produtos colocados em carrinhos com mais frequência (veja
+		 * {@link CarrinhoComprasFactory#getProdutosMaisColocados()}), estimando a frequência de colocação de todos os
+		 * produtos com um Count-Min sketch de tamanho fixo e mantendo apenas os mais frequentes.
+		 *
+		 * Para que a lista reflita o momento atual, as frequências são reduzidas à metade a cada {@code janela} itens
+		 * criados; quanto menor a janela, mais rápido produtos que deixaram de ser colocados em carrinhos saem da
+		 * lista.
+		 *
+		 * @param quantidade tamanho da lista, de 1 a 1000
+		 * @param janela quantidade de itens criados entre duas reduções
+		 * @return Builder
+		 */
+		public Builder produtosMaisColocados(int quantidade, long janela) {
+			checkArgument(quantidade > 0 && quantidade <= 1_000, "Quantidade deve estar entre 1 e 1000");
+			checkArgument(janela > 0, "Janela deve ser maior que zero");
+			this.quantidadeProdutosMaisColocados = quantidade;
+			this.janelaProdutosMaisColocados = janela;
+			return this;
+		}
+
+		/**
+		 * Faz com que a factory mantenha a distribuição dos valores totais dos carrinhos, atualizada a cada alteração,
+		 * criação e invalidação, da qual {@link CarrinhoComprasFactory#getPercentilValorTotal(double)} obtém os
+		 * percentis. Em troca, as alterações que mudam o valor total de faixa atualizam dois contadores a mais.
+		 *
+		 * @return Builder
+		 */
+		public Builder distribuicaoValores() {
+			this.distribuicaoValores = true;
+			return this;
+		}
+
+		/**
+		 * Faz com que a factory mantenha o ticket médio dos carrinhos com atividade recente (veja
+		 * {@link CarrinhoComprasFactory#getValorTicketMedio(Duration)}) em uma roda com a quantidade informada de
+		 * intervalos, medidos pelo {@link #relogio(Relogio)}. Por exemplo, 60 intervalos de 1 minuto atendem janelas
+		 * de 5, 15 e 60 minutos. Em troca, cada alteração de um carrinho lê o relógio e atualiza ao menos um contador
+		 * a mais.
+		 *
+		 * @param intervalo precisão das janelas
+		 * @param intervalos quantidade de intervalos mantidos; a maior janela é o intervalo vezes essa quantidade
+		 * @return Builder
+		 */
+		public Builder janelaTicketMedio(Duration intervalo, int intervalos) {
+			checkNotNull(intervalo, "Intervalo nao deve ser null");
+			checkArgument(intervalo.toMillis() > 0, "Intervalo deve ser de ao menos 1 ms");
+			checkArgument(intervalos > 0 && intervalos <= 100_000, "Intervalos deve estar entre 1 e 100000");
+			this.intervaloJanela = intervalo;
+			this.intervalosJanela = intervalos;
+			return this;
+		}
+
+		/**
+		 * Faz com que a factory funcione como cache do repositório: apenas os carrinhos usados com mais frequência
+		 * ficam em memória, até que a soma das quantidades de linhas dos carrinhos em memória, contando ao menos uma
+		 * por carrinho, atinja o peso máximo. Acima dele, os carrinhos com menor frequência de acesso recente, segundo
+		 * a política W-TinyLFU, saem da memória. Como nas demais limpezas, isso é feito durante as chamadas à factory,
+		 * e o limite pode ser excedido pelos carrinhos carregados ou alterados desde a última delas.
+		 *
+		 * Os carrinhos alterados desde que foram carregados são gravados no repositório depois de sair da memória, por
+		 * uma thread própria, e não por quem os despejou nem sob o lock do carrinho; a factory deve ser fechada com
+		 * {@link CarrinhoComprasFactory#close()} para gravar os que ainda estiverem pendentes, inclusive os alterados
+		 * que continuam em memória.
+		 *
+		 * {@link CarrinhoComprasFactory#criar(String)} carrega do repositório o carrinho que não está em memória, uma
+		 * única vez mesmo com chamadas concorrentes para o mesmo cliente, e {@link CarrinhoComprasFactory#invalidar}
+		 * o remove também do repositório. Ambos acessam o repositório com exclusividade por cliente, mas fora do lock
+		 * do mapa, de modo que um repositório lento atrasa apenas as chamadas para o mesmo cliente. Os carrinhos
+		 * retornados não guardam os itens: cada operação deles é executada no carrinho em memória, carregando-o caso
+		 * tenha sido despejado, de modo que as referências continuam válidas depois do despejo.
+		 *
+		 * O ticket médio, os percentis e a janela do ticket médio consideram todos os carrinhos, inclusive os que estão
+		 * fora da memória, com o valor total que tinham ao sair dela; os carrinhos gravados no repositório antes da
+		 * criação da factory são percorridos uma vez, ao criá-la. As alterações de um produto em todos os carrinhos
+		 * consideram apenas os carrinhos em memória. Não pode ser combinado com a expiração nem com a persistência.
+		 *
+		 * @param repositorio
+		 * @param pesoMaximo
+		 * @return Builder
+		 */
+		public Builder cache(RepositorioCarrinhos repositorio, long pesoMaximo) {
+			checkNotNull(repositorio, "Repositorio nao deve ser null");
+			checkArgument(pesoMaximo > 0, "Peso maximo deve ser maior que zero");
+			this.repositorio = repositorio;
+			this.pesoMaximo = pesoMaximo;
+			return this;
+		}
+
+		public CarrinhoComprasFactory build() {
+			checkState(Objects.nonNull(inatividade) || limiteCarrinhos == Integer.MAX_VALUE,
+					"Limite de carrinhos requer a expiracao habilitada");
+			checkState(Objects.isNull(repositorio) || (Objects.isNull(inatividade) && Objects.isNull(diretorio)),
+					"Cache de carrinhos nao pode ser combinado com expiracao ou persistencia");
+			return new CarrinhoComprasFactory(this);
+		}
+	}
 }
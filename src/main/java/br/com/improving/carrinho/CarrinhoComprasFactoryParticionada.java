@@ -0,0 +1,209 @@
+package br.com.improving.carrinho;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
+/**
+ * Distribui os carrinhos dos clientes entre partições por hashing consistente.
+ *
+ * Cada partição ocupa vários pontos de um anel de hashes, e o cliente pertence à partição do primeiro ponto igual ou
+ * posterior ao hash da sua identificação. Ao adicionar uma partição, apenas os clientes cujos hashes passam a cair nos
+ * pontos da nova partição mudam de dono; os carrinhos desses clientes são copiados para ela no formato de
+ * {@link CodecCarrinhoCompras} e removidos da partição anterior.
+ *
+ * O ticket médio é calculado somando a soma dos valores totais e a quantidade de carrinhos de cada partição, sem
+ * transferir os carrinhos; os percentis dos valores, combinando as distribuições dos valores de cada partição.
+ *
+ * É segura para uso concorrente. Os carrinhos retornados por {@link #criar(String)} não guardam os itens: cada
+ * operação sobre eles é repassada à partição dona do cliente no momento da chamada, e aguarda o rebalanceamento em
+ * andamento, como as operações da própria factory. Assim, nenhuma alteração ocorre durante a transferência de um
+ * carrinho, e as referências obtidas antes dela passam a alterar o carrinho na nova partição.
+ */
+public class CarrinhoComprasFactoryParticionada implements ServicoCarrinhosCompras {
+
+	private static final int PONTOS_POR_PARTICAO = 128;
+	private static final HashFunction HASH = Hashing.murmur3_32_fixed();
+
+	private final ReentrantReadWriteLock lock;
+	private final Map<String, ParticaoCarrinhos> particoes;
+	private final int pontosPorParticao;
+	private Anel anel;
+
+	public CarrinhoComprasFactoryParticionada() {
+		this(PONTOS_POR_PARTICAO);
+	}
+
+	/**
+	 * @param pontosPorParticao pontos de cada partição no anel; quanto mais pontos, mais uniforme a distribuição
+	 */
+	public CarrinhoComprasFactoryParticionada(int pontosPorParticao) {
+		checkArgument(pontosPorParticao > 0, "Pontos por particao deve ser maior que zero");
+		this.lock = new ReentrantReadWriteLock();
+		this.particoes = new LinkedHashMap<>();
+		this.pontosPorParticao = pontosPorParticao;
+		this.anel = new Anel(new TreeMap<>(), particoes);
+	}
+
+	/**
+	 * Adiciona uma partição e transfere para ela os carrinhos dos clientes que passam a lhe pertencer.
+	 *
+	 * @param nome identificação estável da partição, que determina os seus pontos no anel
+	 * @param particao
+	 */
+	public void adicionarParticao(String nome, ParticaoCarrinhos particao) {
+		checkNotNull(nome, "Nome nao deve ser null");
+		checkNotNull(particao, "Particao nao deve ser null");
+		lock.writeLock().lock();
+		try {
+			checkArgument(!particoes.containsKey(nome), "Particao ja existente: %s", nome);
+			TreeMap<Integer, String> pontos = new TreeMap<>(anel.pontos);
+			for (int i = 0; i < pontosPorParticao; i++) {
+				// em caso de colisão, o ponto fica com o menor nome, independentemente da ordem de inclusão
+				pontos.merge(hash(nome + "#" + i), nome, (atual, novo) -> atual.compareTo(novo) <= 0 ? atual : novo);
+			}
+			Map<String, ParticaoCarrinhos> novasParticoes = new LinkedHashMap<>(particoes);
+			novasParticoes.put(nome, particao);
+			Anel novoAnel = new Anel(pontos, novasParticoes);
+
+			for (ParticaoCarrinhos origem : particoes.values()) {
+				for (String identificacaoCliente : origem.getIdentificacoesClientes()) {
+					if (novoAnel.particao(identificacaoCliente) == particao) {
+						transferir(identificacaoCliente, origem, particao);
+					}
+				}
+			}
+			particoes.put(nome, particao);
+			anel = novoAnel;
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Copia o carrinho antes de removê-lo da origem, de modo que uma falha no meio da transferência deixe o carrinho
+	 * duplicado, e não perdido. Como a importação substitui o carrinho no destino, repetir a transferência não duplica
+	 * as quantidades.
+	 */
+	private static void transferir(String identificacaoCliente, ParticaoCarrinhos origem, ParticaoCarrinhos destino) {
+		byte[] carrinhoCodificado = origem.exportar(identificacaoCliente);
+		if (Objects.nonNull(carrinhoCodificado)) {
+			destino.importar(identificacaoCliente, carrinhoCodificado);
+			origem.invalidar(identificacaoCliente);
+		}
+	}
+
+	/**
+	 * Cria o carrinho do cliente na partição dona dele, caso não exista, e retorna uma referência que repassa as
+	 * operações à partição dona do cliente a cada chamada.
+	 *
+	 * @param identificacaoCliente
+	 * @return CarrinhoCompras
+	 */
+	@Override
+	public CarrinhoCompras criar(String identificacaoCliente) {
+		checkNotNull(identificacaoCliente, "Identificacao cliente nao deve ser null");
+		executar(identificacaoCliente, particao -> particao.criar(identificacaoCliente));
+		return new CarrinhoCompras(new CarrinhoParticionado(this, identificacaoCliente));
+	}
+
+	/**
+	 * Executa a operação na partição dona do cliente, aguardando o rebalanceamento em andamento.
+	 */
+	<T> T executar(String identificacaoCliente, Function<ParticaoCarrinhos, T> operacao) {
+		lock.readLock().lock();
+		try {
+			return operacao.apply(anel.particao(identificacaoCliente));
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public boolean invalidar(String identificacaoCliente) {
+		checkNotNull(identificacaoCliente, "Identificacao cliente nao deve ser null");
+		return executar(identificacaoCliente, particao -> particao.invalidar(identificacaoCliente));
+	}
+
+	@Override
+	public BigDecimal getValorTicketMedio() {
+		lock.readLock().lock();
+		try {
+			ResumoTicketMedio resumo = ResumoTicketMedio.VAZIO;
+			for (ParticaoCarrinhos particao : particoes.values()) {
+				resumo = resumo.combinar(particao.getResumoTicketMedio());
+			}
+			return resumo.getValorTicketMedio();
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Retorna o percentil dos valores totais dos carrinhos de todas as partições, com as mesmas regras de
+	 * {@link CarrinhoComprasFactory#getPercentilValorTotal(double)}, combinando as distribuições das partições sem
+	 * transferir os carrinhos. Todas as partições devem manter a distribuição dos valores.
+	 *
+	 * @param percentil entre 0 e 100
+	 * @return BigDecimal
+	 */
+	public BigDecimal getPercentilValorTotal(double percentil) {
+		lock.readLock().lock();
+		try {
+			DistribuicaoValores distribuicao = DistribuicaoValores.VAZIA;
+			for (ParticaoCarrinhos particao : particoes.values()) {
+				distribuicao = distribuicao.combinar(particao.getDistribuicaoValores());
+			}
+			return distribuicao.getPercentil(percentil);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	private static int hash(String valor) {
+		return HASH.hashString(valor, StandardCharsets.UTF_8).asInt();
+	}
+
+	/**
+	 * Anel imutável em arrays ordenados, consultado por busca binária sem alocação.
+	 */
+	private static final class Anel {
+
+		private final TreeMap<Integer, String> pontos;
+		private final int[] hashes;
+		private final ParticaoCarrinhos[] donos;
+
+		private Anel(TreeMap<Integer, String> pontos, Map<String, ParticaoCarrinhos> particoes) {
+			this.pontos = pontos;
+			this.hashes = new int[pontos.size()];
+			this.donos = new ParticaoCarrinhos[pontos.size()];
+			int i = 0;
+			for (Map.Entry<Integer, String> ponto : pontos.entrySet()) {
+				hashes[i] = ponto.getKey();
+				donos[i++] = particoes.get(ponto.getValue());
+			}
+		}
+
+		private ParticaoCarrinhos particao(String identificacaoCliente) {
+			checkState(hashes.length > 0, "Nenhuma particao adicionada");
+			int indice = Arrays.binarySearch(hashes, hash(identificacaoCliente));
+			if (indice < 0) {
+				indice = -indice - 1;
+			}
+			return donos[indice == hashes.length ? 0 : indice];
+		}
+	}
+}
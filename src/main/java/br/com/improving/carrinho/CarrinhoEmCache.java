@@ -0,0 +1,67 @@
+package br.com.improving.carrinho;
+
+import java.math.BigDecimal;
+
+/**
+ * Implementação do carrinho retornado por {@link CarrinhoComprasFactory#criar(String)} com o cache: guarda apenas a
+ * identificação do cliente e executa cada operação no carrinho do cliente em memória no momento da chamada,
+ * carregando-o novamente caso tenha sido despejado (veja {@link CarrinhoComprasFactory#comLock}). Assim, a referência
+ * continua válida depois do despejo, e nenhuma alteração é feita em um carrinho que já saiu da memória.
+ *
+ * As alterações criam novamente o carrinho caso ele tenha sido invalidado, como {@code criar} seguido da alteração; as
+ * remoções e leituras de um carrinho invalidado não o criam.
+ */
+final class CarrinhoEmCache implements Carrinho {
+
+	private final CarrinhoComprasFactory factory;
+	private final String identificacaoCliente;
+
+	CarrinhoEmCache(CarrinhoComprasFactory factory, String identificacaoCliente) {
+		this.factory = factory;
+		this.identificacaoCliente = identificacaoCliente;
+	}
+
+	@Override
+	public void adicionarItem(Produto produto, BigDecimal valorUnitario, int quantidade) {
+		factory.comLock(identificacaoCliente, carrinho -> {
+			carrinho.adicionarItem(produto, valorUnitario, quantidade);
+			return null;
+		});
+	}
+
+	@Override
+	public void aplicarLote(LoteItens lote) {
+		factory.comLock(identificacaoCliente, carrinho -> {
+			carrinho.aplicarLote(lote);
+			return null;
+		});
+	}
+
+	@Override
+	public boolean removerItem(Produto produto) {
+		return factory.existe(identificacaoCliente)
+				&& factory.comLock(identificacaoCliente, carrinho -> carrinho.removerItem(produto));
+	}
+
+	@Override
+	public boolean removerItem(int posicaoItem) {
+		return factory.existe(identificacaoCliente)
+				&& factory.comLock(identificacaoCliente, carrinho -> carrinho.removerItem(posicaoItem));
+	}
+
+	@Override
+	public BigDecimal getValorTotal() {
+		return factory.ler(identificacaoCliente, CarrinhoLocal::getValorTotal,
+				EstadoCarrinhoCompras.VAZIO.getValorTotal());
+	}
+
+	@Override
+	public long getValorTotalCentavos() {
+		return factory.ler(identificacaoCliente, CarrinhoLocal::getValorTotalCentavos, 0L);
+	}
+
+	@Override
+	public EstadoCarrinhoCompras getEstado() {
+		return factory.ler(identificacaoCliente, CarrinhoLocal::getEstado, EstadoCarrinhoCompras.VAZIO);
+	}
+}
@@ -0,0 +1,496 @@
+package br.com.improving.carrinho;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+import br.com.improving.carrinho.exception.NullProdutoException;
+import br.com.improving.carrinho.exception.QuantidadeInvalidaException;
+import br.com.improving.carrinho.exception.ValorUnitarioInvalidoException;
+
+/**
+ * Carrinho mantido em memória nesta JVM: guarda as linhas e o valor total, protegidos por um lock próprio, e notifica
+ * o ouvinte de cada alteração. É a implementação de {@link CarrinhoCompras} criado diretamente e dos carrinhos de
+ * {@link CarrinhoComprasFactory}.
+ */
+final class CarrinhoLocal implements Carrinho {
+
+	private static final long SEM_MEDICAO = Long.MIN_VALUE;
+	private static final long NAO_REMOVIDO = -1L;
+
+	// substituídas por uma cópia no heap, sob o lock, quando o carrinho deixa a factory ou a memória do cache, ou
+	// quando enchem (veja LinhasCarrinho#cheia)
+	private LinhasCarrinho linhas;
+	private final ReentrantLock lock;
+	private final CatalogoProdutos catalogo;
+	private OuvinteCarrinhoCompras ouvinte;
+	// substituída por NENHUMA, sob o lock, quando o carrinho deixa a factory ou a memória do cache; lida também fora
+	// do lock, ao medir as operações
+	private volatile MetricasCarrinhos metricas;
+	private volatile long valorTotalCentavos;
+	// limites usados por aplicarLote para dispensar a simulação; alterados apenas sob o lock
+	private long quantidadeTotal;
+	private long maiorValorUnitarioCentavos;
+	private volatile ValorTotal valorTotal;
+	// substituído sob o lock ao final de cada alteração, com a versão seguinte
+	private volatile EstadoCarrinhoCompras estado;
+
+	CarrinhoLocal() {
+		this(OuvinteCarrinhoCompras.NENHUM, null, MetricasCarrinhos.NENHUMA, new LinhasNoHeap());
+	}
+
+	/**
+	 * @param ouvinte
+	 * @param catalogo catálogo do qual os produtos de novos itens são obtidos, ou null para guardar o produto recebido
+	 * @param metricas
+	 * @param linhas armazenamento das linhas, vazio
+	 */
+	CarrinhoLocal(OuvinteCarrinhoCompras ouvinte, CatalogoProdutos catalogo, MetricasCarrinhos metricas,
+			LinhasCarrinho linhas) {
+		this.linhas = linhas;
+		this.lock = new ReentrantLock();
+		this.catalogo = catalogo;
+		this.ouvinte = ouvinte;
+		this.metricas = metricas;
+		this.valorTotalCentavos = 0L;
+		this.valorTotal = new ValorTotal(0L);
+		this.estado = EstadoCarrinhoCompras.VAZIO;
+	}
+
+	@Override
+	public void adicionarItem(Produto produto, BigDecimal valorUnitario, int quantidade) {
+		long inicio = iniciar(OperacaoCarrinho.ADICIONAR_ITEM);
+
+		validateProduto(produto);
+		validateValorUnitario(valorUnitario);
+		validateQuantidade(quantidade);
+
+		OuvinteCarrinhoCompras notificado;
+		long sequencia;
+		lock.lock();
+		try {
+			notificado = ouvinte;
+			sequencia = adicionar(produto, valorUnitario, quantidade);
+		} finally {
+			lock.unlock();
+		}
+		notificado.aguardar(sequencia);
+		concluir(OperacaoCarrinho.ADICIONAR_ITEM, inicio);
+	}
+
+	/**
+	 * Adiciona o item já validado; deve ser chamado sob o lock. A adição é registrada pelo ouvinte antes de alterar o
+	 * carrinho, de modo que, caso o registro falhe, nada é alterado.
+	 *
+	 * @return sequência a ser aguardada pelo ouvinte depois de liberado o lock
+	 */
+	private long adicionar(Produto produto, BigDecimal valorUnitario, int quantidade) {
+		int linha = linhas.localizar(produto.getCodigo());
+		if (linha < 0) {
+			long valorUnitarioCentavos = Centavos.de(valorUnitario);
+			long deltaCentavos = Centavos.multiplicar(valorUnitarioCentavos, quantidade);
+			long novoValorTotalCentavos = Centavos.somar(valorTotalCentavos, deltaCentavos);
+			long sequencia = ouvinte.registrarAdicao(produto, valorUnitarioCentavos, quantidade);
+			incluir(produto, valorUnitario, valorUnitarioCentavos, quantidade);
+			valorTotalCentavos = novoValorTotalCentavos;
+			quantidadeTotal += quantidade;
+			registrarValorUnitario(valorUnitarioCentavos);
+			publicarEstado();
+			metricas.itensAlterados(linhas.size() - 1, linhas.size());
+			ouvinte.itemAdicionado(produto, valorUnitarioCentavos, quantidade, true, deltaCentavos);
+			return sequencia;
+		}
+		// o valor unitário já convertido é reaproveitado quando a nova adição informa o mesmo valor
+		BigDecimal valorUnitarioAtual = linhas.valorUnitario(linha);
+		long valorUnitarioCentavos = Objects.nonNull(valorUnitarioAtual)
+				&& valorUnitarioAtual.compareTo(valorUnitario) == 0
+				? linhas.valorUnitarioCentavos(linha)
+				: Centavos.de(valorUnitario);
+		int novaQuantidade = Math.addExact(linhas.quantidade(linha), quantidade);
+		long deltaCentavos = Centavos.multiplicar(valorUnitarioCentavos, novaQuantidade)
+				- linhas.valorTotalCentavos(linha);
+		long novoValorTotalCentavos = Centavos.somar(valorTotalCentavos, deltaCentavos);
+		long sequencia = ouvinte.registrarAdicao(produto, valorUnitarioCentavos, quantidade);
+		linhas.alterar(linha, valorUnitario, valorUnitarioCentavos, novaQuantidade);
+		valorTotalCentavos = novoValorTotalCentavos;
+		quantidadeTotal += quantidade;
+		registrarValorUnitario(valorUnitarioCentavos);
+		publicarEstado();
+		ouvinte.itemAdicionado(produto, valorUnitarioCentavos, quantidade, false, deltaCentavos);
+		return sequencia;
+	}
+
+	/**
+	 * Aplica o lote sob uma única aquisição do lock e com uma única atualização do valor total.
+	 */
+	@Override
+	public void aplicarLote(LoteItens lote) {
+		long inicio = iniciar(OperacaoCarrinho.APLICAR_LOTE);
+		checkNotNull(lote, "Lote nao deve ser null");
+		List<LoteItens.Operacao> operacoes = lote.getOperacoes();
+		long[] valoresUnitariosCentavos = new long[operacoes.size()];
+		for (int i = 0; i < operacoes.size(); i++) {
+			LoteItens.Operacao operacao = operacoes.get(i);
+			validateProduto(operacao.produto);
+			if (!operacao.remocao) {
+				validateValorUnitario(operacao.valorUnitario);
+				validateQuantidade(operacao.quantidade);
+				valoresUnitariosCentavos[i] = Centavos.de(operacao.valorUnitario);
+			}
+		}
+
+		OuvinteCarrinhoCompras notificado = OuvinteCarrinhoCompras.NENHUM;
+		long sequencia = 0L;
+		lock.lock();
+		try {
+			if (!cabeSemVerificacao(operacoes, valoresUnitariosCentavos)) {
+				// só lança ArithmeticException, antes de qualquer alteração
+				simularLote(operacoes, valoresUnitariosCentavos);
+			}
+			// registrado antes de qualquer alteração, mesmo que o lote acabe não alterando nenhum item
+			notificado = ouvinte;
+			sequencia = ouvinte.registrarLote(lote, valoresUnitariosCentavos);
+			long novoValorTotalCentavos = valorTotalCentavos;
+			int itensAnteriores = linhas.size();
+			boolean alterou = false;
+			boolean[] criouOuRemoveuLinha = new boolean[operacoes.size()];
+			for (int i = 0; i < operacoes.size(); i++) {
+				LoteItens.Operacao operacao = operacoes.get(i);
+				int linha = linhas.localizar(operacao.produto.getCodigo());
+				if (operacao.remocao) {
+					if (linha >= 0) {
+						criouOuRemoveuLinha[i] = true;
+						alterou = true;
+						novoValorTotalCentavos -= linhas.valorTotalCentavos(linha);
+						quantidadeTotal -= linhas.quantidade(linha);
+						linhas.remover(linha);
+					}
+					continue;
+				}
+				int quantidade = operacao.quantidade;
+				if (linha < 0) {
+					incluir(operacao.produto, operacao.valorUnitario, valoresUnitariosCentavos[i], quantidade);
+					criouOuRemoveuLinha[i] = true;
+				} else if (quantidade == 0 && linhas.valorUnitarioCentavos(linha) == valoresUnitariosCentavos[i]) {
+					// quantidade zero com o mesmo valor unitário: a linha fica como está
+					continue;
+				} else {
+					novoValorTotalCentavos -= linhas.valorTotalCentavos(linha);
+					quantidade += linhas.quantidade(linha);
+					linhas.alterar(linha, operacao.valorUnitario, valoresUnitariosCentavos[i], quantidade);
+				}
+				alterou = true;
+				novoValorTotalCentavos += valoresUnitariosCentavos[i] * quantidade;
+				quantidadeTotal += operacao.quantidade;
+				registrarValorUnitario(valoresUnitariosCentavos[i]);
+			}
+			if (alterou) {
+				long deltaCentavos = novoValorTotalCentavos - valorTotalCentavos;
+				valorTotalCentavos = novoValorTotalCentavos;
+				publicarEstado();
+				if (linhas.size() != itensAnteriores) {
+					metricas.itensAlterados(itensAnteriores, linhas.size());
+				}
+				ouvinte.loteAplicado(lote, valoresUnitariosCentavos, criouOuRemoveuLinha, deltaCentavos);
+			}
+		} finally {
+			lock.unlock();
+		}
+		notificado.aguardar(sequencia);
+		concluir(OperacaoCarrinho.APLICAR_LOTE, inicio);
+	}
+
+	/**
+	 * Verifica, sem consultar os itens, se nenhuma quantidade ou valor do lote pode ultrapassar os limites: nenhuma
+	 * linha pode ter quantidade maior que a soma de todas as quantidades nem valor unitário maior que o maior já visto,
+	 * e o valor total é limitado pelo produto dos dois. Só quando esse limite não basta o lote é simulado item a item.
+	 */
+	private boolean cabeSemVerificacao(List<LoteItens.Operacao> operacoes, long[] valoresUnitariosCentavos) {
+		long quantidadeMaxima = quantidadeTotal;
+		long valorUnitarioMaximo = maiorValorUnitarioCentavos;
+		for (int i = 0; i < operacoes.size(); i++) {
+			quantidadeMaxima += operacoes.get(i).quantidade;
+			valorUnitarioMaximo = Math.max(valorUnitarioMaximo, valoresUnitariosCentavos[i]);
+		}
+		return quantidadeMaxima <= Integer.MAX_VALUE
+				&& (quantidadeMaxima == 0 || valorUnitarioMaximo <= Long.MAX_VALUE / quantidadeMaxima);
+	}
+
+	/**
+	 * Calcula o valor total resultante do lote sem alterar o carrinho, lançando ArithmeticException caso alguma
+	 * quantidade ou valor intermediário não caiba na representação.
+	 */
+	private long simularLote(List<LoteItens.Operacao> operacoes, long[] valoresUnitariosCentavos) {
+		Map<Produto, long[]> simulacao = new HashMap<>();
+		long total = valorTotalCentavos;
+		for (int i = 0; i < operacoes.size(); i++) {
+			LoteItens.Operacao operacao = operacoes.get(i);
+			// {quantidade, valor unitário em centavos}, ou null caso o produto não esteja no carrinho
+			long[] estado = simulacao.containsKey(operacao.produto)
+					? simulacao.get(operacao.produto)
+					: estadoAtual(operacao.produto);
+			if (Objects.nonNull(estado)) {
+				total -= estado[0] * estado[1];
+			}
+			if (operacao.remocao) {
+				simulacao.put(operacao.produto, null);
+				continue;
+			}
+			int quantidade = Objects.isNull(estado)
+					? operacao.quantidade
+					: Math.addExact((int) estado[0], operacao.quantidade);
+			total = Centavos.somar(total, Centavos.multiplicar(valoresUnitariosCentavos[i], quantidade));
+			simulacao.put(operacao.produto, new long[] {quantidade, valoresUnitariosCentavos[i]});
+		}
+		return total;
+	}
+
+	private long[] estadoAtual(Produto produto) {
+		int linha = linhas.localizar(produto.getCodigo());
+		return linha < 0 ? null : new long[] {linhas.quantidade(linha), linhas.valorUnitarioCentavos(linha)};
+	}
+
+	/**
+	 * Inclui a linha do produto; deve ser chamado sob o lock. Linhas cheias são antes passadas para o heap.
+	 */
+	private void incluir(Produto produto, BigDecimal valorUnitario, long valorUnitarioCentavos, int quantidade) {
+		if (linhas.cheia()) {
+			linhas = linhas.noHeap();
+		}
+		linhas.incluir(canonico(produto), valorUnitario, valorUnitarioCentavos, quantidade);
+	}
+
+	private Produto canonico(Produto produto) {
+		return Objects.isNull(catalogo) ? produto : catalogo.canonico(produto);
+	}
+
+	private void registrarValorUnitario(long valorUnitarioCentavos) {
+		if (valorUnitarioCentavos > maiorValorUnitarioCentavos) {
+			maiorValorUnitarioCentavos = valorUnitarioCentavos;
+		}
+	}
+
+	private void validateQuantidade(final int quantidade) {
+		if (quantidade < 0) {
+			throw new QuantidadeInvalidaException();
+		}
+	}
+
+	private void validateValorUnitario(final BigDecimal valorUnitario) {
+		if (Objects.isNull(valorUnitario) || (valorUnitario.compareTo(BigDecimal.ZERO) < 0)) {
+			throw new ValorUnitarioInvalidoException();
+		}
+	}
+
+	private void validateProduto(final Produto produto) {
+		if (Objects.isNull(produto)) {
+			throw new NullProdutoException();
+		}
+	}
+
+	@Override
+	public boolean removerItem(Produto produto) {
+		long inicio = iniciar(OperacaoCarrinho.REMOVER_ITEM);
+		OuvinteCarrinhoCompras notificado;
+		long sequencia;
+		lock.lock();
+		try {
+			notificado = ouvinte;
+			sequencia = Objects.isNull(produto) ? NAO_REMOVIDO : remover(produto);
+		} finally {
+			lock.unlock();
+		}
+		return concluirRemocao(notificado, sequencia, inicio);
+	}
+
+	@Override
+	public boolean removerItem(int posicaoItem) {
+		long inicio = iniciar(OperacaoCarrinho.REMOVER_ITEM);
+		OuvinteCarrinhoCompras notificado;
+		long sequencia;
+		lock.lock();
+		try {
+			notificado = ouvinte;
+			int linha = linhas.naPosicao(posicaoItem);
+			sequencia = linha < 0 ? NAO_REMOVIDO : remover(linhas.produto(linha));
+		} finally {
+			lock.unlock();
+		}
+		return concluirRemocao(notificado, sequencia, inicio);
+	}
+
+	private boolean concluirRemocao(OuvinteCarrinhoCompras notificado, long sequencia, long inicio) {
+		if (sequencia != NAO_REMOVIDO) {
+			notificado.aguardar(sequencia);
+		}
+		concluir(OperacaoCarrinho.REMOVER_ITEM, inicio);
+		return sequencia != NAO_REMOVIDO;
+	}
+
+	/**
+	 * Remove a linha do produto; deve ser chamado sob o lock. Como a adição, a remoção é registrada pelo ouvinte antes
+	 * de alterar o carrinho.
+	 *
+	 * @return sequência a ser aguardada pelo ouvinte depois de liberado o lock, ou {@link #NAO_REMOVIDO} caso o
+	 * produto não esteja no carrinho
+	 */
+	private long remover(Produto produto) {
+		int linha = linhas.localizar(produto.getCodigo());
+		if (linha < 0) {
+			return NAO_REMOVIDO;
+		}
+		long sequencia = ouvinte.registrarRemocao(produto);
+		long deltaCentavos = -linhas.valorTotalCentavos(linha);
+		quantidadeTotal -= linhas.quantidade(linha);
+		linhas.remover(linha);
+		valorTotalCentavos += deltaCentavos;
+		publicarEstado();
+		metricas.itensAlterados(linhas.size() + 1, linhas.size());
+		ouvinte.itemRemovido(produto, deltaCentavos);
+		return sequencia;
+	}
+
+	/**
+	 * Substitui o valor unitário do item do produto, mantendo a quantidade, como uma adição de quantidade zero; caso o
+	 * produto não esteja no carrinho, nada é alterado.
+	 *
+	 * @param produto
+	 * @param valorUnitario
+	 * @return true caso o produto exista no carrinho
+	 */
+	boolean alterarValorUnitario(Produto produto, BigDecimal valorUnitario) {
+		OuvinteCarrinhoCompras notificado;
+		long sequencia;
+		lock.lock();
+		try {
+			if (linhas.localizar(produto.getCodigo()) < 0) {
+				return false;
+			}
+			notificado = ouvinte;
+			sequencia = adicionar(produto, valorUnitario, 0);
+		} finally {
+			lock.unlock();
+		}
+		notificado.aguardar(sequencia);
+		return true;
+	}
+
+	/**
+	 * O valor é mantido incrementalmente a cada alteração do carrinho, portanto a leitura não percorre os itens, e o
+	 * BigDecimal só é criado novamente quando o total muda.
+	 */
+	@Override
+	public BigDecimal getValorTotal() {
+		long inicio = iniciar(OperacaoCarrinho.OBTER_VALOR_TOTAL);
+		long centavos = valorTotalCentavos;
+		ValorTotal cache = valorTotal;
+		if (cache.centavos != centavos) {
+			cache = new ValorTotal(centavos);
+			valorTotal = cache;
+		}
+		concluir(OperacaoCarrinho.OBTER_VALOR_TOTAL, inicio);
+		return cache.valor;
+	}
+
+	@Override
+	public long getValorTotalCentavos() {
+		return valorTotalCentavos;
+	}
+
+	/**
+	 * Retorna a cópia publicada pela última alteração concluída, sem adquirir o lock; enquanto o carrinho não é
+	 * alterado, todas as chamadas retornam a mesma instância.
+	 */
+	@Override
+	public EstadoCarrinhoCompras getEstado() {
+		return estado;
+	}
+
+	/**
+	 * Publica a cópia imutável do carrinho com a versão seguinte; deve ser chamado sob o lock, ao final de cada
+	 * alteração e antes de notificá-la ao ouvinte, de modo que as leituras nunca precisem do lock.
+	 */
+	private void publicarEstado() {
+		estado = new EstadoCarrinhoCompras(estado.getVersao() + 1, linhas.itens(), valorTotalCentavos);
+	}
+
+	/**
+	 * Executa a leitura sob o lock do carrinho, garantindo que nenhuma alteração ocorra durante ela.
+	 *
+	 * @param leitura
+	 * @return resultado da leitura
+	 */
+	<T> T comLock(Supplier<T> leitura) {
+		lock.lock();
+		try {
+			return leitura.get();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Adquire o lock do carrinho, para uma operação que começa fora do carrinho; deve ser seguido de
+	 * {@link #liberar()}.
+	 */
+	void travar() {
+		lock.lock();
+	}
+
+	void liberar() {
+		lock.unlock();
+	}
+
+	/**
+	 * Desliga o carrinho do ouvinte e das métricas atuais e passa as linhas para o heap, de modo que alterações
+	 * posteriores não sejam mais notificadas nem medidas.
+	 *
+	 * @return valor total do carrinho, em centavos, no momento do desligamento
+	 */
+	long desvincular() {
+		lock.lock();
+		try {
+			ouvinte = OuvinteCarrinhoCompras.NENHUM;
+			metricas.carrinhoRemovido(linhas.size());
+			metricas = MetricasCarrinhos.NENHUMA;
+			linhas = linhas.noHeap();
+			return valorTotalCentavos;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @return instante de início da operação, ou {@link #SEM_MEDICAO} caso esta execução não seja medida
+	 */
+	private long iniciar(OperacaoCarrinho operacao) {
+		return metricas.iniciar(operacao) ? System.nanoTime() : SEM_MEDICAO;
+	}
+
+	private void concluir(OperacaoCarrinho operacao, long inicio) {
+		if (inicio != SEM_MEDICAO) {
+			metricas.concluir(operacao, System.nanoTime() - inicio);
+		}
+	}
+
+	/**
+	 * Par imutável de centavos e o BigDecimal correspondente, para que getValorTotal() reaproveite o mesmo objeto
+	 * enquanto o total não muda.
+	 */
+	private static final class ValorTotal {
+
+		private final long centavos;
+		private final BigDecimal valor;
+
+		private ValorTotal(long centavos) {
+			this.centavos = centavos;
+			this.valor = Centavos.paraBigDecimal(centavos);
+		}
+	}
+}
@@ -0,0 +1,68 @@
+package br.com.improving.carrinho;
+
+import java.math.BigDecimal;
+import java.util.Objects;
+
+/**
+ * Implementação do carrinho retornado por {@link CarrinhoComprasFactoryParticionada#criar(String)}: guarda apenas a
+ * identificação do cliente e repassa cada operação à partição que é dona do cliente no momento da chamada. Assim, a
+ * referência continua válida depois que o cliente é transferido para outra partição, e as alterações feitas por ela
+ * nunca ficam na cópia anterior. Não tem itens nem lock próprios.
+ *
+ * As alterações criam novamente o carrinho caso ele tenha sido invalidado, como {@code criar} seguido da alteração; as
+ * leituras de um carrinho invalidado retornam o carrinho vazio, sem criá-lo.
+ */
+final class CarrinhoParticionado implements Carrinho {
+
+	private final CarrinhoComprasFactoryParticionada factory;
+	private final String identificacaoCliente;
+
+	CarrinhoParticionado(CarrinhoComprasFactoryParticionada factory, String identificacaoCliente) {
+		this.factory = factory;
+		this.identificacaoCliente = identificacaoCliente;
+	}
+
+	@Override
+	public void adicionarItem(Produto produto, BigDecimal valorUnitario, int quantidade) {
+		factory.executar(identificacaoCliente, particao -> {
+			particao.adicionarItem(identificacaoCliente, produto, valorUnitario, quantidade);
+			return null;
+		});
+	}
+
+	@Override
+	public void aplicarLote(LoteItens lote) {
+		factory.executar(identificacaoCliente, particao -> {
+			particao.aplicarLote(identificacaoCliente, lote);
+			return null;
+		});
+	}
+
+	@Override
+	public boolean removerItem(Produto produto) {
+		return factory.executar(identificacaoCliente, particao -> particao.removerItem(identificacaoCliente, produto));
+	}
+
+	@Override
+	public boolean removerItem(int posicaoItem) {
+		return factory.executar(identificacaoCliente,
+				particao -> particao.removerItem(identificacaoCliente, posicaoItem));
+	}
+
+	@Override
+	public BigDecimal getValorTotal() {
+		return getEstado().getValorTotal();
+	}
+
+	@Override
+	public long getValorTotalCentavos() {
+		return getEstado().getValorTotalCentavos();
+	}
+
+	@Override
+	public EstadoCarrinhoCompras getEstado() {
+		EstadoCarrinhoCompras estado = factory.executar(identificacaoCliente,
+				particao -> particao.getEstado(identificacaoCliente));
+		return Objects.isNull(estado) ? EstadoCarrinhoCompras.VAZIO : estado;
+	}
+}
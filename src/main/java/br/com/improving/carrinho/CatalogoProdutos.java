@@ -0,0 +1,66 @@
+package br.com.improving.carrinho;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Catálogo que mantém uma única instância de {@link Produto} por código.
+ *
+ * Configurado na factory (veja {@link CarrinhoComprasFactory.Builder#catalogo(CatalogoProdutos)}), faz com que todos
+ * os carrinhos guardem a mesma instância de cada produto, em vez de uma cópia por item criada por quem chama
+ * adicionarItem. Como produtos são iguais quando têm o mesmo código, a instância registrada primeiro para um código é
+ * a que permanece, inclusive a sua descrição.
+ *
+ * É seguro para uso concorrente.
+ */
+public final class CatalogoProdutos {
+
+	private final ConcurrentMap<Long, Produto> produtos;
+
+	public CatalogoProdutos() {
+		this.produtos = new ConcurrentHashMap<>();
+	}
+
+	/**
+	 * Retorna o produto registrado para o código, registrando um novo com a descrição informada caso não exista.
+	 *
+	 * @param codigo
+	 * @param descricao
+	 * @return Produto
+	 */
+	public Produto produto(Long codigo, String descricao) {
+		checkNotNull(codigo, "Codigo nao deve ser null");
+		Produto registrado = produtos.get(codigo);
+		return Objects.nonNull(registrado) ? registrado : canonico(new Produto(codigo, descricao));
+	}
+
+	/**
+	 * Retorna a instância registrada para o código do produto, registrando o próprio produto caso não exista.
+	 *
+	 * @param produto
+	 * @return Produto
+	 */
+	public Produto canonico(Produto produto) {
+		checkNotNull(produto, "Produto nao deve ser null");
+		Produto registrado = produtos.get(produto.getCodigo());
+		if (Objects.nonNull(registrado)) {
+			return registrado;
+		}
+		registrado = produtos.putIfAbsent(produto.getCodigo(), produto);
+		return Objects.isNull(registrado) ? produto : registrado;
+	}
+
+	/**
+	 * @return produto registrado para o código, ou null caso não exista
+	 */
+	Produto registrado(long codigo) {
+		return produtos.get(codigo);
+	}
+
+	public int size() {
+		return produtos.size();
+	}
+}
@@ -0,0 +1,47 @@
+package br.com.improving.carrinho;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Representação monetária em ponto fixo: valores são mantidos como quantidade de centavos em um long.
+ *
+ * É usada internamente por {@link Item}, {@link CarrinhoCompras} e {@link CarrinhoComprasFactory} para evitar a
+ * alocação de BigDecimal a cada cálculo. As operações lançam ArithmeticException quando o resultado não cabe em um
+ * long, em vez de transbordar silenciosamente.
+ */
+final class Centavos {
+
+	private static final int ESCALA = 2;
+
+	private Centavos() {
+	}
+
+	/**
+	 * Converte o valor para centavos, truncando as casas decimais excedentes da mesma forma que {@link Item}.
+	 *
+	 * @param valor
+	 * @return long
+	 */
+	static long de(BigDecimal valor) {
+		return valor.setScale(ESCALA, RoundingMode.DOWN).unscaledValue().longValueExact();
+	}
+
+	/**
+	 * Converte os centavos para um BigDecimal com duas casas decimais.
+	 *
+	 * @param centavos
+	 * @return BigDecimal
+	 */
+	static BigDecimal paraBigDecimal(long centavos) {
+		return BigDecimal.valueOf(centavos, ESCALA);
+	}
+
+	static long multiplicar(long centavos, int quantidade) {
+		return Math.multiplyExact(centavos, (long) quantidade);
+	}
+
+	static long somar(long centavos, long outrosCentavos) {
+		return Math.addExact(centavos, outrosCentavos);
+	}
+}
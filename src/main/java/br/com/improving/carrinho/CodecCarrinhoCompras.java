@@ -0,0 +1,254 @@
+package br.com.improving.carrinho;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Formato binário compacto e versionado para {@link CarrinhoCompras}, {@link Item} e {@link Produto}.
+ *
+ * Todo conteúdo começa pelo byte de versão. Inteiros são gravados como varint (códigos de produto em zigzag, por
+ * admitirem valores negativos), valores em centavos e quantidades não usam mais bytes do que o necessário, e cada
+ * descrição aparece uma única vez por carrinho, referenciada pelos itens por índice. Os itens são gravados na ordem de
+ * inclusão, de modo que as posições usadas em {@link CarrinhoCompras#removerItem(int)} são preservadas.
+ *
+ * A decodificação lê diretamente do ByteBuffer, sem cópia intermediária quando ele é baseado em array, e reaproveita
+ * as descrições já decodificadas por este codec, para que carrinhos recebidos com os mesmos produtos não dupliquem as
+ * Strings.
+ *
+ * É segura para uso concorrente. Conteúdo truncado resulta em BufferUnderflowException e conteúdo de versão
+ * desconhecida em IllegalArgumentException.
+ */
+public final class CodecCarrinhoCompras {
+
+	static final byte VERSAO = 1;
+
+	private static final int LIMITE_DESCRICOES_INTERNADAS = 1 << 16;
+
+	private final ConcurrentMap<String, String> descricoes;
+	private final CatalogoProdutos catalogo;
+
+	public CodecCarrinhoCompras() {
+		this.descricoes = new ConcurrentHashMap<>();
+		this.catalogo = null;
+	}
+
+	/**
+	 * Codec cujos produtos decodificados são obtidos do catálogo, em vez de novas instâncias.
+	 *
+	 * @param catalogo
+	 */
+	public CodecCarrinhoCompras(CatalogoProdutos catalogo) {
+		this.descricoes = new ConcurrentHashMap<>();
+		this.catalogo = checkNotNull(catalogo, "Catalogo nao deve ser null");
+	}
+
+	/**
+	 * Codifica os itens do carrinho, na ordem de inclusão.
+	 *
+	 * @param carrinhoCompras
+	 * @return bytes codificados
+	 */
+	public byte[] codificar(CarrinhoCompras carrinhoCompras) {
+		checkNotNull(carrinhoCompras, "Carrinho de compras nao deve ser null");
+		Collection<Item> itens = carrinhoCompras.getItens();
+		Map<String, Integer> indices = new HashMap<>();
+		List<byte[]> tabela = new ArrayList<>();
+		int tamanho = 1;
+		for (Item item : itens) {
+			Integer indice = indices.get(item.getProduto().getDescricao());
+			if (Objects.isNull(indice)) {
+				indice = tabela.size();
+				indices.put(item.getProduto().getDescricao(), indice);
+				byte[] descricao = item.getProduto().getDescricao().getBytes(StandardCharsets.UTF_8);
+				tabela.add(descricao);
+				tamanho += tamanhoVarint(descricao.length) + descricao.length;
+			}
+			tamanho += tamanhoVarint(zigzag(item.getProduto().getCodigo())) + tamanhoVarint(indice)
+					+ tamanhoVarint(item.getValorUnitarioCentavos()) + tamanhoVarint(item.getQuantidade());
+		}
+		tamanho += tamanhoVarint(tabela.size()) + tamanhoVarint(itens.size());
+
+		ByteBuffer destino = ByteBuffer.allocate(tamanho);
+		destino.put(VERSAO);
+		escreverVarint(destino, tabela.size());
+		for (byte[] descricao : tabela) {
+			escreverVarint(destino, descricao.length);
+			destino.put(descricao);
+		}
+		escreverVarint(destino, itens.size());
+		for (Item item : itens) {
+			escreverVarint(destino, zigzag(item.getProduto().getCodigo()));
+			escreverVarint(destino, indices.get(item.getProduto().getDescricao()));
+			escreverVarint(destino, item.getValorUnitarioCentavos());
+			escreverVarint(destino, item.getQuantidade());
+		}
+		return destino.array();
+	}
+
+	/**
+	 * Decodifica um carrinho a partir da posição atual do buffer, avançando-a até o fim do conteúdo lido.
+	 *
+	 * @param origem
+	 * @return novo carrinho de compras, com os itens na ordem original
+	 */
+	public CarrinhoCompras decodificar(ByteBuffer origem) {
+		checkNotNull(origem, "Buffer nao deve ser null");
+		lerVersao(origem);
+		String[] tabela = new String[lerInt(origem)];
+		for (int i = 0; i < tabela.length; i++) {
+			tabela[i] = lerDescricao(origem);
+		}
+		CarrinhoCompras carrinhoCompras = new CarrinhoCompras();
+		int quantidadeItens = lerInt(origem);
+		for (int i = 0; i < quantidadeItens; i++) {
+			long codigo = desfazerZigzag(lerVarint(origem));
+			int indice = lerInt(origem);
+			checkArgument(indice < tabela.length, "Indice de descricao invalido");
+			long valorUnitarioCentavos = lerVarint(origem);
+			int quantidade = lerInt(origem);
+			carrinhoCompras.adicionarItem(novoProduto(codigo, tabela[indice]),
+					Centavos.paraBigDecimal(valorUnitarioCentavos), quantidade);
+		}
+		return carrinhoCompras;
+	}
+
+	public byte[] codificar(Item item) {
+		checkNotNull(item, "Item nao deve ser null");
+		byte[] descricao = item.getProduto().getDescricao().getBytes(StandardCharsets.UTF_8);
+		long codigo = zigzag(item.getProduto().getCodigo());
+		ByteBuffer destino = ByteBuffer.allocate(1 + tamanhoVarint(codigo) + tamanhoVarint(descricao.length)
+				+ descricao.length + tamanhoVarint(item.getValorUnitarioCentavos())
+				+ tamanhoVarint(item.getQuantidade()));
+		destino.put(VERSAO);
+		escreverProduto(destino, codigo, descricao);
+		escreverVarint(destino, item.getValorUnitarioCentavos());
+		escreverVarint(destino, item.getQuantidade());
+		return destino.array();
+	}
+
+	public Item decodificarItem(ByteBuffer origem) {
+		checkNotNull(origem, "Buffer nao deve ser null");
+		lerVersao(origem);
+		Produto produto = lerProduto(origem);
+		long valorUnitarioCentavos = lerVarint(origem);
+		checkArgument(valorUnitarioCentavos >= 0, "Valor unitario invalido");
+		return new Item(produto, valorUnitarioCentavos, lerInt(origem));
+	}
+
+	public byte[] codificar(Produto produto) {
+		checkNotNull(produto, "Produto nao deve ser null");
+		byte[] descricao = produto.getDescricao().getBytes(StandardCharsets.UTF_8);
+		long codigo = zigzag(produto.getCodigo());
+		ByteBuffer destino = ByteBuffer.allocate(
+				1 + tamanhoVarint(codigo) + tamanhoVarint(descricao.length) + descricao.length);
+		destino.put(VERSAO);
+		escreverProduto(destino, codigo, descricao);
+		return destino.array();
+	}
+
+	public Produto decodificarProduto(ByteBuffer origem) {
+		checkNotNull(origem, "Buffer nao deve ser null");
+		lerVersao(origem);
+		return lerProduto(origem);
+	}
+
+	private static void escreverProduto(ByteBuffer destino, long codigoZigzag, byte[] descricao) {
+		escreverVarint(destino, codigoZigzag);
+		escreverVarint(destino, descricao.length);
+		destino.put(descricao);
+	}
+
+	private Produto lerProduto(ByteBuffer origem) {
+		long codigo = desfazerZigzag(lerVarint(origem));
+		return novoProduto(codigo, lerDescricao(origem));
+	}
+
+	private Produto novoProduto(long codigo, String descricao) {
+		return Objects.isNull(catalogo) ? new Produto(codigo, descricao) : catalogo.produto(codigo, descricao);
+	}
+
+	private static void lerVersao(ByteBuffer origem) {
+		byte versao = origem.get();
+		checkArgument(versao == VERSAO, "Versao de formato desconhecida: %s", versao);
+	}
+
+	/**
+	 * Lê a descrição diretamente do array do buffer quando possível e devolve a instância já conhecida pelo codec,
+	 * caso exista.
+	 */
+	private String lerDescricao(ByteBuffer origem) {
+		int tamanho = lerInt(origem);
+		if (tamanho > origem.remaining()) {
+			throw new BufferUnderflowException();
+		}
+		String descricao;
+		if (origem.hasArray()) {
+			descricao = new String(origem.array(), origem.arrayOffset() + origem.position(), tamanho,
+					StandardCharsets.UTF_8);
+			origem.position(origem.position() + tamanho);
+		} else {
+			byte[] bytes = new byte[tamanho];
+			origem.get(bytes);
+			descricao = new String(bytes, StandardCharsets.UTF_8);
+		}
+		String conhecida = descricoes.get(descricao);
+		if (Objects.nonNull(conhecida)) {
+			return conhecida;
+		}
+		if (descricoes.size() < LIMITE_DESCRICOES_INTERNADAS) {
+			conhecida = descricoes.putIfAbsent(descricao, descricao);
+		}
+		return Objects.isNull(conhecida) ? descricao : conhecida;
+	}
+
+	static int tamanhoVarint(long valor) {
+		// 7 bits por byte; zero ocupa um byte
+		return Math.max(1, (64 - Long.numberOfLeadingZeros(valor) + 6) / 7);
+	}
+
+	static void escreverVarint(ByteBuffer destino, long valor) {
+		while ((valor & ~0x7FL) != 0) {
+			destino.put((byte) ((valor & 0x7F) | 0x80));
+			valor >>>= 7;
+		}
+		destino.put((byte) valor);
+	}
+
+	static long lerVarint(ByteBuffer origem) {
+		long valor = 0L;
+		for (int deslocamento = 0; deslocamento < 64; deslocamento += 7) {
+			byte b = origem.get();
+			valor |= (long) (b & 0x7F) << deslocamento;
+			if (b >= 0) {
+				return valor;
+			}
+		}
+		throw new IllegalArgumentException("Varint maior que 64 bits");
+	}
+
+	private static int lerInt(ByteBuffer origem) {
+		long valor = lerVarint(origem);
+		checkArgument(valor <= Integer.MAX_VALUE, "Valor maior que o limite de int: %s", valor);
+		return (int) valor;
+	}
+
+	private static long zigzag(long valor) {
+		return (valor << 1) ^ (valor >> 63);
+	}
+
+	private static long desfazerZigzag(long valor) {
+		return (valor >>> 1) ^ -(valor & 1);
+	}
+}
@@ -0,0 +1,86 @@
+package br.com.improving.carrinho;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Executa comandos sobre os carrinhos de forma serializada por cliente: os comandos de um mesmo cliente são executados
+ * um de cada vez, na ordem em que foram enviados, enquanto os comandos de clientes diferentes são executados em
+ * paralelo pelo executor informado.
+ *
+ * Cada cliente com comandos pendentes tem apenas uma referência ao último comando enviado; o próximo comando é
+ * encadeado a ele e só é entregue ao executor quando o anterior termina. Nenhuma thread fica bloqueada à espera do
+ * comando de outra, o que permite usar executores de threads virtuais, cujo custo está nas threads ocupadas, e não
+ * nas criadas. Os comandos em si, porém, bloqueiam sempre que as operações que executam bloqueiam, por exemplo ao
+ * aguardar o lock do carrinho, a gravação do journal ou o repositório de carrinhos despejados. Um comando pode
+ * executar várias operações sobre o carrinho sem que comandos do mesmo cliente se intercalem entre elas.
+ *
+ * Comandos não devem aguardar o resultado de outro comando do mesmo cliente, pois ele só será executado depois.
+ */
+public final class DespachanteCarrinhos {
+
+	private final ServicoCarrinhosCompras servico;
+	private final Executor executor;
+	// último comando de cada cliente com comandos pendentes; removido quando termina sem que outro tenha sido enviado
+	private final ConcurrentMap<String, CompletableFuture<?>> ultimosComandos;
+
+	/**
+	 * @param servico
+	 * @param executor executa os comandos; continua sob responsabilidade de quem o criou
+	 */
+	public DespachanteCarrinhos(ServicoCarrinhosCompras servico, Executor executor) {
+		this.servico = checkNotNull(servico, "Servico nao deve ser null");
+		this.executor = checkNotNull(executor, "Executor nao deve ser null");
+		this.ultimosComandos = new ConcurrentHashMap<>();
+	}
+
+	/**
+	 * Envia um comando sobre o carrinho do cliente, criado caso ainda não exista.
+	 *
+	 * @param identificacaoCliente
+	 * @param comando
+	 * @return resultado do comando, ou a exceção lançada por ele; cancelar o resultado não interrompe o comando
+	 */
+	public <T> CompletableFuture<T> executar(String identificacaoCliente, Function<CarrinhoCompras, T> comando) {
+		checkNotNull(comando, "Comando nao deve ser null");
+		return enfileirar(identificacaoCliente, () -> comando.apply(servico.criar(identificacaoCliente)));
+	}
+
+	/**
+	 * Envia a invalidação do carrinho do cliente, executada depois dos comandos enviados antes dela.
+	 *
+	 * @param identificacaoCliente
+	 * @return resultado de {@link ServicoCarrinhosCompras#invalidar(String)}
+	 */
+	public CompletableFuture<Boolean> invalidar(String identificacaoCliente) {
+		return enfileirar(identificacaoCliente, () -> servico.invalidar(identificacaoCliente));
+	}
+
+	int getClientesComComandosPendentes() {
+		return ultimosComandos.size();
+	}
+
+	private <T> CompletableFuture<T> enfileirar(String identificacaoCliente, Supplier<T> comando) {
+		checkNotNull(identificacaoCliente, "Identificacao cliente nao deve ser null");
+		AtomicReference<CompletableFuture<T>> enviado = new AtomicReference<>();
+		ultimosComandos.compute(identificacaoCliente, (chave, anterior) -> {
+			// o resultado do anterior, inclusive exceções, não interessa ao próximo comando
+			enviado.set(Objects.isNull(anterior)
+					? CompletableFuture.supplyAsync(comando, executor)
+					: anterior.handleAsync((valor, erro) -> comando.get(), executor));
+			return enviado.get();
+		});
+		// fora do compute, pois o comando pode já ter terminado e a remoção ocorreria na mesma thread; quem enviou
+		// recebe o dependente, para que completá-lo ou cancelá-lo não libere o próximo comando antes da hora
+		CompletableFuture<T> futuro = enviado.get();
+		return futuro.whenComplete((valor, erro) -> ultimosComandos.remove(identificacaoCliente, futuro));
+	}
+}
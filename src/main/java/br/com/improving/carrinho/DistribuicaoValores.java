@@ -0,0 +1,69 @@
+package br.com.improving.carrinho;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+
+/**
+ * Distribuição dos valores totais dos carrinhos de uma partição: a quantidade de carrinhos em cada faixa de valores,
+ * com faixas de largura de até 1/128 do valor.
+ *
+ * Os percentis são obtidos das faixas, sem ordenar os valores, e nunca são menores que o valor exato nem o excedem em
+ * mais de 1/128 (cerca de 0,8%). Distribuições de partições diferentes são combinadas somando as quantidades de cada
+ * faixa, com o mesmo resultado de uma distribuição de todos os carrinhos juntos.
+ */
+public final class DistribuicaoValores {
+
+	static final int BITS_SUBFAIXA = 7;
+
+	public static final DistribuicaoValores VAZIA =
+			new DistribuicaoValores(new long[Histograma.tamanho(BITS_SUBFAIXA)]);
+
+	private final long[] contagens;
+
+	/**
+	 * @param contagens quantidade de carrinhos em cada faixa, como retornada por {@link #getContagens()}
+	 */
+	public DistribuicaoValores(long[] contagens) {
+		checkNotNull(contagens, "Contagens nao devem ser null");
+		checkArgument(contagens.length == Histograma.tamanho(BITS_SUBFAIXA), "Quantidade de faixas invalida");
+		this.contagens = contagens.clone();
+	}
+
+	/**
+	 * @return cópia da quantidade de carrinhos em cada faixa, por exemplo para transferir a distribuição entre nós
+	 */
+	public long[] getContagens() {
+		return contagens.clone();
+	}
+
+	/**
+	 * @return quantidade de carrinhos
+	 */
+	public long getQuantidade() {
+		return Arrays.stream(contagens).sum();
+	}
+
+	/**
+	 * @param outra
+	 * @return distribuição com os carrinhos de ambas
+	 */
+	public DistribuicaoValores combinar(DistribuicaoValores outra) {
+		long[] combinadas = contagens.clone();
+		for (int i = 0; i < combinadas.length; i++) {
+			combinadas[i] += outra.contagens[i];
+		}
+		return new DistribuicaoValores(combinadas);
+	}
+
+	/**
+	 * @param percentil entre 0 e 100
+	 * @return valor total abaixo do qual está o percentil dos carrinhos, com duas casas decimais, ou zero caso não
+	 * haja carrinhos
+	 */
+	public BigDecimal getPercentil(double percentil) {
+		return Centavos.paraBigDecimal(Histograma.percentil(contagens, BITS_SUBFAIXA, percentil));
+	}
+}
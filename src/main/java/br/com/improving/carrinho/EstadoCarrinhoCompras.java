@@ -0,0 +1,48 @@
+package br.com.improving.carrinho;
+
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Cópia imutável de um carrinho de compras em um instante: os itens, na ordem de inclusão, e o valor total
+ * correspondente a exatamente esses itens.
+ *
+ * A versão aumenta a cada alteração do carrinho; dois estados do mesmo carrinho com a mesma versão têm o mesmo
+ * conteúdo.
+ */
+public final class EstadoCarrinhoCompras {
+
+	static final EstadoCarrinhoCompras VAZIO = new EstadoCarrinhoCompras(0L, Collections.emptyList(), 0L);
+
+	private final long versao;
+	private final List<Item> itens;
+	private final long valorTotalCentavos;
+	private final BigDecimal valorTotal;
+
+	EstadoCarrinhoCompras(long versao, List<Item> itens, long valorTotalCentavos) {
+		this.versao = versao;
+		this.itens = Collections.unmodifiableList(itens);
+		this.valorTotalCentavos = valorTotalCentavos;
+		this.valorTotal = Centavos.paraBigDecimal(valorTotalCentavos);
+	}
+
+	public long getVersao() {
+		return versao;
+	}
+
+	/**
+	 * @return itens na ordem de inclusão; a lista não pode ser alterada
+	 */
+	public List<Item> getItens() {
+		return itens;
+	}
+
+	public BigDecimal getValorTotal() {
+		return valorTotal;
+	}
+
+	long getValorTotalCentavos() {
+		return valorTotalCentavos;
+	}
+}
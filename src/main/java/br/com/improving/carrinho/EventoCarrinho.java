@@ -0,0 +1,55 @@
+package br.com.improving.carrinho;
+
+import java.math.BigDecimal;
+
+/**
+ * Alteração de um carrinho da factory, entregue aos assinantes (veja {@link AssinanteEventosCarrinho}).
+ *
+ * Produto, valor unitário e quantidade só são informados nos eventos de item; a quantidade é a adicionada pela
+ * operação, não a quantidade final do item.
+ */
+public final class EventoCarrinho {
+
+	private final TipoEventoCarrinho tipo;
+	private final String identificacaoCliente;
+	private final Produto produto;
+	private final long valorUnitarioCentavos;
+	private final int quantidade;
+
+	EventoCarrinho(TipoEventoCarrinho tipo, String identificacaoCliente, Produto produto, long valorUnitarioCentavos,
+			int quantidade) {
+		this.tipo = tipo;
+		this.identificacaoCliente = identificacaoCliente;
+		this.produto = produto;
+		this.valorUnitarioCentavos = valorUnitarioCentavos;
+		this.quantidade = quantidade;
+	}
+
+	public TipoEventoCarrinho getTipo() {
+		return tipo;
+	}
+
+	public String getIdentificacaoCliente() {
+		return identificacaoCliente;
+	}
+
+	/**
+	 * @return produto do item, ou null nos eventos de carrinho
+	 */
+	public Produto getProduto() {
+		return produto;
+	}
+
+	/**
+	 * @return valor unitário adicionado, ou null nos eventos que não são de adição
+	 */
+	public BigDecimal getValorUnitario() {
+		return tipo == TipoEventoCarrinho.ITEM_ADICIONADO || tipo == TipoEventoCarrinho.ITEM_ALTERADO
+				? Centavos.paraBigDecimal(valorUnitarioCentavos)
+				: null;
+	}
+
+	public int getQuantidade() {
+		return quantidade;
+	}
+}
@@ -0,0 +1,162 @@
+package br.com.improving.carrinho;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Roda de tempo (timer wheel) que remove carrinhos inativos e mantém a quantidade de carrinhos abaixo do limite.
+ *
+ * Cada registro é agendado no balde correspondente ao instante em que expiraria. Acessos posteriores apenas atualizam
+ * o último acesso do registro; quando o balde é processado, registros que foram acessados nesse meio tempo são
+ * reagendados em vez de removidos. Assim a limpeza nunca percorre todos os carrinhos: cada chamada processa apenas
+ * os baldes cujo tempo já passou, e o custo é amortizado entre as operações da factory.
+ *
+ * Apenas uma thread processa a roda por vez; as demais seguem sem esperar.
+ */
+class ExpiracaoCarrinhos {
+
+	private static final int BALDES = 64;
+	private static final int MASCARA = BALDES - 1;
+
+	/**
+	 * Remove o registro da factory, retornando false caso ele já tenha sido removido por outro caminho.
+	 */
+	@FunctionalInterface
+	interface Remocao {
+
+		boolean remover(RegistroCarrinho registro, MotivoExpiracao motivo);
+	}
+
+	private final long inatividadeMillis;
+	private final int limiteCarrinhos;
+	private final Relogio relogio;
+	private final Remocao remocao;
+	private final long tickMillis;
+	private final Queue<RegistroCarrinho>[] baldes;
+	private final ReentrantLock lock;
+	private volatile long ultimoTick;
+
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	ExpiracaoCarrinhos(Duration inatividade, int limiteCarrinhos, Relogio relogio, Remocao remocao) {
+		checkArgument(!inatividade.isNegative() && !inatividade.isZero(), "Inatividade deve ser positiva");
+		checkArgument(limiteCarrinhos > 0, "Limite de carrinhos deve ser maior que zero");
+		this.inatividadeMillis = inatividade.toMillis();
+		this.limiteCarrinhos = limiteCarrinhos;
+		this.relogio = relogio;
+		this.remocao = remocao;
+		// a roda cobre duas vezes a inatividade, então um agendamento nunca dá a volta completa
+		this.tickMillis = Math.max(1L, inatividadeMillis / (BALDES / 2));
+		this.baldes = new Queue[BALDES];
+		for (int i = 0; i < BALDES; i++) {
+			baldes[i] = new ConcurrentLinkedQueue<>();
+		}
+		this.lock = new ReentrantLock();
+		this.ultimoTick = relogio.agoraEmMillis() / tickMillis;
+	}
+
+	/**
+	 * Agenda um registro recém-criado.
+	 */
+	void agendar(RegistroCarrinho registro) {
+		long agora = relogio.agoraEmMillis();
+		registro.acessar(agora);
+		enfileirar(registro, tickDeExpiracao(agora), ultimoTick + 1);
+	}
+
+	void acessar(RegistroCarrinho registro) {
+		registro.acessar(relogio.agoraEmMillis());
+	}
+
+	/**
+	 * Processa os baldes vencidos e, se a quantidade de carrinhos passar do limite, remove os menos usados.
+	 *
+	 * @param quantidadeCarrinhos quantidade atual de carrinhos na factory
+	 */
+	void manter(int quantidadeCarrinhos) {
+		long agora = relogio.agoraEmMillis();
+		long tickAtual = agora / tickMillis;
+		if (tickAtual <= ultimoTick && quantidadeCarrinhos <= limiteCarrinhos) {
+			return;
+		}
+		if (!lock.tryLock()) {
+			return;
+		}
+		try {
+			long primeiro = Math.max(ultimoTick + 1, tickAtual - MASCARA);
+			for (long tick = primeiro; tick <= tickAtual; tick++) {
+				expirarBalde(tick, tickAtual, agora);
+			}
+			if (tickAtual > ultimoTick) {
+				ultimoTick = tickAtual;
+			}
+			int excedentes = quantidadeCarrinhos - limiteCarrinhos;
+			if (excedentes > 0) {
+				removerExcedentes(excedentes);
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private void expirarBalde(long tick, long tickAtual, long agora) {
+		for (RegistroCarrinho registro : esvaziar(tick)) {
+			if (!registro.isAtivo()) {
+				continue;
+			}
+			if (agora - registro.getUltimoAcesso() >= inatividadeMillis) {
+				remocao.remover(registro, MotivoExpiracao.INATIVIDADE);
+			} else {
+				enfileirar(registro, tickDeExpiracao(registro.getUltimoAcesso()), tickAtual + 1);
+			}
+		}
+	}
+
+	/**
+	 * Percorre os baldes na ordem em que expirariam, removendo primeiro os registros com acesso mais antigo. Registros
+	 * acessados depois do agendamento são movidos para o balde correto e reconsiderados quando ele for alcançado.
+	 */
+	private void removerExcedentes(int excedentes) {
+		long primeiro = ultimoTick + 1;
+		for (long tick = primeiro; excedentes > 0 && tick < primeiro + BALDES; tick++) {
+			List<RegistroCarrinho> registros = esvaziar(tick);
+			registros.sort(Comparator.comparingLong(RegistroCarrinho::getUltimoAcesso));
+			for (RegistroCarrinho registro : registros) {
+				if (!registro.isAtivo()) {
+					continue;
+				}
+				long tickDeExpiracao = tickDeExpiracao(registro.getUltimoAcesso());
+				if (excedentes > 0 && tickDeExpiracao <= tick) {
+					if (remocao.remover(registro, MotivoExpiracao.LIMITE_CARRINHOS)) {
+						excedentes--;
+					}
+				} else {
+					enfileirar(registro, tickDeExpiracao, tick);
+				}
+			}
+		}
+	}
+
+	private List<RegistroCarrinho> esvaziar(long tick) {
+		Queue<RegistroCarrinho> balde = baldes[(int) (tick & MASCARA)];
+		List<RegistroCarrinho> registros = new ArrayList<>();
+		for (RegistroCarrinho registro = balde.poll(); registro != null; registro = balde.poll()) {
+			registros.add(registro);
+		}
+		return registros;
+	}
+
+	private void enfileirar(RegistroCarrinho registro, long tick, long tickMinimo) {
+		baldes[(int) (Math.max(tick, tickMinimo) & MASCARA)].add(registro);
+	}
+
+	private long tickDeExpiracao(long ultimoAcesso) {
+		return (ultimoAcesso + inatividadeMillis) / tickMillis + 1;
+	}
+}
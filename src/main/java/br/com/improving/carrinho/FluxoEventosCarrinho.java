@@ -0,0 +1,203 @@
+package br.com.improving.carrinho;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Buffer circular limitado que leva os eventos dos carrinhos aos assinantes.
+ *
+ * Quem publica reserva a próxima sequência com um CAS, grava o evento no slot correspondente e marca o slot com a
+ * sequência, sem locks nem espera enquanto houver espaço. Cada assinante tem uma thread que lê, na ordem, todos os
+ * slots já marcados a partir da sua posição, até o tamanho máximo do lote, e só então avança a posição, liberando os
+ * slots. Uma sequência só pode ser reservada quando o slot que ela ocupa já foi liberado por todos os assinantes; caso
+ * contrário o buffer está cheio e a {@link PoliticaFluxoCheio} decide entre descartar o evento e aguardar.
+ *
+ * Threads de assinantes sem eventos verificam novamente algumas vezes, cedendo o processador entre as verificações,
+ * e então ficam paradas até que a publicação as acorde: sem eventos, não consomem processador. A publicação só acorda
+ * as threads que sinalizaram que vão parar, portanto, sob carga, não faz chamadas ao sistema.
+ */
+final class FluxoEventosCarrinho implements AutoCloseable {
+
+	private static final long ESPERA_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+	// verificações sem eventos antes que a thread do assinante pare
+	private static final int VERIFICACOES_ANTES_DE_PARAR = 64;
+
+	private final EventoCarrinho[] slots;
+	// sequência gravada em cada slot; o evento do slot só é lido depois de a sequência esperada ser observada
+	private final AtomicLongArray publicados;
+	private final int mascara;
+	private final AtomicLong cursor;
+	private final Consumidor[] consumidores;
+	private final PoliticaFluxoCheio politica;
+	private final LongAdder descartados;
+	// lotes descartados por exceções dos assinantes
+	private final LongAdder falhasAssinantes;
+	// menor posição entre os consumidores na última verificação; só é recalculada quando o buffer parece cheio
+	private volatile long menorPosicao;
+	private volatile boolean encerrado;
+
+	FluxoEventosCarrinho(List<AssinanteEventosCarrinho> assinantes, int capacidade, int tamanhoLote,
+			PoliticaFluxoCheio politica) {
+		checkArgument(Integer.bitCount(capacidade) == 1, "Capacidade deve ser potencia de dois");
+		this.slots = new EventoCarrinho[capacidade];
+		this.publicados = new AtomicLongArray(capacidade);
+		for (int i = 0; i < capacidade; i++) {
+			publicados.set(i, -1L);
+		}
+		this.mascara = capacidade - 1;
+		this.cursor = new AtomicLong();
+		this.politica = politica;
+		this.descartados = new LongAdder();
+		this.falhasAssinantes = new LongAdder();
+		this.consumidores = new Consumidor[assinantes.size()];
+		for (int i = 0; i < consumidores.length; i++) {
+			consumidores[i] = new Consumidor(assinantes.get(i), tamanhoLote);
+			Thread thread = new Thread(consumidores[i], "eventos-carrinho-" + i);
+			thread.setDaemon(true);
+			consumidores[i].thread = thread;
+			thread.start();
+		}
+	}
+
+	void publicar(EventoCarrinho evento) {
+		long sequencia;
+		do {
+			sequencia = cursor.get();
+			if (!haEspaco(sequencia)) {
+				if (politica == PoliticaFluxoCheio.DESCARTAR || encerrado) {
+					descartados.increment();
+					return;
+				}
+				LockSupport.parkNanos(ESPERA_NANOS);
+				sequencia = -1L;
+			}
+		} while (sequencia < 0 || !cursor.compareAndSet(sequencia, sequencia + 1));
+		int slot = (int) sequencia & mascara;
+		slots[slot] = evento;
+		// escrita volátil antes da leitura de parando: o consumidor que vai parar vê o evento ou é acordado
+		publicados.set(slot, sequencia);
+		for (Consumidor consumidor : consumidores) {
+			if (consumidor.parando) {
+				LockSupport.unpark(consumidor.thread);
+			}
+		}
+	}
+
+	private boolean haEspaco(long sequencia) {
+		if (sequencia - slots.length < menorPosicao) {
+			return true;
+		}
+		long menor = Long.MAX_VALUE;
+		for (Consumidor consumidor : consumidores) {
+			menor = Math.min(menor, consumidor.posicao);
+		}
+		menorPosicao = menor;
+		return sequencia - slots.length < menor;
+	}
+
+	long getDescartados() {
+		return descartados.sum();
+	}
+
+	long getFalhasAssinantes() {
+		return falhasAssinantes.sum();
+	}
+
+	/**
+	 * Entrega os eventos já publicados e encerra as threads dos assinantes. Eventos publicados depois disso podem não
+	 * ser entregues.
+	 */
+	@Override
+	public void close() {
+		encerrado = true;
+		for (Consumidor consumidor : consumidores) {
+			LockSupport.unpark(consumidor.thread);
+		}
+		boolean interrompido = false;
+		for (Consumidor consumidor : consumidores) {
+			try {
+				consumidor.thread.join();
+			} catch (InterruptedException e) {
+				interrompido = true;
+			}
+		}
+		if (interrompido) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private final class Consumidor implements Runnable {
+
+		private final AssinanteEventosCarrinho assinante;
+		private final int tamanhoLote;
+		// próxima sequência a ser lida; slots de sequências anteriores podem ser reutilizados
+		private volatile long posicao;
+		// true enquanto a thread se prepara para parar ou está parada à espera de eventos
+		private volatile boolean parando;
+		private Thread thread;
+
+		private Consumidor(AssinanteEventosCarrinho assinante, int tamanhoLote) {
+			this.assinante = assinante;
+			this.tamanhoLote = tamanhoLote;
+		}
+
+		@Override
+		public void run() {
+			long proxima = 0L;
+			int verificacoes = 0;
+			while (true) {
+				List<EventoCarrinho> lote = null;
+				long sequencia = proxima;
+				while (sequencia - proxima < tamanhoLote && publicados.get((int) sequencia & mascara) == sequencia) {
+					if (Objects.isNull(lote)) {
+						lote = new ArrayList<>();
+					}
+					lote.add(slots[(int) sequencia & mascara]);
+					sequencia++;
+				}
+				if (Objects.nonNull(lote)) {
+					entregar(lote);
+					proxima = sequencia;
+					posicao = proxima;
+					verificacoes = 0;
+				} else if (encerrado && cursor.get() == proxima) {
+					return;
+				} else if (verificacoes < VERIFICACOES_ANTES_DE_PARAR) {
+					verificacoes++;
+					Thread.yield();
+				} else {
+					parar(proxima);
+				}
+			}
+		}
+
+		/**
+		 * Para até que o evento da sequência seja publicado ou o fluxo seja encerrado. A sinalização é feita antes da
+		 * última verificação, de modo que um evento publicado depois dela sempre acorda a thread.
+		 */
+		private void parar(long proxima) {
+			parando = true;
+			if (publicados.get((int) proxima & mascara) != proxima && !encerrado) {
+				LockSupport.park(this);
+			}
+			parando = false;
+		}
+
+		private void entregar(List<EventoCarrinho> lote) {
+			try {
+				assinante.receber(lote);
+			} catch (RuntimeException e) {
+				// o lote é descartado; a thread continua entregando os próximos
+				falhasAssinantes.increment();
+			}
+		}
+	}
+}
@@ -0,0 +1,137 @@
+package br.com.improving.carrinho;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histograma de valores não negativos com erro relativo limitado, no estilo do HdrHistogram.
+ *
+ * Com {@code b} bits de subfaixa, valores menores que {@code 2^b} têm um contador cada; acima disso, cada potência de
+ * dois é dividida em {@code 2^b} faixas de mesmo tamanho, de modo que o valor informado por
+ * {@link #percentil(double)} difere do real em no máximo {@code 1/2^b}. Os contadores ficam em um único array atômico,
+ * sem locks nem alocação ao registrar.
+ *
+ * Histogramas com a mesma quantidade de bits são combinados somando os contadores.
+ */
+final class Histograma {
+
+	static final int BITS_SUBFAIXA = 4;
+
+	private final int bitsSubfaixa;
+	private final AtomicLongArray contagens;
+
+	Histograma() {
+		this(BITS_SUBFAIXA);
+	}
+
+	/**
+	 * @param bitsSubfaixa de 1 a 16; cada bit a mais divide o erro relativo por dois e dobra a memória ocupada
+	 */
+	Histograma(int bitsSubfaixa) {
+		checkArgument(bitsSubfaixa > 0 && bitsSubfaixa <= 16, "Bits de subfaixa devem estar entre 1 e 16");
+		this.bitsSubfaixa = bitsSubfaixa;
+		this.contagens = new AtomicLongArray(tamanho(bitsSubfaixa));
+	}
+
+	void registrar(long valor) {
+		adicionar(valor, 1L);
+	}
+
+	/**
+	 * @param valor
+	 * @param quantidade pode ser negativa, para desfazer registros anteriores do mesmo valor
+	 */
+	void adicionar(long valor, long quantidade) {
+		contagens.getAndAdd(indice(Math.max(0L, valor), bitsSubfaixa), quantidade);
+	}
+
+	long total() {
+		long total = 0L;
+		for (int i = 0; i < contagens.length(); i++) {
+			total += contagens.get(i);
+		}
+		return total;
+	}
+
+	/**
+	 * @return cópia dos contadores, lidos um a um
+	 */
+	long[] getContagens() {
+		long[] copia = new long[contagens.length()];
+		for (int i = 0; i < copia.length; i++) {
+			copia[i] = contagens.get(i);
+		}
+		return copia;
+	}
+
+	/**
+	 * @param percentil entre 0 e 100
+	 * @return maior valor equivalente da faixa que contém o percentil, ou 0 caso não haja registros
+	 */
+	long percentil(double percentil) {
+		return percentil(getContagens(), bitsSubfaixa, percentil);
+	}
+
+	/**
+	 * @return true caso os dois valores sejam contados na mesma faixa
+	 */
+	boolean mesmaFaixa(long valor, long outro) {
+		return indice(Math.max(0L, valor), bitsSubfaixa) == indice(Math.max(0L, outro), bitsSubfaixa);
+	}
+
+	/**
+	 * @return quantidade de contadores de um histograma com os bits de subfaixa informados
+	 */
+	static int tamanho(int bitsSubfaixa) {
+		return (64 - bitsSubfaixa + 1) << bitsSubfaixa;
+	}
+
+	/**
+	 * Percentil de uma cópia dos contadores de um histograma com os bits de subfaixa informados.
+	 *
+	 * @param contagens
+	 * @param bitsSubfaixa
+	 * @param percentil entre 0 e 100
+	 * @return maior valor equivalente da faixa que contém o percentil, ou 0 caso não haja registros
+	 */
+	static long percentil(long[] contagens, int bitsSubfaixa, double percentil) {
+		checkArgument(percentil >= 0.0 && percentil <= 100.0, "Percentil deve estar entre 0 e 100");
+		long total = 0L;
+		for (long contagem : contagens) {
+			total += contagem;
+		}
+		if (total <= 0L) {
+			return 0L;
+		}
+		long alvo = Math.max(1L, (long) Math.ceil(percentil / 100.0 * total));
+		long acumulado = 0L;
+		for (int i = 0; i < contagens.length; i++) {
+			acumulado += contagens[i];
+			if (acumulado >= alvo) {
+				return maiorValor(i, bitsSubfaixa);
+			}
+		}
+		return maiorValor(contagens.length - 1, bitsSubfaixa);
+	}
+
+	static int indice(long valor, int bitsSubfaixa) {
+		int subfaixas = 1 << bitsSubfaixa;
+		if (valor < subfaixas) {
+			return (int) valor;
+		}
+		int expoente = 63 - Long.numberOfLeadingZeros(valor);
+		int subfaixa = (int) (valor >>> (expoente - bitsSubfaixa)) & (subfaixas - 1);
+		return (expoente - bitsSubfaixa + 1) * subfaixas + subfaixa;
+	}
+
+	static long maiorValor(int indice, int bitsSubfaixa) {
+		int subfaixas = 1 << bitsSubfaixa;
+		if (indice < subfaixas) {
+			return indice;
+		}
+		int expoente = indice / subfaixas + bitsSubfaixa - 1;
+		long menor = (long) (indice % subfaixas | subfaixas) << (expoente - bitsSubfaixa);
+		return menor + (1L << (expoente - bitsSubfaixa)) - 1;
+	}
+}
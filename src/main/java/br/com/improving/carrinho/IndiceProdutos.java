@@ -0,0 +1,64 @@
+package br.com.improving.carrinho;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Índice secundário do código de cada produto para os registros dos carrinhos que têm um item dele.
+ *
+ * Cada código tem um conjunto de registros por identidade, sem um nó por entrada, que só é alterado e copiado dentro
+ * do compute do mapa, sob o lock do código; incluir e remover registros de códigos diferentes não disputam lock. O
+ * conjunto é descartado quando fica vazio.
+ *
+ * A factory inclui e remove os registros sob o lock de cada carrinho, na ordem das alterações dele. Um registro pode
+ * continuar no índice por algum tempo depois de removido da factory; quem percorre o índice descarta esses registros
+ * (veja {@link RegistroCarrinho#isAtivo()}).
+ */
+final class IndiceProdutos {
+
+	private final ConcurrentMap<Long, Set<RegistroCarrinho>> carrinhosPorProduto;
+
+	IndiceProdutos() {
+		this.carrinhosPorProduto = new ConcurrentHashMap<>();
+	}
+
+	void incluir(long codigo, RegistroCarrinho registro) {
+		carrinhosPorProduto.compute(codigo, (chave, registros) -> {
+			Set<RegistroCarrinho> atualizados = Objects.isNull(registros)
+					? Collections.newSetFromMap(new IdentityHashMap<>(2))
+					: registros;
+			atualizados.add(registro);
+			return atualizados;
+		});
+	}
+
+	void remover(long codigo, RegistroCarrinho registro) {
+		carrinhosPorProduto.computeIfPresent(codigo, (chave, registros) -> {
+			registros.remove(registro);
+			return registros.isEmpty() ? null : registros;
+		});
+	}
+
+	/**
+	 * @return cópia dos registros com um item do produto no momento da chamada
+	 */
+	RegistroCarrinho[] registros(long codigo) {
+		RegistroCarrinho[][] copia = {new RegistroCarrinho[0]};
+		carrinhosPorProduto.computeIfPresent(codigo, (chave, registros) -> {
+			copia[0] = registros.toArray(copia[0]);
+			return registros;
+		});
+		return copia[0];
+	}
+
+	/**
+	 * @return quantidade de produtos com ao menos um carrinho
+	 */
+	int getProdutos() {
+		return carrinhosPorProduto.size();
+	}
+}
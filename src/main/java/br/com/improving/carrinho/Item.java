@@ -4,16 +4,18 @@ import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 
 import java.math.BigDecimal;
-import java.math.RoundingMode;
 import java.util.Objects;
 
 /**
  * Classe que representa um item no carrinho de compras.
+ *
+ * O valor unitário é mantido internamente em centavos (veja {@link Centavos}); os getters públicos continuam
+ * retornando BigDecimal com duas casas decimais.
  */
 public class Item {
 
 	private final Produto produto;
-    private final BigDecimal valorUnitario;
+    private final long valorUnitarioCentavos;
     private final int quantidade;
 
     /**
@@ -28,10 +30,26 @@ public class Item {
 				"Valor unitario nao deve ser null ou negativo");
 		checkArgument(quantidade >= 0, "Quantidade deve ser maior ou igual a zero");
 		this.produto = checkNotNull(produto, "Produto nao deve ser null");
-		this.valorUnitario = setScale(valorUnitario);
+		this.valorUnitarioCentavos = Centavos.de(valorUnitario);
 		this.quantidade = quantidade;
+		// falha já na criação caso o valor total não caiba em centavos
+		Centavos.multiplicar(valorUnitarioCentavos, quantidade);
     }
 
+	/**
+	 * Construtor usado pelo carrinho quando o valor unitário já está validado e convertido para centavos.
+	 *
+	 * @param produto
+	 * @param valorUnitarioCentavos
+	 * @param quantidade
+	 */
+	Item(Produto produto, long valorUnitarioCentavos, int quantidade) {
+		this.produto = produto;
+		this.valorUnitarioCentavos = valorUnitarioCentavos;
+		this.quantidade = quantidade;
+		Centavos.multiplicar(valorUnitarioCentavos, quantidade);
+	}
+
 	/**
      * Retorna o produto.
      *
@@ -47,9 +65,13 @@ public class Item {
      * @return BigDecimal
      */
     public BigDecimal getValorUnitario() {
-		return this.valorUnitario;
+		return Centavos.paraBigDecimal(this.valorUnitarioCentavos);
     }
 
+	long getValorUnitarioCentavos() {
+		return this.valorUnitarioCentavos;
+	}
+
     /**
      * Retorna a quantidade dos item.
      *
@@ -65,11 +87,11 @@ public class Item {
      * @return BigDecimal
      */
     public BigDecimal getValorTotal() {
-		return this.valorUnitario.multiply(BigDecimal.valueOf(quantidade));
+		return Centavos.paraBigDecimal(getValorTotalCentavos());
     }
 
-	private BigDecimal setScale(BigDecimal valor) {
-		return valor.setScale(2, RoundingMode.DOWN);
+	long getValorTotalCentavos() {
+		return Centavos.multiplicar(this.valorUnitarioCentavos, this.quantidade);
 	}
 
 	@Override
@@ -81,11 +103,12 @@ public class Item {
 			return false;
 		}
 		final Item item = (Item) o;
-		return quantidade == item.quantidade && Objects.equals(produto, item.produto) && Objects.equals(valorUnitario, item.valorUnitario);
+		return quantidade == item.quantidade && valorUnitarioCentavos == item.valorUnitarioCentavos
+				&& Objects.equals(produto, item.produto);
 	}
 
 	@Override
 	public int hashCode() {
-		return Objects.hash(produto, valorUnitario, quantidade);
+		return Objects.hash(produto, valorUnitarioCentavos, quantidade);
 	}
 }
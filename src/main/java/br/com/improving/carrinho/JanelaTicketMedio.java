@@ -0,0 +1,152 @@
+package br.com.improving.carrinho;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Ticket médio dos carrinhos com atividade recente, em uma roda de baldes de soma e quantidade, um por intervalo de
+ * tempo, com os {@code intervalos} intervalos mais recentes.
+ *
+ * Cada carrinho é contado uma única vez, no balde do intervalo da sua última atividade e com o valor total que tinha
+ * nela: ao ser alterado em outro intervalo, o valor sai do balde anterior, caso ele ainda esteja na roda, e entra no
+ * atual. Quem registra guarda o intervalo retornado e o informa no registro seguinte do mesmo carrinho.
+ *
+ * Um balde é substituído por um novo, com compare-and-set, quando o seu intervalo sai da roda, de modo que nenhuma
+ * operação usa locks; remoções que chegam a um balde já substituído se perdem junto com ele. Sob escrita concorrente,
+ * uma leitura pode observar um carrinho em movimento entre dois baldes, mas o valor converge assim que as escritas
+ * terminam.
+ */
+final class JanelaTicketMedio {
+
+	static final long NENHUM = Long.MIN_VALUE;
+
+	private final long intervaloMillis;
+	private final int intervalos;
+	private final Relogio relogio;
+	private final AtomicReferenceArray<Balde> baldes;
+
+	/**
+	 * @param intervalo duração de cada balde
+	 * @param intervalos quantidade de baldes na roda
+	 * @param relogio
+	 */
+	JanelaTicketMedio(Duration intervalo, int intervalos, Relogio relogio) {
+		checkArgument(!intervalo.isNegative() && intervalo.toMillis() > 0, "Intervalo deve ser de ao menos 1 ms");
+		checkArgument(intervalos > 0, "Intervalos deve ser maior que zero");
+		this.intervaloMillis = intervalo.toMillis();
+		this.intervalos = intervalos;
+		this.relogio = relogio;
+		this.baldes = new AtomicReferenceArray<>(intervalos);
+		for (int i = 0; i < intervalos; i++) {
+			baldes.set(i, new Balde(NENHUM));
+		}
+	}
+
+	/**
+	 * Registra a atividade de um carrinho, movendo-o para o balde do intervalo atual.
+	 *
+	 * @param intervaloAnterior intervalo retornado pelo registro anterior do carrinho, ou {@link #NENHUM}
+	 * @param valorAnteriorCentavos valor total informado no registro anterior do carrinho
+	 * @param valorCentavos valor total atual do carrinho
+	 * @return intervalo em que o carrinho foi registrado
+	 */
+	long registrar(long intervaloAnterior, long valorAnteriorCentavos, long valorCentavos) {
+		// o intervalo de um carrinho nunca volta, mesmo que threads diferentes leiam o relógio fora de ordem
+		long atual = Math.max(intervalo(relogio.agoraEmMillis()), intervaloAnterior);
+		Balde balde = balde(atual);
+		if (balde.intervalo == intervaloAnterior) {
+			// alteração no mesmo intervalo da anterior, o caso mais comum: apenas o valor muda
+			balde.somaCentavos.add(valorCentavos - valorAnteriorCentavos);
+			return balde.intervalo;
+		}
+		remover(intervaloAnterior, valorAnteriorCentavos);
+		balde.somaCentavos.add(valorCentavos);
+		balde.quantidade.increment();
+		return balde.intervalo;
+	}
+
+	/**
+	 * Retira um carrinho removido da factory do balde da sua última atividade, caso ele ainda esteja na roda.
+	 *
+	 * @param intervalo intervalo retornado pelo último registro do carrinho, ou {@link #NENHUM}
+	 * @param valorCentavos valor total informado no último registro do carrinho
+	 */
+	void remover(long intervalo, long valorCentavos) {
+		if (intervalo == NENHUM) {
+			return;
+		}
+		Balde balde = baldes.get(posicao(intervalo));
+		if (balde.intervalo == intervalo) {
+			balde.somaCentavos.add(-valorCentavos);
+			balde.quantidade.decrement();
+		}
+	}
+
+	/**
+	 * @param janela duração, arredondada para cima em intervalos inteiros, incluindo o intervalo atual
+	 * @return ticket médio dos carrinhos com atividade na janela
+	 */
+	BigDecimal getValorTicketMedio(Duration janela) {
+		checkNotNull(janela, "Janela nao deve ser null");
+		checkArgument(!janela.isNegative() && !janela.isZero(), "Janela deve ser positiva");
+		long quantidadeIntervalos = (janela.toMillis() + intervaloMillis - 1) / intervaloMillis;
+		checkArgument(quantidadeIntervalos <= intervalos, "Janela maior que a mantida pela factory");
+		long atual = intervalo(relogio.agoraEmMillis());
+		long somaCentavos = 0L;
+		long quantidade = 0L;
+		for (long intervalo = atual - quantidadeIntervalos + 1; intervalo <= atual; intervalo++) {
+			Balde balde = baldes.get(posicao(intervalo));
+			if (balde.intervalo == intervalo) {
+				somaCentavos += balde.somaCentavos.sum();
+				quantidade += balde.quantidade.sum();
+			}
+		}
+		return AgregadoTicketMedio.valorTicketMedio(somaCentavos, quantidade);
+	}
+
+	/**
+	 * @return balde do intervalo, substituindo o da mesma posição caso seja de um intervalo anterior; caso a posição já
+	 * tenha um intervalo posterior, retorna o balde dele
+	 */
+	private Balde balde(long intervalo) {
+		int posicao = posicao(intervalo);
+		Balde balde = baldes.get(posicao);
+		while (balde.intervalo < intervalo) {
+			Balde novo = new Balde(intervalo);
+			if (baldes.compareAndSet(posicao, balde, novo)) {
+				return novo;
+			}
+			balde = baldes.get(posicao);
+		}
+		return balde;
+	}
+
+	private long intervalo(long millis) {
+		return Math.floorDiv(millis, intervaloMillis);
+	}
+
+	private int posicao(long intervalo) {
+		return (int) Math.floorMod(intervalo, (long) intervalos);
+	}
+
+	/**
+	 * Soma e quantidade dos carrinhos cuja última atividade foi no intervalo.
+	 */
+	private static final class Balde {
+
+		private final long intervalo;
+		private final LongAdder somaCentavos;
+		private final LongAdder quantidade;
+
+		private Balde(long intervalo) {
+			this.intervalo = intervalo;
+			this.somaCentavos = new LongAdder();
+			this.quantidade = new LongAdder();
+		}
+	}
+}
@@ -0,0 +1,462 @@
+package br.com.improving.carrinho;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Journal append-only das operações da factory, gravado em segmentos por meio de um FileChannel.
+ *
+ * Os eventos recebem uma sequência crescente e são acumulados em memória; uma única thread escritora grava todos os
+ * eventos pendentes de uma vez e executa um único force por lote (group commit). No modo síncrono, quem registra um
+ * evento aguarda até que o lote que o contém esteja no disco; no modo assíncrono a perda em caso de queda fica limitada
+ * aos eventos do lote em andamento.
+ *
+ * A cada {@code eventosPorSnapshot} eventos a escritora inicia um novo segmento e solicita um snapshot dos carrinhos;
+ * concluído o snapshot, os segmentos anteriores a ele são apagados.
+ *
+ * Cada evento é gravado como: tamanho (int), corpo e CRC32 do corpo (int). O corpo começa pela sequência (long) e pelo
+ * tipo do evento (byte). Um evento incompleto ou corrompido marca o fim do journal na recuperação.
+ */
+final class JournalCarrinhos implements Closeable {
+
+	private static final String PREFIXO_SEGMENTO = "journal-";
+	private static final String SUFIXO_SEGMENTO = ".log";
+	private static final int TAMANHO_BUFFER_INICIAL = 64 * 1024;
+
+	enum TipoEvento {
+		CRIAR, ADICIONAR, REMOVER, INVALIDAR
+	}
+
+	/**
+	 * Gera o snapshot de todos os carrinhos, que deve refletir ao menos os eventos até a sequência informada.
+	 */
+	@FunctionalInterface
+	interface GeradorSnapshot {
+
+		void gerar(long sequencia) throws IOException;
+	}
+
+	static final class Evento {
+
+		final TipoEvento tipo;
+		final long sequencia;
+		final String identificacaoCliente;
+		final long codigo;
+		final String descricao;
+		final long valorUnitarioCentavos;
+		final int quantidade;
+
+		private Evento(TipoEvento tipo, long sequencia, String identificacaoCliente, long codigo, String descricao,
+				long valorUnitarioCentavos, int quantidade) {
+			this.tipo = tipo;
+			this.sequencia = sequencia;
+			this.identificacaoCliente = identificacaoCliente;
+			this.codigo = codigo;
+			this.descricao = descricao;
+			this.valorUnitarioCentavos = valorUnitarioCentavos;
+			this.quantidade = quantidade;
+		}
+	}
+
+	private final Path diretorio;
+	private final boolean sincrono;
+	private final int eventosPorSnapshot;
+	private final GeradorSnapshot geradorSnapshot;
+	private final ReentrantLock lockPendentes;
+	private final Condition pendentesDisponiveis;
+	private final ReentrantLock lockDuravel;
+	private final Condition duravel;
+	private final ExecutorService executorSnapshot;
+	private final Thread escritora;
+	private List<byte[]> pendentes;
+	private long ultimaSequencia;
+	private volatile long sequenciaDuravel;
+	private volatile boolean fechado;
+	private volatile Exception falha;
+	private volatile boolean snapshotEmAndamento;
+	private FileChannel segmento;
+	private long eventosDesdeSnapshot;
+
+	JournalCarrinhos(Path diretorio, long ultimaSequencia, boolean sincrono, int eventosPorSnapshot,
+			GeradorSnapshot geradorSnapshot) throws IOException {
+		this.diretorio = diretorio;
+		this.sincrono = sincrono;
+		this.eventosPorSnapshot = eventosPorSnapshot;
+		this.geradorSnapshot = geradorSnapshot;
+		this.lockPendentes = new ReentrantLock();
+		this.pendentesDisponiveis = lockPendentes.newCondition();
+		this.lockDuravel = new ReentrantLock();
+		this.duravel = lockDuravel.newCondition();
+		this.pendentes = new ArrayList<>();
+		this.ultimaSequencia = ultimaSequencia;
+		this.sequenciaDuravel = ultimaSequencia;
+		this.segmento = abrirSegmento(ultimaSequencia + 1);
+		this.executorSnapshot = Executors.newSingleThreadExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "snapshot-carrinhos");
+			thread.setDaemon(true);
+			return thread;
+		});
+		this.escritora = new Thread(this::escrever, "journal-carrinhos");
+		this.escritora.setDaemon(true);
+		this.escritora.start();
+	}
+
+	long criar(String identificacaoCliente) {
+		return anexar(TipoEvento.CRIAR, identificacaoCliente, 0L, null, 0L, 0);
+	}
+
+	long adicionar(String identificacaoCliente, Produto produto, long valorUnitarioCentavos, int quantidade) {
+		return anexar(TipoEvento.ADICIONAR, identificacaoCliente, produto.getCodigo(), produto.getDescricao(),
+				valorUnitarioCentavos, quantidade);
+	}
+
+	long remover(String identificacaoCliente, Produto produto) {
+		return anexar(TipoEvento.REMOVER, identificacaoCliente, produto.getCodigo(), null, 0L, 0);
+	}
+
+	long invalidar(String identificacaoCliente) {
+		return anexar(TipoEvento.INVALIDAR, identificacaoCliente, 0L, null, 0L, 0);
+	}
+
+	/**
+	 * No modo síncrono, aguarda até que o evento com a sequência informada esteja gravado no disco.
+	 */
+	void aguardar(long sequencia) {
+		if (!sincrono || sequenciaDuravel >= sequencia) {
+			return;
+		}
+		lockDuravel.lock();
+		try {
+			while (sequenciaDuravel < sequencia) {
+				verificarFalha();
+				duravel.awaitUninterruptibly();
+			}
+		} finally {
+			lockDuravel.unlock();
+		}
+	}
+
+	private long anexar(TipoEvento tipo, String identificacaoCliente, long codigo, String descricao,
+			long valorUnitarioCentavos, int quantidade) {
+		byte[] corpo = codificar(tipo, identificacaoCliente, codigo, descricao, valorUnitarioCentavos, quantidade);
+		lockPendentes.lock();
+		try {
+			verificarFalha();
+			long sequencia = ++ultimaSequencia;
+			ByteBuffer.wrap(corpo).putLong(0, sequencia);
+			pendentes.add(corpo);
+			if (pendentes.size() == 1) {
+				pendentesDisponiveis.signal();
+			}
+			return sequencia;
+		} finally {
+			lockPendentes.unlock();
+		}
+	}
+
+	private void verificarFalha() {
+		if (Objects.nonNull(falha)) {
+			throw new UncheckedIOException(new IOException("Journal de carrinhos indisponivel", falha));
+		}
+		if (fechado) {
+			throw new IllegalStateException("Journal de carrinhos fechado");
+		}
+	}
+
+	private void escrever() {
+		ByteBuffer buffer = ByteBuffer.allocateDirect(TAMANHO_BUFFER_INICIAL);
+		CRC32 crc = new CRC32();
+		try {
+			while (true) {
+				List<byte[]> lote;
+				long ultimaDoLote;
+				lockPendentes.lock();
+				try {
+					while (pendentes.isEmpty() && !fechado) {
+						pendentesDisponiveis.await();
+					}
+					if (pendentes.isEmpty()) {
+						return;
+					}
+					lote = pendentes;
+					ultimaDoLote = ultimaSequencia;
+					pendentes = new ArrayList<>();
+				} finally {
+					lockPendentes.unlock();
+				}
+				buffer = gravar(lote, buffer, crc);
+				publicarDuravel(ultimaDoLote);
+				eventosDesdeSnapshot += lote.size();
+				if (eventosDesdeSnapshot >= eventosPorSnapshot && !snapshotEmAndamento) {
+					iniciarSnapshot(ultimaDoLote);
+				}
+			}
+		} catch (IOException | InterruptedException e) {
+			registrarFalha(e);
+		}
+	}
+
+	private ByteBuffer gravar(List<byte[]> lote, ByteBuffer buffer, CRC32 crc) throws IOException {
+		int tamanho = 0;
+		for (byte[] corpo : lote) {
+			tamanho += corpo.length + 2 * Integer.BYTES;
+		}
+		ByteBuffer destino = buffer.capacity() >= tamanho
+				? buffer
+				: ByteBuffer.allocateDirect(Math.max(tamanho, buffer.capacity() * 2));
+		destino.clear();
+		for (byte[] corpo : lote) {
+			crc.reset();
+			crc.update(corpo, 0, corpo.length);
+			destino.putInt(corpo.length).put(corpo).putInt((int) crc.getValue());
+		}
+		destino.flip();
+		while (destino.hasRemaining()) {
+			segmento.write(destino);
+		}
+		segmento.force(false);
+		return destino;
+	}
+
+	private void publicarDuravel(long sequencia) {
+		lockDuravel.lock();
+		try {
+			sequenciaDuravel = sequencia;
+			duravel.signalAll();
+		} finally {
+			lockDuravel.unlock();
+		}
+	}
+
+	/**
+	 * Torna o journal indisponível: novos eventos são rejeitados e quem aguarda a gravação recebe a falha.
+	 */
+	private void registrarFalha(Exception e) {
+		lockDuravel.lock();
+		try {
+			falha = e;
+			duravel.signalAll();
+		} finally {
+			lockDuravel.unlock();
+		}
+	}
+
+	/**
+	 * Fecha o segmento atual, cujos eventos vão até a sequência informada, e agenda o snapshot. Os segmentos anteriores
+	 * só são apagados depois que o snapshot estiver gravado; uma falha do snapshot torna o journal indisponível, como
+	 * uma falha de gravação dos eventos.
+	 */
+	private void iniciarSnapshot(long sequencia) throws IOException {
+		segmento.close();
+		segmento = abrirSegmento(sequencia + 1);
+		eventosDesdeSnapshot = 0;
+		snapshotEmAndamento = true;
+		executorSnapshot.execute(() -> {
+			try {
+				geradorSnapshot.gerar(sequencia);
+				apagarSegmentosAte(sequencia);
+			} catch (IOException | RuntimeException e) {
+				registrarFalha(e);
+			} finally {
+				snapshotEmAndamento = false;
+			}
+		});
+	}
+
+	private FileChannel abrirSegmento(long primeiraSequencia) throws IOException {
+		return FileChannel.open(diretorio.resolve(nomeSegmento(primeiraSequencia)), StandardOpenOption.CREATE,
+				StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+	}
+
+	private void apagarSegmentosAte(long sequencia) throws IOException {
+		for (Path arquivo : segmentos(diretorio)) {
+			if (primeiraSequencia(arquivo) <= sequencia) {
+				Files.deleteIfExists(arquivo);
+			}
+		}
+	}
+
+	/**
+	 * Grava os eventos pendentes, aguarda o snapshot em andamento e libera os arquivos.
+	 */
+	@Override
+	public void close() throws IOException {
+		lockPendentes.lock();
+		try {
+			fechado = true;
+			pendentesDisponiveis.signal();
+		} finally {
+			lockPendentes.unlock();
+		}
+		try {
+			escritora.join();
+			executorSnapshot.shutdown();
+			executorSnapshot.awaitTermination(1, TimeUnit.MINUTES);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrompido ao fechar o journal de carrinhos");
+		} finally {
+			segmento.close();
+		}
+	}
+
+	/**
+	 * Aplica, em ordem, os eventos do journal posteriores ao snapshot. Eventos de um cliente cuja sequência não seja
+	 * maior que a registrada para ele no snapshot já estão refletidos e são ignorados. Um evento incompleto ou
+	 * corrompido encerra a leitura: o segmento é truncado nesse ponto e os segmentos seguintes são apagados, para que
+	 * os seus eventos não sejam reaplicados depois dos eventos gravados a partir daí.
+	 *
+	 * @param diretorio
+	 * @param sequenciaSnapshot sequência a partir da qual o snapshot foi gerado, ou zero caso não exista snapshot
+	 * @param sequenciasPorCliente última sequência de cada cliente presente no snapshot
+	 * @param aplicar
+	 * @return maior sequência encontrada, ou a sequência do snapshot caso o journal não tenha eventos posteriores
+	 */
+	static long recuperar(Path diretorio, long sequenciaSnapshot, Map<String, Long> sequenciasPorCliente,
+			Consumer<Evento> aplicar) throws IOException {
+		long ultimaSequencia = sequenciaSnapshot;
+		List<Path> segmentos = segmentos(diretorio);
+		for (int i = 0; i < segmentos.size(); i++) {
+			Path arquivo = segmentos.get(i);
+			ByteBuffer conteudo = ByteBuffer.wrap(Files.readAllBytes(arquivo));
+			CRC32 crc = new CRC32();
+			while (true) {
+				int inicio = conteudo.position();
+				Evento evento = lerEvento(conteudo, crc);
+				if (Objects.isNull(evento)) {
+					if (inicio < conteudo.limit()) {
+						truncar(arquivo, inicio);
+						for (Path posterior : segmentos.subList(i + 1, segmentos.size())) {
+							Files.delete(posterior);
+						}
+						return ultimaSequencia;
+					}
+					break;
+				}
+				ultimaSequencia = Math.max(ultimaSequencia, evento.sequencia);
+				long limite = sequenciasPorCliente.getOrDefault(evento.identificacaoCliente, sequenciaSnapshot);
+				if (evento.sequencia > limite) {
+					aplicar.accept(evento);
+				}
+			}
+		}
+		return ultimaSequencia;
+	}
+
+	private static Evento lerEvento(ByteBuffer conteudo, CRC32 crc) {
+		if (conteudo.remaining() < Integer.BYTES) {
+			return null;
+		}
+		int tamanho = conteudo.getInt();
+		if (tamanho <= 0 || conteudo.remaining() < tamanho + Integer.BYTES) {
+			return null;
+		}
+		crc.reset();
+		crc.update(conteudo.array(), conteudo.arrayOffset() + conteudo.position(), tamanho);
+		if ((int) crc.getValue() != conteudo.getInt(conteudo.position() + tamanho)) {
+			return null;
+		}
+		long sequencia = conteudo.getLong();
+		TipoEvento tipo = TipoEvento.values()[conteudo.get()];
+		String identificacaoCliente = lerTexto(conteudo);
+		long codigo = 0L;
+		String descricao = null;
+		long valorUnitarioCentavos = 0L;
+		int quantidade = 0;
+		if (tipo == TipoEvento.ADICIONAR) {
+			codigo = conteudo.getLong();
+			descricao = lerTexto(conteudo);
+			valorUnitarioCentavos = conteudo.getLong();
+			quantidade = conteudo.getInt();
+		} else if (tipo == TipoEvento.REMOVER) {
+			codigo = conteudo.getLong();
+		}
+		conteudo.getInt();
+		return new Evento(tipo, sequencia, identificacaoCliente, codigo, descricao, valorUnitarioCentavos,
+				quantidade);
+	}
+
+	private static byte[] codificar(TipoEvento tipo, String identificacaoCliente, long codigo, String descricao,
+			long valorUnitarioCentavos, int quantidade) {
+		try {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+			DataOutputStream saida = new DataOutputStream(bytes);
+			// a sequência é preenchida ao entrar na fila, para que a ordem no arquivo seja a ordem das sequências
+			saida.writeLong(0L);
+			saida.writeByte(tipo.ordinal());
+			escreverTexto(saida, identificacaoCliente);
+			if (tipo == TipoEvento.ADICIONAR) {
+				saida.writeLong(codigo);
+				escreverTexto(saida, descricao);
+				saida.writeLong(valorUnitarioCentavos);
+				saida.writeInt(quantidade);
+			} else if (tipo == TipoEvento.REMOVER) {
+				saida.writeLong(codigo);
+			}
+			return bytes.toByteArray();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private static void escreverTexto(DataOutputStream saida, String texto) throws IOException {
+		byte[] bytes = texto.getBytes(StandardCharsets.UTF_8);
+		saida.writeInt(bytes.length);
+		saida.write(bytes);
+	}
+
+	private static String lerTexto(ByteBuffer conteudo) {
+		byte[] bytes = new byte[conteudo.getInt()];
+		conteudo.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private static void truncar(Path arquivo, long tamanho) throws IOException {
+		try (FileChannel canal = FileChannel.open(arquivo, StandardOpenOption.WRITE)) {
+			canal.truncate(tamanho);
+			canal.force(true);
+		}
+	}
+
+	private static List<Path> segmentos(Path diretorio) throws IOException {
+		List<Path> segmentos = new ArrayList<>();
+		try (DirectoryStream<Path> arquivos = Files.newDirectoryStream(diretorio,
+				PREFIXO_SEGMENTO + "*" + SUFIXO_SEGMENTO)) {
+			arquivos.forEach(segmentos::add);
+		}
+		Collections.sort(segmentos);
+		return segmentos;
+	}
+
+	private static String nomeSegmento(long primeiraSequencia) {
+		return String.format("%s%020d%s", PREFIXO_SEGMENTO, primeiraSequencia, SUFIXO_SEGMENTO);
+	}
+
+	private static long primeiraSequencia(Path segmento) {
+		String nome = segmento.getFileName().toString();
+		return Long.parseLong(nome.substring(PREFIXO_SEGMENTO.length(), nome.length() - SUFIXO_SEGMENTO.length()));
+	}
+}
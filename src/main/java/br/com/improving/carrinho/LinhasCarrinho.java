@@ -0,0 +1,73 @@
+package br.com.improving.carrinho;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * Armazenamento das linhas de um carrinho, uma por produto, na ordem de inclusão.
+ *
+ * Cada linha é acessada por uma referência int obtida em {@link #localizar(long)} ou {@link #naPosicao(int)}, válida
+ * até a próxima inclusão ou remoção. Não é thread-safe; o carrinho de compras é responsável pela sincronização.
+ *
+ * @see LinhasNoHeap
+ * @see LinhasForaDoHeap
+ */
+abstract class LinhasCarrinho {
+
+	abstract int size();
+
+	/**
+	 * @return true caso estas linhas não aceitem mais inclusões, que devem ser feitas nas linhas obtidas de
+	 * {@link #noHeap()}
+	 */
+	boolean cheia() {
+		return false;
+	}
+
+	/**
+	 * @return referência à linha do produto com o código, ou -1 caso não exista
+	 */
+	abstract int localizar(long codigo);
+
+	/**
+	 * @return referência à linha que ocupa a posição na ordem de inclusão, ou -1 caso a posição não exista
+	 */
+	abstract int naPosicao(int posicao);
+
+	abstract Produto produto(int linha);
+
+	abstract int quantidade(int linha);
+
+	abstract long valorUnitarioCentavos(int linha);
+
+	/**
+	 * @return valor unitário informado na última alteração da linha, ou null caso apenas os centavos sejam guardados
+	 */
+	abstract BigDecimal valorUnitario(int linha);
+
+	long valorTotalCentavos(int linha) {
+		return valorUnitarioCentavos(linha) * quantidade(linha);
+	}
+
+	/**
+	 * Inclui uma linha no final da ordem; o valor total da linha já deve ter sido validado, e as linhas não podem estar
+	 * cheias.
+	 */
+	abstract void incluir(Produto produto, BigDecimal valorUnitario, long valorUnitarioCentavos, int quantidade);
+
+	abstract void alterar(int linha, BigDecimal valorUnitario, long valorUnitarioCentavos, int quantidade);
+
+	abstract void remover(int linha);
+
+	/**
+	 * @return cópias imutáveis das linhas, na ordem de inclusão
+	 */
+	abstract List<Item> itens();
+
+	/**
+	 * Retorna linhas equivalentes mantidas no heap, liberando a memória própria destas, que não devem mais ser usadas.
+	 *
+	 * @return LinhasCarrinho
+	 */
+	abstract LinhasCarrinho noHeap();
+}
@@ -0,0 +1,169 @@
+package br.com.improving.carrinho;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Linhas mantidas fora do heap, em registros de tamanho fixo dentro de um bloco de {@link MemoriaForaDoHeap}: código do
+ * produto, valor unitário em centavos e quantidade, na ordem de inclusão. A referência a uma linha é o índice do seu
+ * registro, que coincide com a posição dela.
+ *
+ * O produto de cada linha é obtido do catálogo pelo código, e o valor unitário informado não é guardado, apenas os
+ * centavos; no heap restam só este objeto e os produtos, compartilhados entre todos os carrinhos.
+ *
+ * A localização por código percorre os registros e as remoções deslocam os registros seguintes, portanto as linhas
+ * ficam limitadas a {@link #LIMITE_LINHAS}, o que mantém as duas operações com custo constante sem nenhum índice no
+ * heap; o carrinho que precisa de mais linhas passa a mantê-las no heap (veja {@link #cheia()}). O bloco dobra de
+ * tamanho quando enche e encolhe pela metade quando fica com um quarto ocupado.
+ */
+final class LinhasForaDoHeap extends LinhasCarrinho {
+
+	static final int BYTES_LINHA = 24;
+	// linhas percorridas por localizar e deslocadas por remover, no máximo
+	static final int LIMITE_LINHAS = 64;
+
+	private static final int CODIGO = 0;
+	private static final int VALOR_UNITARIO_CENTAVOS = 8;
+	private static final int QUANTIDADE = 16;
+	// bloco inicial com 2 linhas
+	private static final int CLASSE_INICIAL = 1;
+
+	private final MemoriaForaDoHeap memoria;
+	private final CatalogoProdutos catalogo;
+	private long endereco;
+	private int classe;
+	private int tamanho;
+
+	LinhasForaDoHeap(MemoriaForaDoHeap memoria, CatalogoProdutos catalogo) {
+		this.memoria = memoria;
+		this.catalogo = catalogo;
+		this.endereco = MemoriaForaDoHeap.NENHUM;
+		this.classe = CLASSE_INICIAL - 1;
+		this.tamanho = 0;
+	}
+
+	@Override
+	int size() {
+		return tamanho;
+	}
+
+	@Override
+	boolean cheia() {
+		return tamanho == LIMITE_LINHAS;
+	}
+
+	@Override
+	int localizar(long codigo) {
+		for (int linha = 0; linha < tamanho; linha++) {
+			if (memoria.getLong(endereco, linha * BYTES_LINHA + CODIGO) == codigo) {
+				return linha;
+			}
+		}
+		return -1;
+	}
+
+	@Override
+	int naPosicao(int posicao) {
+		return posicao >= 0 && posicao < tamanho ? posicao : -1;
+	}
+
+	@Override
+	Produto produto(int linha) {
+		return catalogo.registrado(memoria.getLong(endereco, linha * BYTES_LINHA + CODIGO));
+	}
+
+	@Override
+	int quantidade(int linha) {
+		return memoria.getInt(endereco, linha * BYTES_LINHA + QUANTIDADE);
+	}
+
+	@Override
+	long valorUnitarioCentavos(int linha) {
+		return memoria.getLong(endereco, linha * BYTES_LINHA + VALOR_UNITARIO_CENTAVOS);
+	}
+
+	@Override
+	BigDecimal valorUnitario(int linha) {
+		return null;
+	}
+
+	/**
+	 * O produto já deve estar registrado no catálogo, e as linhas não podem estar cheias.
+	 */
+	@Override
+	void incluir(Produto produto, BigDecimal valorUnitario, long valorUnitarioCentavos, int quantidade) {
+		if (tamanho == capacidade()) {
+			realocar(classe + 1);
+		}
+		memoria.putLong(endereco, tamanho * BYTES_LINHA + CODIGO, produto.getCodigo());
+		alterar(tamanho++, valorUnitario, valorUnitarioCentavos, quantidade);
+	}
+
+	@Override
+	void alterar(int linha, BigDecimal valorUnitario, long valorUnitarioCentavos, int quantidade) {
+		memoria.putLong(endereco, linha * BYTES_LINHA + VALOR_UNITARIO_CENTAVOS, valorUnitarioCentavos);
+		memoria.putInt(endereco, linha * BYTES_LINHA + QUANTIDADE, quantidade);
+	}
+
+	@Override
+	void remover(int linha) {
+		for (int seguinte = linha + 1; seguinte < tamanho; seguinte++) {
+			copiar(endereco, seguinte, endereco, seguinte - 1);
+		}
+		tamanho--;
+		if (tamanho == 0) {
+			realocar(CLASSE_INICIAL - 1);
+		} else if (classe > CLASSE_INICIAL && tamanho <= capacidade() / 4) {
+			realocar(classe - 1);
+		}
+	}
+
+	@Override
+	List<Item> itens() {
+		List<Item> itens = new ArrayList<>(tamanho);
+		for (int linha = 0; linha < tamanho; linha++) {
+			itens.add(new Item(produto(linha), valorUnitarioCentavos(linha), quantidade(linha)));
+		}
+		return itens;
+	}
+
+	@Override
+	LinhasCarrinho noHeap() {
+		LinhasNoHeap linhas = new LinhasNoHeap();
+		for (int linha = 0; linha < tamanho; linha++) {
+			long valorUnitarioCentavos = valorUnitarioCentavos(linha);
+			linhas.incluir(produto(linha), Centavos.paraBigDecimal(valorUnitarioCentavos), valorUnitarioCentavos,
+					quantidade(linha));
+		}
+		tamanho = 0;
+		realocar(CLASSE_INICIAL - 1);
+		return linhas;
+	}
+
+	private int capacidade() {
+		return endereco == MemoriaForaDoHeap.NENHUM ? 0 : 1 << classe;
+	}
+
+	/**
+	 * Copia as linhas para um bloco da nova classe e libera o bloco atual; abaixo da classe inicial, apenas libera.
+	 */
+	private void realocar(int novaClasse) {
+		long novoEndereco = novaClasse < CLASSE_INICIAL ? MemoriaForaDoHeap.NENHUM : memoria.reservar(novaClasse);
+		for (int linha = 0; linha < tamanho; linha++) {
+			copiar(endereco, linha, novoEndereco, linha);
+		}
+		if (endereco != MemoriaForaDoHeap.NENHUM) {
+			memoria.liberar(endereco, classe);
+		}
+		endereco = novoEndereco;
+		classe = novaClasse;
+	}
+
+	private void copiar(long origem, int linhaOrigem, long destino, int linhaDestino) {
+		for (int deslocamento = 0; deslocamento < BYTES_LINHA; deslocamento += Long.BYTES) {
+			memoria.putLong(destino, linhaDestino * BYTES_LINHA + deslocamento,
+					memoria.getLong(origem, linhaOrigem * BYTES_LINHA + deslocamento));
+		}
+	}
+}
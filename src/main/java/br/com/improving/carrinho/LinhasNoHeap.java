@@ -0,0 +1,112 @@
+package br.com.improving.carrinho;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Linhas mantidas no heap, indexadas pelo código do produto, sem boxing nem objetos de entrada por linha. A referência
+ * a uma linha é o slot dela no {@link MapaLongOrdenadoIndexado}.
+ */
+final class LinhasNoHeap extends LinhasCarrinho {
+
+	private final MapaLongOrdenadoIndexado<Linha> itemMap;
+
+	LinhasNoHeap() {
+		this.itemMap = new MapaLongOrdenadoIndexado<>();
+	}
+
+	@Override
+	int size() {
+		return itemMap.size();
+	}
+
+	@Override
+	int localizar(long codigo) {
+		return itemMap.slot(codigo);
+	}
+
+	@Override
+	int naPosicao(int posicao) {
+		return itemMap.slotNaPosicao(posicao);
+	}
+
+	@Override
+	Produto produto(int linha) {
+		return itemMap.valorNoSlot(linha).produto;
+	}
+
+	@Override
+	int quantidade(int linha) {
+		return itemMap.valorNoSlot(linha).quantidade;
+	}
+
+	@Override
+	long valorUnitarioCentavos(int linha) {
+		return itemMap.valorNoSlot(linha).valorUnitarioCentavos;
+	}
+
+	@Override
+	BigDecimal valorUnitario(int linha) {
+		return itemMap.valorNoSlot(linha).valorUnitario;
+	}
+
+	@Override
+	void incluir(Produto produto, BigDecimal valorUnitario, long valorUnitarioCentavos, int quantidade) {
+		itemMap.put(produto.getCodigo(), new Linha(produto, valorUnitario, valorUnitarioCentavos, quantidade));
+	}
+
+	@Override
+	void alterar(int linha, BigDecimal valorUnitario, long valorUnitarioCentavos, int quantidade) {
+		// a linha existente é alterada no lugar, sem alocar um novo objeto a cada adição
+		itemMap.valorNoSlot(linha).atualizar(valorUnitario, valorUnitarioCentavos, quantidade);
+	}
+
+	@Override
+	void remover(int linha) {
+		itemMap.remove(itemMap.valorNoSlot(linha).produto.getCodigo());
+	}
+
+	@Override
+	List<Item> itens() {
+		return itemMap.valores(Linha::paraItem);
+	}
+
+	@Override
+	LinhasCarrinho noHeap() {
+		return this;
+	}
+
+	/**
+	 * Linha mutável do carrinho. O valor unitário informado é guardado junto dos centavos para que uma nova adição com
+	 * o mesmo valor não precise convertê-lo novamente, e o item da linha é reaproveitado nas cópias dos itens enquanto
+	 * ela não é alterada.
+	 */
+	private static final class Linha {
+
+		private final Produto produto;
+		private BigDecimal valorUnitario;
+		private long valorUnitarioCentavos;
+		private int quantidade;
+		private Item item;
+
+		private Linha(Produto produto, BigDecimal valorUnitario, long valorUnitarioCentavos, int quantidade) {
+			this.produto = produto;
+			atualizar(valorUnitario, valorUnitarioCentavos, quantidade);
+		}
+
+		private void atualizar(BigDecimal valorUnitario, long valorUnitarioCentavos, int quantidade) {
+			this.valorUnitario = valorUnitario;
+			this.valorUnitarioCentavos = valorUnitarioCentavos;
+			this.quantidade = quantidade;
+			this.item = null;
+		}
+
+		private Item paraItem() {
+			if (Objects.isNull(item)) {
+				item = new Item(produto, valorUnitarioCentavos, quantidade);
+			}
+			return item;
+		}
+	}
+}
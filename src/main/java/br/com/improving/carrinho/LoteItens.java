@@ -0,0 +1,71 @@
+package br.com.improving.carrinho;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Sequência de adições e remoções de itens aplicada de uma só vez a um carrinho por
+ * {@link CarrinhoCompras#aplicarLote(LoteItens)}.
+ *
+ * As operações seguem as mesmas regras de {@link CarrinhoCompras#adicionarItem} e {@link CarrinhoCompras#removerItem},
+ * na ordem em que foram incluídas no lote. A validação é feita apenas ao aplicar o lote.
+ *
+ * Não é thread-safe; o mesmo lote pode ser aplicado a vários carrinhos, desde que não seja alterado enquanto isso.
+ */
+public final class LoteItens {
+
+	private final List<Operacao> operacoes;
+
+	public LoteItens() {
+		this.operacoes = new ArrayList<>();
+	}
+
+	/**
+	 * Inclui no lote a adição de um item.
+	 *
+	 * @param produto
+	 * @param valorUnitario
+	 * @param quantidade
+	 * @return o próprio lote
+	 */
+	public LoteItens adicionar(Produto produto, BigDecimal valorUnitario, int quantidade) {
+		operacoes.add(new Operacao(produto, valorUnitario, quantidade, false));
+		return this;
+	}
+
+	/**
+	 * Inclui no lote a remoção do item do produto, caso exista no carrinho naquele ponto do lote.
+	 *
+	 * @param produto
+	 * @return o próprio lote
+	 */
+	public LoteItens remover(Produto produto) {
+		operacoes.add(new Operacao(produto, null, 0, true));
+		return this;
+	}
+
+	public int size() {
+		return operacoes.size();
+	}
+
+	List<Operacao> getOperacoes() {
+		return Collections.unmodifiableList(operacoes);
+	}
+
+	static final class Operacao {
+
+		final Produto produto;
+		final BigDecimal valorUnitario;
+		final int quantidade;
+		final boolean remocao;
+
+		private Operacao(Produto produto, BigDecimal valorUnitario, int quantidade, boolean remocao) {
+			this.produto = produto;
+			this.valorUnitario = valorUnitario;
+			this.quantidade = quantidade;
+			this.remocao = remocao;
+		}
+	}
+}
@@ -0,0 +1,261 @@
+package br.com.improving.carrinho;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Function;
+
+/**
+ * Mapa de chaves long primitivas que preserva a ordem de inclusão e permite acessar uma entrada pela sua posição.
+ *
+ * Chaves e valores ficam em arrays paralelos, um slot por entrada na ordem de inclusão, sem objetos de entrada nem
+ * chaves boxed. Uma tabela de endereçamento aberto com sondagem linear guarda, para cada chave, o índice do seu slot;
+ * remoções deslocam as entradas seguintes da sequência de sondagem, de modo que a tabela nunca acumula marcas de
+ * remoção. Uma árvore de Fenwick sobre os slots ocupados responde qual slot corresponde a uma posição em O(log n), e
+ * slots de entradas removidas são compactados quando as entradas passam a ocupar menos de um quarto dos slots usados.
+ *
+ * Mapas vazios não alocam arrays. Valores null não são aceitos.
+ *
+ * Não é thread-safe; o carrinho de compras é responsável pela sincronização.
+ *
+ * @param <V> tipo do valor
+ */
+class MapaLongOrdenadoIndexado<V> {
+
+	private static final int CAPACIDADE_INICIAL = 4;
+	private static final long[] SEM_CHAVES = new long[0];
+	private static final Object[] SEM_VALORES = new Object[0];
+	private static final int[] SEM_INDICES = new int[0];
+
+	private long[] chaves;
+	private Object[] valores;
+	// índice do slot + 1 de cada chave, 0 para posição livre; sempre com pelo menos o dobro de posições dos slots
+	private int[] tabela;
+	private int[] arvore;
+	private int proximoSlot;
+	private int tamanho;
+
+	MapaLongOrdenadoIndexado() {
+		this.chaves = SEM_CHAVES;
+		this.valores = SEM_VALORES;
+		this.tabela = SEM_INDICES;
+		this.arvore = SEM_INDICES;
+		this.proximoSlot = 0;
+		this.tamanho = 0;
+	}
+
+	int size() {
+		return tamanho;
+	}
+
+	V get(long chave) {
+		int indice = indiceNaTabela(chave);
+		return indice < 0 ? null : valor(tabela[indice] - 1);
+	}
+
+	/**
+	 * Associa o valor à chave. Chaves novas são incluídas no final da ordem; chaves existentes mantêm a sua posição.
+	 *
+	 * @return valor anterior associado à chave, ou null caso a chave seja nova
+	 */
+	V put(long chave, V valor) {
+		checkNotNull(valor, "Valor nao deve ser null");
+		int indice = indiceNaTabela(chave);
+		if (indice >= 0) {
+			int slot = tabela[indice] - 1;
+			V anterior = valor(slot);
+			valores[slot] = valor;
+			return anterior;
+		}
+		if (proximoSlot == chaves.length) {
+			reorganizar();
+		}
+		int slot = proximoSlot++;
+		chaves[slot] = chave;
+		valores[slot] = valor;
+		tabela[posicaoLivre(chave)] = slot + 1;
+		atualizarArvore(slot, 1);
+		tamanho++;
+		return null;
+	}
+
+	/**
+	 * @return valor removido, ou null caso a chave não exista
+	 */
+	V remove(long chave) {
+		int indice = indiceNaTabela(chave);
+		if (indice < 0) {
+			return null;
+		}
+		int slot = tabela[indice] - 1;
+		V removido = valor(slot);
+		valores[slot] = null;
+		liberar(indice);
+		atualizarArvore(slot, -1);
+		tamanho--;
+		if (proximoSlot > CAPACIDADE_INICIAL && tamanho < proximoSlot / 4) {
+			reorganizar();
+		}
+		return removido;
+	}
+
+	/**
+	 * @return valor que ocupa a posição informada na ordem de inclusão, ou null caso a posição não exista
+	 */
+	V valorNaPosicao(int posicao) {
+		int slot = slotNaPosicao(posicao);
+		return slot < 0 ? null : valor(slot);
+	}
+
+	/**
+	 * @return slot da chave, válido até a próxima inclusão ou remoção, ou -1 caso a chave não exista
+	 */
+	int slot(long chave) {
+		int indice = indiceNaTabela(chave);
+		return indice < 0 ? -1 : tabela[indice] - 1;
+	}
+
+	/**
+	 * @return slot da entrada que ocupa a posição informada na ordem de inclusão, ou -1 caso a posição não exista
+	 */
+	int slotNaPosicao(int posicao) {
+		if (posicao < 0 || posicao >= tamanho) {
+			return -1;
+		}
+		// busca binária na árvore de Fenwick pelo menor índice cujo prefixo contém posicao + 1 entradas
+		int indice = 0;
+		int restante = posicao + 1;
+		for (int passo = Integer.highestOneBit(chaves.length); passo > 0; passo >>= 1) {
+			int proximo = indice + passo;
+			if (proximo <= chaves.length && arvore[proximo] < restante) {
+				indice = proximo;
+				restante -= arvore[proximo];
+			}
+		}
+		return indice;
+	}
+
+	V valorNoSlot(int slot) {
+		return valor(slot);
+	}
+
+	/**
+	 * @return valores na ordem de inclusão das chaves
+	 */
+	List<V> valores() {
+		return valores(Function.identity());
+	}
+
+	/**
+	 * @return valores convertidos pela função, na ordem de inclusão das chaves
+	 */
+	<R> List<R> valores(Function<? super V, ? extends R> conversao) {
+		List<R> resultado = new ArrayList<>(tamanho);
+		for (int slot = 0; slot < proximoSlot; slot++) {
+			V valor = valor(slot);
+			if (Objects.nonNull(valor)) {
+				resultado.add(conversao.apply(valor));
+			}
+		}
+		return resultado;
+	}
+
+	@SuppressWarnings("unchecked")
+	private V valor(int slot) {
+		return (V) valores[slot];
+	}
+
+	private static int espalhar(long chave) {
+		long h = chave * 0x9E3779B97F4A7C15L;
+		return (int) (h ^ (h >>> 32));
+	}
+
+	/**
+	 * @return posição da chave na tabela, ou -1 caso não exista
+	 */
+	private int indiceNaTabela(long chave) {
+		if (tamanho == 0) {
+			return -1;
+		}
+		int mascara = tabela.length - 1;
+		for (int indice = espalhar(chave) & mascara; ; indice = (indice + 1) & mascara) {
+			int slot = tabela[indice];
+			if (slot == 0) {
+				return -1;
+			}
+			if (chaves[slot - 1] == chave) {
+				return indice;
+			}
+		}
+	}
+
+	private int posicaoLivre(long chave) {
+		int mascara = tabela.length - 1;
+		int indice = espalhar(chave) & mascara;
+		while (tabela[indice] != 0) {
+			indice = (indice + 1) & mascara;
+		}
+		return indice;
+	}
+
+	/**
+	 * Esvazia a posição e traz para ela as entradas seguintes da sequência de sondagem que deixariam de ser
+	 * encontradas, repetindo a partir da posição de cada entrada movida.
+	 */
+	private void liberar(int livre) {
+		int mascara = tabela.length - 1;
+		for (int indice = (livre + 1) & mascara; tabela[indice] != 0; indice = (indice + 1) & mascara) {
+			int ideal = espalhar(chaves[tabela[indice] - 1]) & mascara;
+			if (((indice - ideal) & mascara) >= ((indice - livre) & mascara)) {
+				tabela[livre] = tabela[indice];
+				livre = indice;
+			}
+		}
+		tabela[livre] = 0;
+	}
+
+	private void atualizarArvore(int slot, int delta) {
+		for (int indice = slot + 1; indice < arvore.length; indice += indice & -indice) {
+			arvore[indice] += delta;
+		}
+	}
+
+	/**
+	 * Compacta os slots ocupados no início dos arrays e ajusta a capacidade para o dobro das entradas, reconstruindo
+	 * a tabela e a árvore em O(n). Como só ocorre quando os slots enchem ou esvaziam para um quarto, o custo é
+	 * amortizado.
+	 */
+	private void reorganizar() {
+		int capacidade = Math.max(CAPACIDADE_INICIAL, tamanho * 2);
+		long[] novasChaves = new long[capacidade];
+		Object[] novosValores = new Object[capacidade];
+		int ocupados = 0;
+		for (int slot = 0; slot < proximoSlot; slot++) {
+			if (Objects.nonNull(valores[slot])) {
+				novasChaves[ocupados] = chaves[slot];
+				novosValores[ocupados++] = valores[slot];
+			}
+		}
+		this.chaves = novasChaves;
+		this.valores = novosValores;
+		this.proximoSlot = ocupados;
+
+		this.tabela = new int[Integer.highestOneBit(capacidade * 2 - 1) << 1];
+		for (int slot = 0; slot < ocupados; slot++) {
+			tabela[posicaoLivre(chaves[slot])] = slot + 1;
+		}
+
+		int[] novaArvore = new int[capacidade + 1];
+		Arrays.fill(novaArvore, 1, ocupados + 1, 1);
+		for (int indice = 1; indice <= capacidade; indice++) {
+			int pai = indice + (indice & -indice);
+			if (pai <= capacidade) {
+				novaArvore[pai] += novaArvore[indice];
+			}
+		}
+		this.arvore = novaArvore;
+	}
+}
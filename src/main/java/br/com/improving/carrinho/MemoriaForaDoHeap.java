@@ -0,0 +1,149 @@
+package br.com.improving.carrinho;
+
+import static com.google.common.base.Preconditions.checkState;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Memória fora do heap, em ByteBuffers diretos, dividida em blocos de {@code unidade << classe} bytes.
+ *
+ * Os blocos são reservados sequencialmente em regiões de {@link #TAMANHO_REGIAO} bytes (ou em uma região própria,
+ * quando maiores que isso) e, ao serem liberados, entram em uma lista encadeada da sua classe, guardada nos próprios
+ * blocos livres, de onde são reaproveitados. As regiões nunca são devolvidas: a memória reservada acompanha o pico de
+ * uso e é liberada quando a instância deixa de ser referenciada e os buffers são coletados.
+ *
+ * Um bloco é identificado por um endereço long, com o índice da região nos 32 bits mais altos e o deslocamento na
+ * região nos mais baixos. Reservar e liberar blocos é seguro para uso concorrente; o acesso ao conteúdo de um bloco é
+ * sincronizado por quem o reservou.
+ */
+final class MemoriaForaDoHeap {
+
+	static final int TAMANHO_REGIAO = 4 << 20;
+	static final long NENHUM = -1L;
+
+	private static final int CLASSES = 32;
+
+	private final int unidade;
+	private final ReentrantLock lock;
+	// endereço do primeiro bloco livre de cada classe; cada bloco livre guarda o endereço do próximo
+	private final long[] livres;
+	private volatile ByteBuffer[] regioes;
+	private int quantidadeRegioes;
+	// região em que os blocos de até TAMANHO_REGIAO bytes são reservados, e a primeira posição livre nela
+	private int regiaoAtual;
+	private int deslocamentoLivre;
+	private long bytesReservados;
+	private long bytesEmUso;
+
+	/**
+	 * @param unidade tamanho, em bytes, de um bloco da classe 0
+	 */
+	MemoriaForaDoHeap(int unidade) {
+		this.unidade = unidade;
+		this.lock = new ReentrantLock();
+		this.livres = new long[CLASSES];
+		Arrays.fill(livres, NENHUM);
+		this.regioes = new ByteBuffer[4];
+		this.quantidadeRegioes = 0;
+		this.deslocamentoLivre = TAMANHO_REGIAO;
+	}
+
+	/**
+	 * @return endereço de um bloco de {@code unidade << classe} bytes, com conteúdo indefinido
+	 */
+	long reservar(int classe) {
+		long tamanho = (long) unidade << classe;
+		checkState(classe < CLASSES && tamanho <= Integer.MAX_VALUE, "Bloco excede o limite de memoria fora do heap");
+		lock.lock();
+		try {
+			long endereco = livres[classe];
+			if (endereco != NENHUM) {
+				livres[classe] = getLong(endereco, 0);
+			} else if (tamanho > TAMANHO_REGIAO) {
+				endereco = (long) novaRegiao((int) tamanho) << 32;
+			} else {
+				if (deslocamentoLivre + tamanho > TAMANHO_REGIAO) {
+					regiaoAtual = novaRegiao(TAMANHO_REGIAO);
+					deslocamentoLivre = 0;
+				}
+				endereco = (long) regiaoAtual << 32 | deslocamentoLivre;
+				deslocamentoLivre += (int) tamanho;
+			}
+			bytesEmUso += tamanho;
+			return endereco;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	void liberar(long endereco, int classe) {
+		lock.lock();
+		try {
+			bytesEmUso -= (long) unidade << classe;
+			putLong(endereco, 0, livres[classe]);
+			livres[classe] = endereco;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @return índice da região criada
+	 */
+	private int novaRegiao(int tamanho) {
+		ByteBuffer[] atuais = regioes;
+		if (quantidadeRegioes == atuais.length) {
+			atuais = Arrays.copyOf(atuais, atuais.length * 2);
+		}
+		atuais[quantidadeRegioes] = ByteBuffer.allocateDirect(tamanho).order(ByteOrder.nativeOrder());
+		bytesReservados += tamanho;
+		// publica a região antes que o endereço de algum bloco dela seja entregue
+		regioes = atuais;
+		return quantidadeRegioes++;
+	}
+
+	long getLong(long endereco, int deslocamento) {
+		return regiao(endereco).getLong(posicao(endereco, deslocamento));
+	}
+
+	void putLong(long endereco, int deslocamento, long valor) {
+		regiao(endereco).putLong(posicao(endereco, deslocamento), valor);
+	}
+
+	int getInt(long endereco, int deslocamento) {
+		return regiao(endereco).getInt(posicao(endereco, deslocamento));
+	}
+
+	void putInt(long endereco, int deslocamento, int valor) {
+		regiao(endereco).putInt(posicao(endereco, deslocamento), valor);
+	}
+
+	long getBytesReservados() {
+		lock.lock();
+		try {
+			return bytesReservados;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	long getBytesEmUso() {
+		lock.lock();
+		try {
+			return bytesEmUso;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private ByteBuffer regiao(long endereco) {
+		return regioes[(int) (endereco >>> 32)];
+	}
+
+	private static int posicao(long endereco, int deslocamento) {
+		return (int) endereco + deslocamento;
+	}
+}
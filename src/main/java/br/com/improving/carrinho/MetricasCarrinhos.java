@@ -0,0 +1,54 @@
+package br.com.improving.carrinho;
+
+/**
+ * Recebe as medições das operações dos carrinhos e da factory (veja
+ * {@link CarrinhoComprasFactory.Builder#metricas(MetricasCarrinhos)}).
+ *
+ * As chamadas ocorrem nas threads que executam as operações, algumas delas sob o lock do carrinho, portanto as
+ * implementações devem ser rápidas e seguras para uso concorrente. {@link MetricasEmMemoria} é a implementação
+ * padrão; {@link #NENHUMA} não mede nada e não acrescenta custo às operações.
+ */
+public interface MetricasCarrinhos {
+
+	MetricasCarrinhos NENHUMA = operacao -> false;
+
+	/**
+	 * Notifica o início de uma operação.
+	 *
+	 * @param operacao
+	 * @return true caso a duração desta execução deva ser medida e informada em {@link #concluir}
+	 */
+	boolean iniciar(OperacaoCarrinho operacao);
+
+	/**
+	 * Informa a duração de uma execução para a qual {@link #iniciar} retornou true.
+	 *
+	 * @param operacao
+	 * @param duracaoNanos
+	 */
+	default void concluir(OperacaoCarrinho operacao, long duracaoNanos) {
+	}
+
+	/**
+	 * Notifica que a factory passou a ter um carrinho, ainda sem itens.
+	 */
+	default void carrinhoCriado() {
+	}
+
+	/**
+	 * Notifica que um carrinho deixou a factory.
+	 *
+	 * @param itens quantidade de itens do carrinho no momento da remoção
+	 */
+	default void carrinhoRemovido(int itens) {
+	}
+
+	/**
+	 * Notifica a alteração da quantidade de itens (produtos distintos) de um carrinho da factory.
+	 *
+	 * @param anterior
+	 * @param atual
+	 */
+	default void itensAlterados(int anterior, int atual) {
+	}
+}
@@ -0,0 +1,124 @@
+package br.com.improving.carrinho;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Métricas mantidas em memória: contagem de execuções e histograma de latência por operação, quantidade de carrinhos
+ * ativos e distribuição da quantidade de itens por carrinho.
+ *
+ * As contagens são sempre exatas. Apenas a latência é amostrada: ler o relógio duas vezes custa mais do que as
+ * operações mais rápidas, portanto somente uma execução em {@code amostragem}, sorteada a cada execução, é medida, e
+ * os percentis são calculados sobre as execuções medidas. O sorteio não depende da frequência da operação, de modo
+ * que mesmo operações raras, como criar e invalidar, têm as suas execuções medidas na mesma proporção.
+ *
+ * A quantidade de carrinhos e a distribuição de itens também são exatas.
+ *
+ * É segura para uso concorrente e não usa locks.
+ */
+public final class MetricasEmMemoria implements MetricasCarrinhos {
+
+	private static final int AMOSTRAGEM_PADRAO = 1024;
+	private static final IntUnaryOperator SORTEIO_PADRAO = limite -> ThreadLocalRandom.current().nextInt(limite);
+
+	private final LongAdder[] contagens;
+	private final Histograma[] latencias;
+	private final Histograma itensPorCarrinho;
+	private final int amostragem;
+	private final IntUnaryOperator sorteio;
+
+	public MetricasEmMemoria() {
+		this(AMOSTRAGEM_PADRAO);
+	}
+
+	/**
+	 * @param amostragem mede a latência de uma em cada {@code amostragem} execuções, em média; 1 mede todas
+	 */
+	public MetricasEmMemoria(int amostragem) {
+		this(amostragem, SORTEIO_PADRAO);
+	}
+
+	/**
+	 * @param sorteio retorna um número entre 0 e o limite recebido, exclusive; a execução é medida quando ele é 0
+	 */
+	MetricasEmMemoria(int amostragem, IntUnaryOperator sorteio) {
+		checkArgument(amostragem > 0, "Amostragem deve ser positiva");
+		int operacoes = OperacaoCarrinho.values().length;
+		this.contagens = new LongAdder[operacoes];
+		this.latencias = new Histograma[operacoes];
+		for (int i = 0; i < operacoes; i++) {
+			contagens[i] = new LongAdder();
+			latencias[i] = new Histograma();
+		}
+		this.itensPorCarrinho = new Histograma();
+		this.amostragem = amostragem;
+		this.sorteio = checkNotNull(sorteio, "Sorteio nao deve ser null");
+	}
+
+	@Override
+	public boolean iniciar(OperacaoCarrinho operacao) {
+		contagens[operacao.ordinal()].increment();
+		return amostragem == 1 || sorteio.applyAsInt(amostragem) == 0;
+	}
+
+	@Override
+	public void concluir(OperacaoCarrinho operacao, long duracaoNanos) {
+		latencias[operacao.ordinal()].registrar(duracaoNanos);
+	}
+
+	@Override
+	public void carrinhoCriado() {
+		itensPorCarrinho.registrar(0L);
+	}
+
+	@Override
+	public void carrinhoRemovido(int itens) {
+		itensPorCarrinho.adicionar(itens, -1L);
+	}
+
+	@Override
+	public void itensAlterados(int anterior, int atual) {
+		if (!itensPorCarrinho.mesmaFaixa(anterior, atual)) {
+			itensPorCarrinho.adicionar(anterior, -1L);
+			itensPorCarrinho.adicionar(atual, 1L);
+		}
+	}
+
+	/**
+	 * @param operacao
+	 * @return quantidade de execuções da operação
+	 */
+	public long getContagem(OperacaoCarrinho operacao) {
+		return contagens[checkNotNull(operacao, "Operacao nao deve ser null").ordinal()].sum();
+	}
+
+	/**
+	 * @param operacao
+	 * @param percentil entre 0 e 100
+	 * @return duração, em nanossegundos, abaixo da qual está o percentil das execuções medidas da operação, com erro
+	 * relativo de até 1/16
+	 */
+	public long getLatenciaNanos(OperacaoCarrinho operacao, double percentil) {
+		return latencias[checkNotNull(operacao, "Operacao nao deve ser null").ordinal()].percentil(percentil);
+	}
+
+	/**
+	 * @return quantidade de carrinhos na factory
+	 */
+	public long getCarrinhosAtivos() {
+		return itensPorCarrinho.total();
+	}
+
+	/**
+	 * @param percentil entre 0 e 100
+	 * @return quantidade de itens abaixo da qual está o percentil dos carrinhos na factory, com erro relativo de até
+	 * 1/16
+	 */
+	public long getItensPorCarrinho(double percentil) {
+		return itensPorCarrinho.percentil(percentil);
+	}
+}
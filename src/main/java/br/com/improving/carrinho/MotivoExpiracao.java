@@ -0,0 +1,17 @@
+package br.com.improving.carrinho;
+
+/**
+ * Motivo pelo qual um carrinho de compras foi removido automaticamente pela factory.
+ */
+public enum MotivoExpiracao {
+
+	/**
+	 * O carrinho ficou sem alterações por mais tempo que a inatividade configurada.
+	 */
+	INATIVIDADE,
+
+	/**
+	 * A quantidade de carrinhos ultrapassou o limite configurado e este era um dos menos usados recentemente.
+	 */
+	LIMITE_CARRINHOS
+}
@@ -0,0 +1,15 @@
+package br.com.improving.carrinho;
+
+/**
+ * Operações medidas por {@link MetricasCarrinhos}.
+ */
+public enum OperacaoCarrinho {
+
+	ADICIONAR_ITEM,
+	REMOVER_ITEM,
+	APLICAR_LOTE,
+	OBTER_VALOR_TOTAL,
+	CRIAR,
+	INVALIDAR,
+	OBTER_TICKET_MEDIO
+}
@@ -0,0 +1,102 @@
+package br.com.improving.carrinho;
+
+/**
+ * Recebe as alterações de um carrinho de compras.
+ *
+ * As notificações são feitas pelo carrinho enquanto ele mantém o seu lock, portanto as implementações devem ser
+ * rápidas e não podem acessar o próprio carrinho. A exceção é {@link #aguardar(long)}, chamado depois que o lock é
+ * liberado.
+ *
+ * Cada alteração é antes registrada (por exemplo no journal) e só então aplicada ao carrinho: caso o registro lance
+ * uma exceção, o carrinho não é alterado.
+ */
+interface OuvinteCarrinhoCompras {
+
+	OuvinteCarrinhoCompras NENHUM = delta -> { };
+
+	/**
+	 * Notifica que o valor total do carrinho foi alterado.
+	 *
+	 * @param deltaCentavos diferença, em centavos, entre o novo valor total e o anterior
+	 */
+	void valorTotalAlterado(long deltaCentavos);
+
+	/**
+	 * Registra uma adição validada, antes que ela seja aplicada.
+	 *
+	 * @param produto
+	 * @param valorUnitarioCentavos
+	 * @param quantidade
+	 * @return sequência a ser informada em {@link #aguardar(long)}
+	 */
+	default long registrarAdicao(Produto produto, long valorUnitarioCentavos, int quantidade) {
+		return 0L;
+	}
+
+	/**
+	 * Registra a remoção do item de um produto presente no carrinho, antes que ela seja aplicada.
+	 *
+	 * @param produto
+	 * @return sequência a ser informada em {@link #aguardar(long)}
+	 */
+	default long registrarRemocao(Produto produto) {
+		return 0L;
+	}
+
+	/**
+	 * Registra as operações de um lote validado, antes que ele seja aplicado.
+	 *
+	 * @param lote
+	 * @param valoresUnitariosCentavos valor unitário convertido de cada operação do lote, na mesma ordem
+	 * @return sequência a ser informada em {@link #aguardar(long)}
+	 */
+	default long registrarLote(LoteItens lote, long[] valoresUnitariosCentavos) {
+		return 0L;
+	}
+
+	/**
+	 * Aguarda, já fora do lock do carrinho, até que o registro da alteração esteja durável.
+	 *
+	 * @param sequencia retornada pelo registro da alteração
+	 */
+	default void aguardar(long sequencia) {
+	}
+
+	/**
+	 * Notifica uma chamada bem-sucedida de {@link CarrinhoCompras#adicionarItem}, com o valor unitário já convertido.
+	 *
+	 * @param produto
+	 * @param valorUnitarioCentavos
+	 * @param quantidade quantidade adicionada, não a quantidade final do item
+	 * @param novo true caso a adição tenha criado o item, false caso tenha sido somada a um item existente
+	 * @param deltaCentavos
+	 */
+	default void itemAdicionado(Produto produto, long valorUnitarioCentavos, int quantidade, boolean novo,
+			long deltaCentavos) {
+		valorTotalAlterado(deltaCentavos);
+	}
+
+	/**
+	 * Notifica a remoção do item de um produto.
+	 *
+	 * @param produto
+	 * @param deltaCentavos
+	 */
+	default void itemRemovido(Produto produto, long deltaCentavos) {
+		valorTotalAlterado(deltaCentavos);
+	}
+
+	/**
+	 * Notifica a aplicação de um lote, com uma única diferença de valor total para todas as operações.
+	 *
+	 * @param lote
+	 * @param valoresUnitariosCentavos valor unitário convertido de cada operação do lote, na mesma ordem
+	 * @param criouOuRemoveuLinha para cada operação, na mesma ordem, se a adição criou o item ou se a remoção
+	 * encontrou o item
+	 * @param deltaCentavos
+	 */
+	default void loteAplicado(LoteItens lote, long[] valoresUnitariosCentavos, boolean[] criouOuRemoveuLinha,
+			long deltaCentavos) {
+		valorTotalAlterado(deltaCentavos);
+	}
+}
@@ -0,0 +1,21 @@
+package br.com.improving.carrinho;
+
+/**
+ * Recebe os carrinhos de compras removidos automaticamente pela factory.
+ *
+ * A notificação ocorre depois que o carrinho já saiu da factory e do ticket médio, na thread que executou a limpeza.
+ */
+@FunctionalInterface
+public interface OuvinteExpiracao {
+
+	OuvinteExpiracao NENHUM = (identificacaoCliente, carrinhoCompras, motivo) -> { };
+
+	/**
+	 * Notifica a remoção de um carrinho.
+	 *
+	 * @param identificacaoCliente
+	 * @param carrinhoCompras
+	 * @param motivo
+	 */
+	void carrinhoExpirado(String identificacaoCliente, CarrinhoCompras carrinhoCompras, MotivoExpiracao motivo);
+}
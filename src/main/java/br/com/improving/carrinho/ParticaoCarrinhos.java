@@ -0,0 +1,105 @@
+package br.com.improving.carrinho;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+
+/**
+ * Acesso de {@link CarrinhoComprasFactoryParticionada} a uma partição dos carrinhos, que pode estar na mesma JVM (veja
+ * {@link ParticaoLocal}) ou em outro nó, por meio de um transporte próprio.
+ *
+ * Nenhuma operação recebe ou retorna um carrinho vivo: os carrinhos são identificados pelo cliente, as operações de
+ * {@link CarrinhoCompras} são repassadas com os seus parâmetros, e as leituras retornam cópias imutáveis, de modo que
+ * todas podem ser atendidas por um nó remoto. Carrinhos transferidos entre partições trafegam no formato de
+ * {@link CodecCarrinhoCompras}.
+ */
+public interface ParticaoCarrinhos {
+
+	/**
+	 * @param identificacaoCliente
+	 * @return estado do carrinho do cliente nesta partição, criado caso não exista
+	 */
+	EstadoCarrinhoCompras criar(String identificacaoCliente);
+
+	/**
+	 * @param identificacaoCliente
+	 * @return estado do carrinho do cliente nesta partição, ou null caso ele não exista
+	 */
+	EstadoCarrinhoCompras getEstado(String identificacaoCliente);
+
+	/**
+	 * Equivale a {@link CarrinhoCompras#adicionarItem} no carrinho do cliente, criado caso não exista.
+	 *
+	 * @param identificacaoCliente
+	 * @param produto
+	 * @param valorUnitario
+	 * @param quantidade
+	 */
+	void adicionarItem(String identificacaoCliente, Produto produto, BigDecimal valorUnitario, int quantidade);
+
+	/**
+	 * Equivale a {@link CarrinhoCompras#aplicarLote} no carrinho do cliente, criado caso não exista.
+	 *
+	 * @param identificacaoCliente
+	 * @param lote
+	 */
+	void aplicarLote(String identificacaoCliente, LoteItens lote);
+
+	/**
+	 * Equivale a {@link CarrinhoCompras#removerItem(Produto)} no carrinho do cliente, sem criá-lo.
+	 *
+	 * @param identificacaoCliente
+	 * @param produto
+	 * @return true caso o cliente tenha um carrinho com o produto
+	 */
+	boolean removerItem(String identificacaoCliente, Produto produto);
+
+	/**
+	 * Equivale a {@link CarrinhoCompras#removerItem(int)} no carrinho do cliente, sem criá-lo.
+	 *
+	 * @param identificacaoCliente
+	 * @param posicaoItem
+	 * @return true caso o cliente tenha um carrinho com um item na posição
+	 */
+	boolean removerItem(String identificacaoCliente, int posicaoItem);
+
+	/**
+	 * @param identificacaoCliente
+	 * @return true caso o cliente tenha um carrinho nesta partição
+	 */
+	boolean invalidar(String identificacaoCliente);
+
+	/**
+	 * @return soma dos valores totais e quantidade dos carrinhos desta partição
+	 */
+	ResumoTicketMedio getResumoTicketMedio();
+
+	/**
+	 * Lança IllegalStateException caso a partição não mantenha a distribuição.
+	 *
+	 * @return distribuição dos valores totais dos carrinhos desta partição
+	 */
+	DistribuicaoValores getDistribuicaoValores();
+
+	/**
+	 * @return identificação dos clientes com carrinho nesta partição
+	 */
+	Collection<String> getIdentificacoesClientes();
+
+	/**
+	 * Codifica o carrinho do cliente sem removê-lo da partição.
+	 *
+	 * @param identificacaoCliente
+	 * @return carrinho codificado, ou null caso o cliente não tenha carrinho nesta partição
+	 */
+	byte[] exportar(String identificacaoCliente);
+
+	/**
+	 * Substitui os itens do carrinho do cliente nesta partição, criado caso não exista, pelos do carrinho codificado,
+	 * de uma só vez. Importar novamente o mesmo carrinho não altera o resultado, de modo que uma transferência
+	 * interrompida pode ser repetida.
+	 *
+	 * @param identificacaoCliente
+	 * @param carrinhoCodificado
+	 */
+	void importar(String identificacaoCliente, byte[] carrinhoCodificado);
+}
@@ -0,0 +1,108 @@
+package br.com.improving.carrinho;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.Objects;
+
+/**
+ * Partição mantida por uma {@link CarrinhoComprasFactory} na própria JVM, acessada diretamente, sem transporte.
+ *
+ * Exportação e importação passam pelo mesmo {@link CodecCarrinhoCompras} usado entre nós, de modo que o rebalanceamento
+ * se comporta como o de partições remotas. Os carrinhos devem ser alterados apenas por meio da
+ * {@link CarrinhoComprasFactoryParticionada}, e não diretamente pela factory da partição, para que nenhuma alteração
+ * ocorra durante a transferência de um carrinho.
+ */
+public final class ParticaoLocal implements ParticaoCarrinhos {
+
+	private final CarrinhoComprasFactory factory;
+	private final CodecCarrinhoCompras codec;
+
+	public ParticaoLocal(CarrinhoComprasFactory factory) {
+		this.factory = checkNotNull(factory, "Factory nao deve ser null");
+		CatalogoProdutos catalogo = factory.getCatalogo();
+		this.codec = Objects.isNull(catalogo) ? new CodecCarrinhoCompras() : new CodecCarrinhoCompras(catalogo);
+	}
+
+	@Override
+	public EstadoCarrinhoCompras criar(String identificacaoCliente) {
+		return factory.criar(identificacaoCliente).getEstado();
+	}
+
+	@Override
+	public EstadoCarrinhoCompras getEstado(String identificacaoCliente) {
+		CarrinhoCompras carrinhoCompras = factory.getCarrinhoCompras(identificacaoCliente);
+		return Objects.isNull(carrinhoCompras) ? null : carrinhoCompras.getEstado();
+	}
+
+	@Override
+	public void adicionarItem(String identificacaoCliente, Produto produto, BigDecimal valorUnitario,
+			int quantidade) {
+		factory.criar(identificacaoCliente).adicionarItem(produto, valorUnitario, quantidade);
+	}
+
+	@Override
+	public void aplicarLote(String identificacaoCliente, LoteItens lote) {
+		factory.criar(identificacaoCliente).aplicarLote(lote);
+	}
+
+	@Override
+	public boolean removerItem(String identificacaoCliente, Produto produto) {
+		CarrinhoCompras carrinhoCompras = factory.getCarrinhoCompras(identificacaoCliente);
+		return Objects.nonNull(carrinhoCompras) && carrinhoCompras.removerItem(produto);
+	}
+
+	@Override
+	public boolean removerItem(String identificacaoCliente, int posicaoItem) {
+		CarrinhoCompras carrinhoCompras = factory.getCarrinhoCompras(identificacaoCliente);
+		return Objects.nonNull(carrinhoCompras) && carrinhoCompras.removerItem(posicaoItem);
+	}
+
+	@Override
+	public boolean invalidar(String identificacaoCliente) {
+		return factory.invalidar(identificacaoCliente);
+	}
+
+	@Override
+	public ResumoTicketMedio getResumoTicketMedio() {
+		return factory.getResumoTicketMedio();
+	}
+
+	@Override
+	public DistribuicaoValores getDistribuicaoValores() {
+		return factory.getDistribuicaoValores();
+	}
+
+	@Override
+	public Collection<String> getIdentificacoesClientes() {
+		return factory.getIdentificacoesClientes();
+	}
+
+	@Override
+	public byte[] exportar(String identificacaoCliente) {
+		CarrinhoCompras carrinhoCompras = factory.getCarrinhoCompras(identificacaoCliente);
+		return Objects.isNull(carrinhoCompras) ? null : codec.codificar(carrinhoCompras);
+	}
+
+	/**
+	 * Remove os itens atuais e adiciona os importados em um único lote, sob o lock do carrinho.
+	 */
+	@Override
+	public void importar(String identificacaoCliente, byte[] carrinhoCodificado) {
+		checkNotNull(carrinhoCodificado, "Carrinho codificado nao deve ser null");
+		Collection<Item> importados = codec.decodificar(ByteBuffer.wrap(carrinhoCodificado)).getItens();
+		factory.comLock(identificacaoCliente, carrinho -> {
+			LoteItens lote = new LoteItens();
+			for (Item item : carrinho.getEstado().getItens()) {
+				lote.remover(item.getProduto());
+			}
+			for (Item item : importados) {
+				lote.adicionar(item.getProduto(), item.getValorUnitario(), item.getQuantidade());
+			}
+			carrinho.aplicarLote(lote);
+			return null;
+		});
+	}
+}
@@ -0,0 +1,20 @@
+package br.com.improving.carrinho;
+
+/**
+ * O que fazer com um evento quando o buffer de eventos da factory está cheio porque algum assinante ainda não
+ * consumiu os eventos anteriores.
+ */
+public enum PoliticaFluxoCheio {
+
+	/**
+	 * O evento é descartado para todos os assinantes e contado em
+	 * {@link CarrinhoComprasFactory#getEventosDescartados()}; a alteração do carrinho nunca espera.
+	 */
+	DESCARTAR,
+
+	/**
+	 * A alteração do carrinho espera até haver espaço no buffer, de modo que nenhum evento é perdido e o ritmo das
+	 * alterações fica limitado ao do assinante mais lento.
+	 */
+	AGUARDAR
+}
@@ -0,0 +1,258 @@
+package br.com.improving.carrinho;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.LinkedHashMap;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
+
+/**
+ * Política de despejo W-TinyLFU, no estilo do Caffeine, para um conjunto residente limitado pela soma dos pesos dos
+ * elementos.
+ *
+ * Elementos novos entram em uma janela LRU com 1% do peso máximo. Ao sair dela, o elemento disputa um lugar na região
+ * principal com a vítima da região, e fica o que tiver a maior frequência estimada por um {@link SketchFrequencia},
+ * que conta também os acessos a elementos não residentes e reduz as contagens à metade periodicamente. A região
+ * principal é uma LRU segmentada: elementos acessados novamente passam da parte probatória para a protegida, com 80%
+ * do peso da região, e as vítimas saem primeiro da probatória. Assim, uma rajada de elementos acessados uma única vez
+ * não expulsa os frequentes, e elementos que deixam de ser acessados perdem a frequência com o tempo.
+ *
+ * Acessos e remoções apenas enfileiram o elemento, sem locks; a fila é processada e os elementos excedentes são
+ * despejados em {@link #manter()}, por uma thread de cada vez, como em {@link ExpiracaoCarrinhos}. O peso residente,
+ * por outro lado, é informado imediatamente por quem inclui, altera e remove os elementos, de modo que o limite é
+ * verificado com o peso real; o peso de cada elemento na ordem é atualizado a cada acesso a ele.
+ */
+final class PoliticaWTinyLfu<E> {
+
+	private static final int PROFUNDIDADE = 4;
+	private static final int LARGURA_MAXIMA = 1 << 20;
+	// acessos acumulados antes que a fila seja processada enquanto o peso residente está dentro do limite
+	private static final int LOTE = 64;
+
+	private final long pesoMaximo;
+	private final long pesoMaximoJanela;
+	private final long pesoMaximoPrincipal;
+	private final long pesoMaximoProtegido;
+	private final ToIntFunction<E> peso;
+	private final ToLongFunction<E> chave;
+	private final Predicate<E> ativo;
+	private final Consumer<E> despejo;
+	private final SketchFrequencia frequencias;
+	private final AtomicLong pesoResidente;
+	private final Queue<E> pendentes;
+	private final AtomicInteger quantidadePendentes;
+	private final ReentrantLock lock;
+	// do menos para o mais recentemente acessado, com o peso considerado para cada elemento; alterados sob o lock
+	private final LinkedHashMap<E, Integer> janela;
+	private final LinkedHashMap<E, Integer> probatorio;
+	private final LinkedHashMap<E, Integer> protegido;
+	private long pesoJanela;
+	private long pesoProbatorio;
+	private long pesoProtegido;
+
+	/**
+	 * @param pesoMaximo
+	 * @param peso peso atual do elemento, lido ao processar os acessos a ele
+	 * @param chave chave do elemento na contagem de frequência, a mesma para elementos equivalentes recriados
+	 * @param ativo false para elementos já removidos do conjunto residente, que apenas saem da ordem
+	 * @param despejo remove o elemento do conjunto residente e informa o seu peso em {@link #pesoAlterado(long)}
+	 */
+	PoliticaWTinyLfu(long pesoMaximo, ToIntFunction<E> peso, ToLongFunction<E> chave, Predicate<E> ativo,
+			Consumer<E> despejo) {
+		checkArgument(pesoMaximo > 0, "Peso maximo deve ser maior que zero");
+		this.pesoMaximo = pesoMaximo;
+		this.pesoMaximoJanela = Math.max(1L, pesoMaximo / 100);
+		this.pesoMaximoPrincipal = pesoMaximo - pesoMaximoJanela;
+		this.pesoMaximoProtegido = pesoMaximoPrincipal * 4 / 5;
+		this.peso = peso;
+		this.chave = chave;
+		this.ativo = ativo;
+		this.despejo = despejo;
+		int largura = (int) Math.min(pesoMaximo, LARGURA_MAXIMA);
+		this.frequencias = new SketchFrequencia(largura, PROFUNDIDADE, 10L * largura);
+		this.pesoResidente = new AtomicLong();
+		this.pendentes = new ConcurrentLinkedQueue<>();
+		this.quantidadePendentes = new AtomicInteger();
+		this.lock = new ReentrantLock();
+		this.janela = new LinkedHashMap<>();
+		this.probatorio = new LinkedHashMap<>();
+		this.protegido = new LinkedHashMap<>();
+	}
+
+	/**
+	 * Registra um acesso ao elemento; elementos que ainda não estão na ordem entram na janela.
+	 */
+	void acessar(E elemento) {
+		frequencias.incrementar(chave.applyAsLong(elemento));
+		enfileirar(elemento);
+	}
+
+	/**
+	 * Registra que o elemento foi removido do conjunto residente por outro caminho que não o despejo.
+	 */
+	void removido(E elemento) {
+		enfileirar(elemento);
+	}
+
+	/**
+	 * @param delta diferença no peso dos elementos residentes, por inclusão, alteração ou remoção
+	 */
+	void pesoAlterado(long delta) {
+		pesoResidente.addAndGet(delta);
+	}
+
+	long getPesoResidente() {
+		return pesoResidente.get();
+	}
+
+	long estimarFrequencia(E elemento) {
+		return frequencias.estimar(chave.applyAsLong(elemento));
+	}
+
+	/**
+	 * Processa os acessos enfileirados e despeja elementos até que o peso residente volte ao limite.
+	 */
+	void manter() {
+		if (quantidadePendentes.get() < LOTE && pesoResidente.get() <= pesoMaximo) {
+			return;
+		}
+		if (!lock.tryLock()) {
+			return;
+		}
+		try {
+			drenar();
+			despejarExcedentes();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private void enfileirar(E elemento) {
+		pendentes.add(elemento);
+		quantidadePendentes.incrementAndGet();
+	}
+
+	private void drenar() {
+		for (E elemento = pendentes.poll(); Objects.nonNull(elemento); elemento = pendentes.poll()) {
+			quantidadePendentes.decrementAndGet();
+			if (!ativo.test(elemento)) {
+				desvincular(elemento);
+			} else if (janela.containsKey(elemento)) {
+				pesoJanela += mover(janela, elemento);
+			} else if (probatorio.containsKey(elemento)) {
+				pesoProbatorio -= probatorio.remove(elemento);
+				pesoProtegido += incluir(protegido, elemento);
+				rebaixarProtegidos();
+			} else if (protegido.containsKey(elemento)) {
+				pesoProtegido += mover(protegido, elemento);
+			} else {
+				pesoJanela += incluir(janela, elemento);
+			}
+		}
+	}
+
+	private void despejarExcedentes() {
+		while (pesoJanela > pesoMaximoJanela) {
+			E candidato = janela.keySet().iterator().next();
+			if (admitir(candidato)) {
+				pesoJanela -= janela.remove(candidato);
+				pesoProbatorio += incluir(probatorio, candidato);
+			} else {
+				despejar(candidato);
+			}
+		}
+		// residentes que crescem depois de admitidos podem exceder o limite sem passar pela janela
+		while (pesoResidente.get() > pesoMaximo) {
+			LinkedHashMap<E, Integer> segmento = probatorio.isEmpty()
+					? (protegido.isEmpty() ? janela : protegido)
+					: probatorio;
+			if (segmento.isEmpty()) {
+				return;
+			}
+			despejar(segmento.keySet().iterator().next());
+		}
+	}
+
+	/**
+	 * Abre espaço para o candidato na região principal despejando as vítimas menos frequentes que ele, ou desiste
+	 * quando encontra uma vítima tão frequente quanto ele.
+	 *
+	 * @return true caso o candidato caiba na região principal
+	 */
+	private boolean admitir(E candidato) {
+		long pesoCandidato = janela.get(candidato);
+		long frequenciaCandidato = estimarFrequencia(candidato);
+		while (pesoProbatorio + pesoProtegido + pesoCandidato > pesoMaximoPrincipal) {
+			LinkedHashMap<E, Integer> segmento = probatorio.isEmpty() ? protegido : probatorio;
+			if (segmento.isEmpty()) {
+				return false;
+			}
+			E vitima = segmento.keySet().iterator().next();
+			if (estimarFrequencia(vitima) >= frequenciaCandidato) {
+				return false;
+			}
+			despejar(vitima);
+		}
+		return true;
+	}
+
+	/**
+	 * Despeja o elemento antes de tirá-lo da ordem, de modo que, caso o despejo falhe, ele continue sendo considerado.
+	 */
+	private void despejar(E elemento) {
+		despejo.accept(elemento);
+		desvincular(elemento);
+	}
+
+	private void desvincular(E elemento) {
+		Integer anterior = janela.remove(elemento);
+		if (Objects.nonNull(anterior)) {
+			pesoJanela -= anterior;
+			return;
+		}
+		anterior = probatorio.remove(elemento);
+		if (Objects.nonNull(anterior)) {
+			pesoProbatorio -= anterior;
+			return;
+		}
+		anterior = protegido.remove(elemento);
+		if (Objects.nonNull(anterior)) {
+			pesoProtegido -= anterior;
+		}
+	}
+
+	private void rebaixarProtegidos() {
+		while (pesoProtegido > pesoMaximoProtegido) {
+			E primeiro = protegido.keySet().iterator().next();
+			pesoProtegido -= protegido.remove(primeiro);
+			pesoProbatorio += incluir(probatorio, primeiro);
+		}
+	}
+
+	/**
+	 * Move o elemento para o fim da ordem do segmento, com o peso atual.
+	 *
+	 * @return diferença entre o peso atual e o anterior
+	 */
+	private int mover(LinkedHashMap<E, Integer> segmento, E elemento) {
+		int anterior = segmento.remove(elemento);
+		return incluir(segmento, elemento) - anterior;
+	}
+
+	/**
+	 * @return peso atual do elemento, incluído no fim da ordem do segmento
+	 */
+	private int incluir(LinkedHashMap<E, Integer> segmento, E elemento) {
+		int atual = peso.applyAsInt(elemento);
+		segmento.put(elemento, atual);
+		return atual;
+	}
+}
@@ -10,6 +10,8 @@ import java.util.Objects;
  *
  * Importante: Dois produtos são considerados iguais quando ambos possuem o
  * mesmo código.
+ *
+ * Para compartilhar uma única instância por código entre muitos carrinhos, veja {@link CatalogoProdutos}.
  */
 public class Produto {
 
@@ -60,6 +62,6 @@ public class Produto {
 
 	@Override
 	public int hashCode() {
-		return Objects.hash(codigo);
+		return Objects.hashCode(codigo);
 	}
 }
\ No newline at end of file
@@ -0,0 +1,29 @@
+package br.com.improving.carrinho;
+
+/**
+ * Produto entre os mais colocados em carrinhos, com a quantidade estimada de vezes em que foi colocado (veja
+ * {@link CarrinhoComprasFactory#getProdutosMaisColocados()}).
+ */
+public final class ProdutoColocado {
+
+	private final Produto produto;
+	private final long colocacoesEstimadas;
+
+	ProdutoColocado(Produto produto, long colocacoesEstimadas) {
+		this.produto = produto;
+		this.colocacoesEstimadas = colocacoesEstimadas;
+	}
+
+	public Produto getProduto() {
+		return produto;
+	}
+
+	/**
+	 * @return quantidade estimada, nunca menor que a real, de itens do produto criados em carrinhos, inclusive os já
+	 * removidos, com os mais antigos contando menos (veja
+	 * {@link CarrinhoComprasFactory.Builder#produtosMaisColocados(int, long)})
+	 */
+	public long getColocacoesEstimadas() {
+		return colocacoesEstimadas;
+	}
+}
@@ -0,0 +1,177 @@
+package br.com.improving.carrinho;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Mantém os produtos colocados em carrinhos com mais frequência, a partir de um {@link SketchFrequencia} e de uma
+ * lista limitada de candidatos.
+ *
+ * Conta colocações, e não itens presentes nos carrinhos: remover o item, retirar o produto de todos os carrinhos ou
+ * invalidar o carrinho não desfaz a colocação, que deixa de pesar apenas com as reduções à metade do sketch. Assim as
+ * estimativas nunca ficam abaixo das contagens reais, o que decrementos combinados com as reduções não garantiriam.
+ *
+ * Cada item criado incrementa o sketch; o produto entra na lista quando ela tem espaço ou quando a sua frequência
+ * estimada supera a do candidato menos frequente, que sai dela. Como a estimativa excede a frequência real em no
+ * máximo {@code e / LARGURA} vezes o total (com probabilidade de ao menos {@code 1 - e^-PROFUNDIDADE}), um produto
+ * pode ficar de fora apenas quando a sua frequência está a menos disso da frequência do último da lista.
+ *
+ * Registrar só adquire o lock quando o produto pode entrar na lista ou quando o sketch foi reduzido desde a última
+ * atualização dos candidatos: os produtos abaixo do menor candidato atualizam apenas o sketch, e os que já são
+ * candidatos, encontrados em um índice concorrente pelo código, elevam a própria frequência com um CAS. A memória
+ * ocupada é fixa: o sketch, os candidatos e o índice deles.
+ */
+final class ProdutosMaisColocados {
+
+	static final int LARGURA = 4_096;
+	static final int PROFUNDIDADE = 4;
+
+	private final int quantidade;
+	private final SketchFrequencia sketch;
+	private final ReentrantLock lock;
+	// alterados apenas sob o lock; a frequência de cada candidato também é elevada sem o lock, por registrar
+	private final Candidato[] lista;
+	private int candidatos;
+	// os candidatos da lista pelo código do produto, para que registrar os encontre sem o lock
+	private final ConcurrentMap<Long, Candidato> indice;
+	private volatile int reducoesAplicadas;
+	// menor frequência entre os candidatos com a lista cheia, ou zero enquanto houver espaço
+	private volatile long limiar;
+
+	/**
+	 * @param quantidade tamanho da lista de produtos mais colocados
+	 * @param janela itens criados entre duas reduções das frequências à metade
+	 */
+	ProdutosMaisColocados(int quantidade, long janela) {
+		this.quantidade = quantidade;
+		this.sketch = new SketchFrequencia(LARGURA, PROFUNDIDADE, janela);
+		this.lock = new ReentrantLock();
+		this.lista = new Candidato[quantidade];
+		this.indice = new ConcurrentHashMap<>(quantidade * 2);
+	}
+
+	void registrar(Produto produto) {
+		long frequencia = sketch.incrementar(produto.getCodigo());
+		if (reducoesAplicadas == sketch.getReducoes()) {
+			if (frequencia <= limiar) {
+				return;
+			}
+			// um candidato que deixar a lista concorrentemente recebe a frequência depois de sair dela, sem efeito
+			Candidato candidato = indice.get(produto.getCodigo());
+			if (Objects.nonNull(candidato)) {
+				candidato.elevar(frequencia);
+				return;
+			}
+		}
+		lock.lock();
+		try {
+			reduzirCandidatos();
+			atualizar(produto, frequencia);
+			limiar = candidatos < quantidade ? 0L : lista[menosFrequente()].frequencia.get();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Acompanha as reduções do sketch para que as frequências dos candidatos continuem comparáveis às novas
+	 * estimativas; deve ser chamado sob o lock.
+	 */
+	private void reduzirCandidatos() {
+		int reducoes = sketch.getReducoes();
+		if (reducoes == reducoesAplicadas) {
+			return;
+		}
+		int deslocamento = Math.min(reducoes - reducoesAplicadas, 63);
+		for (int i = 0; i < candidatos; i++) {
+			lista[i].frequencia.getAndUpdate(frequencia -> frequencia >>> deslocamento);
+		}
+		reducoesAplicadas = reducoes;
+	}
+
+	private void atualizar(Produto produto, long frequencia) {
+		Candidato candidato = indice.get(produto.getCodigo());
+		if (Objects.nonNull(candidato)) {
+			candidato.elevar(frequencia);
+			return;
+		}
+		if (candidatos < quantidade) {
+			incluir(candidatos, produto, frequencia);
+			candidatos++;
+			return;
+		}
+		int menosFrequente = menosFrequente();
+		if (frequencia > lista[menosFrequente].frequencia.get()) {
+			indice.remove(lista[menosFrequente].produto.getCodigo());
+			incluir(menosFrequente, produto, frequencia);
+		}
+	}
+
+	private void incluir(int posicao, Produto produto, long frequencia) {
+		lista[posicao] = new Candidato(produto, frequencia);
+		indice.put(produto.getCodigo(), lista[posicao]);
+	}
+
+	private int menosFrequente() {
+		int menosFrequente = 0;
+		long menorFrequencia = lista[0].frequencia.get();
+		for (int i = 1; i < candidatos; i++) {
+			long frequencia = lista[i].frequencia.get();
+			if (frequencia < menorFrequencia) {
+				menosFrequente = i;
+				menorFrequencia = frequencia;
+			}
+		}
+		return menosFrequente;
+	}
+
+	/**
+	 * @return candidatos com a frequência estimada no momento da chamada, do mais para o menos frequente
+	 */
+	List<ProdutoColocado> getProdutos() {
+		List<ProdutoColocado> maisColocados = new ArrayList<>(quantidade);
+		lock.lock();
+		try {
+			for (int i = 0; i < candidatos; i++) {
+				Produto produto = lista[i].produto;
+				maisColocados.add(new ProdutoColocado(produto, sketch.estimar(produto.getCodigo())));
+			}
+		} finally {
+			lock.unlock();
+		}
+		maisColocados.sort(Comparator.comparingLong(ProdutoColocado::getColocacoesEstimadas).reversed());
+		return maisColocados;
+	}
+
+	long estimar(long codigo) {
+		return sketch.estimar(codigo);
+	}
+
+	/**
+	 * Produto da lista e a maior frequência estimada com que foi registrado desde que entrou nela, reduzida junto com
+	 * o sketch.
+	 */
+	private static final class Candidato {
+
+		private final Produto produto;
+		private final AtomicLong frequencia;
+
+		private Candidato(Produto produto, long frequencia) {
+			this.produto = produto;
+			this.frequencia = new AtomicLong(frequencia);
+		}
+
+		private void elevar(long estimativa) {
+			long atual;
+			while ((atual = frequencia.get()) < estimativa && !frequencia.compareAndSet(atual, estimativa)) {
+				// outra thread alterou a frequência; verifica novamente
+			}
+		}
+	}
+}
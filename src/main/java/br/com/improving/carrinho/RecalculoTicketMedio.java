@@ -0,0 +1,67 @@
+package br.com.improving.carrinho;
+
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Recalcula soma e quantidade dos carrinhos percorrendo todos eles, dividindo o array de registros ao meio até
+ * trechos pequenos o suficiente para serem somados sequencialmente.
+ *
+ * As somas parciais são inteiras, em centavos, portanto o resultado combinado é exatamente o mesmo do percurso
+ * sequencial, em qualquer ordem e com qualquer quantidade de threads. Cada carrinho é lido uma única vez pelo seu
+ * valor total volátil, sem bloquear alterações; registros removidos da factory durante o percurso são ignorados.
+ */
+final class RecalculoTicketMedio extends RecursiveTask<ResumoTicketMedio> {
+
+	static final int LIMITE_SEQUENCIAL = 4_096;
+
+	private static final long serialVersionUID = 1L;
+
+	private final RegistroCarrinho[] registros;
+	private final int inicio;
+	private final int fim;
+
+	private RecalculoTicketMedio(RegistroCarrinho[] registros, int inicio, int fim) {
+		this.registros = registros;
+		this.inicio = inicio;
+		this.fim = fim;
+	}
+
+	/**
+	 * @param registros
+	 * @param pool pool usado para dividir o percurso, ou null para percorrer sequencialmente na thread atual
+	 * @return soma dos valores totais e quantidade dos registros ativos
+	 */
+	static ResumoTicketMedio calcular(RegistroCarrinho[] registros, ForkJoinPool pool) {
+		if (Objects.isNull(pool) || registros.length <= LIMITE_SEQUENCIAL) {
+			return somar(registros, 0, registros.length);
+		}
+		return pool.invoke(new RecalculoTicketMedio(registros, 0, registros.length));
+	}
+
+	@Override
+	protected ResumoTicketMedio compute() {
+		if (fim - inicio <= LIMITE_SEQUENCIAL) {
+			return somar(registros, inicio, fim);
+		}
+		int meio = (inicio + fim) >>> 1;
+		RecalculoTicketMedio esquerda = new RecalculoTicketMedio(registros, inicio, meio);
+		esquerda.fork();
+		ResumoTicketMedio direita = new RecalculoTicketMedio(registros, meio, fim).compute();
+		return esquerda.join().combinar(direita);
+	}
+
+	private static ResumoTicketMedio somar(RegistroCarrinho[] registros, int inicio, int fim) {
+		long somaCentavos = 0L;
+		long quantidade = 0L;
+		for (int i = inicio; i < fim; i++) {
+			RegistroCarrinho registro = registros[i];
+			if (registro.isAtivo()) {
+				somaCentavos = Math.addExact(somaCentavos, registro.getCarrinho().getValorTotalCentavos());
+				quantidade++;
+			}
+		}
+		return new ResumoTicketMedio(somaCentavos, quantidade);
+	}
+}
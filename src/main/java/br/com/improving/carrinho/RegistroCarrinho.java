@@ -0,0 +1,171 @@
+package br.com.improving.carrinho;
+
+/**
+ * Entrada da factory para um cliente: associa a identificação ao carrinho e repassa à factory as alterações do
+ * carrinho junto com a identidade de quem as originou.
+ */
+final class RegistroCarrinho implements OuvinteCarrinhoCompras {
+
+	private final String identificacaoCliente;
+	private final CarrinhoComprasFactory factory;
+	private final CarrinhoLocal carrinho;
+	private final CarrinhoCompras carrinhoCompras;
+	private volatile long ultimoAcesso;
+	private volatile boolean ativo;
+	private long ultimaSequencia;
+	private long intervaloJanela;
+	private volatile int linhas;
+	private boolean carregando;
+	private boolean pendenteGravacao;
+
+	RegistroCarrinho(String identificacaoCliente, CarrinhoComprasFactory factory) {
+		this.identificacaoCliente = identificacaoCliente;
+		this.factory = factory;
+		this.carrinho = new CarrinhoLocal(this, factory.getCatalogo(), factory.getMetricas(), factory.novasLinhas());
+		// com o cache, os clientes recebem uma referência que continua válida depois que o carrinho sai da memória
+		this.carrinhoCompras = new CarrinhoCompras(factory.isCache()
+				? new CarrinhoEmCache(factory, identificacaoCliente)
+				: carrinho);
+		this.ativo = true;
+		this.intervaloJanela = JanelaTicketMedio.NENHUM;
+	}
+
+	@Override
+	public void valorTotalAlterado(long deltaCentavos) {
+		factory.carrinhoAlterado(this, deltaCentavos);
+	}
+
+	@Override
+	public long registrarAdicao(Produto produto, long valorUnitarioCentavos, int quantidade) {
+		return factory.registrarAdicao(this, produto, valorUnitarioCentavos, quantidade);
+	}
+
+	@Override
+	public long registrarRemocao(Produto produto) {
+		return factory.registrarRemocao(this, produto);
+	}
+
+	@Override
+	public long registrarLote(LoteItens lote, long[] valoresUnitariosCentavos) {
+		return factory.registrarLote(this, lote, valoresUnitariosCentavos);
+	}
+
+	@Override
+	public void aguardar(long sequencia) {
+		factory.aguardar(sequencia);
+	}
+
+	@Override
+	public void itemAdicionado(Produto produto, long valorUnitarioCentavos, int quantidade, boolean novo,
+			long deltaCentavos) {
+		factory.itemAdicionado(this, produto, valorUnitarioCentavos, quantidade, novo, deltaCentavos);
+	}
+
+	@Override
+	public void itemRemovido(Produto produto, long deltaCentavos) {
+		factory.itemRemovido(this, produto, deltaCentavos);
+	}
+
+	@Override
+	public void loteAplicado(LoteItens lote, long[] valoresUnitariosCentavos, boolean[] criouOuRemoveuLinha,
+			long deltaCentavos) {
+		factory.loteAplicado(this, lote, valoresUnitariosCentavos, criouOuRemoveuLinha, deltaCentavos);
+	}
+
+	String getIdentificacaoCliente() {
+		return identificacaoCliente;
+	}
+
+	/**
+	 * @return carrinho retornado aos clientes da factory, sempre o mesmo para este registro
+	 */
+	CarrinhoCompras getCarrinhoCompras() {
+		return carrinhoCompras;
+	}
+
+	/**
+	 * @return implementação do carrinho, com as operações internas da factory
+	 */
+	CarrinhoLocal getCarrinho() {
+		return carrinho;
+	}
+
+	long getUltimoAcesso() {
+		return ultimoAcesso;
+	}
+
+	void acessar(long agora) {
+		this.ultimoAcesso = agora;
+	}
+
+	/**
+	 * Sequência do último evento do journal aplicado a este carrinho; lida e escrita sob o lock do carrinho.
+	 */
+	long getUltimaSequencia() {
+		return ultimaSequencia;
+	}
+
+	void setUltimaSequencia(long ultimaSequencia) {
+		this.ultimaSequencia = ultimaSequencia;
+	}
+
+	/**
+	 * Intervalo da última atividade registrada na janela do ticket médio; lido e escrito sob o lock do carrinho.
+	 */
+	long getIntervaloJanela() {
+		return intervaloJanela;
+	}
+
+	void setIntervaloJanela(long intervaloJanela) {
+		this.intervaloJanela = intervaloJanela;
+	}
+
+	/**
+	 * Peso do carrinho no cache: a quantidade de linhas, ou 1 para o carrinho vazio. A quantidade de linhas é mantida
+	 * pela factory apenas com o cache habilitado, sob o lock do carrinho.
+	 */
+	int getPeso() {
+		return Math.max(1, linhas);
+	}
+
+	void alterarLinhas(int delta) {
+		this.linhas += delta;
+	}
+
+	/**
+	 * true enquanto os itens carregados do repositório são adicionados ao carrinho, com acesso exclusivo ao cliente.
+	 */
+	boolean isCarregando() {
+		return carregando;
+	}
+
+	void setCarregando(boolean carregando) {
+		this.carregando = carregando;
+	}
+
+	/**
+	 * true caso o carrinho tenha alterações ainda não gravadas no repositório; lido e escrito sob o lock do carrinho.
+	 */
+	boolean isPendenteGravacao() {
+		return pendenteGravacao;
+	}
+
+	void setPendenteGravacao(boolean pendenteGravacao) {
+		this.pendenteGravacao = pendenteGravacao;
+	}
+
+	boolean isAtivo() {
+		return ativo;
+	}
+
+	/**
+	 * Marca o registro como removido da factory, por invalidação, expiração ou despejo do cache, e desliga o carrinho
+	 * dela.
+	 *
+	 * @return valor total do carrinho, em centavos, no momento da remoção
+	 */
+	long desativar() {
+		this.ativo = false;
+		return carrinho.desvincular();
+	}
+}
@@ -0,0 +1,17 @@
+package br.com.improving.carrinho;
+
+/**
+ * Fonte de tempo usada pela factory, permitindo que testes controlem a passagem do tempo sem esperar.
+ */
+@FunctionalInterface
+public interface Relogio {
+
+	Relogio SISTEMA = System::currentTimeMillis;
+
+	/**
+	 * Retorna o instante atual em milissegundos.
+	 *
+	 * @return long
+	 */
+	long agoraEmMillis();
+}
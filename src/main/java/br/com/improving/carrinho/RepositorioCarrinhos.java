@@ -0,0 +1,46 @@
+package br.com.improving.carrinho;
+
+import java.util.function.BiConsumer;
+
+/**
+ * Armazenamento dos carrinhos que não estão em memória quando a factory funciona como cache (veja
+ * {@link CarrinhoComprasFactory.Builder#cache(RepositorioCarrinhos, long)}).
+ *
+ * A factory chama os métodos com exclusividade para o cliente informado, de modo que nunca há duas chamadas
+ * concorrentes para um mesmo cliente; chamadas para clientes diferentes podem ser concorrentes, e nenhuma é feita sob
+ * o lock do mapa de carrinhos ou de um carrinho. As gravações são feitas por uma thread própria da factory. Os
+ * carrinhos recebidos e retornados são cópias: o repositório não deve guardar a instância recebida em {@link #gravar}.
+ *
+ * @see RepositorioCarrinhosEmMemoria
+ * @see RepositorioCarrinhosEmArquivos
+ */
+public interface RepositorioCarrinhos {
+
+	/**
+	 * @param identificacaoCliente
+	 * @return carrinho gravado para o cliente, ou null caso não exista
+	 */
+	CarrinhoCompras carregar(String identificacaoCliente);
+
+	/**
+	 * Grava o carrinho do cliente, substituindo o anterior.
+	 *
+	 * @param identificacaoCliente
+	 * @param carrinhoCompras
+	 */
+	void gravar(String identificacaoCliente, CarrinhoCompras carrinhoCompras);
+
+	/**
+	 * @param identificacaoCliente
+	 * @return true caso existisse um carrinho gravado para o cliente
+	 */
+	boolean remover(String identificacaoCliente);
+
+	/**
+	 * Percorre todos os carrinhos gravados, uma única vez, ao criar a factory, antes de qualquer outra chamada, para
+	 * que os agregados de todos os carrinhos considerem também os que não estão em memória.
+	 *
+	 * @param consumidor recebe a identificação do cliente e o carrinho gravado para ele
+	 */
+	void percorrer(BiConsumer<String, CarrinhoCompras> consumidor);
+}
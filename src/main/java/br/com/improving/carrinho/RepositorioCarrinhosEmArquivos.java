@@ -0,0 +1,102 @@
+package br.com.improving.carrinho;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Base64;
+import java.util.function.BiConsumer;
+
+/**
+ * Repositório que grava cada carrinho, codificado por {@link CodecCarrinhoCompras}, em um arquivo próprio do
+ * diretório informado.
+ *
+ * O nome do arquivo é a identificação do cliente em Base64 URL-safe, portanto identificações muito longas podem
+ * exceder o limite de nome de arquivo do sistema. Cada carrinho é gravado em um arquivo temporário e renomeado ao
+ * final, de modo que uma gravação interrompida nunca substitui o carrinho anterior por um incompleto. Erros de
+ * entrada e saída são lançados como UncheckedIOException.
+ */
+public final class RepositorioCarrinhosEmArquivos implements RepositorioCarrinhos {
+
+	private static final String SUFIXO = ".carrinho";
+
+	private final Path diretorio;
+	private final CodecCarrinhoCompras codec;
+
+	/**
+	 * @param diretorio criado caso não exista
+	 */
+	public RepositorioCarrinhosEmArquivos(Path diretorio) {
+		checkNotNull(diretorio, "Diretorio nao deve ser null");
+		try {
+			this.diretorio = Files.createDirectories(diretorio);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		this.codec = new CodecCarrinhoCompras();
+	}
+
+	@Override
+	public CarrinhoCompras carregar(String identificacaoCliente) {
+		try {
+			return codec.decodificar(ByteBuffer.wrap(Files.readAllBytes(arquivo(identificacaoCliente))));
+		} catch (NoSuchFileException e) {
+			return null;
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	@Override
+	public void gravar(String identificacaoCliente, CarrinhoCompras carrinhoCompras) {
+		Path arquivo = arquivo(identificacaoCliente);
+		Path temporario = arquivo.resolveSibling(arquivo.getFileName() + ".tmp");
+		try {
+			Files.write(temporario, codec.codificar(carrinhoCompras));
+			Files.move(temporario, arquivo, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	@Override
+	public boolean remover(String identificacaoCliente) {
+		try {
+			return Files.deleteIfExists(arquivo(identificacaoCliente));
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Percorre os arquivos com o sufixo dos carrinhos, ignorando os temporários de gravações interrompidas.
+	 */
+	@Override
+	public void percorrer(BiConsumer<String, CarrinhoCompras> consumidor) {
+		checkNotNull(consumidor, "Consumidor nao deve ser null");
+		try (DirectoryStream<Path> arquivos = Files.newDirectoryStream(diretorio, "*" + SUFIXO)) {
+			for (Path arquivo : arquivos) {
+				String nome = arquivo.getFileName().toString();
+				String identificacaoCliente = new String(Base64.getUrlDecoder()
+						.decode(nome.substring(0, nome.length() - SUFIXO.length())), StandardCharsets.UTF_8);
+				consumidor.accept(identificacaoCliente,
+						codec.decodificar(ByteBuffer.wrap(Files.readAllBytes(arquivo))));
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private Path arquivo(String identificacaoCliente) {
+		checkNotNull(identificacaoCliente, "Identificacao cliente nao deve ser null");
+		return diretorio.resolve(Base64.getUrlEncoder().withoutPadding()
+				.encodeToString(identificacaoCliente.getBytes(StandardCharsets.UTF_8)) + SUFIXO);
+	}
+}
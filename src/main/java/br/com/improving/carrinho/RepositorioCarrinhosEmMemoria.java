@@ -0,0 +1,57 @@
+package br.com.improving.carrinho;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.nio.ByteBuffer;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.BiConsumer;
+
+/**
+ * Repositório que guarda os carrinhos codificados por {@link CodecCarrinhoCompras} em um mapa em memória, por exemplo
+ * para testes ou como segundo nível, mais compacto, de um cache de carrinhos.
+ */
+public final class RepositorioCarrinhosEmMemoria implements RepositorioCarrinhos {
+
+	private final ConcurrentMap<String, byte[]> carrinhos;
+	private final CodecCarrinhoCompras codec;
+
+	public RepositorioCarrinhosEmMemoria() {
+		this.carrinhos = new ConcurrentHashMap<>();
+		this.codec = new CodecCarrinhoCompras();
+	}
+
+	@Override
+	public CarrinhoCompras carregar(String identificacaoCliente) {
+		checkNotNull(identificacaoCliente, "Identificacao cliente nao deve ser null");
+		byte[] conteudo = carrinhos.get(identificacaoCliente);
+		return Objects.isNull(conteudo) ? null : codec.decodificar(ByteBuffer.wrap(conteudo));
+	}
+
+	@Override
+	public void gravar(String identificacaoCliente, CarrinhoCompras carrinhoCompras) {
+		checkNotNull(identificacaoCliente, "Identificacao cliente nao deve ser null");
+		carrinhos.put(identificacaoCliente, codec.codificar(carrinhoCompras));
+	}
+
+	@Override
+	public boolean remover(String identificacaoCliente) {
+		checkNotNull(identificacaoCliente, "Identificacao cliente nao deve ser null");
+		return Objects.nonNull(carrinhos.remove(identificacaoCliente));
+	}
+
+	@Override
+	public void percorrer(BiConsumer<String, CarrinhoCompras> consumidor) {
+		checkNotNull(consumidor, "Consumidor nao deve ser null");
+		carrinhos.forEach((identificacaoCliente, conteudo) -> consumidor.accept(identificacaoCliente,
+				codec.decodificar(ByteBuffer.wrap(conteudo))));
+	}
+
+	/**
+	 * @return quantidade de carrinhos gravados
+	 */
+	public int size() {
+		return carrinhos.size();
+	}
+}
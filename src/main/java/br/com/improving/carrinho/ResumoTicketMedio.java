@@ -0,0 +1,47 @@
+package br.com.improving.carrinho;
+
+import java.math.BigDecimal;
+
+/**
+ * Soma dos valores totais, em centavos, e quantidade de carrinhos de uma partição. Resumos de partições diferentes
+ * são combinados somando os dois campos, de modo que o ticket médio de todas as partições é calculado sem transferir
+ * os carrinhos.
+ */
+public final class ResumoTicketMedio {
+
+	public static final ResumoTicketMedio VAZIO = new ResumoTicketMedio(0L, 0L);
+
+	private final long somaCentavos;
+	private final long quantidade;
+
+	public ResumoTicketMedio(long somaCentavos, long quantidade) {
+		this.somaCentavos = somaCentavos;
+		this.quantidade = quantidade;
+	}
+
+	public long getSomaCentavos() {
+		return somaCentavos;
+	}
+
+	public long getQuantidade() {
+		return quantidade;
+	}
+
+	/**
+	 * @param outro
+	 * @return resumo com a soma e a quantidade de ambos
+	 */
+	public ResumoTicketMedio combinar(ResumoTicketMedio outro) {
+		return new ResumoTicketMedio(Math.addExact(somaCentavos, outro.somaCentavos),
+				quantidade + outro.quantidade);
+	}
+
+	/**
+	 * Retorna o ticket médio do resumo, com as mesmas regras de {@link CarrinhoComprasFactory#getValorTicketMedio()}.
+	 *
+	 * @return BigDecimal
+	 */
+	public BigDecimal getValorTicketMedio() {
+		return AgregadoTicketMedio.valorTicketMedio(somaCentavos, quantidade);
+	}
+}
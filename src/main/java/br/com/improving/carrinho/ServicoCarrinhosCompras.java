@@ -0,0 +1,36 @@
+package br.com.improving.carrinho;
+
+import java.math.BigDecimal;
+
+/**
+ * Operações de criação, recuperação e invalidação dos carrinhos de compras dos clientes.
+ *
+ * Implementada por {@link CarrinhoComprasFactory}, que mantém todos os carrinhos na própria JVM, e por
+ * {@link CarrinhoComprasFactoryParticionada}, que distribui os clientes entre várias partições.
+ */
+public interface ServicoCarrinhosCompras {
+
+	/**
+	 * Cria e retorna um novo carrinho de compras para o cliente, ou o carrinho já existente para ele.
+	 *
+	 * @param identificacaoCliente
+	 * @return CarrinhoCompras
+	 */
+	CarrinhoCompras criar(String identificacaoCliente);
+
+	/**
+	 * Retorna a soma do valor total de todos os carrinhos dividida pela quantidade de carrinhos, com duas casas
+	 * decimais.
+	 *
+	 * @return BigDecimal
+	 */
+	BigDecimal getValorTicketMedio();
+
+	/**
+	 * Remove o carrinho do cliente.
+	 *
+	 * @param identificacaoCliente
+	 * @return true caso o cliente tenha um carrinho de compras e false caso contrário
+	 */
+	boolean invalidar(String identificacaoCliente);
+}
@@ -0,0 +1,111 @@
+package br.com.improving.carrinho;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Count-Min sketch: estima quantas vezes cada chave foi incrementada usando {@code profundidade} linhas de
+ * {@code largura} contadores, independentemente da quantidade de chaves distintas.
+ *
+ * Cada chave incrementa um contador por linha, escolhido por um hash diferente em cada linha, e a estimativa é o
+ * menor desses contadores. A estimativa nunca é menor que a contagem real e, com probabilidade de ao menos
+ * {@code 1 - e^-profundidade}, excede a contagem real em no máximo {@code e / largura} vezes o total de incrementos.
+ *
+ * Para que as estimativas acompanhem as frequências recentes, todos os contadores são reduzidos à metade a cada
+ * {@code janela} incrementos; os limites acima continuam valendo para as contagens reduzidas da mesma forma, com o
+ * total de incrementos também reduzido.
+ *
+ * É seguro para uso concorrente e não usa locks: incrementos concorrentes com a redução podem ser contados antes ou
+ * depois dela.
+ */
+final class SketchFrequencia {
+
+	private final int profundidade;
+	private final int mascara;
+	private final long janela;
+	private final AtomicLongArray contadores;
+	// incrementos que faltam para completar a janela atual
+	private final AtomicLong restantes;
+	private final AtomicInteger reducoes;
+
+	/**
+	 * @param largura contadores por linha, arredondada para a próxima potência de dois
+	 * @param profundidade quantidade de linhas
+	 * @param janela incrementos entre duas reduções à metade
+	 */
+	SketchFrequencia(int largura, int profundidade, long janela) {
+		checkArgument(largura > 0 && largura <= 1 << 24, "Largura deve estar entre 1 e 2^24");
+		checkArgument(profundidade > 0 && profundidade <= 16, "Profundidade deve estar entre 1 e 16");
+		checkArgument(janela > 0, "Janela deve ser maior que zero");
+		int larguraArredondada = Integer.highestOneBit(largura * 2 - 1);
+		this.profundidade = profundidade;
+		this.mascara = larguraArredondada - 1;
+		this.janela = janela;
+		this.contadores = new AtomicLongArray(larguraArredondada * profundidade);
+		this.restantes = new AtomicLong(janela);
+		this.reducoes = new AtomicInteger();
+	}
+
+	/**
+	 * @return estimativa da frequência da chave já com o incremento
+	 */
+	long incrementar(long chave) {
+		long hash = misturar(chave);
+		long estimativa = Long.MAX_VALUE;
+		for (int linha = 0; linha < profundidade; linha++) {
+			estimativa = Math.min(estimativa, contadores.incrementAndGet(posicao(hash, linha)));
+		}
+		// apenas a thread que completa a janela reduz os contadores e abre a próxima
+		if (restantes.decrementAndGet() == 0L) {
+			reduzir();
+			restantes.addAndGet(janela);
+		}
+		return estimativa;
+	}
+
+	long estimar(long chave) {
+		long hash = misturar(chave);
+		long estimativa = Long.MAX_VALUE;
+		for (int linha = 0; linha < profundidade; linha++) {
+			estimativa = Math.min(estimativa, contadores.get(posicao(hash, linha)));
+		}
+		return estimativa;
+	}
+
+	private void reduzir() {
+		for (int i = 0; i < contadores.length(); i++) {
+			contadores.getAndUpdate(i, contador -> contador >>> 1);
+		}
+		reducoes.incrementAndGet();
+	}
+
+	/**
+	 * @return quantidade de reduções à metade já feitas
+	 */
+	int getReducoes() {
+		return reducoes.get();
+	}
+
+	/**
+	 * Contador da chave na linha, pelo esquema de Kirsch e Mitzenmacher: as duas metades de um único hash de 64 bits
+	 * combinadas de forma diferente em cada linha.
+	 */
+	private int posicao(long hash, int linha) {
+		int h1 = (int) hash;
+		int h2 = (int) (hash >>> 32) | 1;
+		return linha * (mascara + 1) + ((h1 + linha * h2) & mascara);
+	}
+
+	/**
+	 * Finalizador do SplitMix64, para que códigos sequenciais fiquem bem espalhados.
+	 */
+	private static long misturar(long chave) {
+		long hash = chave + 0x9E3779B97F4A7C15L;
+		hash = (hash ^ (hash >>> 30)) * 0xBF58476D1CE4E5B9L;
+		hash = (hash ^ (hash >>> 27)) * 0x94D049BB133111EBL;
+		return hash ^ (hash >>> 31);
+	}
+}
@@ -0,0 +1,203 @@
+package br.com.improving.carrinho;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Snapshot do estado de todos os carrinhos, usado para que a recuperação não precise reaplicar o journal inteiro.
+ *
+ * O arquivo é gravado em um arquivo temporário e renomeado ao final, de modo que um snapshot incompleto nunca é
+ * considerado. Cada carrinho é copiado sob o seu próprio lock junto com a sequência do último evento aplicado a ele;
+ * na recuperação, apenas os eventos posteriores a essa sequência são reaplicados ao carrinho.
+ */
+final class SnapshotCarrinhos {
+
+	private static final int MAGICO = 0x43415254;
+	private static final byte VERSAO = 1;
+	private static final String PREFIXO = "snapshot-";
+	private static final String SUFIXO = ".bin";
+
+	static final class EstadoCarrinho {
+
+		final String identificacaoCliente;
+		final long ultimaSequencia;
+		final Collection<Item> itens;
+
+		EstadoCarrinho(String identificacaoCliente, long ultimaSequencia, Collection<Item> itens) {
+			this.identificacaoCliente = identificacaoCliente;
+			this.ultimaSequencia = ultimaSequencia;
+			this.itens = itens;
+		}
+	}
+
+	private final long sequencia;
+	private final List<EstadoCarrinho> carrinhos;
+
+	private SnapshotCarrinhos(long sequencia, List<EstadoCarrinho> carrinhos) {
+		this.sequencia = sequencia;
+		this.carrinhos = carrinhos;
+	}
+
+	long getSequencia() {
+		return sequencia;
+	}
+
+	List<EstadoCarrinho> getCarrinhos() {
+		return carrinhos;
+	}
+
+	/**
+	 * Grava o snapshot e apaga os snapshots anteriores.
+	 *
+	 * @param diretorio
+	 * @param sequencia sequência do journal até a qual os carrinhos estão refletidos
+	 * @param registros registros ativos da factory
+	 */
+	static void gravar(Path diretorio, long sequencia, Iterable<RegistroCarrinho> registros) throws IOException {
+		Path temporario = diretorio.resolve(nome(sequencia) + ".tmp");
+		CRC32 crc = new CRC32();
+		try (FileChannel canal = FileChannel.open(temporario, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			OutputStream arquivo = Channels.newOutputStream(canal);
+			DataOutputStream saida = new DataOutputStream(
+					new CheckedOutputStream(new BufferedOutputStream(arquivo, 64 * 1024), crc));
+			saida.writeInt(MAGICO);
+			saida.writeByte(VERSAO);
+			saida.writeLong(sequencia);
+			for (RegistroCarrinho registro : registros) {
+				if (!registro.isAtivo()) {
+					continue;
+				}
+				EstadoCarrinho estado = registro.getCarrinho().comLock(() -> new EstadoCarrinho(
+						registro.getIdentificacaoCliente(), registro.getUltimaSequencia(),
+						registro.getCarrinhoCompras().getItens()));
+				saida.writeBoolean(true);
+				escrever(saida, estado);
+			}
+			saida.writeBoolean(false);
+			saida.flush();
+			// o CRC não inclui a si mesmo
+			new DataOutputStream(arquivo).writeInt((int) crc.getValue());
+			canal.force(true);
+		}
+		Files.move(temporario, diretorio.resolve(nome(sequencia)), StandardCopyOption.ATOMIC_MOVE,
+				StandardCopyOption.REPLACE_EXISTING);
+		for (Path anterior : arquivos(diretorio)) {
+			if (sequencia(anterior) < sequencia) {
+				Files.deleteIfExists(anterior);
+			}
+		}
+	}
+
+	/**
+	 * @return o snapshot válido mais recente do diretório, ou null caso não exista
+	 */
+	static SnapshotCarrinhos lerMaisRecente(Path diretorio) throws IOException {
+		List<Path> arquivos = arquivos(diretorio);
+		Collections.reverse(arquivos);
+		for (Path arquivo : arquivos) {
+			SnapshotCarrinhos snapshot = ler(arquivo);
+			if (snapshot != null) {
+				return snapshot;
+			}
+		}
+		return null;
+	}
+
+	private static SnapshotCarrinhos ler(Path arquivo) throws IOException {
+		CRC32 crc = new CRC32();
+		try (InputStream bruto = new BufferedInputStream(Files.newInputStream(arquivo), 64 * 1024)) {
+			DataInputStream entrada = new DataInputStream(new CheckedInputStream(bruto, crc));
+			if (entrada.readInt() != MAGICO || entrada.readByte() != VERSAO) {
+				return null;
+			}
+			long sequencia = entrada.readLong();
+			List<EstadoCarrinho> carrinhos = new ArrayList<>();
+			while (entrada.readBoolean()) {
+				carrinhos.add(ler(entrada));
+			}
+			int esperado = (int) crc.getValue();
+			if (new DataInputStream(bruto).readInt() != esperado) {
+				return null;
+			}
+			return new SnapshotCarrinhos(sequencia, carrinhos);
+		} catch (EOFException e) {
+			return null;
+		}
+	}
+
+	private static void escrever(DataOutputStream saida, EstadoCarrinho estado) throws IOException {
+		escreverTexto(saida, estado.identificacaoCliente);
+		saida.writeLong(estado.ultimaSequencia);
+		saida.writeInt(estado.itens.size());
+		for (Item item : estado.itens) {
+			saida.writeLong(item.getProduto().getCodigo());
+			escreverTexto(saida, item.getProduto().getDescricao());
+			saida.writeLong(item.getValorUnitarioCentavos());
+			saida.writeInt(item.getQuantidade());
+		}
+	}
+
+	private static EstadoCarrinho ler(DataInputStream entrada) throws IOException {
+		String identificacaoCliente = lerTexto(entrada);
+		long ultimaSequencia = entrada.readLong();
+		int quantidadeItens = entrada.readInt();
+		List<Item> itens = new ArrayList<>(quantidadeItens);
+		for (int i = 0; i < quantidadeItens; i++) {
+			Produto produto = new Produto(entrada.readLong(), lerTexto(entrada));
+			itens.add(new Item(produto, entrada.readLong(), entrada.readInt()));
+		}
+		return new EstadoCarrinho(identificacaoCliente, ultimaSequencia, itens);
+	}
+
+	private static void escreverTexto(DataOutputStream saida, String texto) throws IOException {
+		byte[] bytes = texto.getBytes(StandardCharsets.UTF_8);
+		saida.writeInt(bytes.length);
+		saida.write(bytes);
+	}
+
+	private static String lerTexto(DataInputStream entrada) throws IOException {
+		byte[] bytes = new byte[entrada.readInt()];
+		entrada.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private static List<Path> arquivos(Path diretorio) throws IOException {
+		List<Path> arquivos = new ArrayList<>();
+		try (DirectoryStream<Path> encontrados = Files.newDirectoryStream(diretorio, PREFIXO + "*" + SUFIXO)) {
+			encontrados.forEach(arquivos::add);
+		}
+		Collections.sort(arquivos);
+		return arquivos;
+	}
+
+	private static String nome(long sequencia) {
+		return String.format("%s%020d%s", PREFIXO, sequencia, SUFIXO);
+	}
+
+	private static long sequencia(Path arquivo) {
+		String nome = arquivo.getFileName().toString();
+		return Long.parseLong(nome.substring(PREFIXO.length(), nome.length() - SUFIXO.length()));
+	}
+}
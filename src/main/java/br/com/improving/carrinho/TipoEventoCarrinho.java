@@ -0,0 +1,32 @@
+package br.com.improving.carrinho;
+
+/**
+ * Tipo de uma alteração publicada em {@link EventoCarrinho}.
+ */
+public enum TipoEventoCarrinho {
+
+	/**
+	 * A factory criou o carrinho do cliente.
+	 */
+	CARRINHO_CRIADO,
+
+	/**
+	 * Um produto que não estava no carrinho foi adicionado.
+	 */
+	ITEM_ADICIONADO,
+
+	/**
+	 * Uma adição foi somada ao item já existente do produto, possivelmente com um novo valor unitário.
+	 */
+	ITEM_ALTERADO,
+
+	/**
+	 * O item do produto foi removido do carrinho.
+	 */
+	ITEM_REMOVIDO,
+
+	/**
+	 * O carrinho foi removido da factory, por invalidação ou expiração.
+	 */
+	CARRINHO_INVALIDADO
+}
@@ -0,0 +1,241 @@
+package br.com.improving.carrinho;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class CarrinhoComprasFactoryParticionadaTest {
+
+	@Test
+	void criarSemParticao() {
+		//GIVEN
+		CarrinhoComprasFactoryParticionada factory = new CarrinhoComprasFactoryParticionada();
+
+		//WHEN
+		//THEN
+		assertThatThrownBy(() -> factory.criar("cliente"))
+				.isInstanceOf(IllegalStateException.class);
+		assertThat(factory.getValorTicketMedio()).isEqualTo(new BigDecimal("0.00"));
+	}
+
+	@Test
+	void adicionarParticaoRepetida() {
+		//GIVEN
+		CarrinhoComprasFactoryParticionada factory = new CarrinhoComprasFactoryParticionada();
+		factory.adicionarParticao("particao1", new ParticaoLocal(new CarrinhoComprasFactory()));
+
+		//WHEN
+		//THEN
+		assertThatThrownBy(() -> factory.adicionarParticao("particao1",
+				new ParticaoLocal(new CarrinhoComprasFactory())))
+				.isInstanceOf(IllegalArgumentException.class);
+	}
+
+	@Test
+	void criarEInvalidarNaParticaoDoCliente() {
+		//GIVEN
+		List<CarrinhoComprasFactory> factories = new ArrayList<>();
+		CarrinhoComprasFactoryParticionada factory = particionada(factories, 3);
+
+		//WHEN
+		for (int i = 0; i < 300; i++) {
+			factory.criar("cliente" + i);
+		}
+
+		//THEN
+		assertThat(factory.criar("cliente7").getEstado()).isSameAs(factory.criar("cliente7").getEstado());
+		int total = 0;
+		for (CarrinhoComprasFactory particao : factories) {
+			assertThat(particao.getIdentificacoesClientes()).isNotEmpty();
+			total += particao.getIdentificacoesClientes().size();
+		}
+		assertThat(total).isEqualTo(300);
+		assertThat(factory.invalidar("cliente7")).isTrue();
+		assertThat(factory.invalidar("cliente7")).isFalse();
+		assertThat(factories).allSatisfy(particao ->
+				assertThat(particao.getIdentificacoesClientes()).doesNotContain("cliente7"));
+	}
+
+	@Test
+	void ticketMedioIgualAoDeUmaUnicaFactory() {
+		//GIVEN
+		Random random = new Random(42L);
+		CarrinhoComprasFactory unica = new CarrinhoComprasFactory();
+		CarrinhoComprasFactoryParticionada factory = particionada(new ArrayList<>(), 4);
+
+		//WHEN
+		for (int i = 0; i < 500; i++) {
+			Produto produto = new Produto((long) random.nextInt(50), "produto");
+			BigDecimal valorUnitario = BigDecimal.valueOf(random.nextInt(100_000), 2);
+			int quantidade = random.nextInt(10);
+			unica.criar("cliente" + i % 97).adicionarItem(produto, valorUnitario, quantidade);
+			factory.criar("cliente" + i % 97).adicionarItem(produto, valorUnitario, quantidade);
+		}
+		unica.invalidar("cliente3");
+		factory.invalidar("cliente3");
+
+		//THEN
+		assertThat(factory.getValorTicketMedio()).isEqualTo(unica.getValorTicketMedio());
+	}
+
+	@Test
+	void percentisIguaisAosDeUmaUnicaFactory() {
+		//GIVEN
+		Random random = new Random(42L);
+		CarrinhoComprasFactory unica = CarrinhoComprasFactory.builder().distribuicaoValores().build();
+		CarrinhoComprasFactoryParticionada factory = new CarrinhoComprasFactoryParticionada();
+		for (int i = 0; i < 4; i++) {
+			factory.adicionarParticao("particao" + i,
+					new ParticaoLocal(CarrinhoComprasFactory.builder().distribuicaoValores().build()));
+		}
+
+		//WHEN
+		for (int i = 0; i < 2_000; i++) {
+			Produto produto = new Produto((long) random.nextInt(50), "produto");
+			BigDecimal valorUnitario = BigDecimal.valueOf(random.nextInt(100_000), 2);
+			int quantidade = random.nextInt(10);
+			unica.criar("cliente" + i % 397).adicionarItem(produto, valorUnitario, quantidade);
+			factory.criar("cliente" + i % 397).adicionarItem(produto, valorUnitario, quantidade);
+		}
+		unica.invalidar("cliente3");
+		factory.invalidar("cliente3");
+
+		//THEN
+		for (double percentil : new double[] {0.0, 50.0, 90.0, 99.0, 100.0}) {
+			assertThat(factory.getPercentilValorTotal(percentil)).isEqualTo(unica.getPercentilValorTotal(percentil));
+		}
+	}
+
+	@Test
+	void adicionarParticaoTransfereApenasClientesAfetados() {
+		//GIVEN
+		List<CarrinhoComprasFactory> factories = new ArrayList<>();
+		CarrinhoComprasFactoryParticionada factory = particionada(factories, 3);
+		Map<String, Collection<Item>> itensPorCliente = new HashMap<>();
+		for (int i = 0; i < 1_000; i++) {
+			String identificacaoCliente = "cliente" + i;
+			CarrinhoCompras carrinhoCompras = factory.criar(identificacaoCliente);
+			carrinhoCompras.adicionarItem(new Produto((long) i, "produto" + i), new BigDecimal("1.25"), i % 7 + 1);
+			carrinhoCompras.adicionarItem(new Produto(-1L, "comum"), BigDecimal.TEN, 1);
+			itensPorCliente.put(identificacaoCliente, carrinhoCompras.getItens());
+		}
+		Map<String, CarrinhoComprasFactory> antes = donos(factories);
+		BigDecimal ticketMedio = factory.getValorTicketMedio();
+
+		//WHEN
+		CarrinhoComprasFactory nova = new CarrinhoComprasFactory();
+		factory.adicionarParticao("particao3", new ParticaoLocal(nova));
+		factories.add(nova);
+
+		//THEN
+		Map<String, CarrinhoComprasFactory> depois = donos(factories);
+		assertThat(depois).hasSize(1_000);
+		int transferidos = 0;
+		for (Map.Entry<String, CarrinhoComprasFactory> dono : depois.entrySet()) {
+			if (dono.getValue() != antes.get(dono.getKey())) {
+				assertThat(dono.getValue()).isSameAs(nova);
+				transferidos++;
+			}
+			assertThat(factory.criar(dono.getKey()).getItens())
+					.containsExactlyElementsOf(itensPorCliente.get(dono.getKey()));
+		}
+		assertThat(transferidos).isEqualTo(nova.getIdentificacoesClientes().size()).isBetween(100, 400);
+		assertThat(factory.getValorTicketMedio()).isEqualTo(ticketMedio);
+	}
+
+	@Test
+	void referenciaAnteriorAoRebalanceamentoAlteraANovaParticao() {
+		//GIVEN
+		List<CarrinhoComprasFactory> factories = new ArrayList<>();
+		CarrinhoComprasFactoryParticionada factory = particionada(factories, 3);
+		Map<String, CarrinhoCompras> carrinhos = new HashMap<>();
+		for (int i = 0; i < 200; i++) {
+			CarrinhoCompras carrinhoCompras = factory.criar("cliente" + i);
+			carrinhoCompras.adicionarItem(new Produto(1L, "produto1"), BigDecimal.ONE, 1);
+			carrinhos.put("cliente" + i, carrinhoCompras);
+		}
+		CarrinhoComprasFactory nova = new CarrinhoComprasFactory();
+		factory.adicionarParticao("particao3", new ParticaoLocal(nova));
+		String transferido = nova.getIdentificacoesClientes().iterator().next();
+
+		//WHEN
+		carrinhos.get(transferido).adicionarItem(new Produto(2L, "produto2"), BigDecimal.TEN, 2);
+		boolean removido = carrinhos.get(transferido).removerItem(0);
+
+		//THEN
+		assertThat(removido).isTrue();
+		assertThat(nova.getCarrinhoCompras(transferido).getItens())
+				.containsExactly(new Item(new Produto(2L, "produto2"), BigDecimal.TEN, 2));
+		assertThat(carrinhos.get(transferido).getValorTotal()).isEqualTo(new BigDecimal("20.00"));
+		assertThat(factories).allSatisfy(particao ->
+				assertThat(particao.getCarrinhoCompras(transferido)).isNull());
+	}
+
+	@Test
+	void importarNovamenteSubstituiOCarrinho() {
+		//GIVEN
+		CarrinhoComprasFactory origem = new CarrinhoComprasFactory();
+		origem.criar("cliente1").adicionarItem(new Produto(1L, "produto1"), new BigDecimal("1.50"), 2);
+		CarrinhoComprasFactory destino = new CarrinhoComprasFactory();
+		destino.criar("cliente1").adicionarItem(new Produto(2L, "produto2"), BigDecimal.TEN, 1);
+		byte[] carrinhoCodificado = new ParticaoLocal(origem).exportar("cliente1");
+		ParticaoLocal particao = new ParticaoLocal(destino);
+
+		//WHEN
+		particao.importar("cliente1", carrinhoCodificado);
+		particao.importar("cliente1", carrinhoCodificado);
+
+		//THEN
+		assertThat(destino.criar("cliente1").getItens())
+				.containsExactly(new Item(new Produto(1L, "produto1"), new BigDecimal("1.50"), 2));
+		assertThat(destino.getValorTicketMedio()).isEqualTo(new BigDecimal("3.00"));
+	}
+
+	@Test
+	void carrinhoInvalidadoLidoVazioERecriadoAoAlterar() {
+		//GIVEN
+		List<CarrinhoComprasFactory> factories = new ArrayList<>();
+		CarrinhoComprasFactoryParticionada factory = particionada(factories, 2);
+		CarrinhoCompras carrinhoCompras = factory.criar("cliente1");
+		carrinhoCompras.adicionarItem(new Produto(1L, "produto1"), BigDecimal.TEN, 1);
+		factory.invalidar("cliente1");
+
+		//WHEN
+		//THEN
+		assertThat(carrinhoCompras.getItens()).isEmpty();
+		assertThat(carrinhoCompras.removerItem(0)).isFalse();
+		assertThat(factory.getValorTicketMedio()).isEqualTo(new BigDecimal("0.00"));
+		carrinhoCompras.adicionarItem(new Produto(2L, "produto2"), BigDecimal.ONE, 3);
+		assertThat(factory.criar("cliente1").getValorTotal()).isEqualTo(new BigDecimal("3.00"));
+	}
+
+	private static CarrinhoComprasFactoryParticionada particionada(List<CarrinhoComprasFactory> factories,
+			int particoes) {
+		CarrinhoComprasFactoryParticionada factory = new CarrinhoComprasFactoryParticionada();
+		for (int i = 0; i < particoes; i++) {
+			CarrinhoComprasFactory particao = new CarrinhoComprasFactory();
+			factory.adicionarParticao("particao" + i, new ParticaoLocal(particao));
+			factories.add(particao);
+		}
+		return factory;
+	}
+
+	private static Map<String, CarrinhoComprasFactory> donos(List<CarrinhoComprasFactory> factories) {
+		Map<String, CarrinhoComprasFactory> donos = new HashMap<>();
+		for (CarrinhoComprasFactory particao : factories) {
+			for (String identificacaoCliente : particao.getIdentificacoesClientes()) {
+				assertThat(donos.put(identificacaoCliente, particao)).isNull();
+			}
+		}
+		return donos;
+	}
+}
@@ -2,10 +2,39 @@ package br.com.improving.carrinho;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
 
 import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.stream.Collectors;
 
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import br.com.improving.carrinho.exception.NullProdutoException;
+import br.com.improving.carrinho.exception.ValorUnitarioInvalidoException;
 
 class CarrinhoComprasFactoryTest {
 
@@ -138,4 +167,1442 @@ class CarrinhoComprasFactoryTest {
 		//THEN
 		assertThat(actual).isFalse();
 	}
-}
\ No newline at end of file
+
+	@Test
+	void criarEAdicionarItensConcorrentementeSemPerderAtualizacoes() throws Exception {
+		//GIVEN
+		int threads = 16;
+		int iteracoes = 2_000;
+		int clientes = 4;
+		Produto produto = new Produto(1L, "produto1");
+		CarrinhoComprasFactory factory = new CarrinhoComprasFactory();
+
+		//WHEN
+		executarConcorrentemente(threads, thread -> {
+			for (int i = 0; i < iteracoes; i++) {
+				factory.criar("cliente" + (i % clientes)).adicionarItem(produto, BigDecimal.ONE, 1);
+			}
+		});
+
+		//THEN
+		int quantidadeTotal = 0;
+		for (int i = 0; i < clientes; i++) {
+			CarrinhoCompras carrinhoCompras = factory.criar("cliente" + i);
+			assertThat(carrinhoCompras.getItens()).hasSize(1);
+			quantidadeTotal += carrinhoCompras.getItens().iterator().next().getQuantidade();
+		}
+		assertThat(quantidadeTotal).isEqualTo(threads * iteracoes);
+		assertThat(factory.getValorTicketMedio())
+				.isEqualTo(new BigDecimal(threads * iteracoes / clientes).setScale(2));
+	}
+
+	@Test
+	void criarEInvalidarConcorrentementeClientesDistintos() throws Exception {
+		//GIVEN
+		int threads = 8;
+		int clientesPorThread = 1_000;
+		CarrinhoComprasFactory factory = new CarrinhoComprasFactory();
+
+		//WHEN
+		executarConcorrentemente(threads, thread -> {
+			for (int i = 0; i < clientesPorThread; i++) {
+				String identificacao = thread + "-" + i;
+				factory.criar(identificacao).adicionarItem(new Produto((long) i, "produto"), BigDecimal.TEN, 1);
+				if (i % 2 == 0) {
+					assertThat(factory.invalidar(identificacao)).isTrue();
+				}
+			}
+		});
+
+		//THEN
+		for (int thread = 0; thread < threads; thread++) {
+			for (int i = 0; i < clientesPorThread; i++) {
+				assertThat(factory.invalidar(thread + "-" + i)).isEqualTo(i % 2 != 0);
+			}
+		}
+		assertThat(factory.getValorTicketMedio()).isEqualTo(new BigDecimal("0.00"));
+	}
+
+	@ParameterizedTest
+	@ValueSource(longs = {1L, 7L, 42L, 2022L, 31337L})
+	void getValorTicketMedioIncrementalIgualRecalculoCompleto(long semente) {
+		//GIVEN
+		Random random = new Random(semente);
+		CarrinhoComprasFactory factory = new CarrinhoComprasFactory();
+		Map<String, CarrinhoCompras> carrinhos = new HashMap<>();
+
+		for (int operacao = 0; operacao < 5_000; operacao++) {
+			//WHEN
+			String identificacao = "cliente" + random.nextInt(50);
+			Produto produto = new Produto((long) random.nextInt(20), "produto");
+			int sorteio = random.nextInt(10);
+			if (sorteio < 5) {
+				BigDecimal valorUnitario = BigDecimal.valueOf(random.nextInt(100_000), random.nextInt(4));
+				carrinhos.computeIfAbsent(identificacao, factory::criar)
+						.adicionarItem(produto, valorUnitario, random.nextInt(10));
+			} else if (sorteio < 7) {
+				carrinhos.computeIfAbsent(identificacao, factory::criar).removerItem(produto);
+			} else if (sorteio < 8) {
+				carrinhos.computeIfAbsent(identificacao, factory::criar).removerItem(random.nextInt(5));
+			} else {
+				assertThat(factory.invalidar(identificacao)).isEqualTo(carrinhos.remove(identificacao) != null);
+			}
+
+			//THEN
+			assertThat(factory.getValorTicketMedio()).isEqualTo(recalcularTicketMedio(carrinhos));
+		}
+	}
+
+	private static BigDecimal recalcularTicketMedio(Map<String, CarrinhoCompras> carrinhos) {
+		if (carrinhos.isEmpty()) {
+			return new BigDecimal("0.00");
+		}
+		return carrinhos.values()
+				.stream()
+				.map(CarrinhoCompras::getValorTotal)
+				.reduce(BigDecimal.ZERO, BigDecimal::add)
+				.divide(BigDecimal.valueOf(carrinhos.size()), RoundingMode.HALF_EVEN);
+	}
+
+	@Test
+	void carrinhoInvalidadoNaoAfetaTicketMedio() {
+		//GIVEN
+		Produto produto = new Produto(1L, "produto1");
+		CarrinhoComprasFactory factory = new CarrinhoComprasFactory();
+		factory.criar("cliente1").adicionarItem(produto, BigDecimal.TEN, 1);
+		CarrinhoCompras invalidado = factory.criar("cliente2");
+		factory.invalidar("cliente2");
+
+		//WHEN
+		invalidado.adicionarItem(produto, new BigDecimal("1000"), 1);
+
+		//THEN
+		assertThat(factory.getValorTicketMedio()).isEqualTo(new BigDecimal("10.00"));
+	}
+
+	@Test
+	void expirarCarrinhoInativo() {
+		//GIVEN
+		AtomicLong agora = new AtomicLong();
+		List<String> expirados = new ArrayList<>();
+		CarrinhoComprasFactory factory = CarrinhoComprasFactory.builder()
+				.expiracao(Duration.ofMinutes(10))
+				.relogio(agora::get)
+				.ouvinteExpiracao((identificacao, carrinho, motivo) -> expirados.add(identificacao + ":" + motivo))
+				.build();
+		CarrinhoCompras ativo = factory.criar("ativo");
+		CarrinhoCompras inativo = factory.criar("inativo");
+		inativo.adicionarItem(new Produto(1L, "produto1"), new BigDecimal("100"), 1);
+
+		//WHEN
+		agora.set(Duration.ofMinutes(5).toMillis());
+		ativo.adicionarItem(new Produto(1L, "produto1"), BigDecimal.TEN, 1);
+		agora.set(Duration.ofMinutes(11).toMillis());
+		BigDecimal valorMedio = factory.getValorTicketMedio();
+
+		//THEN
+		assertThat(expirados).containsExactly("inativo:INATIVIDADE");
+		assertThat(valorMedio).isEqualTo(new BigDecimal("10.00"));
+		assertThat(factory.invalidar("inativo")).isFalse();
+		assertThat(factory.criar("ativo")).isSameAs(ativo);
+	}
+
+	@Test
+	void expirarMuitosCarrinhosInativos() {
+		//GIVEN
+		AtomicLong agora = new AtomicLong();
+		List<String> expirados = new ArrayList<>();
+		CarrinhoComprasFactory factory = CarrinhoComprasFactory.builder()
+				.expiracao(Duration.ofSeconds(30))
+				.relogio(agora::get)
+				.ouvinteExpiracao((identificacao, carrinho, motivo) -> expirados.add(identificacao))
+				.build();
+		for (int i = 0; i < 10_000; i++) {
+			agora.addAndGet(1);
+			factory.criar("cliente" + i).adicionarItem(new Produto(1L, "produto1"), BigDecimal.ONE, 1);
+		}
+
+		//WHEN
+		agora.addAndGet(Duration.ofSeconds(29).toMillis());
+		BigDecimal antes = factory.getValorTicketMedio();
+		agora.addAndGet(Duration.ofMinutes(1).toMillis());
+		BigDecimal depois = factory.getValorTicketMedio();
+
+		//THEN
+		assertThat(antes).isEqualTo(new BigDecimal("1.00"));
+		assertThat(depois).isEqualTo(new BigDecimal("0.00"));
+		assertThat(expirados).hasSize(10_000);
+	}
+
+	@Test
+	void removerCarrinhoMenosUsadoAoPassarDoLimite() {
+		//GIVEN
+		AtomicLong agora = new AtomicLong();
+		List<String> expirados = new ArrayList<>();
+		CarrinhoComprasFactory factory = CarrinhoComprasFactory.builder()
+				.expiracao(Duration.ofHours(1))
+				.limiteCarrinhos(2)
+				.relogio(agora::get)
+				.ouvinteExpiracao((identificacao, carrinho, motivo) -> expirados.add(identificacao + ":" + motivo))
+				.build();
+		factory.criar("primeiro").adicionarItem(new Produto(1L, "produto1"), BigDecimal.TEN, 1);
+		agora.set(1_000L);
+		factory.criar("segundo").adicionarItem(new Produto(1L, "produto1"), new BigDecimal("30"), 1);
+		agora.set(2_000L);
+		factory.criar("primeiro");
+
+		//WHEN
+		agora.set(3_000L);
+		factory.criar("terceiro");
+
+		//THEN
+		assertThat(expirados).containsExactly("segundo:LIMITE_CARRINHOS");
+		assertThat(factory.getValorTicketMedio()).isEqualTo(new BigDecimal("5.00"));
+		assertThat(factory.invalidar("primeiro")).isTrue();
+		assertThat(factory.invalidar("terceiro")).isTrue();
+	}
+
+	@Test
+	void carrinhoExpiradoNaoAfetaTicketMedio() {
+		//GIVEN
+		AtomicLong agora = new AtomicLong();
+		List<CarrinhoCompras> expirados = new ArrayList<>();
+		CarrinhoComprasFactory factory = CarrinhoComprasFactory.builder()
+				.expiracao(Duration.ofSeconds(1))
+				.relogio(agora::get)
+				.ouvinteExpiracao((identificacao, carrinho, motivo) -> expirados.add(carrinho))
+				.build();
+		CarrinhoCompras carrinhoCompras = factory.criar("cliente");
+		agora.set(5_000L);
+		factory.getValorTicketMedio();
+
+		//WHEN
+		carrinhoCompras.adicionarItem(new Produto(1L, "produto1"), BigDecimal.TEN, 1);
+		factory.criar("outro");
+
+		//THEN
+		assertThat(expirados).containsExactly(carrinhoCompras);
+		assertThat(factory.getValorTicketMedio()).isEqualTo(new BigDecimal("0.00"));
+	}
+
+	@Test
+	void limiteCarrinhosSemExpiracao() {
+		//GIVEN
+		CarrinhoComprasFactory.Builder builder = CarrinhoComprasFactory.builder().limiteCarrinhos(10);
+
+		//WHEN
+		//THEN
+		assertThatThrownBy(builder::build)
+				.isInstanceOf(IllegalStateException.class);
+	}
+
+	@Test
+	void recuperarCarrinhosPersistidos(@TempDir Path diretorio) {
+		//GIVEN
+		Produto produto1 = new Produto(1L, "produto1");
+		Produto produto2 = new Produto(2L, "produto2");
+		try (CarrinhoComprasFactory factory = CarrinhoComprasFactory.builder().persistencia(diretorio).build()) {
+			CarrinhoCompras carrinhoCompras = factory.criar("cliente1");
+			carrinhoCompras.adicionarItem(produto1, new BigDecimal("10.55"), 2);
+			carrinhoCompras.adicionarItem(produto2, BigDecimal.ONE, 1);
+			carrinhoCompras.adicionarItem(produto1, new BigDecimal("9.99"), 1);
+			carrinhoCompras.removerItem(1);
+			factory.criar("cliente2").adicionarItem(produto2, BigDecimal.TEN, 3);
+			factory.invalidar("cliente2");
+			factory.criar("cliente3");
+		}
+
+		//WHEN
+		try (CarrinhoComprasFactory factory = CarrinhoComprasFactory.builder().persistencia(diretorio).build()) {
+
+			//THEN
+			assertThat(factory.getValorTicketMedio()).isEqualTo(new BigDecimal("14.98"));
+			assertThat(factory.criar("cliente1").getItens())
+					.containsExactly(new Item(produto1, new BigDecimal("9.99"), 3));
+			assertThat(factory.criar("cliente3").getItens()).isEmpty();
+			assertThat(factory.invalidar("cliente2")).isFalse();
+		}
+	}
+
+	@ParameterizedTest
+	@ValueSource(longs = {1L, 7L, 42L})
+	void recuperarSnapshotEEventosPosteriores(long semente, @TempDir Path diretorio) throws Exception {
+		//GIVEN
+		Random random = new Random(semente);
+		Map<String, List<Item>> esperado = new HashMap<>();
+		BigDecimal ticketMedio;
+		try (CarrinhoComprasFactory factory = CarrinhoComprasFactory.builder()
+				.persistencia(diretorio)
+				.commitSincrono(false)
+				.eventosPorSnapshot(100)
+				.build()) {
+			for (int operacao = 0; operacao < 5_000; operacao++) {
+				String identificacao = "cliente" + random.nextInt(50);
+				Produto produto = new Produto((long) random.nextInt(20), "produto" + random.nextInt(3));
+				int sorteio = random.nextInt(10);
+				if (sorteio < 6) {
+					BigDecimal valorUnitario = BigDecimal.valueOf(random.nextInt(100_000), 2);
+					factory.criar(identificacao).adicionarItem(produto, valorUnitario, random.nextInt(10));
+				} else if (sorteio < 8) {
+					factory.criar(identificacao).removerItem(produto);
+				} else if (sorteio < 9) {
+					factory.criar(identificacao).removerItem(random.nextInt(5));
+				} else {
+					factory.invalidar(identificacao);
+				}
+			}
+			for (int i = 0; i < 50; i++) {
+				esperado.put("cliente" + i, new ArrayList<>(factory.criar("cliente" + i).getItens()));
+			}
+			ticketMedio = factory.getValorTicketMedio();
+		}
+
+		//WHEN
+		try (CarrinhoComprasFactory factory = CarrinhoComprasFactory.builder().persistencia(diretorio).build()) {
+
+			//THEN
+			assertThat(factory.getValorTicketMedio()).isEqualTo(ticketMedio);
+			esperado.forEach((identificacao, itens) ->
+					assertThat(factory.criar(identificacao).getItens()).containsExactlyElementsOf(itens));
+		}
+		try (DirectoryStream<Path> snapshots = Files.newDirectoryStream(diretorio, "snapshot-*.bin")) {
+			assertThat(snapshots).hasSize(1);
+		}
+	}
+
+	@Test
+	void recuperarOperacoesConcorrentes(@TempDir Path diretorio) throws Exception {
+		//GIVEN
+		int threads = 8;
+		int clientesPorThread = 200;
+		BigDecimal ticketMedio;
+		try (CarrinhoComprasFactory factory = CarrinhoComprasFactory.builder()
+				.persistencia(diretorio)
+				.eventosPorSnapshot(500)
+				.build()) {
+			executarConcorrentemente(threads, thread -> {
+				for (int i = 0; i < clientesPorThread; i++) {
+					CarrinhoCompras carrinhoCompras = factory.criar("cliente" + (i % 20));
+					carrinhoCompras.adicionarItem(new Produto((long) thread, "produto"), BigDecimal.ONE, 1);
+					carrinhoCompras.adicionarItem(new Produto(100L + i, "produto"), BigDecimal.TEN, 1);
+					carrinhoCompras.removerItem(new Produto(100L + i, "produto"));
+					if (i % 50 == thread) {
+						factory.invalidar("cliente" + (i % 20));
+					}
+				}
+			});
+			ticketMedio = factory.getValorTicketMedio();
+		}
+
+		//WHEN
+		try (CarrinhoComprasFactory factory = CarrinhoComprasFactory.builder().persistencia(diretorio).build()) {
+
+			//THEN
+			assertThat(factory.getValorTicketMedio()).isEqualTo(ticketMedio);
+		}
+	}
+
+	@Test
+	void recuperarCarrinhosVaziosCriadosDuranteSnapshots(@TempDir Path diretorio) throws Exception {
+		//GIVEN
+		int threads = 4;
+		int clientesPorThread = 500;
+		try (CarrinhoComprasFactory factory = CarrinhoComprasFactory.builder()
+				.persistencia(diretorio)
+				.commitSincrono(false)
+				.eventosPorSnapshot(10)
+				.build()) {
+			factory.criar("cliente").adicionarItem(new Produto(1L, "produto"), new BigDecimal("40.00"), 1);
+			executarConcorrentemente(threads, thread -> {
+				for (int i = 0; i < clientesPorThread; i++) {
+					factory.criar("vazio" + thread + "-" + i);
+				}
+			});
+		}
+
+		//WHEN
+		try (CarrinhoComprasFactory factory = CarrinhoComprasFactory.builder().persistencia(diretorio).build()) {
+
+			//THEN
+			assertThat(factory.getIdentificacoesClientes()).hasSize(threads * clientesPorThread + 1);
+			assertThat(factory.getValorTicketMedio()).isEqualTo(new BigDecimal("0.02"));
+		}
+	}
+
+	@Test
+	void naoAlterarCarrinhoQuandoJournalRejeitaEvento(@TempDir Path diretorio) {
+		//GIVEN
+		Produto produto1 = new Produto(1L, "produto1");
+		Produto produto2 = new Produto(2L, "produto2");
+		CarrinhoComprasFactory factory = CarrinhoComprasFactory.builder().persistencia(diretorio).build();
+		CarrinhoCompras carrinhoCompras = factory.criar("cliente1");
+		carrinhoCompras.adicionarItem(produto1, BigDecimal.TEN, 1);
+		factory.close();
+
+		//WHEN
+		//THEN
+		assertThatThrownBy(() -> carrinhoCompras.adicionarItem(produto2, BigDecimal.ONE, 1))
+				.isInstanceOf(IllegalStateException.class);
+		assertThatThrownBy(() -> carrinhoCompras.adicionarItem(produto1, BigDecimal.ONE, 1))
+				.isInstanceOf(IllegalStateException.class);
+		assertThatThrownBy(() -> carrinhoCompras.removerItem(produto1)).isInstanceOf(IllegalStateException.class);
+		assertThatThrownBy(() -> carrinhoCompras.aplicarLote(new LoteItens().adicionar(produto2, BigDecimal.ONE, 1)))
+				.isInstanceOf(IllegalStateException.class);
+		assertThatThrownBy(() -> factory.invalidar("cliente1")).isInstanceOf(IllegalStateException.class);
+		assertThat(carrinhoCompras.getItens()).containsExactly(new Item(produto1, BigDecimal.TEN, 1));
+		assertThat(factory.criar("cliente1")).isSameAs(carrinhoCompras);
+		assertThat(factory.getValorTicketMedio()).isEqualTo(new BigDecimal("10.00"));
+	}
+
+	@Test
+	void aplicarLoteAtualizaTicketMedioEJournal(@TempDir Path diretorio) {
+		//GIVEN
+		Produto produto1 = new Produto(1L, "produto1");
+		Produto produto2 = new Produto(2L, "produto2");
+		LoteItens lote = new LoteItens()
+				.adicionar(produto1, new BigDecimal("10.00"), 2)
+				.adicionar(produto2, BigDecimal.ONE, 1)
+				.remover(produto2)
+				.adicionar(produto1, new BigDecimal("3.00"), 1);
+		List<Item> expectedItens;
+		try (CarrinhoComprasFactory factory = CarrinhoComprasFactory.builder().persistencia(diretorio).build()) {
+			factory.criar("cliente2");
+
+			//WHEN
+			CarrinhoCompras carrinhoCompras = factory.criar("cliente1");
+			carrinhoCompras.aplicarLote(lote);
+			expectedItens = new ArrayList<>(carrinhoCompras.getItens());
+
+			//THEN
+			assertThat(factory.getValorTicketMedio()).isEqualTo(new BigDecimal("4.50"));
+		}
+		try (CarrinhoComprasFactory factory = CarrinhoComprasFactory.builder().persistencia(diretorio).build()) {
+			assertThat(factory.criar("cliente1").getItens()).containsExactlyElementsOf(expectedItens);
+			assertThat(factory.getValorTicketMedio()).isEqualTo(new BigDecimal("4.50"));
+		}
+	}
+
+	@Test
+	void carrinhosCompartilhamProdutosDoCatalogo() {
+		//GIVEN
+		CatalogoProdutos catalogo = new CatalogoProdutos();
+		CarrinhoComprasFactory factory = CarrinhoComprasFactory.builder().catalogo(catalogo).build();
+
+		//WHEN
+		factory.criar("cliente1").adicionarItem(new Produto(1L, "produto1"), BigDecimal.ONE, 1);
+		factory.criar("cliente2").adicionarItem(new Produto(1L, "produto1"), BigDecimal.ONE, 1);
+		factory.criar("cliente2").aplicarLote(new LoteItens().adicionar(new Produto(2L, "produto2"), BigDecimal.ONE, 1));
+
+		//THEN
+		Produto produto1 = factory.criar("cliente1").getItens().iterator().next().getProduto();
+		assertThat(factory.criar("cliente2").getItens())
+				.extracting(Item::getProduto)
+				.containsExactly(produto1, catalogo.produto(2L, "produto2"))
+				.first()
+				.isSameAs(produto1)
+				.isSameAs(catalogo.produto(1L, "produto1"));
+	}
+
+	@ParameterizedTest
+	@ValueSource(ints = {0, 1, 4_096, 4_097, 50_000})
+	void recalcularValorTicketMedioParaleloIgualSequencial(int clientes) {
+		//GIVEN
+		Random random = new Random(clientes);
+		ForkJoinPool pool = new ForkJoinPool(4);
+		CarrinhoComprasFactory sequencial = new CarrinhoComprasFactory();
+		CarrinhoComprasFactory paralela = CarrinhoComprasFactory.builder().recalculoParalelo(pool).build();
+		try {
+			for (int i = 0; i < clientes; i++) {
+				Produto produto = new Produto((long) random.nextInt(20), "produto");
+				BigDecimal valorUnitario = BigDecimal.valueOf(random.nextInt(1_000_000), 2);
+				int quantidade = random.nextInt(5);
+				sequencial.criar("cliente" + i).adicionarItem(produto, valorUnitario, quantidade);
+				paralela.criar("cliente" + i).adicionarItem(produto, valorUnitario, quantidade);
+			}
+
+			//WHEN
+			BigDecimal actual = paralela.recalcularValorTicketMedio();
+
+			//THEN
+			assertThat(actual)
+					.isEqualTo(sequencial.recalcularValorTicketMedio())
+					.isEqualTo(paralela.getValorTicketMedio());
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	@Test
+	void recalcularValorTicketMedioDuranteAlteracoes() throws Exception {
+		//GIVEN
+		ForkJoinPool pool = new ForkJoinPool(2);
+		CarrinhoComprasFactory factory = CarrinhoComprasFactory.builder().recalculoParalelo(pool).build();
+		for (int i = 0; i < 20_000; i++) {
+			factory.criar("cliente" + i).adicionarItem(new Produto(1L, "produto1"), BigDecimal.ONE, 1);
+		}
+		try {
+			//WHEN
+			executarConcorrentemente(4, thread -> {
+				for (int i = 0; i < 2_000; i++) {
+					if (thread == 0) {
+						// cada carrinho vale sempre 1,00 ou 2,00 durante as alterações
+						assertThat(factory.recalcularValorTicketMedio()).isBetween(BigDecimal.ONE, new BigDecimal("2"));
+					} else {
+						String identificacao = "cliente" + (thread * 2_000 + i);
+						factory.criar(identificacao).adicionarItem(new Produto(1L, "produto1"), BigDecimal.ONE, 1);
+						factory.invalidar("cliente" + (thread * 5_000 + i));
+						factory.criar("novo" + thread + "-" + i).adicionarItem(new Produto(2L, "produto2"),
+								new BigDecimal("1.50"), 1);
+					}
+				}
+			});
+
+			//THEN
+			assertThat(factory.recalcularValorTicketMedio()).isEqualTo(factory.getValorTicketMedio());
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	@Test
+	void publicarEventosDasAlteracoes() {
+		//GIVEN
+		List<EventoCarrinho> eventos = Collections.synchronizedList(new ArrayList<>());
+		Produto produto1 = new Produto(1L, "produto1");
+		Produto produto2 = new Produto(2L, "produto2");
+		CarrinhoComprasFactory factory = CarrinhoComprasFactory.builder().assinante(eventos::addAll).build();
+
+		//WHEN
+		CarrinhoCompras carrinhoCompras = factory.criar("cliente1");
+		carrinhoCompras.adicionarItem(produto1, BigDecimal.ONE, 1);
+		carrinhoCompras.adicionarItem(produto1, new BigDecimal("2.50"), 2);
+		carrinhoCompras.aplicarLote(new LoteItens()
+				.adicionar(produto2, BigDecimal.TEN, 3)
+				.remover(produto1)
+				.remover(new Produto(3L, "produto3")));
+		carrinhoCompras.removerItem(new Produto(9L, "produto9"));
+		carrinhoCompras.removerItem(0);
+		factory.invalidar("cliente1");
+		factory.close();
+
+		//THEN
+		assertThat(eventos)
+				.extracting(EventoCarrinho::getTipo, EventoCarrinho::getIdentificacaoCliente, EventoCarrinho::getProduto,
+						EventoCarrinho::getValorUnitario, EventoCarrinho::getQuantidade)
+				.containsExactly(
+						tuple(TipoEventoCarrinho.CARRINHO_CRIADO, "cliente1", null, null, 0),
+						tuple(TipoEventoCarrinho.ITEM_ADICIONADO, "cliente1", produto1, new BigDecimal("1.00"), 1),
+						tuple(TipoEventoCarrinho.ITEM_ALTERADO, "cliente1", produto1, new BigDecimal("2.50"), 2),
+						tuple(TipoEventoCarrinho.ITEM_ADICIONADO, "cliente1", produto2, new BigDecimal("10.00"), 3),
+						tuple(TipoEventoCarrinho.ITEM_REMOVIDO, "cliente1", produto1, null, 0),
+						tuple(TipoEventoCarrinho.ITEM_REMOVIDO, "cliente1", produto2, null, 0),
+						tuple(TipoEventoCarrinho.CARRINHO_INVALIDADO, "cliente1", null, null, 0));
+		assertThat(factory.getEventosDescartados()).isZero();
+		assertThat(factory.getFalhasAssinantes()).isZero();
+	}
+
+	@Test
+	void publicarEventosConcorrentesNaOrdemDeCadaCarrinho() throws Exception {
+		//GIVEN
+		int threads = 4;
+		int adicoes = 5_000;
+		Map<String, List<Integer>> quantidadesPorCliente = new HashMap<>();
+		AssinanteEventosCarrinho lento = eventos -> {
+			for (EventoCarrinho evento : eventos) {
+				if (evento.getTipo() == TipoEventoCarrinho.ITEM_ALTERADO
+						|| evento.getTipo() == TipoEventoCarrinho.ITEM_ADICIONADO) {
+					quantidadesPorCliente.computeIfAbsent(evento.getIdentificacaoCliente(), cliente -> new ArrayList<>())
+							.add(evento.getQuantidade());
+				}
+			}
+			Thread.yield();
+		};
+		CarrinhoComprasFactory factory = CarrinhoComprasFactory.builder()
+				.assinante(lento)
+				.assinante(eventos -> { })
+				.capacidadeEventos(16)
+				.politicaFluxoCheio(PoliticaFluxoCheio.AGUARDAR)
+				.build();
+
+		//WHEN
+		executarConcorrentemente(threads, thread -> {
+			CarrinhoCompras carrinhoCompras = factory.criar("cliente" + thread);
+			for (int i = 0; i < adicoes; i++) {
+				carrinhoCompras.adicionarItem(new Produto(1L, "produto1"), BigDecimal.ONE, i);
+			}
+		});
+		factory.close();
+
+		//THEN
+		assertThat(factory.getEventosDescartados()).isZero();
+		assertThat(quantidadesPorCliente).hasSize(threads);
+		for (List<Integer> quantidades : quantidadesPorCliente.values()) {
+			assertThat(quantidades).hasSize(adicoes).isSorted();
+		}
+	}
+
+	@Test
+	void publicarCriacaoForaDoLockDoMapa() throws Exception {
+		//GIVEN
+		CountDownLatch liberar = new CountDownLatch(1);
+		CarrinhoComprasFactory[] factory = new CarrinhoComprasFactory[1];
+		factory[0] = CarrinhoComprasFactory.builder()
+				.assinante(eventos -> {
+					if (eventos.get(0).getIdentificacaoCliente().equals("cliente1")) {
+						try {
+							liberar.await();
+						} catch (InterruptedException e) {
+							Thread.currentThread().interrupt();
+						}
+						// o carrinho cuja criação aguarda espaço no buffer
+						factory[0].criar("cliente2");
+					}
+				})
+				.capacidadeEventos(1)
+				.politicaFluxoCheio(PoliticaFluxoCheio.AGUARDAR)
+				.build();
+		factory[0].criar("cliente1");
+		Thread criacao = new Thread(() -> factory[0].criar("cliente2"));
+		criacao.setDaemon(true);
+		criacao.start();
+		while (criacao.getState() != Thread.State.TIMED_WAITING) {
+			Thread.yield();
+		}
+
+		//WHEN
+		liberar.countDown();
+		criacao.join(TimeUnit.SECONDS.toMillis(10));
+
+		//THEN
+		assertThat(criacao.isAlive()).isFalse();
+		factory[0].close();
+		assertThat(factory[0].getIdentificacoesClientes()).containsExactlyInAnyOrder("cliente1", "cliente2");
+	}
+
+	@Test
+	void assinanteLentoNaoBloqueiaAlteracoes() throws Exception {
+		//GIVEN
+		CountDownLatch liberar = new CountDownLatch(1);
+		CarrinhoComprasFactory factory = CarrinhoComprasFactory.builder()
+				.assinante(eventos -> {
+					try {
+						liberar.await();
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				})
+				.capacidadeEventos(10)
+				.build();
+
+		//WHEN
+		CarrinhoCompras carrinhoCompras = factory.criar("cliente1");
+		for (int i = 0; i < 1_000; i++) {
+			carrinhoCompras.adicionarItem(new Produto(1L, "produto1"), BigDecimal.ONE, 1);
+		}
+		liberar.countDown();
+		factory.close();
+
+		//THEN
+		// capacidade arredondada para 16
+		assertThat(factory.getEventosDescartados()).isEqualTo(1_001 - 16);
+		assertThat(carrinhoCompras.getValorTotal()).isEqualTo(new BigDecimal("1000.00"));
+	}
+
+	@Test
+	void medirOperacoesEDistribuicaoDeItens() {
+		//GIVEN
+		MetricasEmMemoria metricas = new MetricasEmMemoria(1);
+		CarrinhoComprasFactory factory = CarrinhoComprasFactory.builder().metricas(metricas).build();
+		CarrinhoCompras carrinho1 = factory.criar("cliente1");
+		CarrinhoCompras carrinho2 = factory.criar("cliente2");
+		factory.criar("cliente3");
+
+		//WHEN
+		for (long codigo = 1; codigo <= 10; codigo++) {
+			carrinho1.adicionarItem(new Produto(codigo, "produto" + codigo), BigDecimal.ONE, 1);
+		}
+		carrinho1.removerItem(new Produto(10L, "produto10"));
+		carrinho1.removerItem(0);
+		carrinho2.aplicarLote(new LoteItens()
+				.adicionar(new Produto(1L, "produto1"), BigDecimal.TEN, 2)
+				.adicionar(new Produto(2L, "produto2"), BigDecimal.TEN, 2));
+		carrinho2.getValorTotal();
+		factory.getValorTicketMedio();
+		factory.invalidar("cliente3");
+		factory.invalidar("cliente4");
+		// o carrinho invalidado deixa de ser medido
+		CarrinhoCompras invalidado = factory.criar("cliente5");
+		factory.invalidar("cliente5");
+		invalidado.adicionarItem(new Produto(1L, "produto1"), BigDecimal.ONE, 1);
+
+		//THEN
+		assertThat(metricas.getContagem(OperacaoCarrinho.CRIAR)).isEqualTo(4L);
+		assertThat(metricas.getContagem(OperacaoCarrinho.ADICIONAR_ITEM)).isEqualTo(10L);
+		assertThat(metricas.getContagem(OperacaoCarrinho.REMOVER_ITEM)).isEqualTo(2L);
+		assertThat(metricas.getContagem(OperacaoCarrinho.APLICAR_LOTE)).isEqualTo(1L);
+		assertThat(metricas.getContagem(OperacaoCarrinho.OBTER_VALOR_TOTAL)).isEqualTo(1L);
+		assertThat(metricas.getContagem(OperacaoCarrinho.OBTER_TICKET_MEDIO)).isEqualTo(1L);
+		assertThat(metricas.getContagem(OperacaoCarrinho.INVALIDAR)).isEqualTo(3L);
+		assertThat(metricas.getLatenciaNanos(OperacaoCarrinho.ADICIONAR_ITEM, 100.0)).isPositive();
+		assertThat(metricas.getCarrinhosAtivos()).isEqualTo(2L);
+		assertThat(metricas.getItensPorCarrinho(50.0)).isEqualTo(2L);
+		assertThat(metricas.getItensPorCarrinho(100.0)).isEqualTo(8L);
+	}
+
+	@ParameterizedTest
+	@ValueSource(longs = {1L, 7L, 42L})
+	void armazenamentoForaDoHeapIgualAoHeap(long semente) {
+		//GIVEN
+		Random random = new Random(semente);
+		CarrinhoComprasFactory noHeap = new CarrinhoComprasFactory();
+		CarrinhoComprasFactory foraDoHeap = CarrinhoComprasFactory.builder().armazenamentoForaDoHeap().build();
+
+		for (int operacao = 0; operacao < 20_000; operacao++) {
+			//WHEN
+			String identificacao = "cliente" + random.nextInt(20);
+			Produto produto = new Produto((long) random.nextInt(300), "produto");
+			int sorteio = random.nextInt(20);
+			if (sorteio < 12) {
+				BigDecimal valorUnitario = BigDecimal.valueOf(random.nextInt(100_000), random.nextInt(4));
+				int quantidade = random.nextInt(10);
+				noHeap.criar(identificacao).adicionarItem(produto, valorUnitario, quantidade);
+				foraDoHeap.criar(identificacao).adicionarItem(produto, valorUnitario, quantidade);
+			} else if (sorteio < 16) {
+				assertThat(foraDoHeap.criar(identificacao).removerItem(produto))
+						.isEqualTo(noHeap.criar(identificacao).removerItem(produto));
+			} else if (sorteio < 18) {
+				int posicao = random.nextInt(50);
+				assertThat(foraDoHeap.criar(identificacao).removerItem(posicao))
+						.isEqualTo(noHeap.criar(identificacao).removerItem(posicao));
+			} else if (sorteio < 19) {
+				LoteItens lote = new LoteItens()
+						.adicionar(produto, BigDecimal.TEN, random.nextInt(10))
+						.remover(new Produto((long) random.nextInt(300), "produto"))
+						.adicionar(new Produto((long) random.nextInt(300), "produto"), BigDecimal.ONE, 1);
+				noHeap.criar(identificacao).aplicarLote(lote);
+				foraDoHeap.criar(identificacao).aplicarLote(lote);
+			} else {
+				assertThat(foraDoHeap.invalidar(identificacao)).isEqualTo(noHeap.invalidar(identificacao));
+			}
+
+			//THEN
+			assertThat(foraDoHeap.criar(identificacao).getItens())
+					.containsExactlyElementsOf(noHeap.criar(identificacao).getItens());
+			assertThat(foraDoHeap.criar(identificacao).getValorTotal())
+					.isEqualTo(noHeap.criar(identificacao).getValorTotal());
+		}
+		assertThat(foraDoHeap.getValorTicketMedio()).isEqualTo(noHeap.getValorTicketMedio());
+	}
+
+	@Test
+	void carrinhoInvalidadoForaDoHeapVoltaAoHeap() {
+		//GIVEN
+		CarrinhoComprasFactory factory = CarrinhoComprasFactory.builder().armazenamentoForaDoHeap().build();
+		CarrinhoCompras carrinhoCompras = factory.criar("cliente1");
+		for (long codigo = 1; codigo <= 10; codigo++) {
+			carrinhoCompras.adicionarItem(new Produto(codigo, "produto" + codigo), BigDecimal.ONE, 2);
+		}
+		assertThat(factory.getMemoriaLinhas().getBytesEmUso()).isPositive();
+
+		//WHEN
+		factory.invalidar("cliente1");
+		carrinhoCompras.adicionarItem(new Produto(11L, "produto11"), BigDecimal.TEN, 1);
+
+		//THEN
+		assertThat(factory.getMemoriaLinhas().getBytesEmUso()).isZero();
+		assertThat(carrinhoCompras.getItens()).hasSize(11);
+		assertThat(carrinhoCompras.getValorTotal()).isEqualTo(new BigDecimal("30.00"));
+		assertThat(carrinhoCompras.getItens().iterator().next().getProduto().getDescricao()).isEqualTo("produto1");
+	}
+
+	@Test
+	void carrinhoComMuitasLinhasPassaParaOHeap() {
+		//GIVEN
+		CarrinhoComprasFactory factory = CarrinhoComprasFactory.builder().armazenamentoForaDoHeap().build();
+		CarrinhoCompras carrinhoCompras = factory.criar("cliente1");
+		for (long codigo = 1; codigo <= LinhasForaDoHeap.LIMITE_LINHAS; codigo++) {
+			carrinhoCompras.adicionarItem(new Produto(codigo, "produto" + codigo), BigDecimal.ONE, 1);
+		}
+		assertThat(factory.getMemoriaLinhas().getBytesEmUso()).isPositive();
+
+		//WHEN
+		carrinhoCompras.aplicarLote(new LoteItens()
+				.adicionar(new Produto(1L, "produto1"), BigDecimal.TEN, 1)
+				.adicionar(new Produto(100L, "produto100"), BigDecimal.ONE, 1)
+				.remover(new Produto(2L, "produto2")));
+		carrinhoCompras.adicionarItem(new Produto(101L, "produto101"), BigDecimal.ONE, 1);
+
+		//THEN
+		assertThat(factory.getMemoriaLinhas().getBytesEmUso()).isZero();
+		assertThat(carrinhoCompras.getItens()).hasSize(LinhasForaDoHeap.LIMITE_LINHAS + 1);
+		assertThat(carrinhoCompras.getItens().iterator().next()).isEqualTo(new Item(new Produto(1L, "produto1"),
+				BigDecimal.TEN, 2));
+		assertThat(carrinhoCompras.getValorTotal()).isEqualTo(BigDecimal.valueOf(LinhasForaDoHeap.LIMITE_LINHAS + 20)
+				.setScale(2));
+	}
+
+	@Test
+	void alterarValorUnitarioEmTodosOsCarrinhos() {
+		//GIVEN
+		CarrinhoComprasFactory factory = CarrinhoComprasFactory.builder().indiceProdutos().build();
+		Produto produto1 = new Produto(1L, "produto1");
+		Produto produto2 = new Produto(2L, "produto2");
+		factory.criar("cliente1").adicionarItem(produto1, new BigDecimal("10.00"), 2);
+		factory.criar("cliente1").adicionarItem(produto2, BigDecimal.ONE, 1);
+		factory.criar("cliente2").adicionarItem(produto1, new BigDecimal("10.00"), 1);
+		factory.criar("cliente3").adicionarItem(produto2, BigDecimal.ONE, 4);
+
+		//WHEN
+		int alterados = factory.alterarValorUnitario(produto1, new BigDecimal("12.50"));
+
+		//THEN
+		assertThat(alterados).isEqualTo(2);
+		assertThat(factory.criar("cliente1").getItens()).containsExactly(
+				new Item(produto1, new BigDecimal("12.50"), 2), new Item(produto2, BigDecimal.ONE, 1));
+		assertThat(factory.criar("cliente2").getValorTotal()).isEqualTo(new BigDecimal("12.50"));
+		assertThat(factory.criar("cliente3").getValorTotal()).isEqualTo(new BigDecimal("4.00"));
+		assertThat(factory.getValorTicketMedio()).isEqualTo(new BigDecimal("14.17"));
+		assertThat(factory.getValorTicketMedio()).isEqualTo(factory.recalcularValorTicketMedio());
+	}
+
+	@Test
+	void removerProdutoDeTodosOsCarrinhos() {
+		//GIVEN
+		CarrinhoComprasFactory factory = CarrinhoComprasFactory.builder().indiceProdutos().build();
+		Produto produto1 = new Produto(1L, "produto1");
+		Produto produto2 = new Produto(2L, "produto2");
+		factory.criar("cliente1").adicionarItem(produto1, BigDecimal.TEN, 2);
+		factory.criar("cliente1").adicionarItem(produto2, BigDecimal.ONE, 1);
+		factory.criar("cliente2").adicionarItem(produto1, BigDecimal.TEN, 1);
+
+		//WHEN
+		int removidos = factory.removerProduto(produto1);
+
+		//THEN
+		assertThat(removidos).isEqualTo(2);
+		assertThat(factory.criar("cliente1").getItens()).containsExactly(new Item(produto2, BigDecimal.ONE, 1));
+		assertThat(factory.criar("cliente2").getItens()).isEmpty();
+		assertThat(factory.getValorTicketMedio()).isEqualTo(new BigDecimal("0.50"));
+		assertThat(factory.getIndiceProdutos().registros(1L)).isEmpty();
+		assertThat(factory.removerProduto(produto1)).isZero();
+	}
+
+	@Test
+	void alterarValorUnitarioInvalido() {
+		//GIVEN
+		CarrinhoComprasFactory factory = CarrinhoComprasFactory.builder().indiceProdutos().build();
+
+		//WHEN
+		//THEN
+		assertThatThrownBy(() -> factory.alterarValorUnitario(new Produto(1L, "produto1"), new BigDecimal("-1")))
+				.isInstanceOf(ValorUnitarioInvalidoException.class);
+		assertThatThrownBy(() -> factory.alterarValorUnitario(null, BigDecimal.ONE))
+				.isInstanceOf(NullProdutoException.class);
+		assertThatThrownBy(() -> factory.removerProduto(null)).isInstanceOf(NullProdutoException.class);
+	}
+
+	@ParameterizedTest
+	@ValueSource(longs = {1L, 7L, 42L})
+	void indiceProdutosIgualAoPercursoCompleto(long semente) {
+		//GIVEN
+		Random random = new Random(semente);
+		CarrinhoComprasFactory semIndice = new CarrinhoComprasFactory();
+		CarrinhoComprasFactory comIndice = CarrinhoComprasFactory.builder().indiceProdutos().build();
+
+		for (int operacao = 0; operacao < 20_000; operacao++) {
+			//WHEN
+			String identificacao = "cliente" + random.nextInt(20);
+			Produto produto = new Produto((long) random.nextInt(30), "produto");
+			int sorteio = random.nextInt(20);
+			if (sorteio < 10) {
+				BigDecimal valorUnitario = BigDecimal.valueOf(random.nextInt(100_000), 2);
+				int quantidade = random.nextInt(10);
+				semIndice.criar(identificacao).adicionarItem(produto, valorUnitario, quantidade);
+				comIndice.criar(identificacao).adicionarItem(produto, valorUnitario, quantidade);
+			} else if (sorteio < 13) {
+				assertThat(comIndice.criar(identificacao).removerItem(produto))
+						.isEqualTo(semIndice.criar(identificacao).removerItem(produto));
+			} else if (sorteio < 14) {
+				LoteItens lote = new LoteItens()
+						.adicionar(produto, BigDecimal.TEN, random.nextInt(10))
+						.remover(new Produto((long) random.nextInt(30), "produto"))
+						.adicionar(new Produto((long) random.nextInt(30), "produto"), BigDecimal.ONE, 1);
+				semIndice.criar(identificacao).aplicarLote(lote);
+				comIndice.criar(identificacao).aplicarLote(lote);
+			} else if (sorteio < 16) {
+				BigDecimal valorUnitario = BigDecimal.valueOf(random.nextInt(100_000), 2);
+				assertThat(comIndice.alterarValorUnitario(produto, valorUnitario))
+						.isEqualTo(semIndice.alterarValorUnitario(produto, valorUnitario));
+			} else if (sorteio < 17) {
+				assertThat(comIndice.removerProduto(produto)).isEqualTo(semIndice.removerProduto(produto));
+			} else {
+				assertThat(comIndice.invalidar(identificacao)).isEqualTo(semIndice.invalidar(identificacao));
+			}
+
+			//THEN
+			assertThat(comIndice.criar(identificacao).getItens())
+					.containsExactlyElementsOf(semIndice.criar(identificacao).getItens());
+		}
+		assertThat(comIndice.getValorTicketMedio()).isEqualTo(semIndice.getValorTicketMedio());
+		for (long codigo = 0; codigo < 30; codigo++) {
+			long carrinhosComProduto = 0L;
+			for (String identificacao : comIndice.getIdentificacoesClientes()) {
+				Produto produto = new Produto(codigo, "produto");
+				carrinhosComProduto += comIndice.getCarrinhoCompras(identificacao).getItens().stream()
+						.filter(item -> item.getProduto().equals(produto))
+						.count();
+			}
+			assertThat(comIndice.getIndiceProdutos().registros(codigo)).hasSize((int) carrinhosComProduto);
+		}
+	}
+
+	@Test
+	void recuperarValorUnitarioAlterado(@TempDir Path diretorio) {
+		//GIVEN
+		Produto produto1 = new Produto(1L, "produto1");
+		try (CarrinhoComprasFactory factory = CarrinhoComprasFactory.builder().persistencia(diretorio)
+				.indiceProdutos().build()) {
+			factory.criar("cliente1").adicionarItem(produto1, BigDecimal.TEN, 2);
+			factory.criar("cliente2").adicionarItem(produto1, BigDecimal.TEN, 1);
+			factory.alterarValorUnitario(produto1, new BigDecimal("7.50"));
+		}
+
+		//WHEN
+		try (CarrinhoComprasFactory factory = CarrinhoComprasFactory.builder().persistencia(diretorio)
+				.indiceProdutos().build()) {
+
+			//THEN
+			assertThat(factory.criar("cliente1").getItens())
+					.containsExactly(new Item(produto1, new BigDecimal("7.50"), 2));
+			assertThat(factory.getValorTicketMedio()).isEqualTo(new BigDecimal("11.25"));
+			assertThat(factory.getIndiceProdutos().registros(1L)).hasSize(2);
+		}
+	}
+
+	@Test
+	void acompanharProdutosMaisColocados() {
+		//GIVEN
+		CarrinhoComprasFactory factory = CarrinhoComprasFactory.builder().produtosMaisColocados(2, 1_000_000L).build();
+		Produto produto1 = new Produto(1L, "produto1");
+		Produto produto2 = new Produto(2L, "produto2");
+		Produto produto3 = new Produto(3L, "produto3");
+
+		//WHEN
+		for (int i = 0; i < 5; i++) {
+			factory.criar("cliente" + i).adicionarItem(produto1, BigDecimal.ONE, 1);
+			// somar a um item existente não conta como uma nova colocação do produto
+			factory.criar("cliente" + i).adicionarItem(produto1, BigDecimal.ONE, 1);
+		}
+		for (int i = 0; i < 3; i++) {
+			factory.criar("cliente" + i).aplicarLote(new LoteItens()
+					.adicionar(produto2, BigDecimal.ONE, 1)
+					.remover(produto1));
+		}
+		factory.criar("cliente0").adicionarItem(produto3, BigDecimal.ONE, 1);
+
+		//THEN
+		assertThat(factory.getProdutosMaisColocados())
+				.extracting(ProdutoColocado::getProduto, ProdutoColocado::getColocacoesEstimadas)
+				.containsExactly(tuple(produto1, 5L), tuple(produto2, 3L));
+		assertThat(new CarrinhoComprasFactory().getProdutosMaisColocados()).isEmpty();
+	}
+
+	@Test
+	void naoContarItensRecuperadosComoColocacoes(@TempDir Path diretorio) {
+		//GIVEN
+		Produto produto1 = new Produto(1L, "produto1");
+		Produto produto2 = new Produto(2L, "produto2");
+		try (CarrinhoComprasFactory factory = CarrinhoComprasFactory.builder()
+				.persistencia(diretorio)
+				.produtosMaisColocados(2, 1_000_000L)
+				.build()) {
+			factory.criar("cliente1").adicionarItem(produto1, BigDecimal.ONE, 1);
+			factory.criar("cliente2").adicionarItem(produto1, BigDecimal.ONE, 1);
+		}
+
+		//WHEN
+		try (CarrinhoComprasFactory factory = CarrinhoComprasFactory.builder()
+				.persistencia(diretorio)
+				.produtosMaisColocados(2, 1_000_000L)
+				.build()) {
+			factory.criar("cliente1").adicionarItem(produto2, BigDecimal.ONE, 1);
+
+			//THEN
+			assertThat(factory.getProdutosMaisColocados())
+					.extracting(ProdutoColocado::getProduto, ProdutoColocado::getColocacoesEstimadas)
+					.containsExactly(tuple(produto2, 1L));
+		}
+	}
+
+	@ParameterizedTest
+	@ValueSource(longs = {1L, 7L, 42L})
+	void percentisAcompanhamAlteracoesDosCarrinhos(long semente) {
+		//GIVEN
+		Random random = new Random(semente);
+		CarrinhoComprasFactory factory = CarrinhoComprasFactory.builder().distribuicaoValores().build();
+
+		//WHEN
+		for (int operacao = 0; operacao < 50_000; operacao++) {
+			CarrinhoCompras carrinhoCompras = factory.criar("cliente" + random.nextInt(2_000));
+			Produto produto = new Produto((long) random.nextInt(20), "produto");
+			int sorteio = random.nextInt(20);
+			if (sorteio < 12) {
+				carrinhoCompras.adicionarItem(produto, BigDecimal.valueOf(random.nextInt(1_000_000), 2),
+						random.nextInt(5));
+			} else if (sorteio < 16) {
+				carrinhoCompras.removerItem(produto);
+			} else if (sorteio < 17) {
+				carrinhoCompras.aplicarLote(new LoteItens()
+						.adicionar(produto, BigDecimal.TEN, random.nextInt(10))
+						.remover(new Produto((long) random.nextInt(20), "produto")));
+			} else if (sorteio < 18) {
+				factory.alterarValorUnitario(produto, BigDecimal.valueOf(random.nextInt(1_000_000), 2));
+			} else {
+				factory.invalidar("cliente" + random.nextInt(2_000));
+			}
+		}
+
+		//THEN
+		long[] valores = factory.getIdentificacoesClientes().stream()
+				.mapToLong(identificacao -> factory.getCarrinhoCompras(identificacao).getValorTotalCentavos())
+				.sorted()
+				.toArray();
+		for (double percentil : new double[] {0.0, 25.0, 50.0, 90.0, 99.0, 100.0}) {
+			long exato = valores[(int) Math.max(0L, (long) Math.ceil(percentil / 100.0 * valores.length) - 1)];
+			assertThat(factory.getPercentilValorTotal(percentil)).isBetween(Centavos.paraBigDecimal(exato),
+					Centavos.paraBigDecimal(exato + exato / 128));
+		}
+		assertThat(factory.getDistribuicaoValores().getQuantidade()).isEqualTo(valores.length);
+	}
+
+	@Test
+	void percentisSemDistribuicaoHabilitada() {
+		//GIVEN
+		CarrinhoComprasFactory factory = new CarrinhoComprasFactory();
+
+		//WHEN
+		//THEN
+		assertThatThrownBy(() -> factory.getPercentilValorTotal(50.0)).isInstanceOf(IllegalStateException.class);
+	}
+
+	@Test
+	void ticketMedioDosCarrinhosComAtividadeRecente() {
+		//GIVEN
+		AtomicLong agora = new AtomicLong();
+		CarrinhoComprasFactory factory = CarrinhoComprasFactory.builder()
+				.janelaTicketMedio(Duration.ofMinutes(1), 60)
+				.relogio(agora::get)
+				.build();
+		Produto produto = new Produto(1L, "produto1");
+		factory.criar("cliente1").adicionarItem(produto, new BigDecimal("100.00"), 1);
+		agora.addAndGet(Duration.ofMinutes(20).toMillis());
+		factory.criar("cliente2").adicionarItem(produto, new BigDecimal("30.00"), 1);
+		factory.criar("cliente3");
+		agora.addAndGet(Duration.ofMinutes(10).toMillis());
+
+		//WHEN
+		factory.criar("cliente2").adicionarItem(produto, new BigDecimal("30.00"), 1);
+		BigDecimal ultimosQuinzeMinutos = factory.getValorTicketMedio(Duration.ofMinutes(15));
+		factory.invalidar("cliente3");
+
+		//THEN
+		assertThat(ultimosQuinzeMinutos).isEqualTo(new BigDecimal("30.00"));
+		assertThat(factory.getValorTicketMedio(Duration.ofMinutes(5))).isEqualTo(new BigDecimal("60.00"));
+		assertThat(factory.getValorTicketMedio(Duration.ofMinutes(15))).isEqualTo(new BigDecimal("60.00"));
+		assertThat(factory.getValorTicketMedio(Duration.ofMinutes(60))).isEqualTo(new BigDecimal("80.00"));
+		assertThat(factory.getValorTicketMedio()).isEqualTo(new BigDecimal("80.00"));
+		assertThatThrownBy(() -> new CarrinhoComprasFactory().getValorTicketMedio(Duration.ofMinutes(5)))
+				.isInstanceOf(IllegalStateException.class);
+	}
+
+	@Test
+	void carregarCarrinhoDoRepositorio() {
+		//GIVEN
+		RepositorioCarrinhosEmMemoria repositorio = new RepositorioCarrinhosEmMemoria();
+		CarrinhoCompras armazenado = new CarrinhoCompras();
+		armazenado.adicionarItem(new Produto(1L, "produto1"), new BigDecimal("10.00"), 2);
+		armazenado.adicionarItem(new Produto(2L, "produto2"), new BigDecimal("5.50"), 1);
+		repositorio.gravar("cliente1", armazenado);
+		CarrinhoComprasFactory factory = CarrinhoComprasFactory.builder().cache(repositorio, 100L).build();
+
+		//WHEN
+		CarrinhoCompras carrinhoCompras = factory.criar("cliente1");
+
+		//THEN
+		assertThat(carrinhoCompras.getItens())
+				.extracting(item -> item.getProduto().getCodigo(), Item::getValorUnitario, Item::getQuantidade)
+				.containsExactly(tuple(1L, new BigDecimal("10.00"), 2), tuple(2L, new BigDecimal("5.50"), 1));
+		assertThat(carrinhoCompras.getValorTotal()).isEqualTo(new BigDecimal("25.50"));
+		assertThat(factory.criar("cliente1")).isSameAs(carrinhoCompras);
+	}
+
+	@Test
+	void despejarCarrinhosExcedentesNoRepositorio() {
+		//GIVEN
+		RepositorioCarrinhosEmMemoria repositorio = new RepositorioCarrinhosEmMemoria();
+		CarrinhoComprasFactory factory = CarrinhoComprasFactory.builder().cache(repositorio, 20L).build();
+
+		//WHEN
+		for (int i = 0; i < 100; i++) {
+			CarrinhoCompras carrinhoCompras = factory.criar("cliente" + i);
+			carrinhoCompras.adicionarItem(new Produto(1L, "produto1"), BigDecimal.ONE, i + 1);
+			carrinhoCompras.adicionarItem(new Produto(2L, "produto2"), BigDecimal.TEN, 1);
+		}
+		int residentes = factory.getIdentificacoesEmMemoria().size();
+		factory.gravarPendentes();
+
+		//THEN
+		// o limite pode ser excedido apenas pelo carrinho alterado depois da última limpeza
+		assertThat(residentes).isLessThanOrEqualTo(11);
+		assertThat(repositorio.size()).isGreaterThanOrEqualTo(100 - residentes);
+		assertThat(factory.getIdentificacoesClientes()).hasSize(100);
+		for (int i = 0; i < 100; i++) {
+			assertThat(factory.criar("cliente" + i).getValorTotal()).isEqualByComparingTo(BigDecimal.valueOf(i + 11));
+		}
+	}
+
+	@Test
+	void invalidarCarrinhoForaDaMemoria() {
+		//GIVEN
+		RepositorioCarrinhosEmMemoria repositorio = new RepositorioCarrinhosEmMemoria();
+		CarrinhoComprasFactory factory = CarrinhoComprasFactory.builder().cache(repositorio, 1L).build();
+		factory.criar("cliente1").adicionarItem(new Produto(1L, "produto1"), BigDecimal.TEN, 1);
+		for (int i = 2; i < 10; i++) {
+			factory.criar("cliente" + i);
+		}
+
+		//WHEN
+		boolean invalidado = factory.invalidar("cliente1");
+
+		//THEN
+		assertThat(invalidado).isTrue();
+		assertThat(factory.invalidar("cliente1")).isFalse();
+		assertThat(factory.criar("cliente1").getItens()).isEmpty();
+	}
+
+	@Test
+	void carregarUmaUnicaVezComChamadasConcorrentes() throws Exception {
+		//GIVEN
+		AtomicLong carregamentos = new AtomicLong();
+		RepositorioCarrinhosEmMemoria armazenados = new RepositorioCarrinhosEmMemoria();
+		CarrinhoCompras armazenado = new CarrinhoCompras();
+		armazenado.adicionarItem(new Produto(1L, "produto1"), BigDecimal.TEN, 1);
+		armazenados.gravar("cliente1", armazenado);
+		RepositorioCarrinhos repositorio = new RepositorioCarrinhos() {
+
+			@Override
+			public CarrinhoCompras carregar(String identificacaoCliente) {
+				carregamentos.incrementAndGet();
+				try {
+					Thread.sleep(50L);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				return armazenados.carregar(identificacaoCliente);
+			}
+
+			@Override
+			public void gravar(String identificacaoCliente, CarrinhoCompras carrinhoCompras) {
+				armazenados.gravar(identificacaoCliente, carrinhoCompras);
+			}
+
+			@Override
+			public boolean remover(String identificacaoCliente) {
+				return armazenados.remover(identificacaoCliente);
+			}
+
+			@Override
+			public void percorrer(BiConsumer<String, CarrinhoCompras> consumidor) {
+				armazenados.percorrer(consumidor);
+			}
+		};
+		CarrinhoComprasFactory factory = CarrinhoComprasFactory.builder().cache(repositorio, 100L).build();
+		CarrinhoCompras[] carrinhos = new CarrinhoCompras[8];
+
+		//WHEN
+		executarConcorrentemente(8, thread -> carrinhos[thread] = factory.criar("cliente1"));
+
+		//THEN
+		assertThat(carregamentos.get()).isEqualTo(1L);
+		assertThat(carrinhos).allMatch(carrinhoCompras -> carrinhoCompras == carrinhos[0]);
+		assertThat(carrinhos[0].getValorTotal()).isEqualTo(new BigDecimal("10.00"));
+	}
+
+	@Test
+	void carregarForaDoLockDoMapa() throws Exception {
+		//GIVEN
+		CountDownLatch carregando = new CountDownLatch(1);
+		CountDownLatch liberar = new CountDownLatch(1);
+		RepositorioCarrinhosEmMemoria armazenados = new RepositorioCarrinhosEmMemoria();
+		armazenados.gravar("lento", new CarrinhoCompras());
+		RepositorioCarrinhos repositorio = new RepositorioCarrinhos() {
+
+			@Override
+			public CarrinhoCompras carregar(String identificacaoCliente) {
+				if (identificacaoCliente.equals("lento")) {
+					carregando.countDown();
+					try {
+						liberar.await();
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				}
+				return armazenados.carregar(identificacaoCliente);
+			}
+
+			@Override
+			public void gravar(String identificacaoCliente, CarrinhoCompras carrinhoCompras) {
+				armazenados.gravar(identificacaoCliente, carrinhoCompras);
+			}
+
+			@Override
+			public boolean remover(String identificacaoCliente) {
+				return armazenados.remover(identificacaoCliente);
+			}
+
+			@Override
+			public void percorrer(BiConsumer<String, CarrinhoCompras> consumidor) {
+				armazenados.percorrer(consumidor);
+			}
+		};
+		CarrinhoComprasFactory factory = CarrinhoComprasFactory.builder().cache(repositorio, 1_000L).build();
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			Future<CarrinhoCompras> lento = executor.submit(() -> factory.criar("lento"));
+			assertThat(carregando.await(30, TimeUnit.SECONDS)).isTrue();
+
+			//WHEN
+			// clientes no mesmo bin do mapa que o carregamento em andamento, caso ele fosse feito sob o lock do bin
+			for (int i = 0; i < 1_000; i++) {
+				factory.criar("cliente" + i).adicionarItem(new Produto(1L, "produto1"), BigDecimal.ONE, 1);
+				assertThat(factory.invalidar("cliente" + i)).isTrue();
+			}
+
+			//THEN
+			assertThat(lento.isDone()).isFalse();
+			liberar.countDown();
+			assertThat(lento.get(30, TimeUnit.SECONDS).getItens()).isEmpty();
+		} finally {
+			liberar.countDown();
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	void alterarCarrinhoDespejadoEntreCriarEAdicionar() {
+		//GIVEN
+		RepositorioCarrinhosEmMemoria repositorio = new RepositorioCarrinhosEmMemoria();
+		CarrinhoComprasFactory factory = CarrinhoComprasFactory.builder().cache(repositorio, 1L).build();
+		CarrinhoCompras carrinhoCompras = factory.criar("cliente1");
+		carrinhoCompras.adicionarItem(new Produto(1L, "produto1"), BigDecimal.TEN, 1);
+		for (int i = 2; i < 100 && factory.getIdentificacoesEmMemoria().contains("cliente1"); i++) {
+			factory.criar("cliente" + i);
+		}
+		assertThat(factory.getIdentificacoesEmMemoria()).doesNotContain("cliente1");
+
+		//WHEN
+		carrinhoCompras.adicionarItem(new Produto(1L, "produto1"), BigDecimal.TEN, 1);
+
+		//THEN
+		assertThat(factory.getIdentificacoesEmMemoria()).contains("cliente1");
+		assertThat(carrinhoCompras.getValorTotal()).isEqualByComparingTo(new BigDecimal("20"));
+		assertThat(factory.criar("cliente1").getItens()).containsExactly(
+				new Item(new Produto(1L, "produto1"), BigDecimal.TEN, 2));
+	}
+
+	@Test
+	void alterarCarrinhoInvalidadoForaDaMemoria() {
+		//GIVEN
+		RepositorioCarrinhosEmMemoria repositorio = new RepositorioCarrinhosEmMemoria();
+		CarrinhoComprasFactory factory = CarrinhoComprasFactory.builder().cache(repositorio, 1L).build();
+		CarrinhoCompras carrinhoCompras = factory.criar("cliente1");
+		carrinhoCompras.adicionarItem(new Produto(1L, "produto1"), BigDecimal.TEN, 1);
+		for (int i = 2; i < 100 && factory.getIdentificacoesEmMemoria().contains("cliente1"); i++) {
+			factory.criar("cliente" + i);
+		}
+		assertThat(factory.getIdentificacoesEmMemoria()).doesNotContain("cliente1");
+
+		//WHEN
+		boolean invalidado = factory.invalidar("cliente1");
+		boolean removido = carrinhoCompras.removerItem(new Produto(1L, "produto1"));
+		EstadoCarrinhoCompras estado = carrinhoCompras.getEstado();
+		factory.gravarPendentes();
+
+		//THEN
+		assertThat(invalidado).isTrue();
+		assertThat(removido).isFalse();
+		assertThat(estado.getItens()).isEmpty();
+		assertThat(repositorio.carregar("cliente1")).isNull();
+		assertThat(factory.getIdentificacoesClientes()).doesNotContain("cliente1");
+		carrinhoCompras.adicionarItem(new Produto(2L, "produto2"), BigDecimal.ONE, 1);
+		assertThat(factory.criar("cliente1").getItens()).extracting(item -> item.getProduto().getCodigo())
+				.containsExactly(2L);
+	}
+
+	@Test
+	void gravarDespejadosForaDaThreadQueDespeja() {
+		//GIVEN
+		RepositorioCarrinhosEmMemoria armazenados = new RepositorioCarrinhosEmMemoria();
+		Map<String, String> threads = new ConcurrentHashMap<>();
+		RepositorioCarrinhos repositorio = new RepositorioCarrinhos() {
+
+			@Override
+			public CarrinhoCompras carregar(String identificacaoCliente) {
+				return armazenados.carregar(identificacaoCliente);
+			}
+
+			@Override
+			public void gravar(String identificacaoCliente, CarrinhoCompras carrinhoCompras) {
+				threads.put(identificacaoCliente, Thread.currentThread().getName());
+				armazenados.gravar(identificacaoCliente, carrinhoCompras);
+			}
+
+			@Override
+			public boolean remover(String identificacaoCliente) {
+				return armazenados.remover(identificacaoCliente);
+			}
+
+			@Override
+			public void percorrer(BiConsumer<String, CarrinhoCompras> consumidor) {
+				armazenados.percorrer(consumidor);
+			}
+		};
+		CarrinhoComprasFactory factory = CarrinhoComprasFactory.builder().cache(repositorio, 1L).build();
+
+		//WHEN
+		for (int i = 0; i < 20; i++) {
+			factory.criar("cliente" + i).adicionarItem(new Produto(1L, "produto1"), BigDecimal.ONE, i + 1);
+		}
+		Collection<String> residentes = factory.getIdentificacoesEmMemoria();
+		factory.close();
+
+		//THEN
+		// os carrinhos em memória são gravados por close(), e os despejados, pela thread de gravação
+		assertThat(armazenados.size()).isEqualTo(20);
+		assertThat(residentes).hasSizeLessThan(20);
+		threads.forEach((identificacaoCliente, thread) -> assertThat(thread).isEqualTo(
+				residentes.contains(identificacaoCliente) ? Thread.currentThread().getName() : "gravacao-carrinhos"));
+	}
+
+	@Test
+	void ticketMedioConsideraCarrinhosForaDaMemoria() {
+		//GIVEN
+		RepositorioCarrinhosEmMemoria repositorio = new RepositorioCarrinhosEmMemoria();
+		CarrinhoCompras armazenado = new CarrinhoCompras();
+		armazenado.adicionarItem(new Produto(1L, "produto1"), new BigDecimal("100.00"), 1);
+		repositorio.gravar("armazenado", armazenado);
+		CarrinhoComprasFactory factory = CarrinhoComprasFactory.builder()
+				.cache(repositorio, 1L)
+				.distribuicaoValores()
+				.build();
+		CarrinhoComprasFactory referencia = CarrinhoComprasFactory.builder().distribuicaoValores().build();
+		referencia.criar("armazenado").adicionarItem(new Produto(1L, "produto1"), new BigDecimal("100.00"), 1);
+
+		//WHEN
+		for (int i = 0; i < 20; i++) {
+			BigDecimal valorUnitario = BigDecimal.valueOf(i + 1);
+			factory.criar("cliente" + i).adicionarItem(new Produto(1L, "produto1"), valorUnitario, 1);
+			referencia.criar("cliente" + i).adicionarItem(new Produto(1L, "produto1"), valorUnitario, 1);
+		}
+		factory.invalidar("cliente0");
+		referencia.invalidar("cliente0");
+		factory.criar("cliente1").adicionarItem(new Produto(2L, "produto2"), BigDecimal.TEN, 1);
+		referencia.criar("cliente1").adicionarItem(new Produto(2L, "produto2"), BigDecimal.TEN, 1);
+
+		//THEN
+		assertThat(factory.getIdentificacoesEmMemoria().size()).isLessThan(20);
+		assertThat(factory.getValorTicketMedio()).isEqualTo(referencia.getValorTicketMedio());
+		assertThat(factory.recalcularValorTicketMedio()).isEqualTo(referencia.getValorTicketMedio());
+		assertThat(factory.getPercentilValorTotal(50)).isEqualTo(referencia.getPercentilValorTotal(50));
+		assertThat(factory.getPercentilValorTotal(100)).isEqualTo(referencia.getPercentilValorTotal(100));
+		factory.close();
+		assertThat(CarrinhoComprasFactory.builder().cache(repositorio, 1L).build().getValorTicketMedio())
+				.isEqualTo(referencia.getValorTicketMedio());
+	}
+
+	@Test
+	void cacheIgualAFactorySemLimite(@TempDir Path diretorio) {
+		//GIVEN
+		CarrinhoComprasFactory cache = CarrinhoComprasFactory.builder()
+				.cache(new RepositorioCarrinhosEmArquivos(diretorio), 30L)
+				.build();
+		CarrinhoComprasFactory referencia = new CarrinhoComprasFactory();
+		Random random = new Random(42L);
+
+		//WHEN
+		for (int i = 0; i < 5_000; i++) {
+			String identificacaoCliente = "cliente" + random.nextInt(200);
+			Produto produto = new Produto((long) random.nextInt(5), "produto");
+			int operacao = random.nextInt(10);
+			if (operacao == 0) {
+				assertThat(cache.invalidar(identificacaoCliente)).isEqualTo(referencia.invalidar(identificacaoCliente));
+			} else if (operacao < 3) {
+				assertThat(cache.criar(identificacaoCliente).removerItem(produto))
+						.isEqualTo(referencia.criar(identificacaoCliente).removerItem(produto));
+			} else {
+				BigDecimal valorUnitario = BigDecimal.valueOf(random.nextInt(1_000), 2);
+				int quantidade = 1 + random.nextInt(3);
+				cache.criar(identificacaoCliente).adicionarItem(produto, valorUnitario, quantidade);
+				referencia.criar(identificacaoCliente).adicionarItem(produto, valorUnitario, quantidade);
+			}
+		}
+
+		//THEN
+		for (String identificacaoCliente : referencia.getIdentificacoesClientes()) {
+			assertThat(cache.criar(identificacaoCliente).getItens())
+					.extracting(item -> item.getProduto().getCodigo(), Item::getValorUnitarioCentavos,
+							Item::getQuantidade)
+					.containsExactlyElementsOf(referencia.criar(identificacaoCliente).getItens().stream()
+							.map(item -> tuple(item.getProduto().getCodigo(), item.getValorUnitarioCentavos(),
+									item.getQuantidade()))
+							.collect(Collectors.toList()));
+		}
+		assertThat(cache.getIdentificacoesEmMemoria().size()).isLessThan(referencia.getIdentificacoesClientes().size());
+		assertThat(cache.getValorTicketMedio()).isEqualTo(referencia.getValorTicketMedio());
+		cache.close();
+	}
+
+	@Test
+	void cacheNaoCombinaComExpiracaoNemPersistencia(@TempDir Path diretorio) {
+		//GIVEN
+		RepositorioCarrinhos repositorio = new RepositorioCarrinhosEmMemoria();
+
+		//WHEN
+		//THEN
+		assertThatThrownBy(() -> CarrinhoComprasFactory.builder().cache(repositorio, 10L)
+				.expiracao(Duration.ofMinutes(1)).build())
+				.isInstanceOf(IllegalStateException.class);
+		assertThatThrownBy(() -> CarrinhoComprasFactory.builder().cache(repositorio, 10L)
+				.persistencia(diretorio).build())
+				.isInstanceOf(IllegalStateException.class);
+		assertThatThrownBy(() -> CarrinhoComprasFactory.builder().cache(repositorio, 0L))
+				.isInstanceOf(IllegalArgumentException.class);
+	}
+
+	private static void executarConcorrentemente(int threads, TarefaConcorrente tarefa) throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			CountDownLatch largada = new CountDownLatch(1);
+			List<Future<?>> futures = new ArrayList<>();
+			for (int i = 0; i < threads; i++) {
+				int thread = i;
+				futures.add(executor.submit(() -> {
+					largada.await();
+					tarefa.executar(thread);
+					return null;
+				}));
+			}
+			largada.countDown();
+			for (Future<?> future : futures) {
+				future.get(30, TimeUnit.SECONDS);
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@FunctionalInterface
+	private interface TarefaConcorrente {
+		void executar(int thread) throws Exception;
+	}
+}
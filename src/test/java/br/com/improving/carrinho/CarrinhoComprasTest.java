@@ -4,13 +4,25 @@ import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.junit.jupiter.params.provider.Arguments.arguments;
 
+import java.lang.management.ManagementFactory;
 import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.Stream;
 
+import org.junit.jupiter.api.Assumptions;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
+import org.junit.jupiter.params.provider.ValueSource;
 
 import br.com.improving.carrinho.exception.NullProdutoException;
 import br.com.improving.carrinho.exception.QuantidadeInvalidaException;
@@ -164,10 +176,367 @@ class CarrinhoComprasTest {
 
 		return Stream.of(
 				arguments(carrinhoVazio, 0, false, new BigDecimal("0.00")),
+				arguments(carrinhoVazio, -1, false, new BigDecimal("0.00")),
 				arguments(carrinhoUmItem, 0, true, new BigDecimal("0.00")),
 				arguments(carrinhoDoisItensRemoveFirst, 2, false, new BigDecimal("21.00")),
 				arguments(carrinhoDoisItensRemoveFirst, 0, true, new BigDecimal("20.00")),
 				arguments(carrinhoDoisItensRemoveSecond, 1, true, new BigDecimal("1.00"))
 		);
 	}
-}
\ No newline at end of file
+
+	@ParameterizedTest
+	@ValueSource(longs = {1L, 7L, 42L, 2022L, 31337L})
+	void valorTotalIncrementalIgualSomaDosItens(long semente) {
+		//GIVEN
+		Random random = new Random(semente);
+		CarrinhoCompras carrinhoCompras = new CarrinhoCompras();
+
+		for (int operacao = 0; operacao < 2_000; operacao++) {
+			//WHEN
+			Produto produto = new Produto((long) random.nextInt(30), "produto");
+			int sorteio = random.nextInt(10);
+			if (sorteio < 6) {
+				BigDecimal valorUnitario = BigDecimal.valueOf(random.nextInt(1_000_000), random.nextInt(5));
+				carrinhoCompras.adicionarItem(produto, valorUnitario, random.nextInt(20));
+			} else if (sorteio < 8) {
+				carrinhoCompras.removerItem(produto);
+			} else {
+				carrinhoCompras.removerItem(random.nextInt(35));
+			}
+
+			//THEN
+			BigDecimal expectedValorTotal = carrinhoCompras.getItens()
+					.stream()
+					.map(Item::getValorTotal)
+					.reduce(BigDecimal.ZERO, BigDecimal::add)
+					.setScale(2, RoundingMode.HALF_EVEN);
+			assertThat(carrinhoCompras.getValorTotal()).isEqualTo(expectedValorTotal);
+		}
+	}
+
+	@Test
+	void valorTotalUsaNovoValorUnitarioAoSomarMesmoProduto() {
+		//GIVEN
+		CarrinhoCompras carrinhoCompras = new CarrinhoCompras();
+		carrinhoCompras.adicionarItem(PRODUTO_ONE, new BigDecimal("3.339"), 3);
+
+		//WHEN
+		carrinhoCompras.adicionarItem(PRODUTO_ONE, new BigDecimal("1.111"), 1);
+
+		//THEN
+		assertThat(carrinhoCompras.getValorTotal()).isEqualTo(new BigDecimal("4.44"));
+	}
+
+	@Test
+	void adicionarItemQueTransbordaValorTotalNaoAlteraCarrinho() {
+		//GIVEN
+		BigDecimal valorUnitario = new BigDecimal("50000000000000000");
+		CarrinhoCompras carrinhoCompras = new CarrinhoCompras();
+		carrinhoCompras.adicionarItem(PRODUTO_ONE, valorUnitario, 1);
+
+		//WHEN
+		//THEN
+		assertThatThrownBy(() -> carrinhoCompras.adicionarItem(PRODUTO_TWO, valorUnitario, 1))
+				.isInstanceOf(ArithmeticException.class);
+		assertThat(carrinhoCompras.getItens()).containsExactly(new Item(PRODUTO_ONE, valorUnitario, 1));
+		assertThat(carrinhoCompras.getValorTotal()).isEqualTo(new BigDecimal("50000000000000000.00"));
+	}
+
+	@Test
+	void adicionarMesmoProdutoNaoMudaItensJaRetornados() {
+		//GIVEN
+		CarrinhoCompras carrinhoCompras = new CarrinhoCompras();
+		carrinhoCompras.adicionarItem(PRODUTO_ONE, BigDecimal.ONE, 1);
+		Item item = carrinhoCompras.getItens().iterator().next();
+
+		//WHEN
+		carrinhoCompras.adicionarItem(PRODUTO_ONE, BigDecimal.TEN, 1);
+
+		//THEN
+		assertThat(item).isEqualTo(new Item(PRODUTO_ONE, BigDecimal.ONE, 1));
+		assertThat(carrinhoCompras.getItens()).containsExactly(new Item(PRODUTO_ONE, BigDecimal.TEN, 2));
+	}
+
+	@Test
+	void adicionarMesmoProdutoAlocaApenasOEstado() {
+		//GIVEN
+		CarrinhoCompras carrinhoCompras = new CarrinhoComprasFactory().criar("cliente");
+		BigDecimal valorUnitario = new BigDecimal("9.90");
+		carrinhoCompras.adicionarItem(PRODUTO_ONE, valorUnitario, 1);
+		carrinhoCompras.adicionarItem(PRODUTO_TWO, valorUnitario, 1);
+		com.sun.management.ThreadMXBean threadMXBean = threadMXBeanComAlocacao();
+		long thread = Thread.currentThread().getId();
+		adicionarRepetidamente(carrinhoCompras, valorUnitario, 100_000);
+
+		//WHEN
+		long antes = threadMXBean.getThreadAllocatedBytes(thread);
+		adicionarRepetidamente(carrinhoCompras, valorUnitario, 100_000);
+		long alocados = threadMXBean.getThreadAllocatedBytes(thread) - antes;
+
+		//THEN
+		// as linhas são alteradas no lugar: cada adição aloca apenas o estado publicado, que reaproveita o item da
+		// linha não alterada
+		assertThat(alocados / 100_000).isLessThan(256L);
+		assertThat(carrinhoCompras.getItens()).extracting(Item::getQuantidade).containsExactly(100_001, 100_001);
+	}
+
+	@ParameterizedTest
+	@ValueSource(longs = {1L, 7L, 42L, 2022L, 31337L})
+	void aplicarLoteIgualOperacoesIndividuais(long semente) {
+		//GIVEN
+		Random random = new Random(semente);
+		CarrinhoCompras individual = new CarrinhoCompras();
+		CarrinhoCompras emLote = new CarrinhoCompras();
+		individual.adicionarItem(PRODUTO_ONE, BigDecimal.TEN, 1);
+		emLote.adicionarItem(PRODUTO_ONE, BigDecimal.TEN, 1);
+
+		for (int rodada = 0; rodada < 50; rodada++) {
+			LoteItens lote = new LoteItens();
+			for (int operacao = 0; operacao < random.nextInt(30); operacao++) {
+				Produto produto = new Produto((long) random.nextInt(15), "produto");
+				if (random.nextInt(4) == 0) {
+					lote.remover(produto);
+					individual.removerItem(produto);
+				} else {
+					BigDecimal valorUnitario = BigDecimal.valueOf(random.nextInt(10_000), random.nextInt(3));
+					int quantidade = random.nextInt(10);
+					lote.adicionar(produto, valorUnitario, quantidade);
+					individual.adicionarItem(produto, valorUnitario, quantidade);
+				}
+			}
+
+			//WHEN
+			emLote.aplicarLote(lote);
+
+			//THEN
+			assertThat(emLote.getItens()).containsExactlyElementsOf(individual.getItens());
+			assertThat(emLote.getValorTotal()).isEqualTo(individual.getValorTotal());
+		}
+	}
+
+	@ParameterizedTest
+	@MethodSource("lotesInvalidos")
+	void aplicarLoteInvalidoNaoAlteraCarrinho(LoteItens lote, Class<?> expectedClass) {
+		//GIVEN
+		CarrinhoCompras carrinhoCompras = new CarrinhoCompras();
+		carrinhoCompras.adicionarItem(PRODUTO_ONE, BigDecimal.TEN, 1);
+
+		//WHEN
+		//THEN
+		assertThatThrownBy(() -> carrinhoCompras.aplicarLote(lote))
+				.isInstanceOf(expectedClass);
+		assertThat(carrinhoCompras.getItens()).containsExactly(new Item(PRODUTO_ONE, BigDecimal.TEN, 1));
+		assertThat(carrinhoCompras.getValorTotal()).isEqualTo(new BigDecimal("10.00"));
+	}
+
+	static Stream<Arguments> lotesInvalidos() {
+		BigDecimal valorMaximo = new BigDecimal("50000000000000000");
+		return Stream.of(
+				arguments(new LoteItens().adicionar(PRODUTO_TWO, BigDecimal.ONE, 1).adicionar(null, BigDecimal.ONE, 1),
+						NullProdutoException.class),
+				arguments(new LoteItens().remover(PRODUTO_ONE).remover(null), NullProdutoException.class),
+				arguments(new LoteItens().remover(PRODUTO_ONE).adicionar(PRODUTO_TWO, new BigDecimal("-0.01"), 1),
+						ValorUnitarioInvalidoException.class),
+				arguments(new LoteItens().adicionar(PRODUTO_TWO, BigDecimal.ONE, 1).adicionar(PRODUTO_ONE, null, 1),
+						ValorUnitarioInvalidoException.class),
+				arguments(new LoteItens().adicionar(PRODUTO_ONE, BigDecimal.ONE, 1).adicionar(PRODUTO_TWO,
+						BigDecimal.ONE, -1), QuantidadeInvalidaException.class),
+				arguments(new LoteItens().remover(PRODUTO_ONE).adicionar(PRODUTO_TWO, valorMaximo, 100)
+						.adicionar(PRODUTO_ONE, valorMaximo, 100), ArithmeticException.class),
+				arguments(new LoteItens().adicionar(PRODUTO_ONE, BigDecimal.ONE, Integer.MAX_VALUE),
+						ArithmeticException.class)
+		);
+	}
+
+	@Test
+	void aplicarLoteProximoDoLimite() {
+		//GIVEN
+		CarrinhoCompras carrinhoCompras = new CarrinhoCompras();
+		carrinhoCompras.adicionarItem(PRODUTO_ONE, BigDecimal.ONE, 2_000_000_000);
+		LoteItens lote = new LoteItens()
+				.remover(PRODUTO_ONE)
+				.adicionar(PRODUTO_TWO, BigDecimal.ONE, 2_000_000_000);
+
+		//WHEN
+		carrinhoCompras.aplicarLote(lote);
+
+		//THEN
+		assertThat(carrinhoCompras.getItens()).containsExactly(new Item(PRODUTO_TWO, BigDecimal.ONE, 2_000_000_000));
+		assertThat(carrinhoCompras.getValorTotal()).isEqualTo(new BigDecimal("2000000000.00"));
+	}
+
+	@Test
+	void aplicarLoteAdicionaERemoveMesmoProduto() {
+		//GIVEN
+		CarrinhoCompras carrinhoCompras = new CarrinhoCompras();
+		carrinhoCompras.adicionarItem(PRODUTO_ONE, BigDecimal.TEN, 1);
+		LoteItens lote = new LoteItens()
+				.adicionar(PRODUTO_TWO, BigDecimal.ONE, 2)
+				.remover(PRODUTO_ONE)
+				.adicionar(PRODUTO_ONE, new BigDecimal("5.00"), 3)
+				.adicionar(PRODUTO_TWO, new BigDecimal("2.00"), 1);
+
+		//WHEN
+		carrinhoCompras.aplicarLote(lote);
+
+		//THEN
+		assertThat(carrinhoCompras.getItens()).containsExactly(
+				new Item(PRODUTO_TWO, new BigDecimal("2.00"), 3),
+				new Item(PRODUTO_ONE, new BigDecimal("5.00"), 3));
+		assertThat(carrinhoCompras.getValorTotal()).isEqualTo(new BigDecimal("21.00"));
+	}
+
+	@Test
+	void aplicarLoteSemAlteracaoNaoNotifica() {
+		//GIVEN
+		List<Long> notificacoes = new ArrayList<>();
+		CarrinhoCompras carrinhoCompras = new CarrinhoCompras(new CarrinhoLocal(notificacoes::add, null,
+				MetricasCarrinhos.NENHUMA, new LinhasNoHeap()));
+		carrinhoCompras.adicionarItem(PRODUTO_ONE, BigDecimal.TEN, 2);
+		EstadoCarrinhoCompras anterior = carrinhoCompras.getEstado();
+		LoteItens lote = new LoteItens()
+				.remover(PRODUTO_TWO)
+				.adicionar(PRODUTO_ONE, new BigDecimal("10.00"), 0);
+
+		//WHEN
+		carrinhoCompras.aplicarLote(lote);
+		carrinhoCompras.aplicarLote(new LoteItens());
+
+		//THEN
+		assertThat(notificacoes).hasSize(1);
+		assertThat(carrinhoCompras.getEstado()).isSameAs(anterior);
+	}
+
+	@Test
+	void estadoReaproveitadoAteAlteracao() {
+		//GIVEN
+		CarrinhoCompras carrinhoCompras = new CarrinhoCompras();
+		carrinhoCompras.adicionarItem(PRODUTO_ONE, BigDecimal.TEN, 2);
+		EstadoCarrinhoCompras anterior = carrinhoCompras.getEstado();
+
+		//WHEN
+		carrinhoCompras.removerItem(PRODUTO_TWO);
+		EstadoCarrinhoCompras semAlteracao = carrinhoCompras.getEstado();
+		carrinhoCompras.adicionarItem(PRODUTO_TWO, BigDecimal.ONE, 1);
+		EstadoCarrinhoCompras actual = carrinhoCompras.getEstado();
+
+		//THEN
+		assertThat(semAlteracao).isSameAs(anterior);
+		assertThat(carrinhoCompras.getEstado()).isSameAs(actual);
+		assertThat(actual.getVersao()).isGreaterThan(anterior.getVersao());
+		assertThat(anterior.getItens()).containsExactly(new Item(PRODUTO_ONE, BigDecimal.TEN, 2));
+		assertThat(anterior.getValorTotal()).isEqualTo(new BigDecimal("20.00"));
+		assertThat(actual.getItens()).containsExactly(
+				new Item(PRODUTO_ONE, BigDecimal.TEN, 2),
+				new Item(PRODUTO_TWO, BigDecimal.ONE, 1));
+		assertThat(actual.getValorTotal()).isEqualTo(new BigDecimal("21.00"));
+		assertThatThrownBy(() -> actual.getItens().clear())
+				.isInstanceOf(UnsupportedOperationException.class);
+	}
+
+	@Test
+	void estadoLidoSemLockAposAlteracao() throws Exception {
+		//GIVEN
+		CarrinhoLocal carrinho = new CarrinhoLocal();
+		carrinho.adicionarItem(PRODUTO_ONE, BigDecimal.TEN, 2);
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			// o lock fica com outra thread durante a leitura
+			executor.submit(carrinho::travar).get();
+
+			//WHEN
+			Future<EstadoCarrinhoCompras> estado = executor.submit(carrinho::getEstado);
+
+			//THEN
+			assertThat(estado.get(10, TimeUnit.SECONDS).getItens())
+					.containsExactly(new Item(PRODUTO_ONE, BigDecimal.TEN, 2));
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	void estadoLidoDuranteAlteracoesCorrespondeAUmaVersao() throws Exception {
+		//GIVEN
+		int alteracoes = 20_000;
+		// estado esperado após cada alteração, calculado por um carrinho sem concorrência
+		CarrinhoCompras referencia = new CarrinhoCompras();
+		List<List<Item>> itensPorVersao = new ArrayList<>();
+		itensPorVersao.add(new ArrayList<>());
+		CarrinhoCompras carrinhoCompras = new CarrinhoCompras();
+		Runnable[] operacoes = new Runnable[alteracoes];
+		for (int i = 0; i < alteracoes; i++) {
+			Produto produto = new Produto((long) (i % 13), "produto");
+			BigDecimal valorUnitario = BigDecimal.valueOf(i % 97 + 1, 2);
+			if (i % 5 == 4) {
+				operacoes[i] = () -> carrinhoCompras.removerItem(0);
+				referencia.removerItem(0);
+			} else {
+				operacoes[i] = () -> carrinhoCompras.adicionarItem(produto, valorUnitario, 1);
+				referencia.adicionarItem(produto, valorUnitario, 1);
+			}
+			itensPorVersao.add(new ArrayList<>(referencia.getItens()));
+		}
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		AtomicBoolean concluido = new AtomicBoolean();
+
+		try {
+			//WHEN
+			List<Future<Integer>> leitores = new ArrayList<>();
+			for (int leitor = 0; leitor < 3; leitor++) {
+				leitores.add(executor.submit(() -> {
+					long ultimaVersao = -1L;
+					int leituras = 0;
+					do {
+						EstadoCarrinhoCompras estado = carrinhoCompras.getEstado();
+						List<Item> esperados = itensPorVersao.get((int) estado.getVersao());
+						BigDecimal valorTotal = esperados.stream()
+								.map(Item::getValorTotal)
+								.reduce(new BigDecimal("0.00"), BigDecimal::add);
+
+						//THEN
+						assertThat(estado.getVersao()).isGreaterThanOrEqualTo(ultimaVersao);
+						assertThat(estado.getItens()).containsExactlyElementsOf(esperados);
+						assertThat(estado.getValorTotal()).isEqualTo(valorTotal);
+						ultimaVersao = estado.getVersao();
+						leituras++;
+					} while (!concluido.get());
+					return leituras;
+				}));
+			}
+			executor.submit(() -> {
+				try {
+					for (Runnable operacao : operacoes) {
+						operacao.run();
+					}
+				} finally {
+					concluido.set(true);
+				}
+			}).get(30, TimeUnit.SECONDS);
+
+			for (Future<Integer> leitor : leitores) {
+				assertThat(leitor.get(30, TimeUnit.SECONDS)).isPositive();
+			}
+			assertThat(carrinhoCompras.getEstado().getVersao()).isEqualTo(alteracoes);
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private static void adicionarRepetidamente(CarrinhoCompras carrinhoCompras, BigDecimal valorUnitario,
+			int vezes) {
+		for (int i = 0; i < vezes; i += 2) {
+			carrinhoCompras.adicionarItem(PRODUTO_ONE, valorUnitario, 1);
+			carrinhoCompras.adicionarItem(PRODUTO_TWO, valorUnitario, 1);
+		}
+	}
+
+	private static com.sun.management.ThreadMXBean threadMXBeanComAlocacao() {
+		java.lang.management.ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+		Assumptions.assumeTrue(threadMXBean instanceof com.sun.management.ThreadMXBean);
+		com.sun.management.ThreadMXBean threadMXBeanComAlocacao = (com.sun.management.ThreadMXBean) threadMXBean;
+		Assumptions.assumeTrue(threadMXBeanComAlocacao.isThreadAllocatedMemorySupported());
+		threadMXBeanComAlocacao.setThreadAllocatedMemoryEnabled(true);
+		return threadMXBeanComAlocacao;
+	}
+}
@@ -0,0 +1,105 @@
+package br.com.improving.carrinho;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+class CatalogoProdutosTest {
+
+	@Test
+	void mesmaInstanciaParaMesmoCodigo() {
+		//GIVEN
+		CatalogoProdutos catalogo = new CatalogoProdutos();
+		Produto primeiro = new Produto(1L, "produto1");
+
+		//WHEN
+		Produto canonico = catalogo.canonico(primeiro);
+		Produto outro = catalogo.canonico(new Produto(1L, "produto1"));
+		Produto porCodigo = catalogo.produto(1L, "produto1");
+
+		//THEN
+		assertThat(canonico).isSameAs(primeiro);
+		assertThat(outro).isSameAs(primeiro);
+		assertThat(porCodigo).isSameAs(primeiro);
+		assertThat(catalogo.size()).isEqualTo(1);
+	}
+
+	@Test
+	void primeiraDescricaoPermanece() {
+		//GIVEN
+		CatalogoProdutos catalogo = new CatalogoProdutos();
+		catalogo.produto(1L, "descricao original");
+
+		//WHEN
+		Produto actual = catalogo.canonico(new Produto(1L, "outra descricao"));
+
+		//THEN
+		assertThat(actual.getDescricao()).isEqualTo("descricao original");
+	}
+
+	@Test
+	void codigosDistintos() {
+		//GIVEN
+		CatalogoProdutos catalogo = new CatalogoProdutos();
+
+		//WHEN
+		Produto produto1 = catalogo.produto(1L, "produto");
+		Produto produto2 = catalogo.produto(2L, "produto");
+
+		//THEN
+		assertThat(produto1).isNotEqualTo(produto2);
+		assertThat(catalogo.size()).isEqualTo(2);
+	}
+
+	@Test
+	void produtoNull() {
+		//GIVEN
+		CatalogoProdutos catalogo = new CatalogoProdutos();
+
+		//WHEN
+		//THEN
+		assertThatThrownBy(() -> catalogo.canonico(null))
+				.isInstanceOf(RuntimeException.class);
+		assertThatThrownBy(() -> catalogo.produto(null, "produto"))
+				.isInstanceOf(RuntimeException.class);
+	}
+
+	@Test
+	void mesmaInstanciaEntreThreads() throws Exception {
+		//GIVEN
+		int threads = 8;
+		CatalogoProdutos catalogo = new CatalogoProdutos();
+		Set<Produto> instancias = Collections.synchronizedSet(Collections.newSetFromMap(new IdentityHashMap<>()));
+		CountDownLatch largada = new CountDownLatch(1);
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+
+		//WHEN
+		for (int i = 0; i < threads; i++) {
+			executor.execute(() -> {
+				try {
+					largada.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				for (int repeticao = 0; repeticao < 1_000; repeticao++) {
+					instancias.add(catalogo.canonico(new Produto(1L, "produto1")));
+				}
+			});
+		}
+		largada.countDown();
+		executor.shutdown();
+		assertThat(executor.awaitTermination(30, TimeUnit.SECONDS)).isTrue();
+
+		//THEN
+		assertThat(instancias).hasSize(1);
+	}
+}
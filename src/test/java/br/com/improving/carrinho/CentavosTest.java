@@ -0,0 +1,68 @@
+package br.com.improving.carrinho;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+class CentavosTest {
+
+	@ParameterizedTest
+	@ValueSource(longs = {1L, 7L, 42L, 2022L, 31337L})
+	void mesmoResultadoQueBigDecimal(long semente) {
+		//GIVEN
+		Random random = new Random(semente);
+
+		for (int i = 0; i < 10_000; i++) {
+			BigDecimal valor = BigDecimal.valueOf(random.nextInt(Integer.MAX_VALUE), random.nextInt(6));
+			int quantidade = random.nextInt(1_000);
+
+			//WHEN
+			long centavos = Centavos.de(valor);
+
+			//THEN
+			BigDecimal expectedValorUnitario = valor.setScale(2, RoundingMode.DOWN);
+			BigDecimal expectedValorTotal = expectedValorUnitario.multiply(BigDecimal.valueOf(quantidade));
+			assertThat(Centavos.paraBigDecimal(centavos)).isEqualTo(expectedValorUnitario);
+			assertThat(Centavos.paraBigDecimal(Centavos.multiplicar(centavos, quantidade)))
+					.isEqualTo(expectedValorTotal);
+		}
+	}
+
+	@Test
+	void valorForaDoLimite() {
+		//GIVEN
+		BigDecimal valor = BigDecimal.valueOf(Long.MAX_VALUE);
+
+		//WHEN
+		//THEN
+		assertThatThrownBy(() -> Centavos.de(valor))
+				.isInstanceOf(ArithmeticException.class);
+	}
+
+	@Test
+	void multiplicacaoForaDoLimite() {
+		//GIVEN
+		long centavos = Long.MAX_VALUE / 2;
+
+		//WHEN
+		//THEN
+		assertThatThrownBy(() -> Centavos.multiplicar(centavos, 3))
+				.isInstanceOf(ArithmeticException.class);
+	}
+
+	@Test
+	void somaForaDoLimite() {
+		//GIVEN
+		//WHEN
+		//THEN
+		assertThatThrownBy(() -> Centavos.somar(Long.MAX_VALUE, 1L))
+				.isInstanceOf(ArithmeticException.class);
+	}
+}
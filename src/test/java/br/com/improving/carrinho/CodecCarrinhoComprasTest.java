@@ -0,0 +1,206 @@
+package br.com.improving.carrinho;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.math.BigDecimal;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+class CodecCarrinhoComprasTest {
+
+	private final CodecCarrinhoCompras codec = new CodecCarrinhoCompras();
+
+	@ParameterizedTest
+	@ValueSource(longs = {1L, 7L, 42L, 2022L, 31337L})
+	void codificarEDecodificarCarrinho(long semente) {
+		//GIVEN
+		Random random = new Random(semente);
+		CarrinhoCompras carrinhoCompras = new CarrinhoCompras();
+		for (int i = 0; i < 200; i++) {
+			long codigo = random.nextBoolean() ? random.nextInt(100) : random.nextLong();
+			Produto produto = new Produto(codigo, "produto" + random.nextInt(10) + "ção");
+			BigDecimal valorUnitario = BigDecimal.valueOf(random.nextInt(Integer.MAX_VALUE), 2);
+			carrinhoCompras.adicionarItem(produto, valorUnitario, random.nextInt(1_000));
+			if (random.nextInt(5) == 0) {
+				carrinhoCompras.removerItem(random.nextInt(20));
+			}
+		}
+
+		//WHEN
+		CarrinhoCompras actual = codec.decodificar(ByteBuffer.wrap(codec.codificar(carrinhoCompras)));
+
+		//THEN
+		assertThat(actual.getItens()).containsExactlyElementsOf(carrinhoCompras.getItens());
+		assertThat(actual.getValorTotal()).isEqualTo(carrinhoCompras.getValorTotal());
+	}
+
+	@Test
+	void posicoesPreservadas() {
+		//GIVEN
+		CarrinhoCompras carrinhoCompras = new CarrinhoCompras();
+		for (long codigo = 10L; codigo > 0L; codigo--) {
+			carrinhoCompras.adicionarItem(new Produto(codigo, "produto" + codigo), BigDecimal.ONE, 1);
+		}
+		carrinhoCompras.removerItem(3);
+
+		//WHEN
+		CarrinhoCompras actual = codec.decodificar(ByteBuffer.wrap(codec.codificar(carrinhoCompras)));
+		actual.removerItem(4);
+		carrinhoCompras.removerItem(4);
+
+		//THEN
+		assertThat(actual.getItens()).containsExactlyElementsOf(carrinhoCompras.getItens());
+	}
+
+	@Test
+	void decodificarDeBufferDiretoComDeslocamento() {
+		//GIVEN
+		CarrinhoCompras carrinhoCompras = new CarrinhoCompras();
+		carrinhoCompras.adicionarItem(new Produto(1L, "produto1"), new BigDecimal("10.55"), 2);
+		byte[] codificado = codec.codificar(carrinhoCompras);
+		ByteBuffer buffer = ByteBuffer.allocateDirect(codificado.length + 3);
+		buffer.put(new byte[] {9, 9, 9}).put(codificado).flip().position(3);
+
+		//WHEN
+		CarrinhoCompras actual = codec.decodificar(buffer);
+
+		//THEN
+		assertThat(actual.getItens()).containsExactlyElementsOf(carrinhoCompras.getItens());
+		assertThat(buffer.hasRemaining()).isFalse();
+	}
+
+	@Test
+	void decodificarVariosCarrinhosDoMesmoBuffer() {
+		//GIVEN
+		CarrinhoCompras carrinho1 = new CarrinhoCompras();
+		carrinho1.adicionarItem(new Produto(1L, "produto1"), BigDecimal.ONE, 1);
+		CarrinhoCompras carrinho2 = new CarrinhoCompras();
+		carrinho2.adicionarItem(new Produto(2L, "produto2"), BigDecimal.TEN, 2);
+		byte[] codificado1 = codec.codificar(carrinho1);
+		byte[] codificado2 = codec.codificar(carrinho2);
+		ByteBuffer buffer = ByteBuffer.allocate(codificado1.length + codificado2.length);
+		buffer.put(codificado1).put(codificado2).flip();
+
+		//WHEN
+		CarrinhoCompras actual1 = codec.decodificar(buffer);
+		CarrinhoCompras actual2 = codec.decodificar(buffer);
+
+		//THEN
+		assertThat(actual1.getItens()).containsExactlyElementsOf(carrinho1.getItens());
+		assertThat(actual2.getItens()).containsExactlyElementsOf(carrinho2.getItens());
+	}
+
+	@Test
+	void descricoesReaproveitadas() {
+		//GIVEN
+		CarrinhoCompras carrinhoCompras = new CarrinhoCompras();
+		carrinhoCompras.adicionarItem(new Produto(1L, "mesma descricao"), BigDecimal.ONE, 1);
+		carrinhoCompras.adicionarItem(new Produto(2L, "mesma descricao"), BigDecimal.ONE, 1);
+		byte[] codificado = codec.codificar(carrinhoCompras);
+
+		//WHEN
+		List<Item> primeiro = new ArrayList<>(codec.decodificar(ByteBuffer.wrap(codificado)).getItens());
+		List<Item> segundo = new ArrayList<>(codec.decodificar(ByteBuffer.wrap(codificado)).getItens());
+
+		//THEN
+		assertThat(primeiro.get(0).getProduto().getDescricao())
+				.isSameAs(primeiro.get(1).getProduto().getDescricao())
+				.isSameAs(segundo.get(0).getProduto().getDescricao());
+	}
+
+	@Test
+	void formatoCompacto() {
+		//GIVEN
+		CarrinhoCompras carrinhoCompras = new CarrinhoCompras();
+		for (long codigo = 1L; codigo <= 10L; codigo++) {
+			carrinhoCompras.adicionarItem(new Produto(codigo, "produto"), new BigDecimal("9.90"), 1);
+		}
+
+		//WHEN
+		byte[] codificado = codec.codificar(carrinhoCompras);
+
+		//THEN
+		// versão, tabela com uma descrição de 7 bytes e 10 itens de 5 bytes (código, índice, 990 centavos, quantidade)
+		assertThat(codificado).hasSize(1 + 1 + 1 + 7 + 1 + 10 * 5);
+	}
+
+	@Test
+	void produtosDecodificadosDoCatalogo() {
+		//GIVEN
+		CatalogoProdutos catalogo = new CatalogoProdutos();
+		Produto registrado = catalogo.produto(1L, "produto1");
+		CodecCarrinhoCompras codecComCatalogo = new CodecCarrinhoCompras(catalogo);
+		CarrinhoCompras carrinhoCompras = new CarrinhoCompras();
+		carrinhoCompras.adicionarItem(new Produto(1L, "produto1"), BigDecimal.ONE, 1);
+
+		//WHEN
+		CarrinhoCompras actual = codecComCatalogo.decodificar(ByteBuffer.wrap(codecComCatalogo.codificar(carrinhoCompras)));
+		Produto produto = codecComCatalogo.decodificarProduto(ByteBuffer.wrap(codecComCatalogo.codificar(registrado)));
+
+		//THEN
+		assertThat(actual.getItens().iterator().next().getProduto()).isSameAs(registrado);
+		assertThat(produto).isSameAs(registrado);
+	}
+
+	@Test
+	void codificarEDecodificarItem() {
+		//GIVEN
+		Item item = new Item(new Produto(-5L, "produto"), new BigDecimal("123.45"), 7);
+
+		//WHEN
+		Item actual = codec.decodificarItem(ByteBuffer.wrap(codec.codificar(item)));
+
+		//THEN
+		assertThat(actual).isEqualTo(item);
+		assertThat(actual.getValorUnitario()).isEqualTo(new BigDecimal("123.45"));
+	}
+
+	@ParameterizedTest
+	@ValueSource(longs = {0L, 1L, -1L, 127L, 128L, Long.MAX_VALUE, Long.MIN_VALUE})
+	void codificarEDecodificarProduto(long codigo) {
+		//GIVEN
+		Produto produto = new Produto(codigo, "produto");
+
+		//WHEN
+		Produto actual = codec.decodificarProduto(ByteBuffer.wrap(codec.codificar(produto)));
+
+		//THEN
+		assertThat(actual).isEqualTo(produto);
+		assertThat(actual.getDescricao()).isEqualTo("produto");
+	}
+
+	@Test
+	void versaoDesconhecida() {
+		//GIVEN
+		byte[] codificado = codec.codificar(new CarrinhoCompras());
+		codificado[0] = 99;
+
+		//WHEN
+		//THEN
+		assertThatThrownBy(() -> codec.decodificar(ByteBuffer.wrap(codificado)))
+				.isInstanceOf(IllegalArgumentException.class);
+	}
+
+	@Test
+	void conteudoTruncado() {
+		//GIVEN
+		CarrinhoCompras carrinhoCompras = new CarrinhoCompras();
+		carrinhoCompras.adicionarItem(new Produto(1L, "produto1"), BigDecimal.ONE, 1);
+		byte[] codificado = codec.codificar(carrinhoCompras);
+		byte[] truncado = Arrays.copyOf(codificado, codificado.length - 1);
+
+		//WHEN
+		//THEN
+		assertThatThrownBy(() -> codec.decodificar(ByteBuffer.wrap(truncado)))
+				.isInstanceOf(BufferUnderflowException.class);
+	}
+}
@@ -0,0 +1,191 @@
+package br.com.improving.carrinho;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class DespachanteCarrinhosTest {
+
+	private ExecutorService executor;
+
+	@BeforeEach
+	void setUp() {
+		executor = Executors.newFixedThreadPool(8);
+	}
+
+	@AfterEach
+	void tearDown() {
+		executor.shutdownNow();
+	}
+
+	@Test
+	void serializarComandosDeUmMesmoCliente() throws Exception {
+		//GIVEN
+		CarrinhoComprasFactory factory = new CarrinhoComprasFactory();
+		DespachanteCarrinhos despachante = new DespachanteCarrinhos(factory, executor);
+		Produto produto = new Produto(1L, "produto1");
+		AtomicInteger emExecucao = new AtomicInteger();
+		AtomicInteger maiorConcorrencia = new AtomicInteger();
+		List<CompletableFuture<Integer>> resultados = new ArrayList<>();
+
+		//WHEN
+		for (int i = 0; i < 1_000; i++) {
+			int valor = i;
+			resultados.add(despachante.executar("cliente1", carrinhoCompras -> {
+				maiorConcorrencia.accumulateAndGet(emExecucao.incrementAndGet(), Math::max);
+				// ler e depois alterar só é seguro porque nenhum outro comando do cliente intercala
+				int quantidade = carrinhoCompras.getItens().isEmpty()
+						? 0
+						: carrinhoCompras.getItens().iterator().next().getQuantidade();
+				carrinhoCompras.removerItem(produto);
+				carrinhoCompras.adicionarItem(produto, BigDecimal.ONE, quantidade + 1);
+				emExecucao.decrementAndGet();
+				return valor;
+			}));
+		}
+
+		//THEN
+		for (int i = 0; i < resultados.size(); i++) {
+			assertThat(resultados.get(i).get(30, TimeUnit.SECONDS)).isEqualTo(i);
+		}
+		assertThat(maiorConcorrencia.get()).isEqualTo(1);
+		assertThat(factory.criar("cliente1").getValorTotal()).isEqualTo(new BigDecimal("1000.00"));
+	}
+
+	@Test
+	void executarClientesDiferentesEmParalelo() throws Exception {
+		//GIVEN
+		DespachanteCarrinhos despachante = new DespachanteCarrinhos(new CarrinhoComprasFactory(), executor);
+		CountDownLatch liberar = new CountDownLatch(1);
+
+		//WHEN
+		// o comando do cliente1 só termina quando o do cliente2 é executado
+		CompletableFuture<Boolean> cliente1 = despachante.executar("cliente1",
+				carrinhoCompras -> aguardar(liberar));
+		CompletableFuture<Boolean> cliente2 = despachante.executar("cliente2", carrinhoCompras -> {
+			liberar.countDown();
+			return true;
+		});
+
+		//THEN
+		assertThat(cliente2.get(30, TimeUnit.SECONDS)).isTrue();
+		assertThat(cliente1.get(30, TimeUnit.SECONDS)).isTrue();
+	}
+
+	@Test
+	void comandoComFalhaNaoInterrompeOsSeguintes() throws Exception {
+		//GIVEN
+		CarrinhoComprasFactory factory = new CarrinhoComprasFactory();
+		DespachanteCarrinhos despachante = new DespachanteCarrinhos(factory, executor);
+
+		//WHEN
+		CompletableFuture<Void> falha = despachante.executar("cliente1", carrinhoCompras -> {
+			carrinhoCompras.adicionarItem(null, BigDecimal.ONE, 1);
+			return null;
+		});
+		CompletableFuture<BigDecimal> seguinte = despachante.executar("cliente1", carrinhoCompras -> {
+			carrinhoCompras.adicionarItem(new Produto(1L, "produto1"), BigDecimal.TEN, 1);
+			return carrinhoCompras.getValorTotal();
+		});
+
+		//THEN
+		assertThatThrownBy(() -> falha.get(30, TimeUnit.SECONDS)).isInstanceOf(ExecutionException.class);
+		assertThat(seguinte.get(30, TimeUnit.SECONDS)).isEqualTo(new BigDecimal("10.00"));
+	}
+
+	@Test
+	void cancelarResultadoNaoLiberaOProximoComando() throws Exception {
+		//GIVEN
+		DespachanteCarrinhos despachante = new DespachanteCarrinhos(new CarrinhoComprasFactory(), executor);
+		CountDownLatch liberar = new CountDownLatch(1);
+		AtomicInteger emExecucao = new AtomicInteger();
+		AtomicInteger maiorConcorrencia = new AtomicInteger();
+
+		//WHEN
+		CompletableFuture<Boolean> primeiro = despachante.executar("cliente1", carrinhoCompras -> {
+			emExecucao.incrementAndGet();
+			boolean liberado = aguardar(liberar);
+			emExecucao.decrementAndGet();
+			return liberado;
+		});
+		primeiro.cancel(true);
+		CompletableFuture<Integer> segundo = despachante.executar("cliente1",
+				carrinhoCompras -> maiorConcorrencia.accumulateAndGet(emExecucao.incrementAndGet(), Math::max));
+		liberar.countDown();
+
+		//THEN
+		assertThat(segundo.get(30, TimeUnit.SECONDS)).isEqualTo(1);
+	}
+
+	@Test
+	void invalidarAposComandosAnteriores() throws Exception {
+		//GIVEN
+		CarrinhoComprasFactory factory = new CarrinhoComprasFactory();
+		DespachanteCarrinhos despachante = new DespachanteCarrinhos(factory, executor);
+
+		//WHEN
+		despachante.executar("cliente1", carrinhoCompras -> {
+			carrinhoCompras.adicionarItem(new Produto(1L, "produto1"), BigDecimal.TEN, 1);
+			return null;
+		});
+		CompletableFuture<Boolean> invalidado = despachante.invalidar("cliente1");
+		CompletableFuture<Boolean> invalidadoNovamente = despachante.invalidar("cliente1");
+
+		//THEN
+		assertThat(invalidado.get(30, TimeUnit.SECONDS)).isTrue();
+		assertThat(invalidadoNovamente.get(30, TimeUnit.SECONDS)).isFalse();
+		assertThat(factory.getValorTicketMedio()).isEqualTo(new BigDecimal("0.00"));
+	}
+
+	@Test
+	void descartarClientesSemComandosPendentes() throws Exception {
+		//GIVEN
+		DespachanteCarrinhos despachante = new DespachanteCarrinhos(new CarrinhoComprasFactory(), executor);
+		List<CompletableFuture<BigDecimal>> resultados = new ArrayList<>();
+
+		//WHEN
+		for (int i = 0; i < 100; i++) {
+			resultados.add(despachante.executar("cliente" + i % 10, CarrinhoCompras::getValorTotal));
+		}
+		CompletableFuture.allOf(resultados.toArray(new CompletableFuture<?>[0])).get(30, TimeUnit.SECONDS);
+
+		//THEN
+		assertThat(despachante.getClientesComComandosPendentes()).isZero();
+	}
+
+	@Test
+	void rejeitarClienteOuComandoNull() {
+		//GIVEN
+		DespachanteCarrinhos despachante = new DespachanteCarrinhos(new CarrinhoComprasFactory(), executor);
+
+		//WHEN
+		//THEN
+		assertThatThrownBy(() -> despachante.executar(null, CarrinhoCompras::getValorTotal))
+				.isInstanceOf(NullPointerException.class);
+		assertThatThrownBy(() -> despachante.executar("cliente1", null))
+				.isInstanceOf(NullPointerException.class);
+	}
+
+	private static boolean aguardar(CountDownLatch latch) {
+		try {
+			return latch.await(30, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+	}
+}
@@ -0,0 +1,93 @@
+package br.com.improving.carrinho;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class DistribuicaoValoresTest {
+
+	private static final double[] PERCENTIS = {0.0, 1.0, 10.0, 50.0, 90.0, 99.0, 99.9, 100.0};
+
+	@Test
+	void percentisComErroRelativoLimitado() {
+		//GIVEN
+		Random random = new Random(42L);
+		long[] valores = new long[1_000_000];
+		Histograma histograma = new Histograma(DistribuicaoValores.BITS_SUBFAIXA);
+		for (int i = 0; i < valores.length; i++) {
+			// log-normal, com 1% de carrinhos B2B cem vezes maiores
+			long valor = (long) Math.exp(9.0 + 1.5 * random.nextGaussian());
+			valores[i] = random.nextInt(100) == 0 ? valor * 100 : valor;
+			histograma.registrar(valores[i]);
+		}
+
+		//WHEN
+		DistribuicaoValores distribuicao = new DistribuicaoValores(histograma.getContagens());
+
+		//THEN
+		Arrays.sort(valores);
+		for (double percentil : PERCENTIS) {
+			long exato = valores[(int) Math.max(0L, (long) Math.ceil(percentil / 100.0 * valores.length) - 1)];
+			BigDecimal estimado = distribuicao.getPercentil(percentil);
+			assertThat(estimado).isBetween(Centavos.paraBigDecimal(exato),
+					Centavos.paraBigDecimal(exato + exato / 128));
+		}
+		assertThat(distribuicao.getQuantidade()).isEqualTo(valores.length);
+	}
+
+	@Test
+	void combinarIgualADistribuicaoUnica() {
+		//GIVEN
+		Random random = new Random(7L);
+		Histograma unico = new Histograma(DistribuicaoValores.BITS_SUBFAIXA);
+		Histograma[] particoes = new Histograma[4];
+		for (int i = 0; i < particoes.length; i++) {
+			particoes[i] = new Histograma(DistribuicaoValores.BITS_SUBFAIXA);
+		}
+		for (int i = 0; i < 100_000; i++) {
+			long valor = random.nextInt(10_000_000);
+			unico.registrar(valor);
+			particoes[random.nextInt(particoes.length)].registrar(valor);
+		}
+
+		//WHEN
+		DistribuicaoValores combinada = DistribuicaoValores.VAZIA;
+		for (Histograma particao : particoes) {
+			combinada = combinada.combinar(new DistribuicaoValores(particao.getContagens()));
+		}
+
+		//THEN
+		assertThat(combinada.getContagens()).isEqualTo(unico.getContagens());
+		for (double percentil : PERCENTIS) {
+			assertThat(combinada.getPercentil(percentil))
+					.isEqualTo(new DistribuicaoValores(unico.getContagens()).getPercentil(percentil));
+		}
+	}
+
+	@Test
+	void distribuicaoVaziaRetornaZero() {
+		//GIVEN
+		DistribuicaoValores distribuicao = DistribuicaoValores.VAZIA;
+
+		//WHEN
+		//THEN
+		assertThat(distribuicao.getPercentil(50.0)).isEqualTo(new BigDecimal("0.00"));
+		assertThat(distribuicao.getQuantidade()).isZero();
+	}
+
+	@Test
+	void rejeitarContagensOuPercentilInvalidos() {
+		//GIVEN
+		//WHEN
+		//THEN
+		assertThatThrownBy(() -> new DistribuicaoValores(new long[10])).isInstanceOf(IllegalArgumentException.class);
+		assertThatThrownBy(() -> new DistribuicaoValores(null)).isInstanceOf(NullPointerException.class);
+		assertThatThrownBy(() -> DistribuicaoValores.VAZIA.getPercentil(100.1))
+				.isInstanceOf(IllegalArgumentException.class);
+	}
+}
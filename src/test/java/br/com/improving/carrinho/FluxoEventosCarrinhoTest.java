@@ -0,0 +1,116 @@
+package br.com.improving.carrinho;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+class FluxoEventosCarrinhoTest {
+
+	@Test
+	void entregarTodosOsEventosEmLotesNaOrdem() {
+		//GIVEN
+		List<Integer> tamanhosLotes = Collections.synchronizedList(new ArrayList<>());
+		List<EventoCarrinho> recebidos = Collections.synchronizedList(new ArrayList<>());
+		FluxoEventosCarrinho fluxo = new FluxoEventosCarrinho(Collections.singletonList(eventos -> {
+			tamanhosLotes.add(eventos.size());
+			recebidos.addAll(eventos);
+		}), 8, 4, PoliticaFluxoCheio.AGUARDAR);
+		List<EventoCarrinho> publicados = new ArrayList<>();
+
+		//WHEN
+		for (int i = 0; i < 1_000; i++) {
+			EventoCarrinho evento = criado("cliente" + i);
+			publicados.add(evento);
+			fluxo.publicar(evento);
+		}
+		fluxo.close();
+
+		//THEN
+		assertThat(recebidos).containsExactlyElementsOf(publicados);
+		assertThat(tamanhosLotes).allSatisfy(tamanho -> assertThat(tamanho).isBetween(1, 4));
+		assertThat(fluxo.getDescartados()).isZero();
+	}
+
+	@Test
+	void descartarComBufferCheioSemEsperar() throws Exception {
+		//GIVEN
+		CountDownLatch liberar = new CountDownLatch(1);
+		List<EventoCarrinho> recebidos = Collections.synchronizedList(new ArrayList<>());
+		FluxoEventosCarrinho fluxo = new FluxoEventosCarrinho(Collections.singletonList(eventos -> {
+			aguardar(liberar);
+			recebidos.addAll(eventos);
+		}), 4, 1, PoliticaFluxoCheio.DESCARTAR);
+
+		//WHEN
+		for (int i = 0; i < 100; i++) {
+			fluxo.publicar(criado("cliente" + i));
+		}
+		liberar.countDown();
+		fluxo.close();
+
+		//THEN
+		// os slots só são liberados após a entrega, portanto o assinante bloqueado retém todo o buffer
+		assertThat(recebidos).hasSize(4);
+		assertThat(fluxo.getDescartados()).isEqualTo(100 - recebidos.size());
+	}
+
+	@Test
+	void assinanteComFalhaNaoInterrompeEntrega() {
+		//GIVEN
+		List<EventoCarrinho> recebidos = Collections.synchronizedList(new ArrayList<>());
+		List<AssinanteEventosCarrinho> assinantes = new ArrayList<>();
+		assinantes.add(eventos -> {
+			throw new IllegalStateException("falha");
+		});
+		assinantes.add(recebidos::addAll);
+		FluxoEventosCarrinho fluxo = new FluxoEventosCarrinho(assinantes, 16, 8, PoliticaFluxoCheio.AGUARDAR);
+
+		//WHEN
+		for (int i = 0; i < 100; i++) {
+			fluxo.publicar(criado("cliente" + i));
+		}
+		fluxo.close();
+
+		//THEN
+		assertThat(recebidos).hasSize(100);
+		// um lote a cada no máximo 8 eventos
+		assertThat(fluxo.getFalhasAssinantes()).isBetween(13L, 100L);
+		assertThat(fluxo.getDescartados()).isZero();
+	}
+
+	@Test
+	void acordarAssinanteParadoAoPublicar() throws Exception {
+		//GIVEN
+		CountDownLatch recebido = new CountDownLatch(2);
+		FluxoEventosCarrinho fluxo = new FluxoEventosCarrinho(Collections.singletonList(eventos ->
+				eventos.forEach(evento -> recebido.countDown())), 8, 4, PoliticaFluxoCheio.AGUARDAR);
+		fluxo.publicar(criado("cliente1"));
+		// tempo suficiente para que a thread do assinante pare por falta de eventos
+		Thread.sleep(100);
+
+		//WHEN
+		fluxo.publicar(criado("cliente2"));
+
+		//THEN
+		assertThat(recebido.await(30, TimeUnit.SECONDS)).isTrue();
+		fluxo.close();
+	}
+
+	private static EventoCarrinho criado(String identificacaoCliente) {
+		return new EventoCarrinho(TipoEventoCarrinho.CARRINHO_CRIADO, identificacaoCliente, null, 0L, 0);
+	}
+
+	private static void aguardar(CountDownLatch latch) {
+		try {
+			assertThat(latch.await(30, TimeUnit.SECONDS)).isTrue();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
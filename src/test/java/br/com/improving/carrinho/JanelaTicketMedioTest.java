@@ -0,0 +1,122 @@
+package br.com.improving.carrinho;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+
+class JanelaTicketMedioTest {
+
+	private static final long MINUTO = 60_000L;
+
+	@Test
+	void ticketMedioDasJanelasDeCincoQuinzeESessentaMinutos() {
+		//GIVEN
+		AtomicLong agora = new AtomicLong();
+		JanelaTicketMedio janela = new JanelaTicketMedio(Duration.ofMinutes(1), 60, agora::get);
+
+		//WHEN
+		janela.registrar(JanelaTicketMedio.NENHUM, 0L, 100_00L);
+		agora.set(30 * MINUTO);
+		janela.registrar(JanelaTicketMedio.NENHUM, 0L, 50_00L);
+		agora.set(50 * MINUTO);
+		janela.registrar(JanelaTicketMedio.NENHUM, 0L, 10_00L);
+		janela.registrar(JanelaTicketMedio.NENHUM, 0L, 15_01L);
+		agora.set(53 * MINUTO);
+
+		//THEN
+		assertThat(janela.getValorTicketMedio(Duration.ofMinutes(5))).isEqualTo(new BigDecimal("12.50"));
+		assertThat(janela.getValorTicketMedio(Duration.ofMinutes(15))).isEqualTo(new BigDecimal("12.50"));
+		assertThat(janela.getValorTicketMedio(Duration.ofMinutes(30))).isEqualTo(new BigDecimal("25.00"));
+		assertThat(janela.getValorTicketMedio(Duration.ofMinutes(60))).isEqualTo(new BigDecimal("43.75"));
+	}
+
+	@Test
+	void carrinhoContadoUmaVezNaUltimaAtividade() {
+		//GIVEN
+		AtomicLong agora = new AtomicLong();
+		JanelaTicketMedio janela = new JanelaTicketMedio(Duration.ofMinutes(1), 60, agora::get);
+		long intervalo = janela.registrar(JanelaTicketMedio.NENHUM, 0L, 10_00L);
+		intervalo = janela.registrar(intervalo, 10_00L, 20_00L);
+
+		//WHEN
+		agora.set(10 * MINUTO);
+		intervalo = janela.registrar(intervalo, 20_00L, 30_00L);
+
+		//THEN
+		assertThat(intervalo).isEqualTo(10L);
+		assertThat(janela.getValorTicketMedio(Duration.ofMinutes(1))).isEqualTo(new BigDecimal("30.00"));
+		assertThat(janela.getValorTicketMedio(Duration.ofMinutes(60))).isEqualTo(new BigDecimal("30.00"));
+	}
+
+	@Test
+	void atividadeAntigaSaiDaJanela() {
+		//GIVEN
+		AtomicLong agora = new AtomicLong();
+		JanelaTicketMedio janela = new JanelaTicketMedio(Duration.ofMinutes(1), 60, agora::get);
+		long intervalo = janela.registrar(JanelaTicketMedio.NENHUM, 0L, 10_00L);
+
+		//WHEN
+		agora.set(61 * MINUTO);
+		BigDecimal semAtividade = janela.getValorTicketMedio(Duration.ofMinutes(60));
+		// o balde anterior já foi descartado: nada é removido dele
+		janela.registrar(intervalo, 10_00L, 40_00L);
+		agora.set(200 * MINUTO);
+		janela.registrar(JanelaTicketMedio.NENHUM, 0L, 20_00L);
+
+		//THEN
+		assertThat(semAtividade).isEqualTo(new BigDecimal("0.00"));
+		assertThat(janela.getValorTicketMedio(Duration.ofMinutes(60))).isEqualTo(new BigDecimal("20.00"));
+	}
+
+	@Test
+	void relogioForaDeOrdemNaoVoltaOIntervalo() {
+		//GIVEN
+		AtomicLong agora = new AtomicLong(10 * MINUTO);
+		JanelaTicketMedio janela = new JanelaTicketMedio(Duration.ofMinutes(1), 60, agora::get);
+		long intervalo = janela.registrar(JanelaTicketMedio.NENHUM, 0L, 10_00L);
+
+		//WHEN
+		agora.set(9 * MINUTO);
+		long seguinte = janela.registrar(intervalo, 10_00L, 20_00L);
+		agora.set(10 * MINUTO);
+
+		//THEN
+		assertThat(seguinte).isEqualTo(intervalo);
+		assertThat(janela.getValorTicketMedio(Duration.ofMinutes(1))).isEqualTo(new BigDecimal("20.00"));
+	}
+
+	@Test
+	void arredondarComoOTicketMedio() {
+		//GIVEN
+		JanelaTicketMedio janela = new JanelaTicketMedio(Duration.ofMinutes(1), 5, () -> 0L);
+
+		//WHEN
+		janela.registrar(JanelaTicketMedio.NENHUM, 0L, 1L);
+		janela.registrar(JanelaTicketMedio.NENHUM, 0L, 0L);
+		janela.registrar(JanelaTicketMedio.NENHUM, 0L, 0L);
+		janela.registrar(JanelaTicketMedio.NENHUM, 0L, 0L);
+
+		//THEN
+		assertThat(janela.getValorTicketMedio(Duration.ofMinutes(5)))
+				.isEqualTo(AgregadoTicketMedio.valorTicketMedio(1L, 4L));
+	}
+
+	@Test
+	void rejeitarJanelaInvalida() {
+		//GIVEN
+		JanelaTicketMedio janela = new JanelaTicketMedio(Duration.ofMinutes(1), 60, () -> 0L);
+
+		//WHEN
+		//THEN
+		assertThatThrownBy(() -> janela.getValorTicketMedio(Duration.ofMinutes(61)))
+				.isInstanceOf(IllegalArgumentException.class);
+		assertThatThrownBy(() -> janela.getValorTicketMedio(Duration.ZERO))
+				.isInstanceOf(IllegalArgumentException.class);
+		assertThatThrownBy(() -> janela.getValorTicketMedio(null)).isInstanceOf(NullPointerException.class);
+	}
+}
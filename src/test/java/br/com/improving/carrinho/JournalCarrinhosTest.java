@@ -0,0 +1,220 @@
+package br.com.improving.carrinho;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class JournalCarrinhosTest {
+
+	private static final Produto PRODUTO = new Produto(1L, "produto1");
+
+	@Test
+	void recuperarEventosNaOrdem(@TempDir Path diretorio) throws IOException {
+		//GIVEN
+		try (JournalCarrinhos journal = novoJournal(diretorio, 0L)) {
+			journal.criar("cliente1");
+			journal.adicionar("cliente1", PRODUTO, 1055L, 2);
+			journal.remover("cliente1", PRODUTO);
+			journal.invalidar("cliente1");
+		}
+
+		//WHEN
+		List<JournalCarrinhos.Evento> eventos = new ArrayList<>();
+		long ultimaSequencia = JournalCarrinhos.recuperar(diretorio, 0L, Collections.emptyMap(), eventos::add);
+
+		//THEN
+		assertThat(ultimaSequencia).isEqualTo(4L);
+		assertThat(eventos).extracting(evento -> evento.tipo).containsExactly(JournalCarrinhos.TipoEvento.CRIAR,
+				JournalCarrinhos.TipoEvento.ADICIONAR, JournalCarrinhos.TipoEvento.REMOVER,
+				JournalCarrinhos.TipoEvento.INVALIDAR);
+		JournalCarrinhos.Evento adicionar = eventos.get(1);
+		assertThat(adicionar.sequencia).isEqualTo(2L);
+		assertThat(adicionar.identificacaoCliente).isEqualTo("cliente1");
+		assertThat(adicionar.codigo).isEqualTo(1L);
+		assertThat(adicionar.descricao).isEqualTo("produto1");
+		assertThat(adicionar.valorUnitarioCentavos).isEqualTo(1055L);
+		assertThat(adicionar.quantidade).isEqualTo(2);
+	}
+
+	@Test
+	void ignorarEventosJaRefletidosNoSnapshot(@TempDir Path diretorio) throws IOException {
+		//GIVEN
+		try (JournalCarrinhos journal = novoJournal(diretorio, 0L)) {
+			journal.adicionar("cliente1", PRODUTO, 100L, 1);
+			journal.adicionar("cliente2", PRODUTO, 100L, 1);
+			journal.adicionar("cliente1", PRODUTO, 100L, 1);
+			journal.adicionar("cliente3", PRODUTO, 100L, 1);
+		}
+
+		//WHEN
+		List<JournalCarrinhos.Evento> eventos = new ArrayList<>();
+		JournalCarrinhos.recuperar(diretorio, 2L, Collections.singletonMap("cliente1", 3L), eventos::add);
+
+		//THEN
+		assertThat(eventos).extracting(evento -> evento.sequencia).containsExactly(4L);
+	}
+
+	@Test
+	void descartarEventoIncompletoNoFinal(@TempDir Path diretorio) throws IOException {
+		//GIVEN
+		try (JournalCarrinhos journal = novoJournal(diretorio, 0L)) {
+			journal.adicionar("cliente1", PRODUTO, 100L, 1);
+			journal.adicionar("cliente1", PRODUTO, 100L, 2);
+		}
+		Path segmento = segmentos(diretorio).get(0);
+		long tamanhoValido = Files.size(segmento);
+		try (FileChannel canal = FileChannel.open(segmento, StandardOpenOption.APPEND)) {
+			canal.write(ByteBuffer.wrap(new byte[] {0, 0, 0, 40, 1, 2, 3}));
+		}
+
+		//WHEN
+		List<JournalCarrinhos.Evento> eventos = new ArrayList<>();
+		long ultimaSequencia = JournalCarrinhos.recuperar(diretorio, 0L, Collections.emptyMap(), eventos::add);
+
+		//THEN
+		assertThat(ultimaSequencia).isEqualTo(2L);
+		assertThat(eventos).hasSize(2);
+		assertThat(Files.size(segmento)).isEqualTo(tamanhoValido);
+	}
+
+	@Test
+	void descartarEventoCorrompido(@TempDir Path diretorio) throws IOException {
+		//GIVEN
+		try (JournalCarrinhos journal = novoJournal(diretorio, 0L)) {
+			journal.adicionar("cliente1", PRODUTO, 100L, 1);
+			journal.adicionar("cliente1", PRODUTO, 100L, 2);
+		}
+		Path segmento = segmentos(diretorio).get(0);
+		byte[] conteudo = Files.readAllBytes(segmento);
+		conteudo[conteudo.length - 6] ^= 0x7f;
+		Files.write(segmento, conteudo);
+
+		//WHEN
+		List<JournalCarrinhos.Evento> eventos = new ArrayList<>();
+		long ultimaSequencia = JournalCarrinhos.recuperar(diretorio, 0L, Collections.emptyMap(), eventos::add);
+
+		//THEN
+		assertThat(ultimaSequencia).isEqualTo(1L);
+		assertThat(eventos).extracting(evento -> evento.quantidade).containsExactly(1);
+	}
+
+	@Test
+	void apagarSegmentosPosterioresAoEventoCorrompido(@TempDir Path diretorio) throws IOException {
+		//GIVEN
+		try (JournalCarrinhos journal = novoJournal(diretorio, 0L)) {
+			journal.adicionar("cliente1", PRODUTO, 100L, 1);
+			journal.adicionar("cliente1", PRODUTO, 100L, 2);
+		}
+		try (JournalCarrinhos journal = novoJournal(diretorio, 2L)) {
+			journal.adicionar("cliente1", PRODUTO, 100L, 3);
+		}
+		Path segmento = segmentos(diretorio).get(0);
+		byte[] conteudo = Files.readAllBytes(segmento);
+		conteudo[conteudo.length - 6] ^= 0x7f;
+		Files.write(segmento, conteudo);
+
+		//WHEN
+		long ultimaSequencia = JournalCarrinhos.recuperar(diretorio, 0L, Collections.emptyMap(), evento -> { });
+		try (JournalCarrinhos journal = novoJournal(diretorio, ultimaSequencia)) {
+			journal.adicionar("cliente1", PRODUTO, 100L, 4);
+		}
+
+		//THEN
+		List<JournalCarrinhos.Evento> eventos = new ArrayList<>();
+		JournalCarrinhos.recuperar(diretorio, 0L, Collections.emptyMap(), eventos::add);
+		assertThat(eventos).extracting(evento -> evento.sequencia).containsExactly(1L, 2L);
+		assertThat(eventos).extracting(evento -> evento.quantidade).containsExactly(1, 4);
+	}
+
+	@Test
+	void falhaDoSnapshotTornaJournalIndisponivel(@TempDir Path diretorio) throws Exception {
+		//GIVEN
+		CountDownLatch snapshotIniciado = new CountDownLatch(1);
+		JournalCarrinhos.GeradorSnapshot gerador = sequencia -> {
+			snapshotIniciado.countDown();
+			throw new IOException("Disco cheio");
+		};
+
+		try (JournalCarrinhos journal = new JournalCarrinhos(diretorio, 0L, true, 1, gerador)) {
+			//WHEN
+			journal.aguardar(journal.adicionar("cliente1", PRODUTO, 100L, 1));
+
+			//THEN
+			assertThat(snapshotIniciado.await(10, TimeUnit.SECONDS)).isTrue();
+			assertThatThrownBy(() -> {
+				long limite = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+				while (System.nanoTime() < limite) {
+					journal.aguardar(journal.adicionar("cliente1", PRODUTO, 100L, 1));
+				}
+			}).isInstanceOf(UncheckedIOException.class).hasRootCauseMessage("Disco cheio");
+		}
+	}
+
+	@Test
+	void continuarSequenciaAposRecuperar(@TempDir Path diretorio) throws IOException {
+		//GIVEN
+		try (JournalCarrinhos journal = novoJournal(diretorio, 0L)) {
+			journal.criar("cliente1");
+		}
+		long ultimaSequencia = JournalCarrinhos.recuperar(diretorio, 0L, Collections.emptyMap(), evento -> { });
+
+		//WHEN
+		try (JournalCarrinhos journal = novoJournal(diretorio, ultimaSequencia)) {
+			journal.criar("cliente2");
+		}
+
+		//THEN
+		List<JournalCarrinhos.Evento> eventos = new ArrayList<>();
+		JournalCarrinhos.recuperar(diretorio, 0L, Collections.emptyMap(), eventos::add);
+		assertThat(eventos).extracting(evento -> evento.identificacaoCliente).containsExactly("cliente1", "cliente2");
+		assertThat(eventos).extracting(evento -> evento.sequencia).containsExactly(1L, 2L);
+	}
+
+	@Test
+	void apagarSegmentosAposSnapshot(@TempDir Path diretorio) throws IOException {
+		//GIVEN
+		List<Long> snapshots = Collections.synchronizedList(new ArrayList<>());
+
+		//WHEN
+		try (JournalCarrinhos journal = new JournalCarrinhos(diretorio, 0L, true, 10, snapshots::add)) {
+			for (int i = 0; i < 25; i++) {
+				journal.aguardar(journal.adicionar("cliente1", PRODUTO, 100L, 1));
+			}
+		}
+
+		//THEN
+		assertThat(snapshots).isNotEmpty();
+		long ultimoSnapshot = snapshots.get(snapshots.size() - 1);
+		List<JournalCarrinhos.Evento> eventos = new ArrayList<>();
+		JournalCarrinhos.recuperar(diretorio, 0L, Collections.emptyMap(), eventos::add);
+		assertThat(eventos).extracting(evento -> evento.sequencia).allMatch(sequencia -> sequencia > ultimoSnapshot);
+		assertThat(eventos).hasSize(25 - (int) ultimoSnapshot);
+	}
+
+	private static JournalCarrinhos novoJournal(Path diretorio, long ultimaSequencia) throws IOException {
+		return new JournalCarrinhos(diretorio, ultimaSequencia, true, Integer.MAX_VALUE, sequencia -> { });
+	}
+
+	private static List<Path> segmentos(Path diretorio) throws IOException {
+		try (Stream<Path> arquivos = Files.list(diretorio)) {
+			return arquivos.sorted().collect(Collectors.toList());
+		}
+	}
+}
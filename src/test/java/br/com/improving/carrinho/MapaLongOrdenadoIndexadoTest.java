@@ -0,0 +1,153 @@
+package br.com.improving.carrinho;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+class MapaLongOrdenadoIndexadoTest {
+
+	@Test
+	void mantemOrdemDeInclusao() {
+		//GIVEN
+		MapaLongOrdenadoIndexado<String> mapa = new MapaLongOrdenadoIndexado<>();
+
+		//WHEN
+		mapa.put(3L, "c");
+		mapa.put(1L, "a");
+		mapa.put(2L, "b");
+		mapa.put(1L, "a2");
+
+		//THEN
+		assertThat(mapa.valores()).containsExactly("c", "a2", "b");
+		assertThat(mapa.valorNaPosicao(0)).isEqualTo("c");
+		assertThat(mapa.valorNaPosicao(1)).isEqualTo("a2");
+		assertThat(mapa.valorNaPosicao(2)).isEqualTo("b");
+		assertThat(mapa.size()).isEqualTo(3);
+	}
+
+	@Test
+	void posicaoInexistente() {
+		//GIVEN
+		MapaLongOrdenadoIndexado<String> mapa = new MapaLongOrdenadoIndexado<>();
+
+		//WHEN
+		//THEN
+		assertThat(mapa.valorNaPosicao(0)).isNull();
+		mapa.put(1L, "a");
+		assertThat(mapa.valorNaPosicao(-1)).isNull();
+		assertThat(mapa.valorNaPosicao(1)).isNull();
+	}
+
+	@Test
+	void removerERecolocarVaiParaOFinal() {
+		//GIVEN
+		MapaLongOrdenadoIndexado<String> mapa = new MapaLongOrdenadoIndexado<>();
+		mapa.put(1L, "a");
+		mapa.put(2L, "b");
+
+		//WHEN
+		assertThat(mapa.remove(1L)).isEqualTo("a");
+		assertThat(mapa.remove(1L)).isNull();
+		mapa.put(1L, "c");
+
+		//THEN
+		assertThat(mapa.valores()).containsExactly("b", "c");
+		assertThat(mapa.get(1L)).isEqualTo("c");
+	}
+
+	@Test
+	void chavesExtremasEColisoes() {
+		//GIVEN
+		MapaLongOrdenadoIndexado<Long> mapa = new MapaLongOrdenadoIndexado<>();
+		long[] chaves = {0L, -1L, Long.MIN_VALUE, Long.MAX_VALUE, 1L << 32, 1L << 33, 1L << 34, 1L << 35};
+
+		//WHEN
+		for (long chave : chaves) {
+			mapa.put(chave, chave);
+		}
+		mapa.remove(0L);
+
+		//THEN
+		assertThat(mapa.get(0L)).isNull();
+		for (int i = 1; i < chaves.length; i++) {
+			assertThat(mapa.get(chaves[i])).isEqualTo(chaves[i]);
+			assertThat(mapa.valorNaPosicao(i - 1)).isEqualTo(chaves[i]);
+		}
+	}
+
+	@Test
+	void valorNullNaoAceito() {
+		//GIVEN
+		MapaLongOrdenadoIndexado<String> mapa = new MapaLongOrdenadoIndexado<>();
+
+		//WHEN
+		//THEN
+		assertThatThrownBy(() -> mapa.put(1L, null)).isInstanceOf(NullPointerException.class);
+	}
+
+	@ParameterizedTest
+	@ValueSource(ints = {10, 1_000, 100_000})
+	void remocaoPorPosicaoEquivalenteALista(int linhas) {
+		//GIVEN
+		Random random = new Random(linhas);
+		MapaLongOrdenadoIndexado<Long> mapa = new MapaLongOrdenadoIndexado<>();
+		List<Long> referencia = new ArrayList<>();
+		for (long i = 0; i < linhas; i++) {
+			mapa.put(i, i);
+			referencia.add(i);
+		}
+
+		//WHEN
+		//THEN
+		int remocoes = Math.min(linhas, 10_000);
+		for (int i = 0; i < remocoes; i++) {
+			int posicao = random.nextInt(referencia.size());
+			Long chave = mapa.valorNaPosicao(posicao);
+			assertThat(chave).isEqualTo(referencia.remove(posicao));
+			assertThat(mapa.remove(chave)).isEqualTo(chave);
+			if (i % 3 == 0) {
+				long nova = linhas + i;
+				mapa.put(nova, nova);
+				referencia.add(nova);
+			}
+		}
+		assertThat(mapa.size()).isEqualTo(referencia.size());
+		assertThat(mapa.valores()).containsExactlyElementsOf(referencia);
+	}
+
+	@ParameterizedTest
+	@ValueSource(longs = {1L, 7L, 42L})
+	void operacoesAleatoriasEquivalentesALinkedHashMap(long semente) {
+		//GIVEN
+		Random random = new Random(semente);
+		MapaLongOrdenadoIndexado<Integer> mapa = new MapaLongOrdenadoIndexado<>();
+		Map<Long, Integer> referencia = new LinkedHashMap<>();
+
+		//WHEN
+		//THEN
+		for (int i = 0; i < 50_000; i++) {
+			// poucas chaves distintas, com bits altos variados, para forçar colisões e remoções no meio das sondagens
+			long chave = (long) random.nextInt(64) << random.nextInt(40);
+			if (random.nextInt(3) == 0) {
+				assertThat(mapa.remove(chave)).isEqualTo(referencia.remove(chave));
+			} else {
+				assertThat(mapa.put(chave, i)).isEqualTo(referencia.put(chave, i));
+			}
+			assertThat(mapa.get(chave)).isEqualTo(referencia.get(chave));
+		}
+		assertThat(mapa.size()).isEqualTo(referencia.size());
+		assertThat(mapa.valores()).containsExactlyElementsOf(referencia.values());
+		for (Long chave : referencia.keySet()) {
+			assertThat(mapa.get(chave)).isEqualTo(referencia.get(chave));
+		}
+	}
+}
@@ -0,0 +1,70 @@
+package br.com.improving.carrinho;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+
+class MemoriaForaDoHeapTest {
+
+	@Test
+	void reaproveitarBlocosLiberadosDaMesmaClasse() {
+		//GIVEN
+		MemoriaForaDoHeap memoria = new MemoriaForaDoHeap(24);
+		long primeiro = memoria.reservar(3);
+		long segundo = memoria.reservar(3);
+
+		//WHEN
+		memoria.liberar(primeiro, 3);
+		memoria.liberar(segundo, 3);
+
+		//THEN
+		assertThat(memoria.getBytesEmUso()).isZero();
+		assertThat(memoria.reservar(3)).isEqualTo(segundo);
+		assertThat(memoria.reservar(3)).isEqualTo(primeiro);
+		assertThat(memoria.reservar(4)).isNotIn(primeiro, segundo);
+		assertThat(memoria.getBytesEmUso()).isEqualTo(24L * 8 * 2 + 24L * 16);
+	}
+
+	@Test
+	void blocosNaoSeSobrepoem() {
+		//GIVEN
+		MemoriaForaDoHeap memoria = new MemoriaForaDoHeap(24);
+		int tamanhoBloco = 24 << 4;
+		// o suficiente para ocupar várias regiões
+		long[] enderecos = new long[3 * MemoriaForaDoHeap.TAMANHO_REGIAO / tamanhoBloco];
+
+		//WHEN
+		for (int i = 0; i < enderecos.length; i++) {
+			enderecos[i] = memoria.reservar(4);
+			memoria.putLong(enderecos[i], 0, i);
+			memoria.putLong(enderecos[i], tamanhoBloco - Long.BYTES, i);
+		}
+
+		//THEN
+		for (int i = 0; i < enderecos.length; i++) {
+			assertThat(memoria.getLong(enderecos[i], 0)).isEqualTo(i);
+			assertThat(memoria.getLong(enderecos[i], tamanhoBloco - Long.BYTES)).isEqualTo(i);
+		}
+		assertThat(memoria.getBytesEmUso()).isEqualTo((long) enderecos.length * tamanhoBloco);
+		assertThat(memoria.getBytesReservados()).isGreaterThanOrEqualTo(3L * MemoriaForaDoHeap.TAMANHO_REGIAO);
+	}
+
+	@Test
+	void blocoMaiorQueARegiao() {
+		//GIVEN
+		MemoriaForaDoHeap memoria = new MemoriaForaDoHeap(24);
+		long pequeno = memoria.reservar(1);
+		int classe = 32 - Integer.numberOfLeadingZeros(MemoriaForaDoHeap.TAMANHO_REGIAO / 24);
+
+		//WHEN
+		long grande = memoria.reservar(classe);
+		int ultimo = (24 << classe) - Long.BYTES;
+		memoria.putLong(grande, ultimo, 42L);
+		memoria.putLong(pequeno, 0, 7L);
+
+		//THEN
+		assertThat(memoria.getLong(grande, ultimo)).isEqualTo(42L);
+		assertThat(memoria.getLong(pequeno, 0)).isEqualTo(7L);
+		assertThat(memoria.reservar(1) >>> 32).isEqualTo(pequeno >>> 32);
+	}
+}
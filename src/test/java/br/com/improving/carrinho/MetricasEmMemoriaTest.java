@@ -0,0 +1,96 @@
+package br.com.improving.carrinho;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+class MetricasEmMemoriaTest {
+
+	@Test
+	void percentisComErroRelativoLimitado() {
+		//GIVEN
+		MetricasEmMemoria metricas = new MetricasEmMemoria(1);
+
+		//WHEN
+		for (long duracao = 1; duracao <= 100_000; duracao++) {
+			assertThat(metricas.iniciar(OperacaoCarrinho.ADICIONAR_ITEM)).isTrue();
+			metricas.concluir(OperacaoCarrinho.ADICIONAR_ITEM, duracao);
+		}
+
+		//THEN
+		assertThat(metricas.getContagem(OperacaoCarrinho.ADICIONAR_ITEM)).isEqualTo(100_000L);
+		assertThat(metricas.getLatenciaNanos(OperacaoCarrinho.ADICIONAR_ITEM, 50.0)).isBetween(50_000L, 53_125L);
+		assertThat(metricas.getLatenciaNanos(OperacaoCarrinho.ADICIONAR_ITEM, 99.0)).isBetween(99_000L, 105_187L);
+		assertThat(metricas.getLatenciaNanos(OperacaoCarrinho.ADICIONAR_ITEM, 100.0)).isBetween(100_000L, 106_250L);
+		assertThat(metricas.getLatenciaNanos(OperacaoCarrinho.ADICIONAR_ITEM, 0.0)).isEqualTo(1L);
+		assertThat(metricas.getLatenciaNanos(OperacaoCarrinho.REMOVER_ITEM, 50.0)).isZero();
+	}
+
+	@Test
+	void valoresPequenosSaoExatos() {
+		//GIVEN
+		MetricasEmMemoria metricas = new MetricasEmMemoria(1);
+
+		//WHEN
+		for (long duracao = 0; duracao < 16; duracao++) {
+			metricas.concluir(OperacaoCarrinho.REMOVER_ITEM, duracao);
+		}
+
+		//THEN
+		assertThat(metricas.getLatenciaNanos(OperacaoCarrinho.REMOVER_ITEM, 50.0)).isEqualTo(7L);
+		assertThat(metricas.getLatenciaNanos(OperacaoCarrinho.REMOVER_ITEM, 100.0)).isEqualTo(15L);
+	}
+
+	@Test
+	void contarTodasAsExecucoesEMedirAsSorteadas() {
+		//GIVEN
+		AtomicInteger sorteios = new AtomicInteger();
+		MetricasEmMemoria metricas = new MetricasEmMemoria(4, limite -> sorteios.getAndIncrement() % limite);
+		long medidas = 0;
+
+		//WHEN
+		for (int i = 0; i < 1_000; i++) {
+			if (metricas.iniciar(OperacaoCarrinho.CRIAR)) {
+				medidas++;
+				metricas.concluir(OperacaoCarrinho.CRIAR, 100L);
+			}
+		}
+		metricas.iniciar(OperacaoCarrinho.INVALIDAR);
+
+		//THEN
+		assertThat(medidas).isEqualTo(250L);
+		assertThat(metricas.getContagem(OperacaoCarrinho.CRIAR)).isEqualTo(1_000L);
+		assertThat(metricas.getContagem(OperacaoCarrinho.INVALIDAR)).isEqualTo(1L);
+		assertThat(metricas.getLatenciaNanos(OperacaoCarrinho.CRIAR, 50.0)).isBetween(100L, 106L);
+	}
+
+	@Test
+	void distribuicaoDeItensPorCarrinho() {
+		//GIVEN
+		MetricasEmMemoria metricas = new MetricasEmMemoria();
+		for (int i = 0; i < 4; i++) {
+			metricas.carrinhoCriado();
+		}
+
+		//WHEN
+		metricas.itensAlterados(0, 1);
+		metricas.itensAlterados(1, 2);
+		metricas.itensAlterados(0, 40);
+		metricas.itensAlterados(40, 41);
+		metricas.carrinhoRemovido(0);
+
+		//THEN
+		assertThat(metricas.getCarrinhosAtivos()).isEqualTo(3L);
+		assertThat(metricas.getItensPorCarrinho(50.0)).isEqualTo(2L);
+		assertThat(metricas.getItensPorCarrinho(100.0)).isBetween(41L, 43L);
+	}
+
+	@Test
+	void rejeitarAmostragemNaoPositiva() {
+		assertThatThrownBy(() -> new MetricasEmMemoria(0)).isInstanceOf(IllegalArgumentException.class);
+		assertThatThrownBy(() -> new MetricasEmMemoria(-1)).isInstanceOf(IllegalArgumentException.class);
+	}
+}
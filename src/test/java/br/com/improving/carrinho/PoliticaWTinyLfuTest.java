@@ -0,0 +1,186 @@
+package br.com.improving.carrinho;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class PoliticaWTinyLfuTest {
+
+	@Test
+	void frequentesResistemAUmaVarreduraDeElementosUnicos() {
+		//GIVEN
+		Cache cache = new Cache(100L);
+		for (int rodada = 0; rodada < 5; rodada++) {
+			for (long chave = 0; chave < 50; chave++) {
+				cache.acessar(chave, 1);
+			}
+		}
+
+		//WHEN
+		// os frequentes continuam sendo acessados, mas espaçados demais para uma LRU do mesmo tamanho
+		for (long chave = 1_000; chave < 11_000; chave++) {
+			cache.acessar(chave, 1);
+			if (chave % 2 == 0) {
+				cache.acessar(chave / 2 % 50, 1);
+			}
+		}
+
+		//THEN
+		for (long chave = 0; chave < 50; chave++) {
+			assertThat(cache.residentes).containsKey(chave);
+		}
+		assertThat(cache.politica.getPesoResidente()).isLessThanOrEqualTo(100L);
+		assertThat(cache.residentes.values().stream().mapToLong(elemento -> elemento.peso).sum())
+				.isEqualTo(cache.politica.getPesoResidente());
+	}
+
+	@Test
+	void taxaDeAcertoEmZipfMaiorQueADeLru() {
+		//GIVEN
+		double[] acumulada = zipf(100_000);
+		Cache cache = new Cache(1_000L);
+		Map<Long, Boolean> lru = new LinkedHashMap<Long, Boolean>(2_048, 0.75f, true) {
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Long, Boolean> maisAntigo) {
+				return size() > 1_000;
+			}
+		};
+		Random random = new Random(42L);
+		int acessos = 500_000;
+		long acertosLru = 0L;
+
+		//WHEN
+		for (int i = 0; i < acessos; i++) {
+			int sorteado = Arrays.binarySearch(acumulada, random.nextDouble());
+			long chave = sorteado >= 0 ? sorteado : -sorteado - 1;
+			cache.acessar(chave, 1);
+			if (Objects.nonNull(lru.put(chave, Boolean.TRUE))) {
+				acertosLru++;
+			}
+		}
+
+		//THEN
+		double taxaLru = (double) acertosLru / acessos;
+		double taxa = (double) cache.acertos / acessos;
+		assertThat(taxa).isGreaterThan(taxaLru + 0.05);
+		assertThat(cache.politica.getPesoResidente()).isLessThanOrEqualTo(1_000L);
+	}
+
+	@Test
+	void pesoDosElementosLimitaOConjuntoResidente() {
+		//GIVEN
+		Cache cache = new Cache(100L);
+		for (long chave = 0; chave < 10; chave++) {
+			cache.acessar(chave, 10);
+		}
+
+		//WHEN
+		Elemento crescido = cache.residentes.get(9L);
+		cache.politica.pesoAlterado(50 - crescido.peso);
+		crescido.peso = 50;
+		cache.politica.manter();
+
+		//THEN
+		assertThat(cache.politica.getPesoResidente()).isLessThanOrEqualTo(100L);
+		assertThat(cache.residentes.values().stream().mapToLong(elemento -> elemento.peso).sum())
+				.isEqualTo(cache.politica.getPesoResidente());
+		assertThat(cache.despejados).isNotEmpty();
+	}
+
+	@Test
+	void removidoSaiDaOrdemSemSerDespejado() {
+		//GIVEN
+		Cache cache = new Cache(10L);
+		for (long chave = 0; chave < 10; chave++) {
+			cache.acessar(chave, 1);
+		}
+
+		//WHEN
+		Elemento removido = cache.residentes.remove(0L);
+		removido.ativo = false;
+		cache.politica.pesoAlterado(-removido.peso);
+		cache.politica.removido(removido);
+		for (long chave = 10; chave < 100; chave++) {
+			cache.acessar(chave, 1);
+		}
+
+		//THEN
+		assertThat(cache.despejados).doesNotContain(removido);
+		assertThat(cache.politica.getPesoResidente()).isLessThanOrEqualTo(10L);
+	}
+
+	private static double[] zipf(int chaves) {
+		double[] acumulada = new double[chaves];
+		double soma = 0.0;
+		for (int i = 0; i < chaves; i++) {
+			soma += 1.0 / (i + 1);
+			acumulada[i] = soma;
+		}
+		for (int i = 0; i < chaves; i++) {
+			acumulada[i] /= soma;
+		}
+		return acumulada;
+	}
+
+	private static final class Elemento {
+
+		private final long chave;
+		private int peso;
+		private boolean ativo;
+
+		private Elemento(long chave, int peso) {
+			this.chave = chave;
+			this.peso = peso;
+			this.ativo = true;
+		}
+	}
+
+	/**
+	 * Conjunto residente simulado, em uma única thread, com a política decidindo os despejos.
+	 */
+	private static final class Cache {
+
+		private final Map<Long, Elemento> residentes;
+		private final List<Elemento> despejados;
+		private final PoliticaWTinyLfu<Elemento> politica;
+		private long acertos;
+
+		private Cache(long pesoMaximo) {
+			this.residentes = new HashMap<>();
+			this.despejados = new ArrayList<>();
+			this.politica = new PoliticaWTinyLfu<>(pesoMaximo, elemento -> elemento.peso, elemento -> elemento.chave,
+					elemento -> elemento.ativo, this::despejar);
+		}
+
+		private void acessar(long chave, int peso) {
+			Elemento elemento = residentes.get(chave);
+			if (Objects.nonNull(elemento)) {
+				acertos++;
+			} else {
+				elemento = new Elemento(chave, peso);
+				residentes.put(chave, elemento);
+				politica.pesoAlterado(peso);
+			}
+			politica.acessar(elemento);
+			politica.manter();
+		}
+
+		private void despejar(Elemento elemento) {
+			if (residentes.remove(elemento.chave, elemento)) {
+				elemento.ativo = false;
+				politica.pesoAlterado(-elemento.peso);
+				despejados.add(elemento);
+			}
+		}
+	}
+}
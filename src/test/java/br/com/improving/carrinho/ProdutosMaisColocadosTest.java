@@ -0,0 +1,158 @@
+package br.com.improving.carrinho;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+
+class ProdutosMaisColocadosTest {
+
+	private static final int PRODUTOS = 10_000;
+
+	@Test
+	void maisFrequentesIguaisAContagemExata() {
+		//GIVEN
+		ProdutosMaisColocados produtosMaisColocados = new ProdutosMaisColocados(10, Long.MAX_VALUE);
+		Produto[] produtos = produtos();
+		long[] contagens = new long[PRODUTOS];
+		double[] acumulada = zipf();
+		Random random = new Random(42L);
+		int itens = 200_000;
+
+		//WHEN
+		for (int i = 0; i < itens; i++) {
+			int sorteado = Arrays.binarySearch(acumulada, random.nextDouble());
+			int produto = sorteado >= 0 ? sorteado : -sorteado - 1;
+			contagens[produto]++;
+			produtosMaisColocados.registrar(produtos[produto]);
+		}
+
+		//THEN
+		List<ProdutoColocado> maisColocados = produtosMaisColocados.getProdutos();
+		List<Long> exatos = IntStream.range(0, PRODUTOS).boxed()
+				.sorted(Comparator.comparingLong((Integer produto) -> contagens[produto]).reversed())
+				.limit(10)
+				.map(produto -> produtos[produto].getCodigo())
+				.collect(Collectors.toList());
+		assertThat(maisColocados).extracting(colocado -> colocado.getProduto().getCodigo())
+				.containsExactlyElementsOf(exatos);
+		double erroMaximo = Math.E / ProdutosMaisColocados.LARGURA * itens;
+		for (ProdutoColocado colocado : maisColocados) {
+			long exato = contagens[colocado.getProduto().getCodigo().intValue()];
+			assertThat(colocado.getColocacoesEstimadas()).isBetween(exato, exato + (long) erroMaximo);
+		}
+	}
+
+	@Test
+	void maisFrequentesConcorrentesIguaisAContagemExata() throws Exception {
+		//GIVEN
+		ProdutosMaisColocados produtosMaisColocados = new ProdutosMaisColocados(10, Long.MAX_VALUE);
+		Produto[] produtos = produtos();
+		AtomicLongArray contagens = new AtomicLongArray(PRODUTOS);
+		double[] acumulada = zipf();
+		int threads = 4;
+		int itensPorThread = 50_000;
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+
+		//WHEN
+		List<Future<?>> tarefas = new ArrayList<>();
+		for (int thread = 0; thread < threads; thread++) {
+			Random random = new Random(thread);
+			tarefas.add(executor.submit(() -> {
+				for (int i = 0; i < itensPorThread; i++) {
+					int sorteado = Arrays.binarySearch(acumulada, random.nextDouble());
+					int produto = sorteado >= 0 ? sorteado : -sorteado - 1;
+					contagens.incrementAndGet(produto);
+					produtosMaisColocados.registrar(produtos[produto]);
+				}
+			}));
+		}
+		for (Future<?> tarefa : tarefas) {
+			tarefa.get();
+		}
+		executor.shutdown();
+
+		//THEN
+		List<Long> exatos = IntStream.range(0, PRODUTOS).boxed()
+				.sorted(Comparator.comparingLong((Integer produto) -> contagens.get(produto)).reversed())
+				.limit(10)
+				.map(produto -> produtos[produto].getCodigo())
+				.collect(Collectors.toList());
+		assertThat(produtosMaisColocados.getProdutos()).extracting(colocado -> colocado.getProduto().getCodigo())
+				.containsExactlyElementsOf(exatos);
+	}
+
+	@Test
+	void produtoQueDeixaDeSerColocadoSaiDaLista() {
+		//GIVEN
+		ProdutosMaisColocados produtosMaisColocados = new ProdutosMaisColocados(2, 1_000);
+		Produto antigo = new Produto(1L, "antigo");
+		Produto[] recentes = {new Produto(2L, "recente2"), new Produto(3L, "recente3")};
+		for (int i = 0; i < 1_000; i++) {
+			produtosMaisColocados.registrar(antigo);
+		}
+
+		//WHEN
+		for (int i = 0; i < 3_000; i++) {
+			produtosMaisColocados.registrar(recentes[i & 1]);
+		}
+
+		//THEN
+		assertThat(produtosMaisColocados.getProdutos()).extracting(ProdutoColocado::getProduto)
+				.containsExactlyInAnyOrder(recentes);
+		assertThat(produtosMaisColocados.estimar(1L)).isLessThan(produtosMaisColocados.estimar(2L));
+	}
+
+	@Test
+	void listaMenorQueAQuantidadeEnquantoHouverPoucosProdutos() {
+		//GIVEN
+		ProdutosMaisColocados produtosMaisColocados = new ProdutosMaisColocados(10, Long.MAX_VALUE);
+
+		//WHEN
+		produtosMaisColocados.registrar(new Produto(1L, "produto1"));
+		produtosMaisColocados.registrar(new Produto(2L, "produto2"));
+		produtosMaisColocados.registrar(new Produto(2L, "produto2"));
+
+		//THEN
+		assertThat(produtosMaisColocados.getProdutos())
+				.extracting(colocado -> colocado.getProduto().getCodigo(), ProdutoColocado::getColocacoesEstimadas)
+				.containsExactly(tuple(2L, 2L), tuple(1L, 1L));
+	}
+
+	private static Produto[] produtos() {
+		List<Produto> produtos = new ArrayList<>();
+		for (int i = 0; i < PRODUTOS; i++) {
+			produtos.add(new Produto((long) i, "produto" + i));
+		}
+		return produtos.toArray(new Produto[0]);
+	}
+
+	/**
+	 * Distribuição acumulada de Zipf com expoente 1: o i-ésimo produto é escolhido com probabilidade proporcional a
+	 * 1 / (i + 1).
+	 */
+	private static double[] zipf() {
+		double[] acumulada = new double[PRODUTOS];
+		double soma = 0.0;
+		for (int i = 0; i < PRODUTOS; i++) {
+			soma += 1.0 / (i + 1);
+			acumulada[i] = soma;
+		}
+		for (int i = 0; i < PRODUTOS; i++) {
+			acumulada[i] /= soma;
+		}
+		return acumulada;
+	}
+}
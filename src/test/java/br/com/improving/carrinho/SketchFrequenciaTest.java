@@ -0,0 +1,84 @@
+package br.com.improving.carrinho;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class SketchFrequenciaTest {
+
+	@Test
+	void estimativasDentroDoLimiteDeErro() {
+		//GIVEN
+		SketchFrequencia sketch = new SketchFrequencia(4_096, 4, Long.MAX_VALUE);
+		Random random = new Random(42L);
+		long[] contagens = new long[20_000];
+		int incrementos = 500_000;
+
+		//WHEN
+		for (int i = 0; i < incrementos; i++) {
+			// metade dos incrementos concentrada em 1% das chaves
+			int chave = random.nextBoolean() ? random.nextInt(200) : random.nextInt(contagens.length);
+			contagens[chave]++;
+			sketch.incrementar(chave);
+		}
+
+		//THEN
+		double erroMaximo = Math.E / 4_096 * incrementos;
+		int foraDoLimite = 0;
+		for (int chave = 0; chave < contagens.length; chave++) {
+			long estimativa = sketch.estimar(chave);
+			assertThat(estimativa).isGreaterThanOrEqualTo(contagens[chave]);
+			if (estimativa > contagens[chave] + erroMaximo) {
+				foraDoLimite++;
+			}
+		}
+		// no máximo e^-4, cerca de 1,8%, das chaves podem exceder o limite
+		assertThat(foraDoLimite).isLessThanOrEqualTo(contagens.length * 18 / 1_000);
+	}
+
+	@Test
+	void reduzirAMetadeACadaJanela() {
+		//GIVEN
+		SketchFrequencia sketch = new SketchFrequencia(1_024, 4, 1_000);
+
+		//WHEN
+		for (int i = 0; i < 999; i++) {
+			sketch.incrementar(1L);
+		}
+		long antes = sketch.estimar(1L);
+		long ultimo = sketch.incrementar(2L);
+
+		//THEN
+		assertThat(antes).isEqualTo(999L);
+		assertThat(ultimo).isEqualTo(1L);
+		assertThat(sketch.estimar(1L)).isEqualTo(499L);
+		assertThat(sketch.estimar(2L)).isZero();
+		assertThat(sketch.getReducoes()).isEqualTo(1);
+	}
+
+	@Test
+	void chaveNuncaIncrementadaEstimadaComoZero() {
+		//GIVEN
+		SketchFrequencia sketch = new SketchFrequencia(1_024, 4, Long.MAX_VALUE);
+
+		//WHEN
+		sketch.incrementar(1L);
+
+		//THEN
+		assertThat(sketch.estimar(2L)).isZero();
+		assertThat(sketch.estimar(1L)).isEqualTo(1L);
+	}
+
+	@Test
+	void rejeitarConfiguracaoInvalida() {
+		//GIVEN
+		//WHEN
+		//THEN
+		assertThatThrownBy(() -> new SketchFrequencia(0, 4, 1L)).isInstanceOf(IllegalArgumentException.class);
+		assertThatThrownBy(() -> new SketchFrequencia(1_024, 0, 1L)).isInstanceOf(IllegalArgumentException.class);
+		assertThatThrownBy(() -> new SketchFrequencia(1_024, 4, 0L)).isInstanceOf(IllegalArgumentException.class);
+	}
+}